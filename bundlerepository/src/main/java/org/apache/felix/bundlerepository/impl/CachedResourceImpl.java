@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+import org.osgi.framework.Version;
+
+import java.util.Map;
+
+/**
+ * A resource of a cached repository, decoded from the cache on first use.
+ */
+class CachedResourceImpl implements Resource
+{
+    private final RepositoryCache.MappedRepository m_repository;
+    private final int m_index;
+    private volatile Resource m_resource = null;
+
+    CachedResourceImpl(RepositoryCache.MappedRepository repository, int index)
+    {
+        m_repository = repository;
+        m_index = index;
+    }
+
+    private Resource getResource()
+    {
+        Resource resource = m_resource;
+        if (resource == null)
+        {
+            synchronized (this)
+            {
+                resource = m_resource;
+                if (resource == null)
+                {
+                    resource = m_repository.decodeResource(m_index);
+                    m_resource = resource;
+                }
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Gets what the capability index needs to know about this resource,
+     * without decoding it.
+     */
+    RepositoryCache.ResourceKeys getKeys()
+    {
+        return m_repository.decodeKeys(m_index);
+    }
+
+    boolean isDecoded()
+    {
+        return m_resource != null;
+    }
+
+    public boolean isLocal()
+    {
+        return false;
+    }
+
+    public Map getProperties()
+    {
+        return getResource().getProperties();
+    }
+
+    public String getId()
+    {
+        return getResource().getId();
+    }
+
+    public String getSymbolicName()
+    {
+        return getResource().getSymbolicName();
+    }
+
+    public Version getVersion()
+    {
+        return getResource().getVersion();
+    }
+
+    public String getPresentationName()
+    {
+        return getResource().getPresentationName();
+    }
+
+    public String getURI()
+    {
+        return getResource().getURI();
+    }
+
+    public Long getSize()
+    {
+        return getResource().getSize();
+    }
+
+    public String[] getCategories()
+    {
+        return getResource().getCategories();
+    }
+
+    public Capability[] getCapabilities()
+    {
+        return getResource().getCapabilities();
+    }
+
+    public Requirement[] getRequirements()
+    {
+        return getResource().getRequirements();
+    }
+
+    public boolean equals(Object o)
+    {
+        return (o == this) || getResource().equals(o);
+    }
+
+    public int hashCode()
+    {
+        return getResource().hashCode();
+    }
+
+    public String toString()
+    {
+        return getResource().toString();
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Repository;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+
+/**
+ * Index of the capabilities of the resources of a repository, by namespace
+ * and by the value of the primary attribute of the namespace, such as the
+ * package name for packages or the symbolic name for bundles.
+ *
+ * The index only narrows the capabilities a requirement has to be checked
+ * against, the requirement is still checked against each candidate.
+ * Candidates are always returned in the order of the resources of the
+ * repository and of their capabilities, so that callers see the same
+ * capabilities in the same order as when scanning the whole repository.
+ *
+ * Resources read from the repository cache are indexed from the keys stored
+ * with them and are only decoded when one of their capabilities is returned
+ * as a candidate.
+ */
+class CapabilityIndex
+{
+    /**
+     * Marks a primary attribute which is set but is not a string, such
+     * capabilities are candidates for any value of the attribute.
+     */
+    static final Object UNINDEXED = new Object();
+
+    private final Resource[] m_resources;
+    private final List<Entry> m_all = new ArrayList<Entry>();
+    private final Map<String, List<Entry>> m_byNamespace = new HashMap<String, List<Entry>>();
+    private final Map<String, Map<String, List<Entry>>> m_byValue = new HashMap<String, Map<String, List<Entry>>>();
+    private final Map<String, List<Entry>> m_unindexed = new HashMap<String, List<Entry>>();
+    private Map<String, List<Resource>> m_bySymbolicName;
+    private List<Resource> m_withoutSymbolicName;
+
+    CapabilityIndex(Resource[] resources)
+    {
+        m_resources = resources != null ? resources : new Resource[0];
+        int order = 0;
+        for (Resource resource : m_resources)
+        {
+            if (resource == null)
+            {
+                continue;
+            }
+            if (resource instanceof CachedResourceImpl)
+            {
+                RepositoryCache.ResourceKeys keys = ((CachedResourceImpl) resource).getKeys();
+                for (int capIdx = 0; capIdx < keys.m_namespaces.length; capIdx++)
+                {
+                    add(new Entry(order++, resource, capIdx), keys.m_namespaces[capIdx], keys.m_values[capIdx]);
+                }
+                continue;
+            }
+            Capability[] caps = resource.getCapabilities();
+            for (int capIdx = 0; (caps != null) && (capIdx < caps.length); capIdx++)
+            {
+                String namespace = caps[capIdx].getName();
+                add(new Entry(order++, new ResourceCapabilityImpl(resource, caps[capIdx])), namespace,
+                    getPrimaryValue(caps[capIdx].getPropertiesAsMap(), getPrimaryAttribute(namespace)));
+            }
+        }
+    }
+
+    private void add(Entry entry, String namespace, Object value)
+    {
+        m_all.add(entry);
+        get(m_byNamespace, namespace).add(entry);
+
+        if (value instanceof String)
+        {
+            Map<String, List<Entry>> values = m_byValue.get(namespace);
+            if (values == null)
+            {
+                values = new HashMap<String, List<Entry>>();
+                m_byValue.put(namespace, values);
+            }
+            get(values, (String) value).add(entry);
+        }
+        else if (value == UNINDEXED)
+        {
+            get(m_unindexed, namespace).add(entry);
+        }
+        // Capabilities without the primary attribute cannot match
+        // requirements on a value of this attribute, they are only
+        // reachable through the namespace.
+    }
+
+    /**
+     * Gets the index of a repository. Parsed repositories keep their index
+     * until resources are added, the index of other repositories is built
+     * on each call.
+     */
+    static CapabilityIndex getIndex(Repository repository)
+    {
+        if (repository instanceof RepositoryImpl)
+        {
+            return ((RepositoryImpl) repository).getCapabilityIndex();
+        }
+        return new CapabilityIndex(repository.getResources());
+    }
+
+    Resource[] getResources()
+    {
+        return m_resources;
+    }
+
+    /**
+     * Gets the capabilities which may satisfy the given requirement.
+     * @param req the requirement
+     * @return the candidate capabilities with their resources
+     */
+    List<ResourceCapability> getCandidates(Requirement req)
+    {
+        List<Entry> entries;
+        if (!(req instanceof RequirementImpl))
+        {
+            // Other requirements may translate namespaces
+            entries = m_all;
+        }
+        else
+        {
+            String namespace = req.getName();
+            String value = getEquality(req.getFilter(), getPrimaryAttribute(namespace));
+            if (value == null)
+            {
+                entries = m_byNamespace.get(namespace);
+            }
+            else
+            {
+                Map<String, List<Entry>> values = m_byValue.get(namespace);
+                entries = merge(values != null ? values.get(value) : null, m_unindexed.get(namespace));
+            }
+        }
+
+        if (entries == null)
+        {
+            return Collections.emptyList();
+        }
+        List<ResourceCapability> result = new ArrayList<ResourceCapability>(entries.size());
+        for (Entry entry : entries)
+        {
+            result.add(entry.getCapability());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the resources which may match the given filter on resource
+     * properties, in the order of the repository.
+     * @param filter the filter, may be <code>null</code>
+     * @return the candidate resources
+     */
+    List<Resource> getCandidates(String filter)
+    {
+        String name = filter != null ? getEquality(filter, Resource.SYMBOLIC_NAME) : null;
+        if (name == null)
+        {
+            List<Resource> all = new ArrayList<Resource>(m_resources.length);
+            Collections.addAll(all, m_resources);
+            return all;
+        }
+
+        indexSymbolicNames();
+        List<Resource> named = m_bySymbolicName.get(name);
+        if (m_withoutSymbolicName.isEmpty())
+        {
+            return named != null ? named : Collections.<Resource>emptyList();
+        }
+        // Keep the order of the repository
+        List<Resource> result = new ArrayList<Resource>();
+        for (Resource resource : m_resources)
+        {
+            if (named != null && named.contains(resource) || m_withoutSymbolicName.contains(resource))
+            {
+                result.add(resource);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The index of resources by symbolic name is only built when resources
+     * are discovered by filter, as it requires the resource properties.
+     */
+    private synchronized void indexSymbolicNames()
+    {
+        if (m_bySymbolicName != null)
+        {
+            return;
+        }
+        Map<String, List<Resource>> byName = new HashMap<String, List<Resource>>();
+        List<Resource> without = new ArrayList<Resource>();
+        for (Resource resource : m_resources)
+        {
+            if (resource == null)
+            {
+                continue;
+            }
+            Object name = (resource instanceof CachedResourceImpl)
+                ? ((CachedResourceImpl) resource).getKeys().m_symbolicName
+                : getPrimaryValue(resource.getProperties(), Resource.SYMBOLIC_NAME);
+            if (name instanceof String)
+            {
+                get(byName, (String) name).add(resource);
+            }
+            else if (name == UNINDEXED)
+            {
+                without.add(resource);
+            }
+        }
+        m_withoutSymbolicName = without;
+        m_bySymbolicName = byName;
+    }
+
+    /**
+     * Gets the attribute identifying a capability of the given namespace.
+     */
+    static String getPrimaryAttribute(String namespace)
+    {
+        if (Capability.BUNDLE.equals(namespace))
+        {
+            return Resource.SYMBOLIC_NAME;
+        }
+        return namespace;
+    }
+
+    /**
+     * Gets the value of an attribute, keys are matched ignoring case as
+     * filters do.
+     * @return the value if it is a string, {@link #UNINDEXED} if it is of
+     * another type and <code>null</code> if the attribute is not set
+     */
+    static Object getPrimaryValue(Map<String, Object> properties, String attribute)
+    {
+        if (properties == null)
+        {
+            return null;
+        }
+        Object value = properties.get(attribute);
+        if (value == null)
+        {
+            for (Map.Entry<String, Object> e : properties.entrySet())
+            {
+                if (attribute.equalsIgnoreCase(e.getKey()))
+                {
+                    value = e.getValue();
+                    break;
+                }
+            }
+        }
+        if (value == null || value instanceof String)
+        {
+            return value;
+        }
+        return UNINDEXED;
+    }
+
+    /**
+     * Extracts the value an attribute must be equal to for the filter to
+     * match. This is the case when the filter is a simple equality on the
+     * attribute or a conjunction with such an equality as direct operand.
+     * @return the unescaped value or <code>null</code> if the filter does not
+     * require a single value for this attribute
+     */
+    static String getEquality(String filter, String attribute)
+    {
+        if (filter == null)
+        {
+            return null;
+        }
+        String f = filter.trim();
+        if (f.startsWith("(&"))
+        {
+            int pos = 2;
+            while (pos < f.length() && f.charAt(pos) == '(')
+            {
+                int end = findClosingParenthesis(f, pos);
+                if (end < 0)
+                {
+                    return null;
+                }
+                String value = getSimpleEquality(f.substring(pos, end + 1), attribute);
+                if (value != null)
+                {
+                    return value;
+                }
+                pos = end + 1;
+            }
+            return null;
+        }
+        return getSimpleEquality(f, attribute);
+    }
+
+    private static String getSimpleEquality(String filter, String attribute)
+    {
+        if (filter.length() < 2 || filter.charAt(0) != '(' || filter.charAt(filter.length() - 1) != ')')
+        {
+            return null;
+        }
+        int eq = filter.indexOf('=');
+        if (eq < 0)
+        {
+            return null;
+        }
+        String attr = filter.substring(1, eq);
+        if (!attribute.equalsIgnoreCase(attr.trim()))
+        {
+            // Also rejects the ~=, >= and <= operators and nested filters
+            return null;
+        }
+        StringBuilder value = new StringBuilder();
+        for (int i = eq + 1; i < filter.length() - 1; i++)
+        {
+            char c = filter.charAt(i);
+            if (c == '\\' && i + 1 < filter.length() - 1)
+            {
+                value.append(filter.charAt(++i));
+            }
+            else if (c == '*' || c == '(' || c == ')')
+            {
+                // Substring or presence
+                return null;
+            }
+            else
+            {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    private static int findClosingParenthesis(String filter, int start)
+    {
+        int depth = 0;
+        for (int i = start; i < filter.length(); i++)
+        {
+            char c = filter.charAt(i);
+            if (c == '\\')
+            {
+                i++;
+            }
+            else if (c == '(')
+            {
+                depth++;
+            }
+            else if (c == ')' && --depth == 0)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Merges two lists of entries keeping the order of the repository.
+     */
+    private static List<Entry> merge(List<Entry> l1, List<Entry> l2)
+    {
+        if (l1 == null || l1.isEmpty())
+        {
+            return l2;
+        }
+        if (l2 == null || l2.isEmpty())
+        {
+            return l1;
+        }
+        List<Entry> result = new ArrayList<Entry>(l1.size() + l2.size());
+        Iterator<Entry> i1 = l1.iterator();
+        Iterator<Entry> i2 = l2.iterator();
+        Entry e1 = i1.next();
+        Entry e2 = i2.next();
+        while (e1 != null || e2 != null)
+        {
+            if (e2 == null || (e1 != null && e1.m_order < e2.m_order))
+            {
+                result.add(e1);
+                e1 = i1.hasNext() ? i1.next() : null;
+            }
+            else
+            {
+                result.add(e2);
+                e2 = i2.hasNext() ? i2.next() : null;
+            }
+        }
+        return result;
+    }
+
+    private static <T> List<T> get(Map<String, List<T>> map, String key)
+    {
+        List<T> list = map.get(key);
+        if (list == null)
+        {
+            list = new ArrayList<T>();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    private static class Entry
+    {
+        private final int m_order;
+        private final Resource m_resource;
+        private final int m_index;
+        private volatile ResourceCapability m_capability;
+
+        Entry(int order, ResourceCapability capability)
+        {
+            m_order = order;
+            m_resource = capability.getResource();
+            m_index = -1;
+            m_capability = capability;
+        }
+
+        /**
+         * An entry for a capability of a cached resource, which is decoded
+         * on first use of the capability.
+         */
+        Entry(int order, Resource resource, int index)
+        {
+            m_order = order;
+            m_resource = resource;
+            m_index = index;
+        }
+
+        ResourceCapability getCapability()
+        {
+            ResourceCapability capability = m_capability;
+            if (capability == null)
+            {
+                capability = new ResourceCapabilityImpl(m_resource, m_resource.getCapabilities()[m_index]);
+                m_capability = capability;
+            }
+            return capability;
+        }
+    }
+}
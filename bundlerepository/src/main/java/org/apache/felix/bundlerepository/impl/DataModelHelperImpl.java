@@ -89,6 +89,15 @@ public class DataModelHelperImpl implements DataModelHelper
     }
 
     public Repository repository(final URL url) throws Exception
+    {
+        return repository(url, FileUtil.openURL(url));
+    }
+
+    /**
+     * Parses the repository at the given URL from an already opened stream
+     * with the content of the URL, which is closed by this method.
+     */
+    RepositoryImpl repository(URL url, InputStream content) throws Exception
     {
         InputStream is = null;
 
@@ -96,7 +105,7 @@ public class DataModelHelperImpl implements DataModelHelper
         {
             if (url.getPath().endsWith(".zip"))
             {
-                ZipInputStream zin = new ZipInputStream(FileUtil.openURL(url));
+                ZipInputStream zin = new ZipInputStream(content);
                 ZipEntry entry = zin.getNextEntry();
                 while (entry != null)
                 {
@@ -122,11 +131,11 @@ public class DataModelHelperImpl implements DataModelHelper
             }
             else if (url.getPath().endsWith(".gz"))
             {
-                is = new GZIPInputStream(FileUtil.openURL(url));
+                is = new GZIPInputStream(content);
             }
             else
             {
-                is = FileUtil.openURL(url);
+                is = content;
             }
 
             if (is != null)
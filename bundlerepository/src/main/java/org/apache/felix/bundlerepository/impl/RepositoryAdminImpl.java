@@ -18,6 +18,7 @@
  */
 package org.apache.felix.bundlerepository.impl;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.AccessController;
@@ -53,12 +54,14 @@ public class RepositoryAdminImpl implements RepositoryAdmin
     private final DataModelHelper m_helper = new DataModelHelperImpl();
     private Map m_repoMap = new LinkedHashMap();
     private boolean m_initialized = false;
+    private RepositoryCache m_cache = null;
 
     // Reusable comparator for sorting resources by name.
     private Comparator m_nameComparator = new ResourceComparator();
 
     public static final String REPOSITORY_URL_PROP = "obr.repository.url";
     public static final String EXTERN_REPOSITORY_TAG = "extern-repositories";
+    public static final String REPOSITORY_CACHE_PROP = "obr.repository.cache";
 
     public RepositoryAdminImpl(BundleContext context, Logger logger)
     {
@@ -111,7 +114,7 @@ public class RepositoryAdminImpl implements RepositoryAdmin
             {
                 public Object run() throws Exception
                 {
-                    return m_helper.repository(url);
+                    return (m_cache != null) ? m_cache.repository(url) : m_helper.repository(url);
                 }
             });
             m_repoMap.put(url.toExternalForm(), repository);
@@ -195,13 +198,15 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         List matchList = new ArrayList();
         for (int repoIdx = 0; (repos != null) && (repoIdx < repos.length); repoIdx++)
         {
-            resources = repos[repoIdx].getResources();
-            for (int resIdx = 0; (resources != null) && (resIdx < resources.length); resIdx++)
+            List candidates = CapabilityIndex.getIndex(repos[repoIdx]).getCandidates(
+                filter != null ? filter.toString() : null);
+            for (int resIdx = 0; resIdx < candidates.size(); resIdx++)
             {
-                dict.setSourceMap(resources[resIdx].getProperties());
+                Resource resource = (Resource) candidates.get(resIdx);
+                dict.setSourceMap(resource.getProperties());
                 if (filter == null || filter.match(dict))
                 {
-                    matchList.add(resources[resIdx]);
+                    matchList.add(resource);
                 }
             }
         }
@@ -221,7 +226,8 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         List matchList = new ArrayList();
         for (int repoIdx = 0; (repos != null) && (repoIdx < repos.length); repoIdx++)
         {
-            resources = repos[repoIdx].getResources();
+            CapabilityIndex index = CapabilityIndex.getIndex(repos[repoIdx]);
+            resources = getCandidates(index, requirements);
             for (int resIdx = 0; (resources != null) && (resIdx < resources.length); resIdx++)
             {
                 boolean match = true;
@@ -256,6 +262,42 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         return resources;
     }
 
+    /**
+     * Gets the resources of a repository which may satisfy all the given
+     * requirements, using the requirement with the fewest candidates.
+     */
+    private Resource[] getCandidates(CapabilityIndex index, Requirement[] requirements)
+    {
+        List best = null;
+        for (int reqIdx = 0; (requirements != null) && (reqIdx < requirements.length); reqIdx++)
+        {
+            List candidates = index.getCandidates(requirements[reqIdx]);
+            if (best == null || candidates.size() < best.size())
+            {
+                best = candidates;
+            }
+        }
+        if (best == null)
+        {
+            return index.getResources();
+        }
+
+        // Candidates are in the order of the repository, so the capabilities
+        // of a resource are next to each other
+        List resources = new ArrayList();
+        Resource previous = null;
+        for (int capIdx = 0; capIdx < best.size(); capIdx++)
+        {
+            Resource resource = ((ResourceCapability) best.get(capIdx)).getResource();
+            if (resource != previous)
+            {
+                resources.add(resource);
+                previous = resource;
+            }
+        }
+        return (Resource[]) resources.toArray(new Resource[resources.size()]);
+    }
+
     private void initialize()
     {
         if (m_initialized)
@@ -264,6 +306,13 @@ public class RepositoryAdminImpl implements RepositoryAdmin
         }
         m_initialized = true;
 
+        // Parsed repositories are cached in the configured directory, if any.
+        String cacheDir = m_context.getProperty(REPOSITORY_CACHE_PROP);
+        if (cacheDir != null)
+        {
+            m_cache = new RepositoryCache(new File(cacheDir), m_logger);
+        }
+
         // First check the repository URL config property.
         String urlStr = m_context.getProperty(REPOSITORY_URL_PROP);
         if (urlStr != null)
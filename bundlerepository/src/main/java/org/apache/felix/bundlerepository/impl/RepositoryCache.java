@@ -0,0 +1,907 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Property;
+import org.apache.felix.bundlerepository.Requirement;
+import org.apache.felix.bundlerepository.Resource;
+import org.apache.felix.utils.log.Logger;
+import org.apache.felix.utils.version.VersionTable;
+import org.osgi.framework.Version;
+
+/**
+ * A local cache of parsed repositories. A parsed repository is stored in a
+ * binary form which is memory mapped when the repository is added again,
+ * its resources being decoded one by one on first use.
+ * <p>
+ * The namespaces and primary attribute values of the capabilities of each
+ * resource are also stored apart from the resource records, so that the
+ * capability index of the repository is built without decoding them.
+ * <p>
+ * Entries are named after the URL of the repository and the hash of the
+ * content downloaded from it, so a repository is only parsed again when
+ * its content changed.
+ */
+class RepositoryCache
+{
+    private static final int MAGIC = 0x4F425243;
+    private static final int FORMAT_VERSION = 2;
+    private static final String EXTENSION = ".obr";
+
+    // magic, format version, content hash and the positions of the
+    // repository record, the resource table, the string table and the
+    // key table
+    private static final int DIGEST_SIZE = 20;
+    private static final int HEADER_SIZE = 4 + 4 + DIGEST_SIZE + 4 + 4 + 4 + 4;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_VERSION = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_URI = 5;
+    private static final byte TYPE_URL = 6;
+    private static final byte TYPE_LIST = 7;
+    private static final byte TYPE_SET = 8;
+
+    private static final byte PROPERTY_RAW = 0;
+    private static final byte PROPERTY_CONVERTED = 1;
+
+    private static final byte KEY_NONE = 0;
+    private static final byte KEY_STRING = 1;
+    private static final byte KEY_UNINDEXED = 2;
+
+    private static final int EXTEND = 1;
+    private static final int MULTIPLE = 2;
+    private static final int OPTIONAL = 4;
+
+    private final File m_dir;
+    private final Logger m_logger;
+    private final DataModelHelperImpl m_helper = new DataModelHelperImpl();
+
+    RepositoryCache(File dir, Logger logger)
+    {
+        m_dir = dir;
+        m_logger = logger;
+    }
+
+    /**
+     * Gets the repository at the given URL, from the cache if its content
+     * did not change since it has been parsed last.
+     */
+    RepositoryImpl repository(URL url) throws Exception
+    {
+        String key = toHex(digest(url.toExternalForm().getBytes("UTF-8")));
+
+        // Local repositories are hashed in place, others are downloaded once
+        // to a spool file which is hashed and then parsed
+        File local = localFile(url);
+        File spool = null;
+        try
+        {
+            m_dir.mkdirs();
+            if (local == null)
+            {
+                spool = File.createTempFile(key, ".tmp", m_dir);
+            }
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to use repository cache " + m_dir + ".", ex);
+            return (RepositoryImpl) m_helper.repository(url);
+        }
+
+        try
+        {
+            byte[] digest = (local != null) ? hash(local) : download(url, spool);
+            File file = new File(m_dir, key + "-" + toHex(digest) + EXTENSION);
+            if (file.isFile())
+            {
+                try
+                {
+                    return load(file, digest, url.toExternalForm());
+                }
+                catch (Exception ex)
+                {
+                    m_logger.log(Logger.LOG_WARNING, "Ignoring invalid repository cache entry " + file + ".", ex);
+                    file.delete();
+                }
+            }
+
+            RepositoryImpl repository = m_helper.repository(url,
+                new FileInputStream((local != null) ? local : spool));
+            store(repository, digest, file, key);
+            return repository;
+        }
+        finally
+        {
+            if (spool != null)
+            {
+                spool.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the file of a <code>file:</code> URL, or <code>null</code> if
+     * the URL does not denote a local file
+     */
+    private static File localFile(URL url)
+    {
+        if (!"file".equals(url.getProtocol()))
+        {
+            return null;
+        }
+        try
+        {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        }
+        catch (Exception ex)
+        {
+            // Not a hierarchical URI, download it like other URLs
+            return null;
+        }
+    }
+
+    /**
+     * Copies the content of the URL to the given file.
+     * @return the hash of the content
+     */
+    private static byte[] download(URL url, File file) throws Exception
+    {
+        InputStream in = FileUtil.openURL(url);
+        try
+        {
+            OutputStream out = new FileOutputStream(file);
+            try
+            {
+                return copy(in, out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the hash of the content of the given file
+     */
+    private static byte[] hash(File file) throws Exception
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            return copy(in, null);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Hashes a stream, copying it to the given output stream if any.
+     */
+    private static byte[] copy(InputStream in, OutputStream out) throws Exception
+    {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) != -1)
+        {
+            md.update(buffer, 0, len);
+            if (out != null)
+            {
+                out.write(buffer, 0, len);
+            }
+        }
+        return md.digest();
+    }
+
+    private void store(RepositoryImpl repository, byte[] digest, File file, String key)
+    {
+        File tmp = null;
+        try
+        {
+            tmp = File.createTempFile(key, ".tmp", m_dir);
+            write(repository, digest, tmp);
+            if (!tmp.renameTo(file))
+            {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+            tmp = null;
+
+            // Entries for previous contents of the repository are stale now,
+            // they may still be mapped though and fail to be deleted
+            File[] files = m_dir.listFiles();
+            for (int i = 0; (files != null) && (i < files.length); i++)
+            {
+                String name = files[i].getName();
+                if (name.startsWith(key + "-") && name.endsWith(EXTENSION) && !files[i].equals(file))
+                {
+                    files[i].delete();
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to cache repository " + repository.getURI() + ".", ex);
+        }
+        finally
+        {
+            if (tmp != null)
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static void write(RepositoryImpl repository, byte[] digest, File file) throws IOException
+    {
+        FileOutputStream fos = new FileOutputStream(file);
+        try
+        {
+            Encoder encoder = new Encoder(new DataOutputStream(new BufferedOutputStream(fos)));
+            int[] positions = encoder.writeRepository(repository);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.put(digest);
+            header.putInt(positions[0]);
+            header.putInt(positions[1]);
+            header.putInt(positions[2]);
+            header.putInt(positions[3]);
+            header.flip();
+            FileChannel channel = fos.getChannel();
+            while (header.hasRemaining())
+            {
+                channel.write(header, header.position());
+            }
+        }
+        finally
+        {
+            fos.close();
+        }
+    }
+
+    private static RepositoryImpl load(File file, byte[] digest, String uri) throws Exception
+    {
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            // The mapping remains valid once the file is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if ((buffer.limit() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != FORMAT_VERSION))
+        {
+            throw new IOException("Not a repository cache file: " + file);
+        }
+        byte[] stored = new byte[DIGEST_SIZE];
+        ByteBuffer b = buffer.duplicate();
+        b.position(8);
+        b.get(stored);
+        if (!Arrays.equals(stored, digest))
+        {
+            throw new IOException("Content hash mismatch: " + file);
+        }
+
+        MappedRepository mapped = new MappedRepository(buffer, buffer.getInt(32), buffer.getInt(36), buffer.getInt(40));
+        return mapped.decodeRepository(buffer.getInt(28), uri);
+    }
+
+    private static byte[] digest(byte[] data) throws Exception
+    {
+        return MessageDigest.getInstance("SHA-1").digest(data);
+    }
+
+    private static String toHex(byte[] data)
+    {
+        StringBuffer sb = new StringBuffer(data.length * 2);
+        for (int i = 0; i < data.length; i++)
+        {
+            sb.append(Character.forDigit((data[i] >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(data[i] & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the binary form of a repository. Strings are shared through a
+     * string table written after the records referring to them.
+     */
+    private static class Encoder
+    {
+        private final DataOutputStream m_out;
+        private final Map<String, Integer> m_stringIndex = new HashMap<String, Integer>();
+        private final List<String> m_strings = new ArrayList<String>();
+
+        Encoder(DataOutputStream out)
+        {
+            m_out = out;
+        }
+
+        /**
+         * @return the positions of the repository record, the resource
+         * table, the string table and the key table
+         */
+        int[] writeRepository(RepositoryImpl repository) throws IOException
+        {
+            // Room for the header, which is written last
+            m_out.write(new byte[HEADER_SIZE]);
+
+            Resource[] resources = repository.getResources();
+            int[] resourcePositions = new int[resources.length];
+            for (int i = 0; i < resources.length; i++)
+            {
+                resourcePositions[i] = position();
+                writeResource(resources[i]);
+            }
+
+            int[] keyPositions = new int[resources.length];
+            for (int i = 0; i < resources.length; i++)
+            {
+                keyPositions[i] = position();
+                writeKeys(resources[i]);
+            }
+
+            int repositoryPosition = position();
+            writeString(repository.getName());
+            m_out.writeLong(repository.getLastModified());
+            Referral[] referrals = repository.getReferrals();
+            m_out.writeInt(referrals != null ? referrals.length : 0);
+            for (int i = 0; (referrals != null) && (i < referrals.length); i++)
+            {
+                m_out.writeInt(referrals[i].getDepth());
+                writeString(referrals[i].getUrl());
+            }
+
+            int resourceTable = writeTable(resourcePositions);
+            int keyTable = writeTable(keyPositions);
+
+            int[] stringPositions = new int[m_strings.size()];
+            for (int i = 0; i < stringPositions.length; i++)
+            {
+                stringPositions[i] = position();
+                byte[] bytes = m_strings.get(i).getBytes("UTF-8");
+                m_out.writeInt(bytes.length);
+                m_out.write(bytes);
+            }
+            int stringTable = writeTable(stringPositions);
+
+            m_out.flush();
+            return new int[] { repositoryPosition, resourceTable, stringTable, keyTable };
+        }
+
+        private void writeResource(Resource resource) throws IOException
+        {
+            Map properties = resource.getProperties();
+            m_out.writeInt(properties.size());
+            for (Iterator it = properties.entrySet().iterator(); it.hasNext();)
+            {
+                Map.Entry entry = (Map.Entry) it.next();
+                writeString((String) entry.getKey());
+                writeValue(entry.getValue());
+            }
+
+            Capability[] caps = resource.getCapabilities();
+            m_out.writeInt(caps.length);
+            for (int i = 0; i < caps.length; i++)
+            {
+                writeCapability(caps[i]);
+            }
+
+            Requirement[] reqs = resource.getRequirements();
+            m_out.writeInt(reqs.length);
+            for (int i = 0; i < reqs.length; i++)
+            {
+                writeRequirement(reqs[i]);
+            }
+        }
+
+        /**
+         * Writes what the capability index needs to know about a resource:
+         * its symbolic name and the namespace and primary attribute value
+         * of each of its capabilities.
+         */
+        private void writeKeys(Resource resource) throws IOException
+        {
+            writeKey(CapabilityIndex.getPrimaryValue(resource.getProperties(), Resource.SYMBOLIC_NAME));
+            Capability[] caps = resource.getCapabilities();
+            m_out.writeInt(caps.length);
+            for (int i = 0; i < caps.length; i++)
+            {
+                String namespace = caps[i].getName();
+                writeString(namespace);
+                writeKey(CapabilityIndex.getPrimaryValue(
+                    caps[i].getPropertiesAsMap(), CapabilityIndex.getPrimaryAttribute(namespace)));
+            }
+        }
+
+        private void writeKey(Object value) throws IOException
+        {
+            if (value == null)
+            {
+                m_out.writeByte(KEY_NONE);
+            }
+            else if (value instanceof String)
+            {
+                m_out.writeByte(KEY_STRING);
+                writeString((String) value);
+            }
+            else
+            {
+                m_out.writeByte(KEY_UNINDEXED);
+            }
+        }
+
+        private void writeCapability(Capability capability) throws IOException
+        {
+            writeString(capability.getName());
+            Property[] props = capability.getProperties();
+            m_out.writeInt(props.length);
+            for (int i = 0; i < props.length; i++)
+            {
+                Object converted = (props[i] instanceof PropertyImpl) ? null : props[i].getConvertedValue();
+                if (converted == null)
+                {
+                    m_out.writeByte(PROPERTY_RAW);
+                    writeString(props[i].getName());
+                    writeString(props[i].getType());
+                    writeString(props[i].getValue());
+                }
+                else
+                {
+                    m_out.writeByte(PROPERTY_CONVERTED);
+                    writeString(props[i].getName());
+                    writeValue(converted);
+                }
+            }
+            writeStrings(capability.getDirectives());
+        }
+
+        private void writeRequirement(Requirement requirement) throws IOException
+        {
+            writeString(requirement.getName());
+            writeString(requirement.getFilter());
+            m_out.writeByte((requirement.isExtend() ? EXTEND : 0)
+                | (requirement.isMultiple() ? MULTIPLE : 0)
+                | (requirement.isOptional() ? OPTIONAL : 0));
+            writeString(requirement.getComment());
+
+            Map<String, Object> attributes = requirement.getAttributes();
+            m_out.writeInt(attributes.size());
+            for (Map.Entry<String, Object> entry : attributes.entrySet())
+            {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+            }
+            writeStrings(requirement.getDirectives());
+        }
+
+        private void writeStrings(Map<String, String> map) throws IOException
+        {
+            m_out.writeInt(map.size());
+            for (Map.Entry<String, String> entry : map.entrySet())
+            {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        private void writeValue(Object value) throws IOException
+        {
+            if (value == null)
+            {
+                m_out.writeByte(TYPE_NULL);
+            }
+            else if (value instanceof String)
+            {
+                m_out.writeByte(TYPE_STRING);
+                writeString((String) value);
+            }
+            else if (value instanceof Version)
+            {
+                m_out.writeByte(TYPE_VERSION);
+                writeString(value.toString());
+            }
+            else if (value instanceof Long)
+            {
+                m_out.writeByte(TYPE_LONG);
+                m_out.writeLong(((Long) value).longValue());
+            }
+            else if (value instanceof Double)
+            {
+                m_out.writeByte(TYPE_DOUBLE);
+                m_out.writeDouble(((Double) value).doubleValue());
+            }
+            else if (value instanceof URI)
+            {
+                m_out.writeByte(TYPE_URI);
+                writeString(value.toString());
+            }
+            else if (value instanceof URL)
+            {
+                m_out.writeByte(TYPE_URL);
+                writeString(((URL) value).toExternalForm());
+            }
+            else if (value instanceof List || value instanceof Set)
+            {
+                m_out.writeByte(value instanceof List ? TYPE_LIST : TYPE_SET);
+                Collection c = (Collection) value;
+                m_out.writeInt(c.size());
+                for (Iterator it = c.iterator(); it.hasNext();)
+                {
+                    writeValue(it.next());
+                }
+            }
+            else
+            {
+                throw new IllegalArgumentException("Unsupported value type: " + value.getClass().getName());
+            }
+        }
+
+        private void writeString(String s) throws IOException
+        {
+            if (s == null)
+            {
+                m_out.writeInt(-1);
+                return;
+            }
+            Integer index = m_stringIndex.get(s);
+            if (index == null)
+            {
+                index = Integer.valueOf(m_strings.size());
+                m_stringIndex.put(s, index);
+                m_strings.add(s);
+            }
+            m_out.writeInt(index.intValue());
+        }
+
+        private int writeTable(int[] positions) throws IOException
+        {
+            int position = position();
+            m_out.writeInt(positions.length);
+            for (int i = 0; i < positions.length; i++)
+            {
+                m_out.writeInt(positions[i]);
+            }
+            return position;
+        }
+
+        private int position() throws IOException
+        {
+            // The size of the stream sticks to Integer.MAX_VALUE on overflow
+            int size = m_out.size();
+            if (size == Integer.MAX_VALUE)
+            {
+                throw new IOException("Repository too large to be cached");
+            }
+            return size;
+        }
+    }
+
+    /**
+     * A memory mapped cache entry, from which the resources are decoded on
+     * demand.
+     */
+    static class MappedRepository
+    {
+        private final ByteBuffer m_buffer;
+        private final int m_resourceTable;
+        private final int m_stringTable;
+        private final int m_keyTable;
+        private final String[] m_strings;
+        private volatile RepositoryImpl m_repository;
+
+        MappedRepository(ByteBuffer buffer, int resourceTable, int stringTable, int keyTable)
+        {
+            m_buffer = buffer;
+            m_resourceTable = resourceTable;
+            m_stringTable = stringTable;
+            m_keyTable = keyTable;
+            m_strings = new String[buffer.getInt(stringTable)];
+        }
+
+        RepositoryImpl decodeRepository(int position, String uri) throws Exception
+        {
+            Resource[] resources = new Resource[m_buffer.getInt(m_resourceTable)];
+            for (int i = 0; i < resources.length; i++)
+            {
+                resources[i] = new CachedResourceImpl(this, i);
+            }
+
+            RepositoryImpl repository = new RepositoryImpl(resources);
+            ByteBuffer in = at(position);
+            repository.setName(readString(in));
+            repository.setLastModified(in.getLong());
+            int referrals = in.getInt();
+            for (int i = 0; i < referrals; i++)
+            {
+                Referral referral = new Referral();
+                referral.setDepth(Integer.toString(in.getInt()));
+                referral.setUrl(readString(in));
+                repository.addReferral(referral);
+            }
+            repository.setURI(uri);
+            m_repository = repository;
+            return repository;
+        }
+
+        ResourceImpl decodeResource(int index)
+        {
+            ByteBuffer in = at(m_buffer.getInt(m_resourceTable + 4 + 4 * index));
+            ResourceImpl resource = new ResourceImpl();
+            resource.setRepository(m_repository);
+            int properties = in.getInt();
+            for (int i = 0; i < properties; i++)
+            {
+                resource.putConverted(readString(in), readValue(in));
+            }
+
+            int caps = in.getInt();
+            for (int i = 0; i < caps; i++)
+            {
+                resource.addCapability(readCapability(in));
+            }
+
+            int reqs = in.getInt();
+            for (int i = 0; i < reqs; i++)
+            {
+                resource.addRequire(readRequirement(in));
+            }
+            return resource;
+        }
+
+        ResourceKeys decodeKeys(int index)
+        {
+            ByteBuffer in = at(m_buffer.getInt(m_keyTable + 4 + 4 * index));
+            Object symbolicName = readKey(in);
+            int caps = in.getInt();
+            String[] namespaces = new String[caps];
+            Object[] values = new Object[caps];
+            for (int i = 0; i < caps; i++)
+            {
+                namespaces[i] = readString(in);
+                values[i] = readKey(in);
+            }
+            return new ResourceKeys(symbolicName, namespaces, values);
+        }
+
+        private Object readKey(ByteBuffer in)
+        {
+            byte type = in.get();
+            switch (type)
+            {
+                case KEY_NONE:
+                    return null;
+                case KEY_STRING:
+                    return readString(in);
+                case KEY_UNINDEXED:
+                    return CapabilityIndex.UNINDEXED;
+                default:
+                    throw new IllegalStateException("Invalid key type in repository cache: " + type);
+            }
+        }
+
+        private CapabilityImpl readCapability(ByteBuffer in)
+        {
+            CapabilityImpl capability = new CapabilityImpl(readString(in));
+            int props = in.getInt();
+            for (int i = 0; i < props; i++)
+            {
+                if (in.get() == PROPERTY_RAW)
+                {
+                    String name = readString(in);
+                    String type = readString(in);
+                    capability.addProperty(new PropertyImpl(name, type, readString(in)));
+                }
+                else
+                {
+                    String name = readString(in);
+                    capability.addProperty(new FelixPropertyAdapter(name, readValue(in)));
+                }
+            }
+            int directives = in.getInt();
+            for (int i = 0; i < directives; i++)
+            {
+                String key = readString(in);
+                capability.addDirective(key, readString(in));
+            }
+            return capability;
+        }
+
+        private RequirementImpl readRequirement(ByteBuffer in)
+        {
+            RequirementImpl requirement = new RequirementImpl(readString(in));
+            String filter = readString(in);
+            if (filter != null)
+            {
+                requirement.setFilter(filter);
+            }
+            int flags = in.get();
+            requirement.setExtend((flags & EXTEND) != 0);
+            requirement.setMultiple((flags & MULTIPLE) != 0);
+            requirement.setOptional((flags & OPTIONAL) != 0);
+            String comment = readString(in);
+            if (comment != null)
+            {
+                requirement.addText(comment);
+            }
+
+            int attributes = in.getInt();
+            if (attributes > 0)
+            {
+                Map<String, Object> map = new HashMap<String, Object>();
+                for (int i = 0; i < attributes; i++)
+                {
+                    map.put(readString(in), readValue(in));
+                }
+                requirement.setAttributes(map);
+            }
+            int directives = in.getInt();
+            if (directives > 0)
+            {
+                Map<String, String> map = new HashMap<String, String>();
+                for (int i = 0; i < directives; i++)
+                {
+                    map.put(readString(in), readString(in));
+                }
+                requirement.setDirectives(map);
+            }
+            return requirement;
+        }
+
+        private Object readValue(ByteBuffer in)
+        {
+            byte type = in.get();
+            switch (type)
+            {
+                case TYPE_NULL:
+                    return null;
+                case TYPE_STRING:
+                    return readString(in);
+                case TYPE_VERSION:
+                    return VersionTable.getVersion(readString(in));
+                case TYPE_LONG:
+                    return Long.valueOf(in.getLong());
+                case TYPE_DOUBLE:
+                    return Double.valueOf(in.getDouble());
+                case TYPE_URI:
+                    return URI.create(readString(in));
+                case TYPE_URL:
+                    try
+                    {
+                        return new URL(readString(in));
+                    }
+                    catch (IOException ex)
+                    {
+                        IllegalArgumentException iae = new IllegalArgumentException();
+                        iae.initCause(ex);
+                        throw iae;
+                    }
+                case TYPE_LIST:
+                case TYPE_SET:
+                    int size = in.getInt();
+                    Collection c = (type == TYPE_LIST) ? (Collection) new ArrayList(size) : new HashSet();
+                    for (int i = 0; i < size; i++)
+                    {
+                        c.add(readValue(in));
+                    }
+                    return c;
+                default:
+                    throw new IllegalStateException("Invalid value type in repository cache: " + type);
+            }
+        }
+
+        private String readString(ByteBuffer in)
+        {
+            int index = in.getInt();
+            if (index < 0)
+            {
+                return null;
+            }
+            // Strings are immutable, so decoding one twice on concurrent
+            // access does no harm
+            String s = m_strings[index];
+            if (s == null)
+            {
+                ByteBuffer b = at(m_buffer.getInt(m_stringTable + 4 + 4 * index));
+                byte[] bytes = new byte[b.getInt()];
+                b.get(bytes);
+                try
+                {
+                    s = new String(bytes, "UTF-8");
+                }
+                catch (IOException ex)
+                {
+                    // UTF-8 is always supported
+                    throw new IllegalStateException(ex.getMessage());
+                }
+                m_strings[index] = s;
+            }
+            return s;
+        }
+
+        private ByteBuffer at(int position)
+        {
+            // A buffer of its own for each reader, as the position is shared
+            ByteBuffer b = m_buffer.duplicate();
+            b.position(position);
+            return b;
+        }
+    }
+
+    /**
+     * The symbolic name of a cached resource and the namespace and primary
+     * attribute value of each of its capabilities, in the order of the
+     * capabilities of the resource. Values are strings, <code>null</code>
+     * if the attribute is not set or {@link CapabilityIndex#UNINDEXED}.
+     */
+    static class ResourceKeys
+    {
+        final Object m_symbolicName;
+        final String[] m_namespaces;
+        final Object[] m_values;
+
+        ResourceKeys(Object symbolicName, String[] namespaces, Object[] values)
+        {
+            m_symbolicName = symbolicName;
+            m_namespaces = namespaces;
+            m_values = values;
+        }
+    }
+}
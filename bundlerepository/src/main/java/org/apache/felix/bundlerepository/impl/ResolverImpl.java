@@ -43,6 +43,7 @@ public class ResolverImpl implements Resolver
     private final Set<Resource> m_optionalSet = new HashSet<Resource>();
     private final Map<Resource, List<Reason>> m_reasonMap = new HashMap<Resource, List<Reason>>();
     private final Set<Reason> m_unsatisfiedSet = new HashSet<Reason>();
+    private final List<CapabilityIndex> m_indexes = new ArrayList<CapabilityIndex>();
     private boolean m_resolved = false;
     private long m_resolveTimeStamp;
     private int m_resolutionFlags;
@@ -136,22 +137,29 @@ public class ResolverImpl implements Resolver
         return resources.toArray(new LocalResource[resources.size()]);
     }
 
-    private Resource[] getRemoteResources()
+    private Resource[] getResources()
     {
         List<Resource> resources = new ArrayList<Resource>();
-        for (Resource resource : getResources())
+        for (Repository repository : getRepositories())
         {
-            if (resource != null && !resource.isLocal())
-            {
-                resources.add(resource);
-            }
+            Collections.addAll(resources, repository.getResources());
         }
         return resources.toArray(new Resource[resources.size()]);
     }
 
-    private Resource[] getResources()
+    private List<CapabilityIndex> getIndexes()
     {
-        List<Resource> resources = new ArrayList<Resource>();
+        List<CapabilityIndex> indexes = new ArrayList<CapabilityIndex>();
+        for (Repository repository : getRepositories())
+        {
+            indexes.add(CapabilityIndex.getIndex(repository));
+        }
+        return indexes;
+    }
+
+    private List<Repository> getRepositories()
+    {
+        List<Repository> repositories = new ArrayList<Repository>();
         for (int repoIdx = 0; (m_repositories != null) && (repoIdx < m_repositories.length); repoIdx++)
         {
             boolean isLocal = m_repositories[repoIdx].getURI().equals(Repository.LOCAL);
@@ -162,9 +170,9 @@ public class ResolverImpl implements Resolver
             if (isSystem && (m_resolutionFlags & NO_SYSTEM_BUNDLE) != 0) {
                 continue;
             }
-            Collections.addAll(resources, m_repositories[repoIdx].getResources());
+            repositories.add(m_repositories[repoIdx]);
         }
-        return resources.toArray(new Resource[resources.size()]);
+        return repositories;
     }
 
     public synchronized boolean resolve()
@@ -176,7 +184,8 @@ public class ResolverImpl implements Resolver
     {
         // Find resources
         Resource[] locals = getLocalResources();
-        Resource[] remotes = getRemoteResources();
+        m_indexes.clear();
+        m_indexes.addAll(getIndexes());
 
         // time of the resolution process start
         m_resolveTimeStamp = 0;
@@ -207,7 +216,7 @@ public class ResolverImpl implements Resolver
             for (Requirement req : m_addedRequirementSet) {
                 fake.addRequire(req);
             }
-            if (!resolve(fake, locals, remotes, false))
+            if (!resolve(fake, locals, false))
             {
                 result = false;
             }
@@ -215,7 +224,7 @@ public class ResolverImpl implements Resolver
 
         // Loop through each resource in added list and resolve.
         for (Resource aM_addedSet : m_addedSet) {
-            if (!resolve(aM_addedSet, locals, remotes, false)) {
+            if (!resolve(aM_addedSet, locals, false)) {
                 // If any resource does not resolve, then the
                 // entire result will be false.
                 result = false;
@@ -239,7 +248,7 @@ public class ResolverImpl implements Resolver
         return result;
     }
 
-    private boolean resolve(Resource resource, Resource[] locals, Resource[] remotes, boolean optional)
+    private boolean resolve(Resource resource, Resource[] locals, boolean optional)
     {
         boolean result = true;
 
@@ -280,7 +289,7 @@ public class ResolverImpl implements Resolver
                 }
                 if (candidate == null) {
                     List<ResourceCapability> candidateCapabilities = searchResources(req, locals);
-                    candidateCapabilities.addAll(searchResources(req, remotes));
+                    candidateCapabilities.addAll(searchRemoteResources(req));
 
                     // Determine the best candidate available that
                     // can resolve.
@@ -288,7 +297,7 @@ public class ResolverImpl implements Resolver
                         ResourceCapability bestCapability = getBestCandidate(candidateCapabilities);
 
                         // Try to resolve the best resource.
-                        if (resolve(bestCapability.getResource(), locals, remotes, optional || req.isOptional())) {
+                        if (resolve(bestCapability.getResource(), locals, optional || req.isOptional())) {
                             candidate = bestCapability.getResource();
                         } else {
                             candidateCapabilities.remove(bestCapability);
@@ -305,7 +314,7 @@ public class ResolverImpl implements Resolver
                 } else if (candidate != null) {
 
                     // Try to resolve the candidate.
-                    if (resolve(candidate, locals, remotes, optional || req.isOptional())) {
+                    if (resolve(candidate, locals, optional || req.isOptional())) {
                         // The resolved succeeded; record the candidate
                         // as either optional or required.
                         if (optional || req.isOptional()) {
@@ -390,6 +399,31 @@ public class ResolverImpl implements Resolver
         return matchingCapabilities;
     }
 
+    /**
+     * Searches for remote resources that do meet the given requirement,
+     * using the capability index of each repository.
+     * @param req the the requirement that must be satisfied by resources
+     * @return all remote resources meeting the given requirement
+     */
+    private List<ResourceCapability> searchRemoteResources(Requirement req)
+    {
+        List<ResourceCapability> matchingCapabilities = new ArrayList<ResourceCapability>();
+
+        for (CapabilityIndex index : m_indexes) {
+            for (ResourceCapability candidate : index.getCandidates(req)) {
+                checkInterrupt();
+                Resource resource = candidate.getResource();
+                // We don't need to look at resources we've already looked at.
+                if (!resource.isLocal() && !m_failedSet.contains(resource)
+                        && req.isSatisfied(candidate.getCapability())) {
+                    matchingCapabilities.add(candidate);
+                }
+            }
+        }
+
+        return matchingCapabilities;
+    }
+
     /**
      * Determines which resource is preferred to deliver the required capability.
      * This method selects the resource providing the highest version of the capability.
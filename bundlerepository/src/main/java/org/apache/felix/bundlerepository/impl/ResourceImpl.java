@@ -280,6 +280,16 @@ public class ResourceImpl implements Resource
         }
     }
 
+    /**
+     * Sets a property to a value which has already been converted, as read
+     * back from the repository cache.
+     **/
+    void putConverted(String key, Object value)
+    {
+        m_hash = 0;
+        m_map.put(key, value);
+    }
+
     private void convertURIs()
     {
         if (m_uris != null)
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.bundlerepository.Resource;
+
+public class CapabilityIndexTest extends TestCase
+{
+    public void testGetEquality()
+    {
+        assertEquals("foo", CapabilityIndex.getEquality("(package=foo)", "package"));
+        assertEquals("foo", CapabilityIndex.getEquality(
+            "(&(package=foo)(version>=1.0.0)(!(version>=2.0.0)))", "package"));
+        assertEquals("a(b)", CapabilityIndex.getEquality("(package=a\\(b\\))", "package"));
+        assertNull(CapabilityIndex.getEquality("(package=fo*)", "package"));
+        assertNull(CapabilityIndex.getEquality("(|(package=foo)(package=bar))", "package"));
+        assertNull(CapabilityIndex.getEquality("(version>=1.0.0)", "package"));
+        assertNull(CapabilityIndex.getEquality(null, "package"));
+    }
+
+    public void testCandidatesKeepRepositoryOrder()
+    {
+        ResourceImpl r1 = createResource("r1", "foo");
+        ResourceImpl r2 = createResource("r2", "bar");
+        ResourceImpl r3 = createResource("r3", "foo");
+        CapabilityIndex index = new CapabilityIndex(new Resource[] { r1, r2, r3 });
+
+        RequirementImpl req = new RequirementImpl("package");
+        req.setFilter("(&(package=foo)(version>=1.0.0))");
+        List<ResourceCapability> candidates = index.getCandidates(req);
+        assertEquals(2, candidates.size());
+        assertSame(r1, candidates.get(0).getResource());
+        assertSame(r3, candidates.get(1).getResource());
+
+        req.setFilter("(version>=1.0.0)");
+        assertEquals(3, index.getCandidates(req).size());
+
+        req.setName("service");
+        assertEquals(0, index.getCandidates(req).size());
+    }
+
+    public void testCandidatesBySymbolicName()
+    {
+        ResourceImpl r1 = createResource("r1", "foo");
+        ResourceImpl r2 = createResource("r2", "bar");
+        CapabilityIndex index = new CapabilityIndex(new Resource[] { r1, r2 });
+
+        List<Resource> candidates = index.getCandidates("(symbolicname=r2)");
+        assertEquals(1, candidates.size());
+        assertSame(r2, candidates.get(0));
+        assertEquals(2, index.getCandidates("(symbolicname=r*)").size());
+        assertEquals(2, index.getCandidates((String) null).size());
+    }
+
+    private static ResourceImpl createResource(String symbolicName, String pkg)
+    {
+        ResourceImpl resource = new ResourceImpl();
+        resource.put(Resource.SYMBOLIC_NAME, symbolicName, null);
+        CapabilityImpl cap = new CapabilityImpl("package");
+        cap.addProperty(new PropertyImpl("package", null, pkg));
+        cap.addProperty(new PropertyImpl("version", "version", "1.0.0"));
+        resource.addCapability(cap);
+        return resource;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.bundlerepository.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.bundlerepository.Capability;
+import org.apache.felix.bundlerepository.Repository;
+import org.apache.felix.bundlerepository.Resource;
+import org.apache.felix.utils.log.Logger;
+import org.easymock.EasyMock;
+import org.osgi.framework.BundleContext;
+
+public class RepositoryCacheTest extends TestCase
+{
+    private File m_dir;
+    private RepositoryCache m_cache;
+
+    protected void setUp() throws Exception
+    {
+        Activator.setContext(null);
+        m_dir = File.createTempFile("obr", "cache");
+        m_dir.delete();
+        BundleContext context = EasyMock.createNiceMock(BundleContext.class);
+        EasyMock.replay(new Object[] { context });
+        m_cache = new RepositoryCache(m_dir, new Logger(context));
+    }
+
+    protected void tearDown() throws Exception
+    {
+        File[] files = m_dir.listFiles();
+        for (int i = 0; (files != null) && (i < files.length); i++)
+        {
+            files[i].delete();
+        }
+        m_dir.delete();
+    }
+
+    public void testFelixRepository() throws Exception
+    {
+        checkCachedRepository("/repo_for_resolvertest.xml");
+    }
+
+    public void testSpecRepository() throws Exception
+    {
+        checkCachedRepository("/spec_repository.xml");
+    }
+
+    public void testChangedRepositoryIsParsedAgain() throws Exception
+    {
+        File file = new File(m_dir.getParentFile(), m_dir.getName() + ".xml");
+        try
+        {
+            copy(getClass().getResource("/repo_for_resolvertest.xml"), file);
+            URL url = file.toURI().toURL();
+            m_cache.repository(url);
+            assertTrue(m_cache.repository(url).getResources()[0] instanceof CachedResourceImpl);
+
+            copy(getClass().getResource("/another_repository.xml"), file);
+            Repository changed = m_cache.repository(url);
+            assertTrue(changed.getResources()[0] instanceof ResourceImpl);
+            assertEquals(2, changed.getResources().length);
+            assertEquals(1, m_dir.listFiles().length);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testIndexDecodesCandidatesOnly() throws Exception
+    {
+        URL url = getClass().getResource("/repo_for_resolvertest.xml");
+        m_cache.repository(url);
+        RepositoryImpl cached = m_cache.repository(url);
+
+        RequirementImpl req = new RequirementImpl(Capability.BUNDLE);
+        req.setFilter("(symbolicname=dummy)");
+        List<ResourceCapability> candidates = cached.getCapabilityIndex().getCandidates(req);
+        assertEquals(1, candidates.size());
+        assertEquals("dummy", candidates.get(0).getResource().getSymbolicName());
+
+        Resource[] resources = cached.getResources();
+        for (int i = 0; i < resources.length; i++)
+        {
+            assertEquals(resources[i] == candidates.get(0).getResource(),
+                ((CachedResourceImpl) resources[i]).isDecoded());
+        }
+    }
+
+    private void checkCachedRepository(String name) throws Exception
+    {
+        URL url = getClass().getResource(name);
+        RepositoryImpl parsed = m_cache.repository(url);
+        RepositoryImpl cached = m_cache.repository(url);
+
+        assertEquals(parsed.getName(), cached.getName());
+        assertEquals(parsed.getLastModified(), cached.getLastModified());
+        assertEquals(parsed.getURI(), cached.getURI());
+
+        Resource[] expected = parsed.getResources();
+        Resource[] actual = cached.getResources();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertTrue(actual[i] instanceof CachedResourceImpl);
+            assertEquals(expected[i], actual[i]);
+            assertEquals(expected[i].getId(), actual[i].getId());
+            assertEquals(expected[i].getURI(), actual[i].getURI());
+            assertEquals(expected[i].getProperties(), actual[i].getProperties());
+            assertEquals(Arrays.asList(expected[i].getCategories()), Arrays.asList(actual[i].getCategories()));
+            assertEquals(Arrays.asList(expected[i].getRequirements()), Arrays.asList(actual[i].getRequirements()));
+
+            Capability[] expectedCaps = expected[i].getCapabilities();
+            Capability[] actualCaps = actual[i].getCapabilities();
+            assertEquals(expectedCaps.length, actualCaps.length);
+            for (int j = 0; j < expectedCaps.length; j++)
+            {
+                assertEquals(expectedCaps[j].getName(), actualCaps[j].getName());
+                assertEquals(expectedCaps[j].getPropertiesAsMap(), actualCaps[j].getPropertiesAsMap());
+                assertEquals(expectedCaps[j].getDirectives(), actualCaps[j].getDirectives());
+            }
+        }
+    }
+
+    private static void copy(URL url, File file) throws Exception
+    {
+        InputStream in = url.openStream();
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, len);
+            }
+        }
+        finally
+        {
+            out.close();
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,785 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osgi.util.converter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reflective information about a class taking part in a conversion. Looking
+ * up fields, accessors and factory methods is expensive compared to the
+ * conversion itself, so this information is computed once per class on first
+ * use and reused by all subsequent conversions from or to that class.
+ * Accessors are invoked through {@link MethodHandle}s where the converter has
+ * access to them, otherwise through plain reflection.
+ * <p>
+ * All values are computed lazily. Concurrent first use might compute a value
+ * more than once, which is harmless as the result is always the same.
+ *
+ * @author $Id$
+ */
+final class ConversionPlan {
+	private static final ClassValue<ConversionPlan>	PLANS			= new ClassValue<ConversionPlan>() {
+		@Override
+		protected ConversionPlan computeValue(Class< ? > type) {
+			return new ConversionPlan(type);
+		}
+	};
+
+	private static final MethodHandles.Lookup		LOOKUP			= MethodHandles
+			.lookup();
+	private static final MethodType					GETTER_TYPE		= MethodType
+			.methodType(Object.class, Object.class);
+	private static final MethodType					SETTER_TYPE		= MethodType
+			.methodType(void.class, Object.class, Object.class);
+	private static final MethodType					FACTORY_TYPE	= MethodType
+			.methodType(Object.class);
+
+	// Marker for values which have been looked up but do not exist
+	private static final Object						NONE			= new Object();
+
+	private final Class< ? >						cls;
+
+	private volatile String							prefix;
+	private volatile Boolean						dtoType;
+	private volatile Boolean						dtoTypeWithCtor;
+	private volatile Boolean						markerAnnotation;
+	private volatile Boolean						writeableJavaBean;
+	private volatile Set<Class< ? >>				mapInterfaces;
+	private volatile Method[]						methods;
+	private volatile List<String>					fieldNames;
+	private volatile Map<String,Accessor>			publicFields;
+	private volatile List<Accessor>					dtoFields;
+	private volatile Map<String,Field>				dtoKeys;
+	private volatile List<Accessor>					beanGetters;
+	private volatile Map<String,Method>				beanKeys;
+	private volatile List<Accessor>					setters;
+	private volatile Object							getProperties;
+	private volatile Object							valueOf;
+	private volatile Object							stringConstructor;
+	private volatile Object							sizedConstructor;
+	private volatile Object							defaultConstructor;
+	private volatile Object							proxyConstructor;
+	private volatile Object[]						enumConstants;
+	private volatile Map<String,Object>				enumsByName;
+	private volatile Boolean						proxyKeysCacheable;
+	private volatile Object							proxyAnnotationKey;
+	private final ConcurrentMap<Method,Object>		proxyPropertyNames	= new ConcurrentHashMap<>();
+
+	private ConversionPlan(Class< ? > cls) {
+		this.cls = cls;
+	}
+
+	/**
+	 * Get the conversion plan for a class.
+	 *
+	 * @param cls The class.
+	 * @return The plan, never {@code null}.
+	 */
+	static ConversionPlan forClass(Class< ? > cls) {
+		return PLANS.get(cls);
+	}
+
+	String getPrefix() {
+		String p = prefix;
+		if (p == null)
+			prefix = p = Util.computePrefix(cls);
+		return p;
+	}
+
+	boolean isDTOType(boolean ignorePublicNoArgsCtor) {
+		if (ignorePublicNoArgsCtor) {
+			Boolean b = dtoType;
+			if (b == null)
+				dtoType = b = Boolean
+						.valueOf(DTOUtil.computeDTOType(cls, true));
+			return b.booleanValue();
+		}
+		Boolean b = dtoTypeWithCtor;
+		if (b == null)
+			dtoTypeWithCtor = b = Boolean
+					.valueOf(DTOUtil.computeDTOType(cls, false));
+		return b.booleanValue();
+	}
+
+	boolean isMarkerAnnotation() {
+		Boolean b = markerAnnotation;
+		if (b == null) {
+			boolean marker = true;
+			for (Method m : getMethods()) {
+				if (m.getDeclaringClass() == cls) {
+					marker = false;
+					break;
+				}
+			}
+			markerAnnotation = b = Boolean.valueOf(marker);
+		}
+		return b.booleanValue();
+	}
+
+	boolean isWriteableJavaBean() {
+		Boolean b = writeableJavaBean;
+		if (b == null) {
+			// A JavaBean must have a public no-arg constructor
+			boolean writeable = getDefaultConstructor() != null
+					&& getSetters().size() > 0;
+			writeableJavaBean = b = Boolean.valueOf(writeable);
+		}
+		return b.booleanValue();
+	}
+
+	/**
+	 * The public methods of the class. The returned array must not be
+	 * modified.
+	 */
+	Method[] getMethods() {
+		Method[] m = methods;
+		if (m == null)
+			methods = m = cls.getMethods();
+		return m;
+	}
+
+	/**
+	 * The interfaces of the class which can be used to obtain a map view,
+	 * in the order in which they should be tried.
+	 */
+	Set<Class< ? >> getMapInterfaces() {
+		Set<Class< ? >> interfaces = mapInterfaces;
+		if (interfaces == null) {
+			if (ConvertingImpl.NO_MAP_VIEW_TYPES.contains(cls)) {
+				interfaces = Collections.emptySet();
+			} else {
+				interfaces = collectInterfaces();
+				outer: for (Iterator<Class< ? >> it = interfaces
+						.iterator(); it.hasNext();) {
+					Class< ? > intf = it.next();
+					for (Method method : forClass(intf).getMethods()) {
+						if (method.getDeclaringClass() == intf) {
+							continue outer;
+						}
+					}
+					it.remove();
+				}
+				interfaces.removeAll(ConvertingImpl.NO_MAP_VIEW_TYPES);
+				interfaces = Collections.unmodifiableSet(interfaces);
+			}
+			mapInterfaces = interfaces;
+		}
+		return interfaces;
+	}
+
+	// Returns an ordered set
+	private Set<Class< ? >> collectInterfaces() {
+		Set<Class< ? >> classes = new LinkedHashSet<>();
+		if (cls.isInterface()) {
+			classes.add(cls);
+		}
+		for (Class< ? > intf : cls.getInterfaces()) {
+			classes.addAll(forClass(intf).getMapInterfaces());
+		}
+
+		Class< ? > superClass = cls.getSuperclass();
+		if (superClass != null)
+			classes.addAll(forClass(superClass).getMapInterfaces());
+
+		return classes;
+	}
+
+	/**
+	 * The names of all public non-static fields.
+	 */
+	List<String> getFieldNames() {
+		List<String> names = fieldNames;
+		if (names == null) {
+			names = new ArrayList<>();
+			for (Field field : cls.getFields()) {
+				if (Modifier.isStatic(field.getModifiers()))
+					continue;
+
+				String name = field.getName();
+				if (!names.contains(name))
+					names.add(name);
+			}
+			fieldNames = names = Collections.unmodifiableList(names);
+		}
+		return names;
+	}
+
+	/**
+	 * Find a public field by name, as {@link Class#getField(String)} would.
+	 *
+	 * @param name The name of the field.
+	 * @param ignoreCase Whether to fall back to a case insensitive match.
+	 * @return An accessor for the field or {@code null}.
+	 */
+	Accessor getField(String name, boolean ignoreCase) {
+		Map<String,Accessor> fields = publicFields;
+		if (fields == null) {
+			fields = new LinkedHashMap<>();
+			for (Field f : cls.getFields()) {
+				if (fields.containsKey(f.getName()))
+					continue;
+				try {
+					// getField() resolves hidden fields for us
+					Field field = cls.getField(f.getName());
+					fields.put(field.getName(), Accessor.forField(null, field));
+				} catch (NoSuchFieldException e) {
+					// Cannot happen, the field was just returned by getFields()
+				}
+			}
+			publicFields = fields = Collections.unmodifiableMap(fields);
+		}
+
+		Accessor a = fields.get(name);
+		if (a == null && ignoreCase) {
+			for (Map.Entry<String,Accessor> entry : fields.entrySet()) {
+				if (entry.getKey().equalsIgnoreCase(name))
+					return entry.getValue();
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * Accessors for all public fields which can be used as DTO keys, in the
+	 * order of {@link Class#getFields()}. The key of an accessor might occur
+	 * more than once.
+	 */
+	List<Accessor> getDTOFields() {
+		List<Accessor> fields = dtoFields;
+		if (fields == null) {
+			fields = new ArrayList<>();
+			for (Field f : cls.getFields()) {
+				String key = Util.getDTOKey(f);
+				if (key != null)
+					fields.add(Accessor.forField(key, f));
+			}
+			dtoFields = fields = Collections.unmodifiableList(fields);
+		}
+		return fields;
+	}
+
+	Map<String,Field> getDTOKeys() {
+		Map<String,Field> keys = dtoKeys;
+		if (keys == null) {
+			keys = new LinkedHashMap<>();
+			for (Accessor a : getDTOFields()) {
+				if (!keys.containsKey(a.getKey()))
+					keys.put(a.getKey(), (Field) a.getMember());
+			}
+			dtoKeys = keys = Collections.unmodifiableMap(keys);
+		}
+		return keys;
+	}
+
+	/**
+	 * Accessors for all public JavaBean getters, in the order of
+	 * {@link Class#getMethods()}. The key of an accessor might occur more
+	 * than once.
+	 */
+	List<Accessor> getBeanGetters() {
+		List<Accessor> getters = beanGetters;
+		if (getters == null) {
+			getters = new ArrayList<>();
+			for (Method md : getMethods()) {
+				String key = Util.getBeanKey(md);
+				if (key != null)
+					getters.add(Accessor.forGetter(key, md));
+			}
+			beanGetters = getters = Collections.unmodifiableList(getters);
+		}
+		return getters;
+	}
+
+	Map<String,Method> getBeanKeys() {
+		Map<String,Method> keys = beanKeys;
+		if (keys == null) {
+			keys = new LinkedHashMap<>();
+			for (Accessor a : getBeanGetters()) {
+				if (!keys.containsKey(a.getKey()))
+					keys.put(a.getKey(), (Method) a.getMember());
+			}
+			beanKeys = keys = Collections.unmodifiableMap(keys);
+		}
+		return keys;
+	}
+
+	/**
+	 * Accessors for all public JavaBean setters of the class and its super
+	 * classes. The key of an accessor is the map key of the property,
+	 * including the class prefix.
+	 */
+	List<Accessor> getSetters() {
+		List<Accessor> s = setters;
+		if (s == null) {
+			Set<Method> methods = new HashSet<>();
+			Class< ? > c = cls;
+			while (c != null && !Object.class.equals(c)) {
+				// Only public methods can be Java Bean setters
+				for (Method md : forClass(c).getMethods()) {
+					if (md.getParameterTypes().length != 1)
+						continue; // Only setters with a single argument
+					String name = md.getName();
+					if (name.length() < 4)
+						continue;
+					if (name.startsWith("set")
+							&& Character.isUpperCase(name.charAt(3)))
+						methods.add(md);
+				}
+				c = c.getSuperclass();
+			}
+
+			String prefix = getPrefix();
+			s = new ArrayList<>(methods.size());
+			for (Method setter : methods) {
+				String setterName = setter.getName();
+				StringBuilder propName = new StringBuilder(setterName.length());
+				propName.append(Character.toLowerCase(setterName.charAt(3)));
+				if (setterName.length() > 4)
+					propName.append(setterName.substring(4));
+
+				s.add(Accessor.forSetter(
+						Util.unMangleName(prefix, propName.toString()),
+						setter));
+			}
+			setters = s = Collections.unmodifiableList(s);
+		}
+		return s;
+	}
+
+	/**
+	 * The public {@code getProperties()} method of the class.
+	 *
+	 * @return An accessor or {@code null} if there is no such method.
+	 */
+	Accessor getGetProperties() {
+		Object a = getProperties;
+		if (a == null) {
+			try {
+				// Section 707.4.4.4.8 says getProperties must be public
+				a = Accessor.forGetter(null, cls.getMethod("getProperties"));
+			} catch (Exception e) {
+				a = NONE;
+			}
+			getProperties = a;
+		}
+		return a == NONE ? null : (Accessor) a;
+	}
+
+	/**
+	 * The public {@code valueOf(String)} method of the class, which might be
+	 * non-static.
+	 *
+	 * @return The factory, or {@code null} if there is no such method.
+	 */
+	Factory getValueOf() {
+		Object f = valueOf;
+		if (f == null) {
+			try {
+				f = new Factory(cls.getMethod("valueOf", String.class));
+			} catch (Exception e) {
+				f = NONE;
+			}
+			valueOf = f;
+		}
+		return f == NONE ? null : (Factory) f;
+	}
+
+	/**
+	 * The public constructor taking a single {@code String}.
+	 *
+	 * @return The factory, or {@code null} if there is no such constructor.
+	 */
+	Factory getStringConstructor() {
+		Object f = stringConstructor;
+		if (f == null) {
+			f = constructor(String.class);
+			stringConstructor = f;
+		}
+		return f == NONE ? null : (Factory) f;
+	}
+
+	/**
+	 * The public constructor taking an initial size.
+	 *
+	 * @return The factory, or {@code null} if there is no such constructor.
+	 */
+	Factory getSizedConstructor() {
+		Object f = sizedConstructor;
+		if (f == null) {
+			f = constructor(int.class);
+			sizedConstructor = f;
+		}
+		return f == NONE ? null : (Factory) f;
+	}
+
+	/**
+	 * The public no-arg constructor.
+	 *
+	 * @return The factory, or {@code null} if there is no such constructor.
+	 */
+	Factory getDefaultConstructor() {
+		Object f = defaultConstructor;
+		if (f == null) {
+			f = constructor();
+			defaultConstructor = f;
+		}
+		return f == NONE ? null : (Factory) f;
+	}
+
+	private Object constructor(Class< ? >... parameterTypes) {
+		try {
+			return new Factory(cls.getConstructor(parameterTypes));
+		} catch (Exception e) {
+			return NONE;
+		}
+	}
+
+	/**
+	 * Create a proxy implementing the interface represented by this plan.
+	 */
+	Object newProxy(InvocationHandler handler) {
+		Object f = proxyConstructor;
+		if (f == null) {
+			f = NONE;
+			// Proxy classes for non-public interfaces live in the package of
+			// the interface, only the Proxy class itself can instantiate them
+			if (Modifier.isPublic(cls.getModifiers())) {
+				try {
+					@SuppressWarnings("deprecation")
+					Class< ? > proxyClass = Proxy
+							.getProxyClass(cls.getClassLoader(), cls);
+					f = new Factory(
+							proxyClass.getConstructor(InvocationHandler.class));
+				} catch (Exception e) {
+					// fall back to Proxy.newProxyInstance()
+				}
+			}
+			proxyConstructor = f;
+		}
+		if (f != NONE) {
+			try {
+				return ((Factory) f).create(handler);
+			} catch (Exception e) {
+				// fall back to Proxy.newProxyInstance()
+			}
+		}
+		return Proxy.newProxyInstance(cls.getClassLoader(), new Class[] {
+				cls
+		}, handler);
+	}
+
+	/**
+	 * Get the property name for a method invoked on a proxy created by
+	 * {@link #newProxy(InvocationHandler)}. The name only depends on the
+	 * interface and the method, unless the interface declares its own
+	 * {@code annotationType()} method which is then served by the proxy.
+	 */
+	String getProxyPropertyName(Method method, Object proxy) {
+		Boolean cacheable = proxyKeysCacheable;
+		if (cacheable == null) {
+			boolean c = true;
+			if (!cls.isAnnotation()) {
+				for (Method md : getMethods()) {
+					if ("annotationType".equals(md.getName())) {
+						c = false;
+						break;
+					}
+				}
+			}
+			proxyKeysCacheable = cacheable = Boolean.valueOf(c);
+		}
+		if (!cacheable.booleanValue()) {
+			return Util.getInterfacePropertyName(method,
+					Util.getSingleElementAnnotationKey(cls, proxy), proxy);
+		}
+
+		Object name = proxyPropertyNames.get(method);
+		if (name == null) {
+			Object seak = proxyAnnotationKey;
+			if (seak == null) {
+				seak = Util.getSingleElementAnnotationKey(cls, proxy);
+				if (seak == null)
+					seak = NONE;
+				proxyAnnotationKey = seak;
+			}
+			name = Util.getInterfacePropertyName(method,
+					seak == NONE ? null : (String) seak, proxy);
+			if (name == null)
+				name = NONE;
+			proxyPropertyNames.putIfAbsent(method, name);
+		}
+		return name == NONE ? null : (String) name;
+	}
+
+	/**
+	 * Get an enum constant by index.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException If there is no such constant.
+	 */
+	Object getEnumConstant(int idx) {
+		return getEnumConstants()[idx];
+	}
+
+	/**
+	 * Get an enum constant by name, falling back to a case insensitive match
+	 * on the string representation of the constants.
+	 *
+	 * @return The constant or {@code null}.
+	 */
+	Object getEnumConstant(String name) {
+		Map<String,Object> byName = enumsByName;
+		if (byName == null) {
+			byName = new HashMap<>();
+			for (Object v : getEnumConstants()) {
+				byName.put(((Enum< ? >) v).name(), v);
+			}
+			enumsByName = byName;
+		}
+		Object v = byName.get(name);
+		if (v == null) {
+			// Case insensitive fallback
+			for (Object c : getEnumConstants()) {
+				if (c.toString().equalsIgnoreCase(name)) {
+					return c;
+				}
+			}
+		}
+		return v;
+	}
+
+	private Object[] getEnumConstants() {
+		Object[] constants = enumConstants;
+		if (constants == null) {
+			// Constants with a body are subclasses of the enum
+			Class< ? > enumClass = cls.isEnum() ? cls : cls.getSuperclass();
+			constants = enumClass.getEnumConstants();
+			if (constants == null)
+				constants = new Object[0];
+			enumConstants = constants;
+		}
+		return constants;
+	}
+
+	/**
+	 * Read or write access to a field or a JavaBean style method.
+	 */
+	static final class Accessor {
+		private final String		key;
+		private final Member		member;
+		private final MethodHandle	getter;
+		private final MethodHandle	setter;
+
+		private Accessor(String key, Member member, MethodHandle getter,
+				MethodHandle setter) {
+			this.key = key;
+			this.member = member;
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		static Accessor forField(String key, Field f) {
+			MethodHandle getter = null;
+			MethodHandle setter = null;
+			int modifiers = f.getModifiers();
+			if (Modifier.isStatic(modifiers)) {
+				// static fields are accessed through reflection
+				return new Accessor(key, f, null, null);
+			}
+			try {
+				getter = LOOKUP.unreflectGetter(f).asType(GETTER_TYPE);
+			} catch (IllegalAccessException e) {
+				// use reflection
+			}
+			if (!Modifier.isFinal(modifiers)) {
+				try {
+					setter = LOOKUP.unreflectSetter(f).asType(SETTER_TYPE);
+				} catch (IllegalAccessException e) {
+					// use reflection
+				}
+			}
+			return new Accessor(key, f, getter, setter);
+		}
+
+		static Accessor forGetter(String key, Method md) {
+			MethodHandle getter = null;
+			if (!Modifier.isStatic(md.getModifiers())) {
+				try {
+					getter = LOOKUP.unreflect(md).asType(GETTER_TYPE);
+				} catch (IllegalAccessException e) {
+					// use reflection
+				}
+			}
+			return new Accessor(key, md, getter, null);
+		}
+
+		static Accessor forSetter(String key, Method md) {
+			MethodHandle setter = null;
+			if (!Modifier.isStatic(md.getModifiers())) {
+				try {
+					setter = LOOKUP.unreflect(md).asType(SETTER_TYPE);
+				} catch (IllegalAccessException e) {
+					// use reflection
+				}
+			}
+			return new Accessor(key, md, null, setter);
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		Member getMember() {
+			return member;
+		}
+
+		Class< ? > getType() {
+			if (member instanceof Field)
+				return ((Field) member).getType();
+			return ((Method) member).getParameterTypes()[0];
+		}
+
+		/**
+		 * Read the value. Failures are reported in the same way as
+		 * {@link Method#invoke(Object, Object...)} and
+		 * {@link Field#get(Object)} do.
+		 */
+		Object get(Object target)
+				throws IllegalAccessException, InvocationTargetException {
+			if (getter != null) {
+				try {
+					return (Object) getter.invokeExact(target);
+				} catch (Throwable t) {
+					throw new InvocationTargetException(t);
+				}
+			}
+			if (member instanceof Field)
+				return ((Field) member).get(target);
+			return ((Method) member).invoke(target);
+		}
+
+		/**
+		 * Write the value. Failures are reported in the same way as
+		 * {@link Method#invoke(Object, Object...)} and
+		 * {@link Field#set(Object, Object)} do.
+		 */
+		void set(Object target, Object value)
+				throws IllegalAccessException, InvocationTargetException {
+			if (setter != null) {
+				try {
+					setter.invokeExact(target, value);
+				} catch (Throwable t) {
+					throw new InvocationTargetException(t);
+				}
+				return;
+			}
+			if (member instanceof Field)
+				((Field) member).set(target, value);
+			else
+				((Method) member).invoke(target, value);
+		}
+	}
+
+	/**
+	 * A constructor or static factory method taking at most one argument.
+	 */
+	static final class Factory {
+		private final Member		member;
+		private final MethodHandle	handle;
+
+		Factory(Method md) {
+			this.member = md;
+			this.handle = Modifier.isStatic(md.getModifiers()) ? handle(md)
+					: null;
+		}
+
+		Factory(Constructor< ? > ctor) {
+			this.member = ctor;
+			this.handle = handle(ctor);
+		}
+
+		private static MethodHandle handle(Member m) {
+			try {
+				MethodHandle mh = m instanceof Method
+						? LOOKUP.unreflect((Method) m)
+						: LOOKUP.unreflectConstructor((Constructor< ? >) m);
+				if (mh.type().parameterCount() == 0)
+					return mh.asType(FACTORY_TYPE);
+				return mh.asType(GETTER_TYPE);
+			} catch (IllegalAccessException e) {
+				// use reflection
+				return null;
+			}
+		}
+
+		boolean isStatic() {
+			return Modifier.isStatic(member.getModifiers());
+		}
+
+		/**
+		 * Invoke the constructor or static method. Failures are reported in
+		 * the same way as {@link Method#invoke(Object, Object...)} and
+		 * {@link Constructor#newInstance(Object...)} do.
+		 */
+		Object create(Object... args) throws InstantiationException,
+				IllegalAccessException, InvocationTargetException {
+			if (handle != null && args.length == handle.type().parameterCount()) {
+				try {
+					if (args.length == 0)
+						return (Object) handle.invokeExact();
+					return (Object) handle.invokeExact(args[0]);
+				} catch (Throwable t) {
+					throw new InvocationTargetException(t);
+				}
+			}
+			if (member instanceof Method)
+				return ((Method) member).invoke(null, args);
+			return ((Constructor< ? >) member).newInstance(args);
+		}
+
+		@Override
+		public String toString() {
+			return member.toString();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ConversionPlan[" + cls.getName() + "]";
+	}
+}
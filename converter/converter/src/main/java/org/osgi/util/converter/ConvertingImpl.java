@@ -18,14 +18,11 @@ package org.osgi.util.converter;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
@@ -65,7 +62,7 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		implements Converting, InternalConverting {
 	private static final Map<Class< ? >,Class< ? >>	INTERFACE_IMPLS;
 	// Interfaces with no methods are also not considered
-	private static final Collection<Class< ? >>		NO_MAP_VIEW_TYPES;
+	static final Collection<Class< ? >>				NO_MAP_VIEW_TYPES;
 	static {
 
 		Map<Class< ? >,Class< ? >> cim = new HashMap<>();
@@ -395,7 +392,9 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 			T dto = (T) targetClass.newInstance();
 
-			List<String> names = getNames(targetAsClass);
+			ConversionPlan plan = ConversionPlan.forClass(targetAsCls);
+			List<String> names = ConversionPlan.forClass(targetAsClass)
+					.getFieldNames();
 			for (Map.Entry entry : (Set<Map.Entry>) m.entrySet()) {
 				Object key = entry.getKey();
 				if (key == null)
@@ -405,33 +404,11 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 				if (fieldName == null)
 					continue;
 
-				Field f = null;
-				try {
-					f = targetAsCls.getField(fieldName);
-				} catch (NoSuchFieldException e) {
-					// There is no field with this name
-					if (keysIgnoreCase) {
-						// If enabled, try again but now ignore case
-						for (Field fs : targetAsCls.getFields()) {
-							if (fs.getName().equalsIgnoreCase(fieldName)) {
-								f = fs;
-								break;
-							}
-						}
-
-						if (f == null) {
-							for (Field fs : targetAsCls.getFields()) {
-								if (fs.getName()
-										.equalsIgnoreCase(fieldName)) {
-									f = fs;
-									break;
-								}
-							}
-						}
-					}
-				}
-
-				if (f != null) {
+				// If enabled, fall back to ignoring the case
+				ConversionPlan.Accessor a = plan.getField(fieldName,
+						keysIgnoreCase);
+				if (a != null) {
+					Field f = (Field) a.getMember();
 					Object val = entry.getValue();
 					if (sourceAsDTO && DTOUtil.isDTOType(f.getType(), false))
 						val = c.convert(val).sourceAsDTO().to(
@@ -441,7 +418,7 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 								targetAsClass, typeArguments);
 						val = c.convert(val).to(genericType);
 					}
-					f.set(dto, val);
+					a.set(dto, val);
 				}
 			}
 
@@ -539,21 +516,6 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 		return typeToReify;
 	}
 
-	private List<String> getNames(Class< ? > cls) {
-		List<String> names = new ArrayList<>();
-		for (Field field : cls.getFields()) {
-			int modifiers = field.getModifiers();
-			if (Modifier.isStatic(modifiers))
-				continue;
-
-			String name = field.getName();
-			if (!names.contains(name))
-				names.add(name);
-
-		}
-		return names;
-	}
-
 	@SuppressWarnings({
 			"rawtypes", "unchecked"
 	})
@@ -715,24 +677,15 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 	private Object convertToJavaBean(Class< ? > sourceCls,
 			Class< ? > targetCls, InternalConverter c) {
-		String prefix = Util.getPrefix(targetCls);
-
 		@SuppressWarnings("rawtypes")
 		Map m = mapView(object, sourceCls, c);
 		try {
 			Object res = targetClass.newInstance();
-			for (Method setter : getSetters(targetCls)) {
-				String setterName = setter.getName();
-				StringBuilder propName = new StringBuilder(Character
-						.valueOf(Character.toLowerCase(setterName.charAt(3)))
-						.toString());
-				if (setterName.length() > 4)
-					propName.append(setterName.substring(4));
-
-				Class< ? > setterType = setter.getParameterTypes()[0];
-				String key = propName.toString();
-				Object val = m.get(Util.unMangleName(prefix, key));
-				setter.invoke(res, c.convert(val).to(setterType));
+			for (ConversionPlan.Accessor setter : ConversionPlan
+					.forClass(targetCls)
+					.getSetters()) {
+				Object val = m.get(setter.getKey());
+				setter.set(res, c.convert(val).to(setter.getType()));
 			}
 			return res;
 		} catch (Exception e) {
@@ -758,9 +711,8 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 	}
 
 	private Object createProxy(final Class< ? > cls, final Map< ? , ? > data, final InternalConverter c) {
-		return Proxy.newProxyInstance(cls.getClassLoader(), new Class[] {
-				cls
-		}, new InvocationHandler() {
+		final ConversionPlan plan = ConversionPlan.forClass(cls);
+		return plan.newProxy(new InvocationHandler() {
 			@SuppressWarnings("boxing")
 			@Override
 			public Object invoke(Object proxy, Method method, Object[] args)
@@ -786,9 +738,7 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 					}
 				}
 
-				String propName = Util.getInterfacePropertyName(method,
-						Util.getSingleElementAnnotationKey(cls, proxy),
-						proxy);
+				String propName = plan.getProxyPropertyName(method, proxy);
 				if (propName == null)
 					return null;
 
@@ -871,7 +821,8 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 			return true;
 		else if (DTOUtil.isDTOType(cls, true))
 			return true;
-		else if (asJavaBean && isWriteableJavaBean(cls))
+		else if (asJavaBean
+				&& ConversionPlan.forClass(cls).isWriteableJavaBean())
 			return true;
 		else
 			return Dictionary.class.isAssignableFrom(cls);
@@ -903,32 +854,15 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 				}
 			}
 		} else if (Enum.class.isAssignableFrom(targetAsClass)) {
+			ConversionPlan plan = ConversionPlan.forClass(targetAsClass);
 			if (object instanceof Number) {
 				try {
-					Method m = targetAsClass.getMethod("values");
-					Object[] values = (Object[]) m.invoke(null);
-					return values[((Number) object).intValue()];
+					return plan.getEnumConstant(((Number) object).intValue());
 				} catch (Exception e) {
 					throw new RuntimeException(e);
 				}
 			} else {
-				try {
-					Method m = targetAsClass.getMethod("valueOf", String.class);
-					return m.invoke(null, object.toString());
-				} catch (Exception e) {
-					try {
-						// Case insensitive fallback
-						Method m = targetAsClass.getMethod("values");
-						for (Object v : (Object[]) m.invoke(null)) {
-							if (v.toString()
-									.equalsIgnoreCase(object.toString())) {
-								return v;
-							}
-						}
-					} catch (Exception e1) {
-						throw new RuntimeException(e1);
-					}
-				}
+				return plan.getEnumConstant(object.toString());
 			}
 		} else if (Annotation.class.isAssignableFrom(sourceClass)
 				&& isMarkerAnnotation(sourceClass)) {
@@ -957,29 +891,27 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 	}
 
 	private static boolean isMarkerAnnotation(Class< ? > annClass) {
-		for (Method m : annClass.getMethods()) {
-			if (m.getDeclaringClass() != annClass) {
-				// this is a base annotation or object method
-				continue;
-			}
-			return false;
-		}
-		return true;
+		return ConversionPlan.forClass(annClass).isMarkerAnnotation();
 	}
 
 	@SuppressWarnings("unchecked")
 	private <T> T tryStandardMethods() {
-		try {
-			// Section 707.4.2.3 and 707.4.2.5 require valueOf to be public and static
-			Method m = targetAsClass.getMethod("valueOf", String.class);
-			if (m != null && Modifier.isStatic(m.getModifiers())) {
-				return (T) m.invoke(null, object.toString());
+		ConversionPlan plan = ConversionPlan.forClass(targetAsClass);
+		// Section 707.4.2.3 and 707.4.2.5 require valueOf to be public and static
+		ConversionPlan.Factory valueOf = plan.getValueOf();
+		if (valueOf != null) {
+			if (!valueOf.isStatic())
+				return null;
+			try {
+				return (T) valueOf.create(object.toString());
+			} catch (Exception e) {
+				// Try the constructor
 			}
-		} catch (Exception e) {
+		}
+		ConversionPlan.Factory ctr = plan.getStringConstructor();
+		if (ctr != null) {
 			try {
-				Constructor< ? > ctr = targetAsClass
-						.getConstructor(String.class);
-				return (T) ctr.newInstance(object.toString());
+				return (T) ctr.create(object.toString());
 			} catch (Exception e2) {
 				// Ignore
 			}
@@ -1031,8 +963,10 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 		Map result = new HashMap();
 		// Bean accessors must be public
-		for (Method md : sourceCls.getMethods()) {
-			handleBeanMethod(obj, md, invokedMethods, result);
+		for (ConversionPlan.Accessor getter : ConversionPlan
+				.forClass(sourceCls)
+				.getBeanGetters()) {
+			handleBeanMethod(obj, getter, invokedMethods, result);
 		}
 
 		return result;
@@ -1044,7 +978,9 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 		Map result = new HashMap();
 		// We only use public fields for mapping a DTO
-		for (Field f : obj.getClass().getFields()) {
+		for (ConversionPlan.Accessor f : ConversionPlan
+				.forClass(obj.getClass())
+				.getDTOFields()) {
 			handleDTOField(obj, f, handledFields, result, ic);
 		}
 		return result;
@@ -1061,7 +997,7 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 			return result;
 		} else {
 			for (Class i : getInterfaces(srcCls)) {
-				for (Method md : i.getMethods()) {
+				for (Method md : ConversionPlan.forClass(i).getMethods()) {
 					handleInterfaceMethod(obj, i, md, new HashSet<String>(),
 							result);
 				}
@@ -1075,13 +1011,19 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 	@SuppressWarnings("boxing")
 	private static Object createMapOrCollection(Class< ? > cls,
 			int initialSize) {
-		try {
-			Constructor< ? > ctor = cls.getConstructor(int.class);
-			return ctor.newInstance(initialSize);
-		} catch (Exception e1) {
+		ConversionPlan plan = ConversionPlan.forClass(cls);
+		ConversionPlan.Factory ctor = plan.getSizedConstructor();
+		if (ctor != null) {
 			try {
-				Constructor< ? > ctor2 = cls.getConstructor();
-				return ctor2.newInstance();
+				return ctor.create(initialSize);
+			} catch (Exception e1) {
+				// try the default constructor
+			}
+		}
+		ConversionPlan.Factory ctor2 = plan.getDefaultConstructor();
+		if (ctor2 != null) {
+			try {
+				return ctor2.create();
 			} catch (Exception e2) {
 				// ignore
 			}
@@ -1120,52 +1062,15 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 
 	// Returns an ordered set
 	private static Set<Class< ? >> getInterfaces(Class< ? > cls) {
-		if (NO_MAP_VIEW_TYPES.contains(cls))
-			return Collections.emptySet();
-
-		Set<Class< ? >> interfaces = getInterfaces0(cls);
-		outer: for (Iterator<Class< ? >> it = interfaces.iterator(); it.hasNext();) {
-			Class< ? > intf = it.next();
-			for (Method method : intf.getMethods()) {
-				if(method.getDeclaringClass() == intf) {
-					continue outer;
-				}
-			}
-			it.remove();
-		}
-
-		interfaces.removeAll(NO_MAP_VIEW_TYPES);
-
-		return interfaces;
-	}
-
-	// Returns an ordered set
-	private static Set<Class< ? >> getInterfaces0(Class< ? > cls) {
-		if (cls == null)
-			return Collections.emptySet();
-
-		Set<Class< ? >> classes = new LinkedHashSet<>();
-		if (cls.isInterface()) {
-			classes.add(cls);
-		}
-		for (Class< ? > intf : cls.getInterfaces()) {
-			classes.addAll(getInterfaces(intf));
-		}
-
-		classes.addAll(getInterfaces(cls.getSuperclass()));
-
-		return classes;
+		return ConversionPlan.forClass(cls).getMapInterfaces();
 	}
 
 	@SuppressWarnings({
 			"rawtypes", "unchecked"
 	})
-	private void handleDTOField(Object obj, Field field,
+	private void handleDTOField(Object obj, ConversionPlan.Accessor field,
 			Set<String> handledFields, Map result, InternalConverter ic) {
-		String fn = Util.getDTOKey(field);
-		if (fn == null)
-			return;
-
+		String fn = field.getKey();
 		if (handledFields.contains(fn))
 			return; // Field with this name was already handled
 
@@ -1181,17 +1086,14 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 	@SuppressWarnings({
 			"rawtypes", "unchecked"
 	})
-	private static void handleBeanMethod(Object obj, Method md,
-			Set<String> invokedMethods, Map res) {
-		String bp = Util.getBeanKey(md);
-		if (bp == null)
-			return;
-
+	private static void handleBeanMethod(Object obj,
+			ConversionPlan.Accessor md, Set<String> invokedMethods, Map res) {
+		String bp = md.getKey();
 		if (invokedMethods.contains(bp))
 			return; // method with this name already invoked
 
 		try {
-			res.put(bp, md.invoke(obj));
+			res.put(bp, md.get(obj));
 			invokedMethods.add(bp);
 		} catch (Exception e) {
 			// Ignore
@@ -1245,21 +1147,17 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 	}
 
 	private boolean hasGetProperties(Class< ? > cls) {
-		try {
-			// Section 707.4.4.4.8 says getProperties must be public
-			Method m = cls.getMethod("getProperties");
-			return m != null;
-		} catch (Exception e) {
-			return false;
-		}
+		// Section 707.4.4.4.8 says getProperties must be public
+		return ConversionPlan.forClass(cls).getGetProperties() != null;
 	}
 
 	private Map< ? , ? > getPropertiesDelegate(Object obj, Class< ? > cls, InternalConverter c) {
 		try {
 			// Section 707.4.4.4.8 says getProperties must be public
-			Method m = cls.getMethod("getProperties");
+			ConversionPlan.Accessor m = ConversionPlan.forClass(cls)
+					.getGetProperties();
 
-			return c.convert(m.invoke(obj)).to(Map.class);
+			return c.convert(m.get(obj)).to(Map.class);
 		} catch (Exception e) {
 			return Collections.emptyMap();
 		}
@@ -1272,37 +1170,4 @@ class ConvertingImpl extends AbstractSpecifying<Converting>
 				|| Collection.class.isAssignableFrom(cls)
 				|| DTOUtil.isDTOType(cls, true) || cls.isArray();
 	}
-
-	private static boolean isWriteableJavaBean(Class< ? > cls) {
-		boolean hasNoArgCtor = false;
-		for (Constructor< ? > ctor : cls.getConstructors()) {
-			if (ctor.getParameterTypes().length == 0)
-				hasNoArgCtor = true;
-		}
-		if (!hasNoArgCtor)
-			return false; // A JavaBean must have a public no-arg constructor
-
-		return getSetters(cls).size() > 0;
-	}
-
-	private static Set<Method> getSetters(Class< ? > cls) {
-		Set<Method> setters = new HashSet<>();
-		while (!Object.class.equals(cls)) {
-			Set<Method> methods = new HashSet<>();
-			// Only public methods can be Java Bean setters
-			methods.addAll(Arrays.asList(cls.getMethods()));
-			for (Method md : methods) {
-				if (md.getParameterTypes().length != 1)
-					continue; // Only setters with a single argument
-				String name = md.getName();
-				if (name.length() < 4)
-					continue;
-				if (name.startsWith("set")
-						&& Character.isUpperCase(name.charAt(3)))
-					setters.add(md);
-			}
-			cls = cls.getSuperclass();
-		}
-		return setters;
-	}
 }
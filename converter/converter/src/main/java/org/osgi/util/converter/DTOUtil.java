@@ -29,6 +29,10 @@ class DTOUtil {
 	}
 
 	static boolean isDTOType(Class< ? > cls, boolean ignorePublicNoArgsCtor) {
+		return ConversionPlan.forClass(cls).isDTOType(ignorePublicNoArgsCtor);
+	}
+
+	static boolean computeDTOType(Class< ? > cls, boolean ignorePublicNoArgsCtor) {
 		if(!ignorePublicNoArgsCtor) {
 			try {
 				cls.getConstructor();
@@ -80,15 +80,8 @@ class Util {
 	}
 
 	static Map<String,Method> getBeanKeys(Class< ? > beanClass) {
-		Map<String,Method> keys = new LinkedHashMap<>();
 		// Bean methods must be public and can be on parent classes
-		for (Method md : beanClass.getMethods()) {
-			String key = getBeanKey(md);
-			if (key != null && !keys.containsKey(key)) {
-				keys.put(key, md);
-			}
-		}
-		return keys;
+		return ConversionPlan.forClass(beanClass).getBeanKeys();
 	}
 
 	static String getBeanKey(Method md) {
@@ -137,14 +130,7 @@ class Util {
 	}
 
 	static Map<String,Field> getDTOKeys(Class< ? > dto) {
-		Map<String,Field> keys = new LinkedHashMap<>();
-
-		for (Field f : dto.getFields()) {
-			String key = getDTOKey(f);
-			if (key != null && !keys.containsKey(key))
-				keys.put(key, f);
-		}
-		return keys;
+		return ConversionPlan.forClass(dto).getDTOKeys();
 	}
 
 	static String getDTOKey(Field f) {
@@ -323,6 +309,10 @@ class Util {
 	}
 
 	static String getPrefix(Class< ? > cls) {
+		return ConversionPlan.forClass(cls).getPrefix();
+	}
+
+	static String computePrefix(Class< ? > cls) {
 		try {
 			// We can use getField as the PREFIX must be public (see spec erratum)
 			Field prefixField = cls.getField("PREFIX_");
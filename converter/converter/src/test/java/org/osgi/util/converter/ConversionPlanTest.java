@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.osgi.util.converter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConversionPlanTest {
+    @Test
+    public void testPlanIsShared() {
+        ConversionPlan plan = ConversionPlan.forClass(MyDTO.class);
+        assertSame(plan, ConversionPlan.forClass(MyDTO.class));
+        assertSame(plan.getDTOFields(), plan.getDTOFields());
+        assertTrue(plan.isDTOType(true));
+        assertTrue(plan.isDTOType(false));
+        assertFalse(ConversionPlan.forClass(MyBean.class).isDTOType(true));
+    }
+
+    @Test
+    public void testDTOFields() throws Exception {
+        ConversionPlan plan = ConversionPlan.forClass(MyDTO.class);
+        MyDTO dto = new MyDTO();
+        ConversionPlan.Accessor ping = plan.getField("ping", false);
+        ping.set(dto, "hello");
+        assertEquals("hello", dto.ping);
+        assertEquals("hello", ping.get(dto));
+
+        ConversionPlan.Accessor pong = plan.getField("pong", false);
+        pong.set(dto, 42L);
+        assertEquals(42L, pong.get(dto));
+
+        assertNull(plan.getField("PING", false));
+        assertSame(ping, plan.getField("PING", true));
+        assertEquals(plan.getFieldNames(), new ArrayList<>(plan.getDTOKeys().keySet()));
+    }
+
+    @Test
+    public void testBeanAccessors() throws Exception {
+        ConversionPlan plan = ConversionPlan.forClass(MyBean.class);
+        assertTrue(plan.isWriteableJavaBean());
+        assertEquals(5, plan.getSetters().size());
+
+        MyBean bean = new MyBean();
+        for (ConversionPlan.Accessor setter : plan.getSetters()) {
+            if ("enabled".equals(setter.getKey())) {
+                assertEquals(boolean.class, setter.getType());
+                setter.set(bean, Boolean.TRUE);
+            }
+        }
+        assertTrue(bean.isEnabled());
+
+        Map<String,Object> values = new HashMap<>();
+        for (ConversionPlan.Accessor getter : plan.getBeanGetters()) {
+            values.put(getter.getKey(), getter.get(bean));
+        }
+        assertEquals(Boolean.TRUE, values.get("enabled"));
+        assertTrue(values.containsKey("me"));
+        assertFalse(values.containsKey("tisburgh"));
+    }
+
+    @Test
+    public void testEnumConstants() {
+        ConversionPlan plan = ConversionPlan.forClass(MyDTO.Count.class);
+        assertSame(MyDTO.Count.TWO, plan.getEnumConstant(1));
+        assertSame(MyDTO.Count.THREE, plan.getEnumConstant("THREE"));
+        assertSame(MyDTO.Count.THREE, plan.getEnumConstant("three"));
+        assertNull(plan.getEnumConstant("four"));
+    }
+
+    @Test
+    public void testFactories() throws Exception {
+        ConversionPlan plan = ConversionPlan.forClass(Integer.class);
+        assertTrue(plan.getValueOf().isStatic());
+        assertEquals(17, plan.getValueOf().create("17"));
+        assertEquals(18, plan.getStringConstructor().create("18"));
+
+        ConversionPlan mapPlan = ConversionPlan.forClass(TreeMap.class);
+        assertNull(mapPlan.getSizedConstructor());
+        assertNotNull(mapPlan.getDefaultConstructor().create());
+        assertNull(ConversionPlan.forClass(MyBean.class).getValueOf());
+    }
+}
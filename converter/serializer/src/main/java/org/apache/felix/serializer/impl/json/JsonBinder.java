@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.serializer.impl.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.util.converter.ConversionException;
+import org.osgi.util.converter.Converter;
+import org.osgi.util.converter.Converters;
+
+/**
+ * Reads JSON from a {@link Reader} into the requested type.
+ *
+ * DTOs, as well as collections, arrays and maps of them, are bound while
+ * the input is read, without building a generic map representation of the
+ * whole document first. Everything else is read into its generic
+ * representation and handed to the converter.
+ *
+ * Direct binding is only used with the standard converter, as a custom
+ * converter might have rules for the types which are bound directly.
+ */
+class JsonBinder {
+    private static final ClassValue<DTOBinding> BINDINGS = new ClassValue<DTOBinding>() {
+        @Override
+        protected DTOBinding computeValue(Class<?> type) {
+            return DTOBinding.create(type);
+        }
+    };
+
+    private final Converter converter;
+    private final boolean direct;
+
+    JsonBinder(Converter converter) {
+        this.converter = converter;
+        this.direct = converter == Converters.standardConverter();
+    }
+
+    /**
+     * Read a complete JSON document.
+     *
+     * @param reader The reader, not closed by this method.
+     * @param type The target type.
+     * @return The converted object.
+     */
+    Object read(Reader reader, Type type) throws IOException {
+        JsonTokenizer tokenizer = new JsonTokenizer(reader);
+        Object result;
+        if (direct && isBindable(type)) {
+            result = bind(tokenizer, type);
+        } else {
+            Object value = tokenizer.readValue();
+            if (value instanceof Map && type instanceof Class
+                    && value.getClass().isAssignableFrom((Class<?>) type))
+                result = value;
+            else
+                result = converter.convert(value).to(type);
+        }
+        tokenizer.end();
+        return result;
+    }
+
+    private Object bind(JsonTokenizer tokenizer, Type type) throws IOException {
+        int c = tokenizer.peek();
+        if (c == '{') {
+            if (type instanceof Class) {
+                DTOBinding binding = BINDINGS.get((Class<?>) type);
+                if (binding != null)
+                    return bindDTO(tokenizer, binding);
+            } else if (type instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) type;
+                Map<Object, Object> map = newMap(pt.getRawType());
+                if (map != null)
+                    return bindMap(tokenizer, map, pt.getActualTypeArguments());
+            }
+        } else if (c == '[') {
+            if (type instanceof Class && ((Class<?>) type).isArray()) {
+                Class<?> componentType = ((Class<?>) type).getComponentType();
+                if (!componentType.isPrimitive())
+                    return bindArray(tokenizer, componentType);
+            } else if (type instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) type;
+                Collection<Object> collection = newCollection(pt.getRawType());
+                if (collection != null)
+                    return bindCollection(tokenizer, collection, pt.getActualTypeArguments()[0]);
+            }
+        }
+        return converter.convert(tokenizer.readValue()).to(type);
+    }
+
+    private Object bindDTO(JsonTokenizer tokenizer, DTOBinding binding) throws IOException {
+        Object dto = binding.newInstance();
+        tokenizer.beginObject();
+        while (tokenizer.hasNext()) {
+            String name = tokenizer.nextName();
+            Field f = binding.fields.get(name);
+            if (f == null) {
+                // no such field, ignore the value
+                tokenizer.readValue();
+                continue;
+            }
+
+            Object val = bind(tokenizer, f.getGenericType());
+            try {
+                f.set(dto, val);
+            } catch (Exception e) {
+                throw new ConversionException("Cannot create DTO " + binding.cls, e);
+            }
+        }
+        tokenizer.endObject();
+        return dto;
+    }
+
+    private Object bindMap(JsonTokenizer tokenizer, Map<Object, Object> map, Type[] typeArguments)
+            throws IOException {
+        Type keyType = typeArguments[0];
+        Type valueType = typeArguments[1];
+        tokenizer.beginObject();
+        while (tokenizer.hasNext()) {
+            String name = tokenizer.nextName();
+            Object key = String.class.equals(keyType) ? name : converter.convert(name).to(keyType);
+            map.put(key, bind(tokenizer, valueType));
+        }
+        tokenizer.endObject();
+        return map;
+    }
+
+    private Object bindCollection(JsonTokenizer tokenizer, Collection<Object> collection, Type elementType)
+            throws IOException {
+        tokenizer.beginArray();
+        while (tokenizer.hasNext()) {
+            collection.add(bind(tokenizer, elementType));
+        }
+        tokenizer.endArray();
+        return collection;
+    }
+
+    private Object bindArray(JsonTokenizer tokenizer, Class<?> componentType) throws IOException {
+        List<Object> list = new ArrayList<>();
+        bindCollection(tokenizer, list, componentType);
+        Object array = Array.newInstance(componentType, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Array.set(array, i, list.get(i));
+        }
+        return array;
+    }
+
+    private static Map<Object, Object> newMap(Type rawType) {
+        if (Map.class.equals(rawType) || LinkedHashMap.class.equals(rawType))
+            return new LinkedHashMap<>();
+        if (HashMap.class.equals(rawType))
+            return new HashMap<>();
+        return null;
+    }
+
+    private static Collection<Object> newCollection(Type rawType) {
+        if (Collection.class.equals(rawType) || List.class.equals(rawType)
+                || ArrayList.class.equals(rawType))
+            return new ArrayList<>();
+        if (Set.class.equals(rawType) || LinkedHashSet.class.equals(rawType))
+            return new LinkedHashSet<>();
+        if (HashSet.class.equals(rawType))
+            return new HashSet<>();
+        return null;
+    }
+
+    /**
+     * Check whether a DTO is reachable through the type, directly or as
+     * element of a collection, array or map. Only then direct binding pays
+     * off compared to converting the generic representation.
+     */
+    private static boolean isBindable(Type type) {
+        if (type instanceof Class) {
+            Class<?> cls = (Class<?>) type;
+            if (cls.isArray())
+                return !cls.getComponentType().isPrimitive() && isBindable(cls.getComponentType());
+            return BINDINGS.get(cls) != null;
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType pt = (ParameterizedType) type;
+            Type[] args = pt.getActualTypeArguments();
+            if (newMap(pt.getRawType()) != null)
+                return isBindable(args[1]) && !containsTypeVariable(args[0]);
+            if (newCollection(pt.getRawType()) != null)
+                return isBindable(args[0]);
+        }
+        return false;
+    }
+
+    private static boolean containsTypeVariable(Type type) {
+        if (type instanceof TypeVariable)
+            return true;
+        if (type instanceof ParameterizedType) {
+            for (Type t : ((ParameterizedType) type).getActualTypeArguments()) {
+                if (containsTypeVariable(t))
+                    return true;
+            }
+        } else if (type instanceof GenericArrayType) {
+            return containsTypeVariable(((GenericArrayType) type).getGenericComponentType());
+        } else if (type instanceof WildcardType) {
+            for (Type t : ((WildcardType) type).getUpperBounds()) {
+                if (containsTypeVariable(t))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The fields of a DTO class which can be bound directly. Classes where
+     * the converter would map keys to fields in a more elaborate way, like
+     * prefixes, mangled names or type variables, are not bound directly.
+     */
+    static class DTOBinding {
+        final Class<?> cls;
+        final Constructor<?> constructor;
+        final Map<String, Field> fields;
+
+        private DTOBinding(Class<?> cls, Constructor<?> constructor, Map<String, Field> fields) {
+            this.cls = cls;
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new ConversionException("Cannot create DTO " + cls, e);
+            }
+        }
+
+        static DTOBinding create(Class<?> cls) {
+            int modifiers = cls.getModifiers();
+            if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers)
+                    || cls.isInterface() || cls.isArray() || cls.isPrimitive() || cls.isEnum()
+                    || cls.getName().startsWith("java.")
+                    || Map.class.isAssignableFrom(cls)
+                    || Collection.class.isAssignableFrom(cls)
+                    || Dictionary.class.isAssignableFrom(cls))
+                return null;
+
+            Constructor<?> constructor;
+            try {
+                constructor = cls.getConstructor();
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+
+            // DTOs only have the methods of Object
+            for (Method m : cls.getMethods()) {
+                try {
+                    Object.class.getMethod(m.getName(), m.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    return null;
+                }
+            }
+
+            Map<String, Field> fields = new HashMap<>();
+            for (Field f : cls.getFields()) {
+                String name = f.getName();
+                if ("PREFIX_".equals(name))
+                    return null;
+                int fieldModifiers = f.getModifiers();
+                if (Modifier.isStatic(fieldModifiers))
+                    continue;
+                if (Modifier.isFinal(fieldModifiers)
+                        || name.indexOf('_') >= 0 || name.indexOf('$') >= 0
+                        || containsTypeVariable(f.getGenericType()))
+                    return null;
+                if (!fields.containsKey(name))
+                    fields.put(name, f);
+            }
+            if (fields.isEmpty())
+                return null;
+
+            return new DTOBinding(cls, constructor, Collections.unmodifiableMap(fields));
+        }
+    }
+}
@@ -18,6 +18,9 @@ package org.apache.felix.serializer.impl.json;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -44,6 +47,9 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
     @Override
     @SuppressWarnings("unchecked")
     public T from(CharSequence in) {
+        if (isStreaming())
+            return read(new StringReader(in.toString()));
+
         Map<?,?> m = parser.parse(in);
         if (type instanceof Class)
             if (m.getClass().isAssignableFrom((Class<?>) type))
@@ -59,6 +65,14 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
 
     @Override
     public T from(InputStream in, Charset charset) {
+        if (isStreaming()) {
+            try (Reader reader = new InputStreamReader(in, charset)) {
+                return read(reader);
+            } catch (IOException e) {
+                throw new ConversionException("Error reading inputstream", e);
+            }
+        }
+
         try {
             byte[] bytes = Util.readStream(in);
             String s = new String(bytes, charset);
@@ -70,12 +84,36 @@ public class JsonDeserializingImpl<T> implements Deserializing<T> {
 
     @Override
     public T from(Readable in) {
+        if (isStreaming() && in instanceof Reader) {
+            try (Reader reader = (Reader) in) {
+                return read(reader);
+            } catch (IOException e) {
+                throw new ConversionException("Error reading input", e);
+            }
+        }
         try (Scanner s = new Scanner(in)) {
             s.useDelimiter("\\Z");
             return from(s.next());
         }
     }
 
+    /**
+     * The default parser is replaced by streaming straight into the target
+     * type. A custom parser is always honoured.
+     */
+    private boolean isStreaming() {
+        return parser instanceof DefaultJsonParser;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T read(Reader reader) {
+        try {
+            return (T) new JsonBinder(converter).read(reader, type);
+        } catch (IOException e) {
+            throw new ConversionException("Error reading input", e);
+        }
+    }
+
     @Override
     public Deserializing<T> convertWith(Converter c) {
         converter = c;
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.serializer.impl.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pull style JSON tokenizer reading from a {@link Reader} through a small
+ * buffer, so that the input never has to be held in memory as a whole.
+ *
+ * Values read with {@link #readValue()} are represented in the same way as
+ * by {@link DefaultJsonParser}: objects as {@link HashMap}, arrays as
+ * {@link ArrayList}, integral numbers as {@link Long} and other numbers as
+ * {@link Double}.
+ */
+class JsonTokenizer {
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder sb = new StringBuilder();
+    private int pos;
+    private int limit;
+    private long offset;
+
+    // for each open object or array whether an element has been read
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+
+    JsonTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Return the next non whitespace character without consuming it.
+     *
+     * @return The character or {@code -1} at the end of the input.
+     */
+    int peek() throws IOException {
+        while (true) {
+            if (pos == limit && !fill())
+                return -1;
+            char c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                pos++;
+            else
+                return c;
+        }
+    }
+
+    void beginObject() throws IOException {
+        expect('{');
+        push();
+    }
+
+    void endObject() throws IOException {
+        expect('}');
+        depth--;
+    }
+
+    void beginArray() throws IOException {
+        expect('[');
+        push();
+    }
+
+    void endArray() throws IOException {
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * Check whether the current object or array has more elements and
+     * consume the separator if so.
+     */
+    boolean hasNext() throws IOException {
+        int c = peek();
+        if (c == '}' || c == ']')
+            return false;
+        if (hasElements[depth - 1])
+            expect(',');
+        else
+            hasElements[depth - 1] = true;
+        return true;
+    }
+
+    /**
+     * Read the name of the next member of an object including the
+     * following colon.
+     */
+    String nextName() throws IOException {
+        if (peek() != '"')
+            throw error("Expected member name");
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Check whether the end of the input has been reached, ignoring
+     * whitespace.
+     */
+    void end() throws IOException {
+        if (peek() != -1)
+            throw error("Unexpected content after JSON value");
+    }
+
+    /**
+     * Read the next value into its generic representation.
+     */
+    Object readValue() throws IOException {
+        int c = peek();
+        switch (c) {
+        case '{':
+            Map<String, Object> map = new HashMap<>();
+            beginObject();
+            while (hasNext()) {
+                String name = nextName();
+                map.put(name, readValue());
+            }
+            endObject();
+            return map;
+        case '[':
+            List<Object> list = new ArrayList<>();
+            beginArray();
+            while (hasNext()) {
+                list.add(readValue());
+            }
+            endArray();
+            return list;
+        case '"':
+            return readString();
+        case 't':
+            readLiteral("true");
+            return Boolean.TRUE;
+        case 'f':
+            readLiteral("false");
+            return Boolean.FALSE;
+        case 'n':
+            readLiteral("null");
+            return null;
+        case -1:
+            throw error("Unexpected end of input");
+        default:
+            if (c == '-' || (c >= '0' && c <= '9'))
+                return readNumber();
+            throw error("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private Object readNumber() throws IOException {
+        sb.setLength(0);
+        boolean integral = true;
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+') {
+                sb.append(c);
+            } else if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+                sb.append(c);
+            } else {
+                break;
+            }
+            pos++;
+        }
+        String s = sb.toString();
+        try {
+            if (integral) {
+                try {
+                    return Long.parseLong(s);
+                } catch (NumberFormatException e) {
+                    // too large for a long
+                    return Double.parseDouble(s);
+                }
+            }
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw error("Malformatted JSON number: " + s);
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        sb.setLength(0);
+        while (true) {
+            // copy all plain characters in the buffer in one go
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\')
+                    break;
+                pos++;
+            }
+            sb.append(buffer, start, pos - start);
+
+            if (pos == limit) {
+                if (!fill())
+                    throw error("Unterminated JSON string");
+                continue;
+            }
+
+            char c = buffer[pos++];
+            if (c == '"')
+                return sb.toString();
+
+            // escape sequence
+            char e = read();
+            switch (e) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                int uc = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0)
+                        throw error("Malformatted unicode escape");
+                    uc = (uc << 4) | digit;
+                }
+                sb.append((char) uc);
+                break;
+            default:
+                sb.append(e);
+            }
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i))
+                throw error("Expected '" + literal + "'");
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peek() != expected)
+            throw error("Expected '" + expected + "'");
+        pos++;
+    }
+
+    private char read() throws IOException {
+        if (pos == limit && !fill())
+            throw error("Unexpected end of input");
+        return buffer[pos++];
+    }
+
+    private void push() {
+        if (depth == hasElements.length)
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        hasElements[depth++] = false;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int read;
+        while ((read = reader.read(buffer)) == 0) {
+            // try again
+        }
+        if (read < 0)
+            return false;
+        limit = read;
+        return true;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + (offset + pos));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.serializer.impl.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.serializer.impl.json.MyDTO.Count;
+import org.apache.felix.serializer.impl.json.MyEmbeddedDTO.Alpha;
+import org.junit.Test;
+import org.osgi.util.converter.TypeReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonStreamingTest {
+    private static final String DTO_JSON = "{\"count\": \"TWO\", \"ping\": \"a \\\"quoted\\\" \\u00e9 string\\n\","
+            + " \"unknown\": {\"nested\": [1, 2.5, true, null]},"
+            + " \"pong\": 12345678901,"
+            + " \"embedded\": {\"alpha\": \"C\", \"marco\": \"polo\", \"polo\": 42}}";
+
+    @Test
+    public void testDTOFromInputStream() {
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        MyDTO dto = jsonCodec.deserialize(MyDTO.class)
+                .from(new ByteArrayInputStream(DTO_JSON.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Count.TWO, dto.count);
+        assertEquals("a \"quoted\" \u00e9 string\n", dto.ping);
+        assertEquals(12345678901L, dto.pong);
+        assertEquals(Alpha.C, dto.embedded.alpha);
+        assertEquals("polo", dto.embedded.marco);
+        assertEquals(42, dto.embedded.polo);
+    }
+
+    @Test
+    public void testDTOFromReader() {
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        MyDTO dto = jsonCodec.deserialize(MyDTO.class).from(new StringReader(DTO_JSON));
+        assertEquals(Count.TWO, dto.count);
+        assertEquals(42, dto.embedded.polo);
+    }
+
+    @Test
+    public void testCollectionsOfDTOs() {
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        String json = "[" + DTO_JSON + ", null, {\"ping\": \"second\"}]";
+
+        List<MyDTO> list = jsonCodec.deserialize(new TypeReference<List<MyDTO>>(){}).from(json);
+        assertEquals(3, list.size());
+        assertTrue(list instanceof ArrayList);
+        assertEquals(Count.TWO, list.get(0).count);
+        assertNull(list.get(1));
+        assertEquals("second", list.get(2).ping);
+
+        MyDTO[] array = jsonCodec.deserialize(MyDTO[].class).from(json);
+        assertEquals(3, array.length);
+        assertEquals("second", array[2].ping);
+
+        Map<String, MyDTO> map = jsonCodec.deserialize(new TypeReference<Map<String, MyDTO>>(){})
+                .from("{\"a\": " + DTO_JSON + ", \"b\": {\"pong\": 7}}");
+        assertTrue(map instanceof LinkedHashMap);
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(map.keySet()));
+        assertEquals(7, map.get("b").pong);
+    }
+
+    @Test
+    public void testGenericMap() {
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        @SuppressWarnings("rawtypes")
+        Map m = jsonCodec.deserialize(Map.class).from(new StringReader(DTO_JSON));
+        assertEquals("TWO", m.get("count"));
+        assertEquals(12345678901L, m.get("pong"));
+        assertEquals(Arrays.asList(1L, 2.5d, true, null), ((Map<?, ?>) m.get("unknown")).get("nested"));
+    }
+
+    @Test
+    public void testMalformedInput() {
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        for (String json : new String[] {"", "{", "{\"a\" 1}", "{\"a\": 1,}", "[1 2]", "{} x", "{\"a\": tru}"}) {
+            try {
+                jsonCodec.deserialize(Map.class).from(json);
+                fail("Expected failure for " + json);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLargeInputAcrossBuffers() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"ping\": \"value number ").append(i).append("\", \"pong\": ").append(i).append('}');
+        }
+        sb.append(']');
+
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        MyDTO[] dtos = jsonCodec.deserialize(MyDTO[].class)
+                .from(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(5000, dtos.length);
+        assertEquals("value number 4999", dtos[4999].ping);
+        assertEquals(4999, dtos[4999].pong);
+    }
+
+    @Test
+    public void testStreamingWriter() throws Exception {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("s", "text");
+        m.put("n", 12);
+        m.put("a", new int[] {1, 2});
+        m.put("l", Arrays.asList("x", null));
+        m.put("e", null);
+
+        JsonSerializerImpl jsonCodec = new JsonSerializerImpl();
+        String expected = "{\"s\":\"text\",\"n\":12,\"a\":[1,2],\"l\":[\"x\",null],\"e\":null}";
+        assertEquals(expected, jsonCodec.serialize(m).toString());
+        assertEquals(expected, jsonCodec.serialize(m).to(new StringBuilder()).toString());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        jsonCodec.serialize(m).to(baos);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), baos.toByteArray());
+    }
+}
@@ -30,10 +30,12 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -48,6 +50,8 @@ import org.apache.felix.dm.benchmark.scenario.Track;
 import org.apache.felix.dm.benchmark.scenario.Unchecked;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
 
 /**
  * The controller which perform microbenchmarks on some scenario bundles.
@@ -60,9 +64,25 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     final List<String> TESTS = Arrays.asList(
         "org.apache.felix.dependencymanager.benchmark.dependencymanager",
-        "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel"
+        "org.apache.felix.dependencymanager.benchmark.dependencymanager.parallel",
+        "org.apache.felix.dependencymanager.benchmark.dependencymanager.lambda",
+        "org.apache.felix.dependencymanager.benchmark.scr",
+        "org.apache.felix.dependencymanager.benchmark.ipojo"
     );
+
+    /**
+     * Framework property set when the benchmark is driven from outside of the framework (see the jmh package).
+     * In this case, we don't run our own benchmark thread, and we signal each component addition/removal
+     * using the two java.util.concurrent.Semaphore services registered by the benchmark driver with an
+     * "event" service property set to "added", or "removed".
+     */
+    public final static String EMBEDDED = "org.apache.felix.dependencymanager.benchmark.embedded";
     
+    /**
+     * Number of components created by each tested bundle.
+     */
+    final static int COMPONENTS = ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)));
+
     /**
      * Our injected bundle context, used to lookup the bundles to benchmark.
      */
@@ -73,6 +93,11 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     private volatile CountDownLatch m_startLatch, m_stopLatch;
 
+    /**
+     * Semaphores released for each added/removed component, when the benchmark is driven from outside.
+     */
+    private volatile Semaphore m_added, m_removed;
+
     /**
      * When a component is called in its start or stop method, we'll perform some processing if the following
      * attribute is true.
@@ -84,7 +109,13 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      * fire a thread, and from that thread we'll iterate on all bundles in order to do a benchmark on each.
      * (we'll call start/stop N times, and will display the elapsed times for each bundle).
      */
-    void start() {
+    void start() throws InvalidSyntaxException {
+        if (Boolean.parseBoolean(m_bctx.getProperty(EMBEDDED))) {
+            m_added = getSemaphore("added");
+            m_removed = getSemaphore("removed");
+            m_bctx.registerService(ScenarioController.class.getName(), this, null);
+            return;
+        }
         new Thread(this).start();
     }
     
@@ -96,7 +127,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
         // wait a bit in order to let the gogo banner be displayed before we start the bench.
         Unchecked.run(() -> Thread.sleep(500)); 
         
-        out.println("Starting benchmarks (each tested bundle will add/remove " + (ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)))) 
+        out.println("Starting benchmarks (each tested bundle will add/remove " + COMPONENTS 
            + " components during bundle activation).");
        
         // Stop all tested bundles.
@@ -209,12 +240,30 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
 
     private void componentAdded() {
         doProcessing();
-        m_startLatch.countDown();
+        Semaphore added = m_added;
+        if (added != null) {
+            added.release();
+        } else {
+            m_startLatch.countDown();
+        }
     }
 
     private void componentRemoved() {
         //doProcessing();
-        m_stopLatch.countDown();
+        Semaphore removed = m_removed;
+        if (removed != null) {
+            removed.release();
+        } else {
+            m_stopLatch.countDown();
+        }
+    }
+
+    private Semaphore getSemaphore(String event) throws InvalidSyntaxException {
+        Collection<ServiceReference<Semaphore>> refs = m_bctx.getServiceReferences(Semaphore.class, "(event=" + event + ")");
+        if (refs.isEmpty()) {
+            throw new IllegalStateException("No semaphore registered for " + event + " events");
+        }
+        return m_bctx.getService(refs.iterator().next());
     }
 
     private void doProcessing() {
@@ -246,8 +295,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void start(Bundle b) {
         try {
-            m_startLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_startLatch = new CountDownLatch(COMPONENTS);
             
             debug(() -> "starting bundle " + b.getSymbolicName());
             b.start();
@@ -274,8 +322,7 @@ public class ScenarioControllerImpl implements Runnable, ScenarioController {
      */
     void stop(Bundle b) {
         try {
-            m_stopLatch = new CountDownLatch(ARTISTS
-                + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS))));
+            m_stopLatch = new CountDownLatch(COMPONENTS);
                         
             debug(() -> "stopping bundle " + b.getSymbolicName());
             b.stop();
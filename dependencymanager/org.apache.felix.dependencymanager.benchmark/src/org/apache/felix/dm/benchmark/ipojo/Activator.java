@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.ipojo;
+
+import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
+
+import java.util.Hashtable;
+
+import org.apache.felix.dm.benchmark.controller.ScenarioController;
+import org.apache.felix.dm.benchmark.scenario.Album;
+import org.apache.felix.dm.benchmark.scenario.Helper;
+import org.apache.felix.dm.benchmark.scenario.Track;
+import org.apache.felix.ipojo.api.Dependency;
+import org.apache.felix.ipojo.api.PrimitiveComponentType;
+import org.apache.felix.ipojo.api.Service;
+import org.apache.felix.ipojo.api.ServiceProperty;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Creates the Artists, Albums and Tracks as iPOJO component instances, using the iPOJO API (which manipulates
+ * our component classes when their types are declared).
+ * 
+ * iPOJO aggregate dependencies have no minimum cardinality, so the instances are created bottom up: the Tracks 
+ * of an Album are created before the Album, and the Albums of an Artist before the Artist. This way, each 
+ * component is bound to all its dependencies when it becomes valid, like in the other scenarios.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class Activator implements BundleActivator {
+    private PrimitiveComponentType m_artistType, m_albumType, m_trackType;
+
+    @Override
+    public void start(BundleContext context) throws Exception {
+        Helper.debug(() -> "ipojo.Activator.start");
+        m_trackType = createType(context, TrackPojo.class, "album", null, null, null);
+        m_albumType = createType(context, AlbumPojo.class, "artist", "tracks", Track.class, "addTrack");
+        m_artistType = createType(context, ArtistPojo.class, null, "albums", Album.class, "addAlbum");
+
+        for (int i = 0; i < ARTISTS; i ++) {
+            long artistId = Helper.generateId();
+            for (int j = 0; j < ALBUMS; j ++) {
+                long albumId = Helper.generateId();
+                for (int k = 0; k < TRACKS; k ++) {
+                    Hashtable<String, Object> track = new Hashtable<>();
+                    track.put("album", String.valueOf(albumId));
+                    m_trackType.createInstance(track);
+                }
+                Hashtable<String, Object> album = new Hashtable<>();
+                album.put("artist", String.valueOf(artistId));
+                album.put("requires.filters", new String[] { "tracks", "(album=" + albumId + ")" });
+                m_albumType.createInstance(album);
+            }
+            Hashtable<String, Object> artist = new Hashtable<>();
+            artist.put("requires.filters", new String[] { "albums", "(artist=" + artistId + ")" });
+            m_artistType.createInstance(artist);
+        }
+    }
+
+    @Override
+    public void stop(BundleContext context) throws Exception {
+        // Stopping a type disposes all its instances.
+        m_artistType.stop();
+        m_albumType.stop();
+        m_trackType.stop();
+    }
+
+    /**
+     * Declares a component type.
+     * @param context our bundle context
+     * @param impl the component implementation class
+     * @param property the name of a service property provided by each instance, or null
+     * @param dependency the id of the aggregate dependency of the component, or null
+     * @param service the service of the aggregate dependency
+     * @param bind the bind method of the aggregate dependency
+     */
+    private PrimitiveComponentType createType(BundleContext context, Class<?> impl, String property, String dependency, Class<?> service, String bind) {
+        Service provided = new Service();
+        if (property != null) {
+            provided.addProperty(new ServiceProperty().setName(property).setType(String.class.getName()).setMandatory(true));
+        }
+        PrimitiveComponentType type = new PrimitiveComponentType()
+            .setBundleContext(context)
+            .setClassName(impl.getName())
+            .setImmediate(true)
+            .addService(provided)
+            .addDependency(new Dependency().setField("m_controller").setSpecification(ScenarioController.class.getName()))
+            .setValidateMethod("start")
+            .setInvalidateMethod("stop");
+        if (dependency != null) {
+            type.addDependency(new Dependency()
+                .setId(dependency)
+                .setSpecification(service.getName())
+                .setAggregate(true)
+                .setBindMethod(bind));
+        }
+        type.start();
+        return type;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.jmh;
+
+import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+
+/**
+ * JMH benchmarks starting and stopping the Artist/Album/Track scenario with the different component runtimes.
+ * 
+ * Each benchmark operation starts a scenario bundle, waits until all its components are added, then stops the
+ * bundle and waits until all its components are removed. The throughput benchmark reports complete start/stop
+ * cycles per second, and the latency benchmark reports the distribution (percentiles) of the cycle durations.
+ * Allocation rates are reported when running with the JMH "gc" profiler (see the "jmh" gradle task).
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = { "-server", "-Xms1024m", "-Xmx1024m" })
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class ComponentBenchmark {
+    /**
+     * Number of components created by each scenario bundle.
+     */
+    final static int COMPONENTS = ARTISTS + (ARTISTS * (ALBUMS + (ALBUMS * TRACKS)));
+
+    /**
+     * The scenario bundle to benchmark (symbolic name without the benchmark bundles prefix).
+     * JMH parameters are named after their fields, hence no "m_" prefix for them.
+     */
+    @Param({ 
+        "dependencymanager", 
+        "dependencymanager.parallel", 
+        "dependencymanager.lambda", 
+        "scr", 
+        "ipojo" 
+    })
+    String runtime;
+
+    /**
+     * Enables the Dependency Manager filter indices (see index.bndrun).
+     */
+    @Param({ "false" })
+    boolean filterIndex;
+
+    private EmbeddedFramework m_framework;
+    private Bundle m_scenario;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Map<String, String> props = new HashMap<>();
+        props.put("ds.loglevel", "warn");
+        props.put("org.osgi.framework.bootdelegation", "sun.*,com.sun.*");
+        if (filterIndex) {
+            props.put("org.apache.felix.dependencymanager.filterindex", "objectClass,id");
+        }
+        m_framework = new EmbeddedFramework(props);
+        m_framework.start();
+        m_scenario = m_framework.getScenario(runtime);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        m_framework.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void throughput() throws Exception {
+        startStop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void latency() throws Exception {
+        startStop();
+    }
+
+    private void startStop() throws Exception {
+        m_framework.startScenario(m_scenario, COMPONENTS);
+        m_framework.stopScenario(m_scenario, COMPONENTS);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.dm.benchmark.controller.impl.ScenarioControllerImpl;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.launch.FrameworkFactory;
+
+/**
+ * An OSGi framework embedded in the benchmark JVM, with all the component runtimes and scenario bundles
+ * installed. The component runtimes, the scenario and the controller bundles are started, while the
+ * bundles being benchmarked are only installed, and are then started and stopped by the benchmarks.
+ * 
+ * The bundles to install are given by the "benchmark.bundles" system property, as a list of bundle file paths
+ * separated by the path separator.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class EmbeddedFramework {
+    /**
+     * System property providing the bundle files to install.
+     */
+    public final static String BUNDLES = "benchmark.bundles";
+
+    /**
+     * Prefix of the bundles provided by the benchmark project.
+     */
+    final static String PREFIX = "org.apache.felix.dependencymanager.benchmark.";
+
+    /**
+     * Maximum time we wait for all components of a scenario to be added, or removed.
+     */
+    final static long TIMEOUT = 60;
+
+    private final Path m_storage;
+    private final Framework m_framework;
+    private final Map<String, Bundle> m_scenarios = new HashMap<>();
+
+    /**
+     * Released by the controller each time a component is added, or removed.
+     */
+    private final Semaphore m_added = new Semaphore(0);
+    private final Semaphore m_removed = new Semaphore(0);
+
+    public EmbeddedFramework(Map<String, String> properties) throws Exception {
+        m_storage = Files.createTempDirectory("dm-benchmark");
+        Map<String, String> config = new HashMap<>(properties);
+        config.put(Constants.FRAMEWORK_STORAGE, m_storage.toString());
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        config.put(ScenarioControllerImpl.EMBEDDED, "true");
+        FrameworkFactory factory = ServiceLoader.load(FrameworkFactory.class).iterator().next();
+        m_framework = factory.newFramework(config);
+    }
+
+    /**
+     * Starts the framework, installs all bundles, and starts all bundles except the benchmarked scenario bundles.
+     */
+    public void start() throws Exception {
+        m_framework.start();
+        BundleContext context = m_framework.getBundleContext();
+        context.registerService(Semaphore.class, m_added, event("added"));
+        context.registerService(Semaphore.class, m_removed, event("removed"));
+
+        String bundles = System.getProperty(BUNDLES);
+        if (bundles == null) {
+            throw new IllegalStateException("The " + BUNDLES + " system property is not set");
+        }
+        List<Bundle> installed = new ArrayList<>();
+        for (String path : bundles.split(File.pathSeparator)) {
+            if (! path.trim().isEmpty()) {
+                installed.add(context.installBundle(new File(path.trim()).toURI().toString()));
+            }
+        }
+        for (Bundle b : installed) {
+            String bsn = b.getSymbolicName();
+            if (bsn.startsWith(PREFIX) && ! bsn.equals(PREFIX + "scenario") && ! bsn.equals(PREFIX + "controller")) {
+                m_scenarios.put(bsn.substring(PREFIX.length()), b);
+            }
+        }
+        for (Bundle b : installed) {
+            if (! m_scenarios.containsValue(b) && b.getHeaders().get(Constants.FRAGMENT_HOST) == null) {
+                b.start();
+            }
+        }
+    }
+
+    /**
+     * Returns the scenario bundle for a component runtime.
+     * @param name the scenario bundle symbolic name, without the benchmark bundles prefix
+     */
+    public Bundle getScenario(String name) {
+        Bundle b = m_scenarios.get(name);
+        if (b == null) {
+            throw new IllegalArgumentException("Scenario bundle not installed: " + PREFIX + name);
+        }
+        return b;
+    }
+
+    /**
+     * Starts a scenario bundle, and waits until all its components have been added.
+     */
+    public void startScenario(Bundle b, int components) throws Exception {
+        b.start();
+        await(m_added, components, "added", b);
+    }
+
+    /**
+     * Stops a scenario bundle, and waits until all its components have been removed.
+     */
+    public void stopScenario(Bundle b, int components) throws Exception {
+        b.stop();
+        await(m_removed, components, "removed", b);
+    }
+
+    /**
+     * Stops the framework and removes its storage directory.
+     */
+    public void stop() throws Exception {
+        m_framework.stop();
+        m_framework.waitForStop(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        Files.walkFileTree(m_storage, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void await(Semaphore semaphore, int components, String event, Bundle b) throws InterruptedException {
+        if (! semaphore.tryAcquire(components, TIMEOUT, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Only " + semaphore.availablePermits() + " of " + components 
+                + " components " + event + " timely by " + b.getSymbolicName());
+        }
+    }
+
+    private static Hashtable<String, Object> event(String event) {
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put("event", event);
+        return props;
+    }
+}
@@ -28,19 +28,16 @@ import java.util.List;
 public interface Artist {
     /**
      * When a scenario bundles starts, it creates the following number of Artists (service)
-     * (you have to regenerate the SCR xml descriptor if you modify this, see README)
      */
     public final int ARTISTS = 30;
     
     /**
      * Each Artist creates the following number of musical Albums.
-     * (you have to regenerate the SCR xml descriptor if you modify this, see README)
      */
     public final int ALBUMS = 5;
     
     /**
      * Each Album contains the following number of musical Tracks.
-     * (you have to regenerate the SCR xml descriptor if you modify this, see README)
      */
     public final int TRACKS = 3;
     
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.dm.benchmark.scr;
+
+import static org.apache.felix.dm.benchmark.scenario.Artist.ALBUMS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.ARTISTS;
+import static org.apache.felix.dm.benchmark.scenario.Artist.TRACKS;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.apache.felix.dm.benchmark.scenario.Helper;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+/**
+ * Creates the Artists, Albums and Tracks as SCR components. SCR only supports statically declared components,
+ * so we register one factory configuration for each component instance. The configurations define the target
+ * filters and the minimum cardinalities which bind the components with each other, like the service dependency
+ * filters used in the Dependency Manager scenarios.
+ * 
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class Activator implements BundleActivator {
+    private final List<Configuration> m_configurations = new ArrayList<>();
+
+    @Override
+    public void start(BundleContext context) throws Exception {
+        Helper.debug(() -> "scr.Activator.start");
+        ServiceReference<ConfigurationAdmin> ref = context.getServiceReference(ConfigurationAdmin.class);
+        if (ref == null) {
+            throw new IllegalStateException("ConfigurationAdmin service not available");
+        }
+        ConfigurationAdmin cm = context.getService(ref);
+        String location = context.getBundle().getLocation();
+
+        for (int i = 0; i < ARTISTS; i ++) {
+            long artistId = Helper.generateId();
+            Hashtable<String, Object> artist = new Hashtable<>();
+            artist.put("albums.target", "(artist=" + artistId + ")");
+            artist.put("albums.cardinality.minimum", ALBUMS);
+            create(cm, ArtistComponent.class, location, artist);
+
+            for (int j = 0; j < ALBUMS; j ++) {
+                long albumId = Helper.generateId();
+                Hashtable<String, Object> album = new Hashtable<>();
+                album.put("artist", String.valueOf(artistId));
+                album.put("tracks.target", "(album=" + albumId + ")");
+                album.put("tracks.cardinality.minimum", TRACKS);
+                create(cm, AlbumComponent.class, location, album);
+
+                for (int k = 0; k < TRACKS; k ++) {
+                    Hashtable<String, Object> track = new Hashtable<>();
+                    track.put("album", String.valueOf(albumId));
+                    create(cm, TrackComponent.class, location, track);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop(BundleContext context) throws Exception {
+        // SCR disposes our components when we are stopped, but the configurations must not survive us.
+        for (Configuration conf : m_configurations) {
+            conf.delete();
+        }
+        m_configurations.clear();
+    }
+
+    private void create(ConfigurationAdmin cm, Class<?> component, String location, Hashtable<String, Object> props) throws Exception {
+        Configuration conf = cm.createFactoryConfiguration(component.getName(), location);
+        m_configurations.add(conf);
+        conf.update(props);
+    }
+}
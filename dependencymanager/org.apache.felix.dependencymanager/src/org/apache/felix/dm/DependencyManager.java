@@ -64,6 +64,10 @@ public class DependencyManager extends DependencyManagerCompat {
 
     public static final String ASPECT = "org.apache.felix.dependencymanager.aspect";
     public static final String SERVICEREGISTRY_CACHE_INDICES = "org.apache.felix.dependencymanager.filterindex";
+    /**
+     * No longer used: callback methods are now cached per class, and the cache goes away together with the class.
+     */
+    @Deprecated
     public static final String METHOD_CACHE_SIZE = "org.apache.felix.dependencymanager.methodcache";
     
     private final BundleContext m_context;
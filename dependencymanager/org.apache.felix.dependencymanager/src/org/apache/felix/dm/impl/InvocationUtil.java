@@ -18,24 +18,28 @@
  */
 package org.apache.felix.dm.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 import java.util.function.Supplier;
 
-import org.apache.felix.dm.DependencyManager;
 import org.osgi.service.cm.ConfigurationException;
 
 /**
- * Utility methods for invoking callbacks. Lookups of callbacks are accellerated by using a LRU cache.
+ * Utility methods for invoking callbacks. Resolved callbacks are cached per class, without
+ * any locking, and invoked through method handles.
  * 
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
@@ -45,18 +49,21 @@ public class InvocationUtil {
 	 */
     private static final Class<?>[] VOID = new Class[] {};
     
-    private static final Map<Key, Method> m_methodCache;
-    static {
-        int size = 4096;
-        try {
-            String value = System.getProperty(DependencyManager.METHOD_CACHE_SIZE);
-            if (value != null) {
-                size = Integer.parseInt(value);
-            }
+    /**
+     * Resolved callbacks per class, keyed by name, signature and whether private methods are accessible.
+     * Lookups which did not find a method are cached too, using the NONE marker.
+     */
+    private static final ClassValue<ConcurrentMap<CallbackKey, Callback>> m_callbacks = new ClassValue<ConcurrentMap<CallbackKey, Callback>>() {
+        @Override
+        protected ConcurrentMap<CallbackKey, Callback> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
         }
-        catch (Exception e) {}
-        m_methodCache = new LRUMap(Math.max(size, 64));
-    }
+    };
+
+    /**
+     * Marks a callback lookup which did not find any method.
+     */
+    private static final Callback NONE = new Callback();
     
     /**
      * Interface internally used to handle a ConfigurationAdmin update synchronously, in a component executor queue.
@@ -149,12 +156,10 @@ public class InvocationUtil {
             clazz = object.getClass();
         }
         
-        Method m = null;
         for (int i = 0; i < signatures.length; i++) {
-            Class<?>[] signature = signatures[i];
-            m = getDeclaredMethod(clazz, name, signature, isSuper);
-            if (m != null) {
-                return m.invoke(object, parameters[i]);
+            Callback cb = getCallback(clazz, name, signatures[i], isSuper);
+            if (cb != NONE) {
+                return cb.invoke(object, parameters[i]);
             }
         }
         throw new NoSuchMethodException(name);
@@ -218,16 +223,14 @@ public class InvocationUtil {
             clazz = object.getClass();
         }
         
-        Method m = null;
         for (int i = 0; i < signatures.length; i++) {
-            Class<?>[] signature = signatures[i];
-            m = getDeclaredMethod(clazz, name, signature, isSuper);
-            if (m != null) {
+            Callback cb = getCallback(clazz, name, signatures[i], isSuper);
+            if (cb != NONE) {
             	Object[] params = new Object[paramsSupplier[i].length];
             	for (int j = 0; j < params.length; j ++) {
             		params[j] = paramsSupplier[i][j].get();            		
             	}
-                return m.invoke(object, params);
+                return cb.invoke(object, params);
             }
         }
         throw new NoSuchMethodException(name);
@@ -320,15 +323,13 @@ public class InvocationUtil {
             throw new IllegalArgumentException("Class cannot be null");
         }
                 
-        Method m = null;
         for (int i = 0; i < signatures.length; i++) {
-            Class<?>[] signature = signatures[i];
-            m = getDeclaredMethod(clazz, name, signature, isSuper);
-            if (m != null) {
-            	break;
+            Callback cb = getCallback(clazz, name, signatures[i], isSuper);
+            if (cb != NONE) {
+            	return cb.m_method;
             }
         }
-        return m;
+        return null;
     }
 
     public static ComponentInstance createInstance(Class<?> clazz, CallbackTypeDef ctorArgs) throws Exception {    			
@@ -383,91 +384,135 @@ public class InvocationUtil {
     	throw new InstantiationException("No suitable constructor found for class " + clazz.getName());    	
     }
     
-    private static Method getDeclaredMethod(Class<?> clazz, String name, Class<?>[] signature, boolean isSuper) {
-        // first check our cache
-        Key key = new Key(clazz, name, signature);
-        Method m = null;
-        synchronized (m_methodCache) {
-            m = (Method) m_methodCache.get(key);
-            if (m != null) {
-                return m;
-            }
-            else if (m_methodCache.containsKey(key)) {
-                // the key is in our cache, it just happens to have a null value
-                return null;
+    private static Callback getCallback(Class<?> clazz, String name, Class<?>[] signature, boolean isSuper) {
+        ConcurrentMap<CallbackKey, Callback> callbacks = m_callbacks.get(clazz);
+        Callback cb = callbacks.get(new CallbackKey(name, signature, isSuper));
+        if (cb == null) {
+            // keep a copy of the signature, the array we got might be modified later on
+            CallbackKey key = new CallbackKey(name, signature.clone(), isSuper);
+            cb = lookupCallback(clazz, name, signature, isSuper);
+            Callback previous = callbacks.putIfAbsent(key, cb);
+            if (previous != null) {
+                cb = previous;
             }
         }
-        // then do a lookup
+        return cb;
+    }
+
+    private static Callback lookupCallback(Class<?> clazz, String name, Class<?>[] signature, boolean isSuper) {
+        Method m;
         try {
             m = clazz.getDeclaredMethod(name, signature);
-            if (!(isSuper && Modifier.isPrivate(m.getModifiers()))) {
-                m.setAccessible(true);
-            }
         }
         catch (NoSuchMethodException e) {
+            return NONE;
         }
-        synchronized (m_methodCache) {
-            m_methodCache.put(key, m);
+        if (isSuper && Modifier.isPrivate(m.getModifiers())) {
+            // not accessible, invoke it reflectively which will fail in the usual way
+            return new Callback(m, null);
         }
-        return m;
+        m.setAccessible(true);
+        return new Callback(m, Callback.createHandle(m));
     }
-    
-    public static class Key {
-        private final Class<?> m_clazz;
+
+    private static final class CallbackKey {
         private final String m_name;
         private final Class<?>[] m_signature;
+        private final boolean m_isSuper;
+        private final int m_hashCode;
 
-        public Key(Class<?> clazz, String name, Class<?>[] signature) {
-            m_clazz = clazz;
+        CallbackKey(String name, Class<?>[] signature, boolean isSuper) {
             m_name = name;
             m_signature = signature;
+            m_isSuper = isSuper;
+            m_hashCode = (31 * name.hashCode() + Arrays.hashCode(signature)) * 31 + (isSuper ? 1 : 0);
         }
 
+        @Override
         public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((m_clazz == null) ? 0 : m_clazz.hashCode());
-            result = prime * result + ((m_name == null) ? 0 : m_name.hashCode());
-            result = prime * result + Arrays.hashCode(m_signature);
-            return result;
+            return m_hashCode;
         }
 
+        @Override
         public boolean equals(Object obj) {
-            if (this == obj)
+            if (this == obj) {
                 return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            Key other = (Key) obj;
-            if (m_clazz == null) {
-                if (other.m_clazz != null)
-                    return false;
             }
-            else if (!m_clazz.equals(other.m_clazz))
+            if (!(obj instanceof CallbackKey)) {
                 return false;
-            if (m_name == null) {
-                if (other.m_name != null)
-                    return false;
             }
-            else if (!m_name.equals(other.m_name))
-                return false;
-            if (!Arrays.equals(m_signature, other.m_signature))
-                return false;
-            return true;
+            CallbackKey other = (CallbackKey) obj;
+            return m_isSuper == other.m_isSuper && m_name.equals(other.m_name) && Arrays.equals(m_signature, other.m_signature);
         }
     }
-    
-    @SuppressWarnings("serial")
-    public static class LRUMap extends LinkedHashMap<Key, Method> {
-        private final int m_size;
-        
-        public LRUMap(int size) {
-            m_size = size;
+
+    /**
+     * A resolved callback method. Invocations go through a method handle adapted to take the instance and an
+     * argument array, which avoids the access checks and argument copying done by Method.invoke on each call.
+     */
+    private static final class Callback {
+        private final Method m_method;
+        private final MethodHandle m_handle;
+
+        Callback() {
+            this(null, null);
         }
-        
-        protected boolean removeEldestEntry(java.util.Map.Entry<Key, Method> eldest) {
-            return size() > m_size;
+
+        Callback(Method method, MethodHandle handle) {
+            m_method = method;
+            m_handle = handle;
+        }
+
+        static MethodHandle createHandle(Method m) {
+            try {
+                MethodHandle mh = MethodHandles.lookup().unreflect(m);
+                if (Modifier.isStatic(m.getModifiers())) {
+                    mh = MethodHandles.dropArguments(mh, 0, Object.class);
+                }
+                int count = m.getParameterCount();
+                return mh.asType(MethodType.genericMethodType(count + 1)).asSpreader(Object[].class, count);
+            }
+            catch (IllegalAccessException | RuntimeException e) {
+                // fall back to reflection
+                return null;
+            }
+        }
+
+        Object invoke(Object instance, Object[] args) throws IllegalAccessException, InvocationTargetException {
+            if (m_handle == null) {
+                return m_method.invoke(instance, args);
+            }
+            if (args == null ? m_method.getParameterCount() != 0 : args.length != m_method.getParameterCount()) {
+                throw new IllegalArgumentException("wrong number of arguments");
+            }
+            Object[] arguments = args == null ? new Object[0] : args;
+            try {
+                return (Object) m_handle.invokeExact(instance, arguments);
+            }
+            catch (ClassCastException | NullPointerException e) {
+                // either raised by the callback itself, or by the handle converting unsuitable arguments
+                if (!acceptsArguments(instance, args)) {
+                    throw new IllegalArgumentException("argument type mismatch", e);
+                }
+                throw new InvocationTargetException(e);
+            }
+            catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private boolean acceptsArguments(Object instance, Object[] args) {
+            if (!Modifier.isStatic(m_method.getModifiers()) && !m_method.getDeclaringClass().isInstance(instance)) {
+                return false;
+            }
+            Class<?>[] types = m_method.getParameterTypes();
+            for (int i = 0; i < types.length; i++) {
+                Class<?> type = types[i].isPrimitive() ? MethodType.methodType(types[i]).wrap().returnType() : types[i];
+                if (args[i] == null ? types[i].isPrimitive() : !type.isInstance(args[i])) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
     
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.dm.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test cases for {@link InvocationUtil}.
+ */
+public class InvocationUtilTest {
+    private static final Class<?>[][] SIGNATURES = new Class<?>[][] { { String.class }, { Object.class }, {} };
+
+    static class Base {
+        final AtomicInteger m_calls = new AtomicInteger();
+
+        @SuppressWarnings("unused")
+        private void start() {
+            m_calls.incrementAndGet();
+        }
+
+        void add(int value) {
+            m_calls.addAndGet(value);
+        }
+    }
+
+    static class Derived extends Base {
+        Object update(String value) {
+            m_calls.incrementAndGet();
+            return value;
+        }
+
+        void fail(Object value) {
+            throw new IllegalStateException(String.valueOf(value));
+        }
+
+        static String describe() {
+            return "static";
+        }
+    }
+
+    @Test
+    public void testInvokesFirstMatchingSignature() throws Exception {
+        Derived d = new Derived();
+        assertEquals("value", InvocationUtil.invokeCallbackMethod(d, "update", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} }));
+        assertEquals("value", InvocationUtil.invokeCallbackMethod(d, "update", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} }));
+        assertEquals(2, d.m_calls.get());
+    }
+
+    @Test
+    public void testInvokesPrivateMethodOfSuperclass() throws Exception {
+        Derived d = new Derived();
+        InvocationUtil.invokeCallbackMethod(d, "start", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} });
+        assertEquals(1, d.m_calls.get());
+    }
+
+    @Test
+    public void testInvokesStaticMethod() throws Exception {
+        assertEquals("static", InvocationUtil.invokeCallbackMethod(new Derived(), "describe", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} }));
+    }
+
+    @Test
+    public void testPrimitiveArguments() throws Exception {
+        Derived d = new Derived();
+        Class<?>[][] signatures = new Class<?>[][] { { int.class } };
+        InvocationUtil.invokeCallbackMethod(d, "add", signatures, new Object[][] { { 5 } });
+        assertEquals(5, d.m_calls.get());
+        try {
+            InvocationUtil.invokeCallbackMethod(d, "add", signatures, new Object[][] { { "five" } });
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            InvocationUtil.invokeCallbackMethod(d, "add", signatures, new Object[][] { { null } });
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMissingMethod() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            try {
+                InvocationUtil.invokeCallbackMethod(new Derived(), "missing", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} });
+                fail("NoSuchMethodException expected");
+            }
+            catch (NoSuchMethodException e) {
+                // expected, the second time from the cached negative lookup
+            }
+        }
+        assertNull(InvocationUtil.getCallbackMethod(new Derived(), "missing", SIGNATURES));
+    }
+
+    @Test
+    public void testExceptionsAreWrapped() throws Exception {
+        try {
+            InvocationUtil.invokeCallbackMethod(new Derived(), "fail", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} });
+            fail("InvocationTargetException expected");
+        }
+        catch (InvocationTargetException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+            assertEquals("value", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testGetCallbackMethod() throws Exception {
+        Method m = InvocationUtil.getCallbackMethod(Derived.class, "update", SIGNATURES);
+        assertNotNull(m);
+        assertSame(m, InvocationUtil.getCallbackMethod(new Derived(), "update", SIGNATURES));
+        assertEquals(Derived.class.getDeclaredMethod("update", String.class), m);
+    }
+
+    @Test
+    public void testConcurrentInvocations() throws Exception {
+        final Derived d = new Derived();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        InvocationUtil.invokeCallbackMethod(d, "update", SIGNATURES, new Object[][] { { "value" }, { "value" }, {} });
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, d.m_calls.get());
+    }
+}
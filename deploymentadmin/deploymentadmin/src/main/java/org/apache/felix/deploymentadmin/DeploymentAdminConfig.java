@@ -36,12 +36,30 @@ public class DeploymentAdminConfig {
     static final String KEY_STOP_UNAFFECTED_BUNDLES = PREFIX.concat("stopUnaffectedBundles");
     /** Configuration key used to allow usage of customizers outside a DP. */
     static final String KEY_ALLOW_FOREIGN_CUSTOMIZERS = PREFIX.concat("allowForeignCustomizers");
+    /** Configuration key used to select how the data areas of bundles are snapshotted before they are updated. */
+    static final String KEY_SNAPSHOT_STRATEGY = PREFIX.concat("snapshotStrategy");
+    /** Configuration key used to set the number of entries of a DP that are read ahead while installing it. */
+    static final String KEY_READ_AHEAD_ENTRIES = PREFIX.concat("readAheadEntries");
+
+    /** Snapshots data areas by compressing them into a ZIP archive. */
+    public static final String SNAPSHOT_STRATEGY_ZIP = "zip";
+    /** Snapshots data areas by copying them to a directory, without compressing them. */
+    public static final String SNAPSHOT_STRATEGY_COPY = "copy";
+    /**
+     * Snapshots data areas by hard linking their files into a directory, copying them only if linking is not possible.
+     * Only suitable for bundles that replace the files in their data area instead of modifying them in place.
+     */
+    public static final String SNAPSHOT_STRATEGY_LINK = "link";
 
     static final boolean DEFAULT_STOP_UNAFFECTED_BUNDLES = true;
     static final boolean DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS = false;
+    static final String DEFAULT_SNAPSHOT_STRATEGY = SNAPSHOT_STRATEGY_ZIP;
+    static final int DEFAULT_READ_AHEAD_ENTRIES = 0;
 
     private final boolean m_stopUnaffectedBundles;
     private final boolean m_allowForeignCustomizers;
+    private final String m_snapshotStrategy;
+    private final int m_readAheadEntries;
 
     /**
      * Creates a new {@link DeploymentAdminConfig} instance with the default settings.
@@ -56,6 +74,28 @@ public class DeploymentAdminConfig {
 
         value = getFrameworkProperty(context, KEY_ALLOW_FOREIGN_CUSTOMIZERS);
         m_allowForeignCustomizers = parseBoolean(value, DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS);
+
+        value = getFrameworkProperty(context, KEY_SNAPSHOT_STRATEGY);
+        m_snapshotStrategy = parseSnapshotStrategy(value, DEFAULT_SNAPSHOT_STRATEGY);
+
+        value = getFrameworkProperty(context, KEY_READ_AHEAD_ENTRIES);
+        m_readAheadEntries = parseNonNegativeInt(value, DEFAULT_READ_AHEAD_ENTRIES);
+    }
+
+    /**
+     * @return the maximum number of entries of a DP that are read (and verified and copied) ahead of their
+     *         installation by a separate thread, or <code>0</code> if a DP should be read sequentially.
+     */
+    public int getReadAheadEntries() {
+        return m_readAheadEntries;
+    }
+
+    /**
+     * @return the strategy to snapshot the data areas of bundles with, one of {@link #SNAPSHOT_STRATEGY_ZIP},
+     *         {@link #SNAPSHOT_STRATEGY_COPY} or {@link #SNAPSHOT_STRATEGY_LINK}.
+     */
+    public String getSnapshotStrategy() {
+        return m_snapshotStrategy;
     }
 
     /**
@@ -81,6 +121,31 @@ public class DeploymentAdminConfig {
         return Boolean.parseBoolean(value);
     }
 
+    private static int parseNonNegativeInt(String value, int dflt) {
+        if (value != null) {
+            try {
+                int result = Integer.parseInt(value.trim());
+                if (result >= 0) {
+                    return result;
+                }
+            }
+            catch (NumberFormatException e) {
+                // Ignore; use the default value...
+            }
+        }
+        return dflt;
+    }
+
+    private static String parseSnapshotStrategy(String value, String dflt) {
+        if (value != null) {
+            value = value.trim().toLowerCase();
+            if (SNAPSHOT_STRATEGY_ZIP.equals(value) || SNAPSHOT_STRATEGY_COPY.equals(value) || SNAPSHOT_STRATEGY_LINK.equals(value)) {
+                return value;
+            }
+        }
+        return dflt;
+    }
+
     private static String getFrameworkProperty(BundleContext context, String key) {
         String prop = context.getProperty(key);
         if (prop == null) {
@@ -192,7 +192,8 @@ public class DeploymentAdminImpl implements DeploymentAdmin, Constants {
                 throw new DeploymentException(CODE_NOT_A_JAR, "Stream does not contain a valid Jar", e);
             }
 
-            source = new StreamDeploymentPackage(jarInput, m_context, this);
+            DeploymentAdminConfig config = new DeploymentAdminConfig(m_context);
+            source = new StreamDeploymentPackage(jarInput, tempContents, config.getReadAheadEntries(), m_context, this);
             String dpSymbolicName = source.getName();
 
             target = getExistingOrEmptyDeploymentPackage(dpSymbolicName);
@@ -217,13 +218,15 @@ public class DeploymentAdminImpl implements DeploymentAdmin, Constants {
             }
 
             try {
-                m_session = new DeploymentSessionImpl(source, target, createInstallCommandChain(), this, new DeploymentAdminConfig(m_context));
+                m_session = new DeploymentSessionImpl(source, target, createInstallCommandChain(), this, config);
                 m_session.call(false /* ignoreExceptions */);
             }
             catch (DeploymentException de) {
                 throw de;
             }
             finally {
+                // Stop reading ahead (if applicable) before closing the JAR input stream...
+                source.close();
                 // We're done at this point with the JAR input stream, close it here as to avoid keeping
                 // files open unnecessary (otherwise it fails on Windows)...
                 Utils.closeSilently(jarInput);
@@ -267,6 +270,9 @@ public class DeploymentAdminImpl implements DeploymentAdmin, Constants {
             return fileDeploymentPackage;
         }
         finally {
+            if (source != null) {
+                source.close();
+            }
             if (tempPackage != null) {
                 if (!Utils.delete(tempPackage, true)) {
                     m_log.log(LogService.LOG_ERROR, "Could not delete temporary deployment package from disk");
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.deploymentadmin;
+
+import static org.apache.felix.deploymentadmin.Utils.closeSilently;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.jar.JarInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reads the entries of a deployment package on a separate thread, ahead of their processing by the deployment
+ * session. Reading an entry from the {@link ContentCopyingJarInputStream} verifies its digest and copies it to the
+ * content directory, so these steps overlap with the installation of the preceding entries. The entries are handed
+ * to the session through a bounded queue of entry names, and their contents are read back from their copies.
+ */
+class PipelinedEntryReader implements Runnable {
+    /** Marks the end of the stream in the queue of entry names. */
+    private static final Object END_OF_STREAM = new Object();
+    /** The maximum time, in milliseconds, to wait for the reading thread to finish when closing. */
+    static final long CLOSE_TIMEOUT = 5000;
+
+    private final JarInputStream m_input;
+    private final File m_contentDir;
+    private final int m_capacity;
+    private final long m_closeTimeout;
+
+    /** The names of the entries read ahead, guarded by this. */
+    private final LinkedList m_entries = new LinkedList();
+    /** The failure that stopped reading, if any, guarded by this. */
+    private IOException m_failure;
+    /** Whether this reader is closed, guarded by this. */
+    private boolean m_closed;
+
+    private Thread m_thread;
+    /** The contents of the current entry, only accessed by the session thread. */
+    private InputStream m_current;
+
+    /**
+     * Creates a new {@link PipelinedEntryReader} instance.
+     *
+     * @param input the stream to read the entries from, its entries should be copied to the given directory;
+     * @param contentDir the directory in which the contents of the entries are copied (compressed);
+     * @param capacity the maximum number of entries to read ahead, > 0.
+     */
+    public PipelinedEntryReader(JarInputStream input, File contentDir, int capacity) {
+        this(input, contentDir, capacity, CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Creates a new {@link PipelinedEntryReader} instance.
+     *
+     * @param input the stream to read the entries from, its entries should be copied to the given directory;
+     * @param contentDir the directory in which the contents of the entries are copied (compressed);
+     * @param capacity the maximum number of entries to read ahead, > 0;
+     * @param closeTimeout the maximum time, in milliseconds, {@link #close()} waits for the reading thread.
+     */
+    PipelinedEntryReader(JarInputStream input, File contentDir, int capacity, long closeTimeout) {
+        m_input = input;
+        m_contentDir = contentDir;
+        m_capacity = capacity;
+        m_closeTimeout = closeTimeout;
+    }
+
+    /**
+     * Starts reading entries on a separate thread.
+     */
+    public synchronized void start() {
+        m_thread = new Thread(this, "DeploymentAdmin-EntryReader");
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    /**
+     * Stops reading entries and waits until the reading thread is finished. As the underlying stream is not ours
+     * to close, a reading thread that is blocked on a stalled stream is interrupted, and only waited for up to the
+     * close timeout; it stops by itself once the stream returns. It is safe to call this method more than once.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            m_closed = true;
+            notifyAll();
+            thread = m_thread;
+            m_thread = null;
+        }
+
+        if (thread != null) {
+            // Wakes up the thread in case it is blocked on an interruptible stream...
+            thread.interrupt();
+
+            boolean interrupted = false;
+            long deadline = System.currentTimeMillis() + m_closeTimeout;
+            long remaining;
+            while (thread.isAlive() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    thread.join(remaining);
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        closeSilently(m_current);
+        m_current = null;
+    }
+
+    /**
+     * @return the contents of the entry last returned by {@link #getNextEntryName()}, never <code>null</code>.
+     */
+    public InputStream getCurrentEntryStream() {
+        if (m_current == null) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return new NonCloseableStream(m_current);
+    }
+
+    /**
+     * Returns the name of the next entry, waiting until it is read if necessary.
+     *
+     * @return the name of the next entry, or <code>null</code> if there are no more entries.
+     * @throws IOException in case reading the stream failed.
+     */
+    public String getNextEntryName() throws IOException {
+        closeSilently(m_current);
+        m_current = null;
+
+        Object entry;
+        synchronized (this) {
+            while (m_entries.isEmpty() && m_failure == null && !m_closed) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the next entry");
+                }
+            }
+            if (m_entries.isEmpty()) {
+                if (m_failure != null) {
+                    throw m_failure;
+                }
+                throw new IOException("Entry reader is closed");
+            }
+            entry = m_entries.getFirst();
+            if (entry == END_OF_STREAM) {
+                return null;
+            }
+            m_entries.removeFirst();
+            notifyAll();
+        }
+
+        String name = (String) entry;
+        File contents = new File(m_contentDir, name);
+        if (contents.isFile()) {
+            m_current = new GZIPInputStream(new FileInputStream(contents));
+        }
+        return name;
+    }
+
+    /**
+     * Reads all entries of the stream, until it is exhausted, reading fails or this reader is closed.
+     */
+    public void run() {
+        byte[] buffer = new byte[8192];
+        try {
+            ZipEntry entry;
+            while ((entry = m_input.getNextJarEntry()) != null) {
+                // Reading the entry verifies and copies its contents...
+                while (m_input.read(buffer, 0, buffer.length) != -1) {
+                    if (isClosed()) {
+                        return;
+                    }
+                }
+                m_input.closeEntry();
+
+                if (!put(entry.getName())) {
+                    return;
+                }
+            }
+            put(END_OF_STREAM);
+        }
+        catch (IOException e) {
+            setFailure(e);
+        }
+        catch (RuntimeException e) {
+            // For example, a SecurityException in case an entry could not be verified...
+            IOException failure = new IOException("Failed to read entry: " + e.getMessage());
+            failure.initCause(e);
+            setFailure(failure);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return m_closed;
+    }
+
+    /**
+     * Adds the given entry to the queue, waiting while the queue is full.
+     *
+     * @return <code>false</code> if this reader is closed or interrupted, <code>true</code> otherwise.
+     */
+    private synchronized boolean put(Object entry) {
+        while (!m_closed && m_entries.size() >= m_capacity) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                m_failure = new InterruptedIOException("Interrupted while reading ahead");
+                notifyAll();
+                return false;
+            }
+        }
+        if (m_closed) {
+            return false;
+        }
+        m_entries.addLast(entry);
+        notifyAll();
+        return true;
+    }
+
+    private synchronized void setFailure(IOException failure) {
+        m_failure = failure;
+        notifyAll();
+    }
+}
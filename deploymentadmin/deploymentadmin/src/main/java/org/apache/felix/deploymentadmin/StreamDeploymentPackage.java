@@ -18,6 +18,7 @@
  */
 package org.apache.felix.deploymentadmin;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -34,6 +35,7 @@ import org.osgi.service.deploymentadmin.DeploymentException;
  */
 public class StreamDeploymentPackage extends AbstractDeploymentPackage {
     private final JarInputStream m_input;
+    private final PipelinedEntryReader m_reader;
     private final List m_names = new ArrayList();
     private boolean m_inMetaInf = true;
 
@@ -45,8 +47,37 @@ public class StreamDeploymentPackage extends AbstractDeploymentPackage {
      * @throws DeploymentException If it was not possible to read a valid deployment package from the specified stream.
      */
     public StreamDeploymentPackage(JarInputStream input, BundleContext bundleContext, DeploymentAdminImpl deploymentAdmin) throws DeploymentException {
+        this(input, null /* contentDir */, 0 /* readAheadEntries */, bundleContext, deploymentAdmin);
+    }
+
+    /**
+     * Creates an instance of this class that optionally reads its entries ahead on a separate thread.
+     *
+     * @param input The stream from which the deployment package can be read, should copy its entries to the given directory when reading ahead.
+     * @param contentDir The directory in which the input copies the entries of the deployment package.
+     * @param readAheadEntries The maximum number of entries to read ahead, or <code>0</code> to read the stream sequentially.
+     * @param bundleContext The bundle context.
+     * @throws DeploymentException If it was not possible to read a valid deployment package from the specified stream.
+     */
+    public StreamDeploymentPackage(JarInputStream input, File contentDir, int readAheadEntries, BundleContext bundleContext, DeploymentAdminImpl deploymentAdmin) throws DeploymentException {
         super(input.getManifest(), bundleContext, deploymentAdmin);
         m_input = input;
+        if (readAheadEntries > 0) {
+            m_reader = new PipelinedEntryReader(input, contentDir, readAheadEntries);
+            m_reader.start();
+        }
+        else {
+            m_reader = null;
+        }
+    }
+
+    /**
+     * Stops reading entries ahead, if applicable. Should be called before the underlying stream is closed.
+     */
+    public void close() {
+        if (m_reader != null) {
+            m_reader.close();
+        }
     }
 
     public InputStream getBundleStream(String symbolicName) {
@@ -54,6 +85,9 @@ public class StreamDeploymentPackage extends AbstractDeploymentPackage {
     }
 
     public InputStream getCurrentEntryStream() {
+        if (m_reader != null) {
+            return m_reader.getCurrentEntryStream();
+        }
         return new NonCloseableStream(m_input);
     }
 
@@ -62,11 +96,10 @@ public class StreamDeploymentPackage extends AbstractDeploymentPackage {
 
         boolean metaInfFile = true;
         do {
-            ZipEntry nextEntry = m_input.getNextJarEntry();
-            if (nextEntry == null) {
+            name = getNextEntryName();
+            if (name == null) {
                 return null;
             }
-            name = nextEntry.getName();
 
             // FELIX-518: do not try to process signature or localization files...
             metaInfFile = isMetaInfFile(name);
@@ -87,6 +120,14 @@ public class StreamDeploymentPackage extends AbstractDeploymentPackage {
         return getAbstractInfoByPath(name);
     }
 
+    private String getNextEntryName() throws IOException {
+        if (m_reader != null) {
+            return m_reader.getNextEntryName();
+        }
+        ZipEntry nextEntry = m_input.getNextJarEntry();
+        return (nextEntry == null) ? null : nextEntry.getName();
+    }
+
     // This only works for those resources that have been read from the stream already, no guarantees for remainder of
     // stream
     public BundleInfoImpl[] getOrderedBundleInfos() {
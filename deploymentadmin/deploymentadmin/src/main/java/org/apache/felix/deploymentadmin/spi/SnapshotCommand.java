@@ -24,12 +24,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.felix.deploymentadmin.AbstractDeploymentPackage;
+import org.apache.felix.deploymentadmin.DeploymentAdminConfig;
 import org.apache.felix.deploymentadmin.Utils;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -41,6 +43,29 @@ public class SnapshotCommand extends Command {
     /** The ZIP specification mandates that directory-entries end with a forward slash (on all platforms). */
     static final String FORWARD_SLASH = "/";
 
+    /** <code>java.nio.file.Files#createLink(Path, Path)</code>, only available as of Java 7. */
+    private static final Method CREATE_LINK;
+    /** <code>java.io.File#toPath()</code>, only available as of Java 7. */
+    private static final Method TO_PATH;
+
+    static {
+        Method createLink = null;
+        Method toPath = null;
+        try {
+            Class pathClass = Class.forName("java.nio.file.Path");
+            Class filesClass = Class.forName("java.nio.file.Files");
+            createLink = filesClass.getMethod("createLink", new Class[] { pathClass, pathClass });
+            toPath = File.class.getMethod("toPath", (Class[]) null);
+        }
+        catch (Exception e) {
+            // Hard links are not supported; snapshots are copied instead...
+            createLink = null;
+            toPath = null;
+        }
+        CREATE_LINK = createLink;
+        TO_PATH = toPath;
+    }
+
     private final GetStorageAreaCommand m_getStorageAreaCommand;
 
     public SnapshotCommand(GetStorageAreaCommand getStorageAreaCommand) {
@@ -50,6 +75,7 @@ public class SnapshotCommand extends Command {
     protected void doExecute(DeploymentSessionImpl session) throws Exception {
         AbstractDeploymentPackage target = session.getTargetAbstractDeploymentPackage();
         BundleContext context = session.getBundleContext();
+        String strategy = session.getConfiguration().getSnapshotStrategy();
 
         BundleInfo[] infos = target.getBundleInfos();
         Map storageAreas = m_getStorageAreaCommand.getStorageAreas();
@@ -67,14 +93,13 @@ public class SnapshotCommand extends Command {
                     snapshot.mkdirs();
                     snapshot = new File(snapshot, infos[i].getSymbolicName());
                     try {
-                        snapshot.createNewFile();
-                        store(root, snapshot);
+                        createSnapshot(session, strategy, root, snapshot);
                         addRollback(new RestoreSnapshotRunnable(session, snapshot, root));
                         addCommit(new DeleteSnapshotRunnable(session, snapshot));
                     }
                     catch (Exception e) {
                         session.getLog().log(LogService.LOG_WARNING, "Could not access storage area of bundle '" + symbolicName + "'!", e);
-                        snapshot.delete();
+                        Utils.delete(snapshot, true /* deleteRoot */);
                     }
                 }
                 else {
@@ -84,6 +109,61 @@ public class SnapshotCommand extends Command {
         }
     }
 
+    /**
+     * Restores a snapshot directory created by {@link #storeDirectory(File, File, boolean)} by moving its entries to
+     * the given target directory.
+     * 
+     * @param snapshotDir the snapshot directory to restore;
+     * @param targetDir the (empty) directory to restore the snapshot in.
+     * @throws IOException in case one of the entries could not be moved.
+     */
+    protected static void restoreDirectory(File snapshotDir, File targetDir) throws IOException {
+        File[] entries = snapshotDir.listFiles();
+        if (entries == null) {
+            throw new IOException("Failed to list snapshot directory " + snapshotDir + "!");
+        }
+        for (int i = 0; i < entries.length; i++) {
+            File target = new File(targetDir, entries[i].getName());
+            if (!Utils.rename(entries[i], target)) {
+                throw new IOException("Failed to restore " + target + "!");
+            }
+        }
+    }
+
+    /**
+     * Stores the contents of the given source directory in the given target directory, either by copying its files
+     * or by creating hard links to them. Files that cannot be linked (for example, because hard links are not
+     * supported, or the target directory resides on another file system) are copied instead.
+     * <p>
+     * Note that a hard link shares its contents with the original file, hence, a linked snapshot only remains
+     * intact if the original files are replaced instead of modified in place.
+     * </p>
+     * 
+     * @param sourceDir the directory to snapshot;
+     * @param targetDir the snapshot directory, will be created if it does not exist;
+     * @param link <code>true</code> to hard link files where possible, <code>false</code> to copy all files.
+     * @throws IOException in case the snapshot could not be created.
+     */
+    protected static void storeDirectory(File sourceDir, File targetDir, boolean link) throws IOException {
+        if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+            throw new IOException("Failed to create snapshot directory " + targetDir + "!");
+        }
+
+        File[] entries = sourceDir.listFiles();
+        if (entries == null) {
+            throw new IOException("Failed to list directory " + sourceDir + "!");
+        }
+        for (int i = 0; i < entries.length; i++) {
+            File target = new File(targetDir, entries[i].getName());
+            if (entries[i].isDirectory()) {
+                storeDirectory(entries[i], target, link);
+            }
+            else if (!link || !createLink(entries[i], target)) {
+                copy(entries[i], target);
+            }
+        }
+    }
+
     protected static void restore(File archiveFile, File targetDir) throws IOException {
         ZipInputStream input = null;
         try {
@@ -142,6 +222,58 @@ public class SnapshotCommand extends Command {
         }
     }
 
+    /**
+     * Creates a snapshot of the given data area using the given strategy. Falls back to a ZIP archive in case a
+     * directory-based snapshot cannot be created.
+     */
+    private static void createSnapshot(DeploymentSessionImpl session, String strategy, File root, File snapshot) throws IOException {
+        // Remove any left-overs of an earlier snapshot...
+        Utils.delete(snapshot, true /* deleteRoot */);
+
+        if (!DeploymentAdminConfig.SNAPSHOT_STRATEGY_ZIP.equals(strategy)) {
+            try {
+                storeDirectory(root, snapshot, DeploymentAdminConfig.SNAPSHOT_STRATEGY_LINK.equals(strategy));
+                return;
+            }
+            catch (IOException e) {
+                session.getLog().log(LogService.LOG_WARNING, "Could not snapshot storage area " + root + " to a directory, using an archive instead!", e);
+                Utils.delete(snapshot, true /* deleteRoot */);
+            }
+        }
+
+        snapshot.createNewFile();
+        store(root, snapshot);
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        InputStream input = null;
+        OutputStream output = null;
+        try {
+            input = new FileInputStream(source);
+            output = new FileOutputStream(target);
+            copy(input, output);
+        }
+        finally {
+            closeSilently(output);
+            closeSilently(input);
+        }
+        target.setLastModified(source.lastModified());
+    }
+
+    private static boolean createLink(File existing, File link) {
+        if (CREATE_LINK == null) {
+            return false;
+        }
+        try {
+            CREATE_LINK.invoke(null, new Object[] { TO_PATH.invoke(link, (Object[]) null), TO_PATH.invoke(existing, (Object[]) null) });
+            return true;
+        }
+        catch (Exception e) {
+            // Not supported by the file system, or the files reside on different file systems...
+            return false;
+        }
+    }
+
     private static void store(ZipOutputStream output, File sourceDir, String entryName) throws IOException {
         File entry = new File(sourceDir, entryName);
 
@@ -192,7 +324,7 @@ public class SnapshotCommand extends Command {
         }
 
         protected void doRun() {
-            if (!m_snapshot.delete()) {
+            if (!Utils.delete(m_snapshot, true /* deleteRoot */)) {
                 m_session.getLog().log(LogService.LOG_WARNING, "Failed to delete snapshot in " + m_snapshot + "!");
             }
         }
@@ -212,10 +344,15 @@ public class SnapshotCommand extends Command {
         protected void doRun() throws Exception {
             try {
                 Utils.delete(m_root, false /* deleteRoot */);
-                restore(m_snapshot, m_root);
+                if (m_snapshot.isDirectory()) {
+                    restoreDirectory(m_snapshot, m_root);
+                }
+                else {
+                    restore(m_snapshot, m_root);
+                }
             }
             finally {
-                m_snapshot.delete();
+                Utils.delete(m_snapshot, true /* deleteRoot */);
             }
         }
 
@@ -37,6 +37,8 @@ public class DeploymentAdminConfigTest extends TestCase {
     private static final String KEY_STOP_UNAFFECTED_BUNDLE = DeploymentAdminConfig.KEY_STOP_UNAFFECTED_BUNDLE;
     private static final String KEY_STOP_UNAFFECTED_BUNDLES = DeploymentAdminConfig.KEY_STOP_UNAFFECTED_BUNDLES;
     private static final String KEY_ALLOW_FOREIGN_CUSTOMIZERS = DeploymentAdminConfig.KEY_ALLOW_FOREIGN_CUSTOMIZERS;
+    private static final String KEY_SNAPSHOT_STRATEGY = DeploymentAdminConfig.KEY_SNAPSHOT_STRATEGY;
+    private static final String KEY_READ_AHEAD_ENTRIES = DeploymentAdminConfig.KEY_READ_AHEAD_ENTRIES;
 
     private static final boolean DEFAULT_STOP_UNAFFECTED_BUNDLES = DeploymentAdminConfig.DEFAULT_STOP_UNAFFECTED_BUNDLES;
     private static final boolean DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS = DeploymentAdminConfig.DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS;
@@ -51,6 +53,8 @@ public class DeploymentAdminConfigTest extends TestCase {
 
         assertEquals(DEFAULT_STOP_UNAFFECTED_BUNDLES, config.isStopUnaffectedBundles());
         assertEquals(DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS, config.isAllowForeignCustomizers());
+        assertEquals(DeploymentAdminConfig.DEFAULT_SNAPSHOT_STRATEGY, config.getSnapshotStrategy());
+        assertEquals(DeploymentAdminConfig.DEFAULT_READ_AHEAD_ENTRIES, config.getReadAheadEntries());
     }
 
     /**
@@ -66,6 +70,34 @@ public class DeploymentAdminConfigTest extends TestCase {
         assertEquals(!DEFAULT_ALLOW_FOREIGN_CUSTOMIZERS, config.isAllowForeignCustomizers());
     }
 
+    /**
+     * Tests that the snapshot strategy can be configured, and that unknown strategies are ignored.
+     */
+    public void testFrameworkConfigurationSnapshotStrategyOk() throws ConfigurationException {
+        m_fwProperties.put(KEY_SNAPSHOT_STRATEGY, " Link ");
+        assertEquals(DeploymentAdminConfig.SNAPSHOT_STRATEGY_LINK, createDeploymentAdminConfig().getSnapshotStrategy());
+
+        m_fwProperties.put(KEY_SNAPSHOT_STRATEGY, "copy");
+        assertEquals(DeploymentAdminConfig.SNAPSHOT_STRATEGY_COPY, createDeploymentAdminConfig().getSnapshotStrategy());
+
+        m_fwProperties.put(KEY_SNAPSHOT_STRATEGY, "reflink");
+        assertEquals(DeploymentAdminConfig.DEFAULT_SNAPSHOT_STRATEGY, createDeploymentAdminConfig().getSnapshotStrategy());
+    }
+
+    /**
+     * Tests that the number of read ahead entries can be configured, and that invalid values are ignored.
+     */
+    public void testFrameworkConfigurationReadAheadEntriesOk() throws ConfigurationException {
+        m_fwProperties.put(KEY_READ_AHEAD_ENTRIES, "4");
+        assertEquals(4, createDeploymentAdminConfig().getReadAheadEntries());
+
+        m_fwProperties.put(KEY_READ_AHEAD_ENTRIES, "-1");
+        assertEquals(DeploymentAdminConfig.DEFAULT_READ_AHEAD_ENTRIES, createDeploymentAdminConfig().getReadAheadEntries());
+
+        m_fwProperties.put(KEY_READ_AHEAD_ENTRIES, "many");
+        assertEquals(DeploymentAdminConfig.DEFAULT_READ_AHEAD_ENTRIES, createDeploymentAdminConfig().getReadAheadEntries());
+    }
+
     /**
      * Tests the configuration values of {@link DeploymentAdminImpl} without any explicit configuration.
      */
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.deploymentadmin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for {@link PipelinedEntryReader}.
+ */
+public class PipelinedEntryReaderTest extends TestCase {
+    private static final int ENTRY_COUNT = 10;
+    private static final int ENTRY_SIZE = 4096;
+
+    private File m_tempDir;
+    private File m_contentDir;
+    private JarInputStream m_input;
+    private PipelinedEntryReader m_reader;
+
+    /**
+     * Tests that all entries are returned in order, with their contents.
+     */
+    public void testReadAllEntriesOk() throws Exception {
+        createReader(createJar(), 2 /* capacity */);
+
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertEquals(getEntryName(i), m_reader.getNextEntryName());
+
+            byte[] contents = readFully(m_reader.getCurrentEntryStream());
+            assertEquals(ENTRY_SIZE, contents.length);
+            for (int j = 0; j < contents.length; j++) {
+                assertEquals((byte) i, contents[j]);
+            }
+        }
+
+        assertNull(m_reader.getNextEntryName());
+        assertNull(m_reader.getNextEntryName());
+    }
+
+    /**
+     * Tests that no more entries are read ahead than the capacity of the reader.
+     */
+    public void testReadAheadIsBoundedOk() throws Exception {
+        createReader(createJar(), 2 /* capacity */);
+
+        // The reader queues two entries, and blocks after reading the third one...
+        File third = new File(m_contentDir, getEntryName(2));
+        for (int i = 0; i < 100 && !third.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(third.exists());
+
+        Thread.sleep(100);
+        assertFalse(new File(m_contentDir, getEntryName(3)).exists());
+
+        // Taking an entry lets the reader continue...
+        assertEquals(getEntryName(0), m_reader.getNextEntryName());
+        File fourth = new File(m_contentDir, getEntryName(3));
+        for (int i = 0; i < 100 && !fourth.exists(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(fourth.exists());
+    }
+
+    /**
+     * Tests that a failure to read the stream is reported after the entries read before it.
+     */
+    public void testReadFailureIsReportedOk() throws Exception {
+        byte[] jar = createJar();
+        byte[] truncated = new byte[jar.length / 2];
+        System.arraycopy(jar, 0, truncated, 0, truncated.length);
+
+        createReader(truncated, 1 /* capacity */);
+
+        int count = 0;
+        try {
+            while (m_reader.getNextEntryName() != null) {
+                count++;
+            }
+            fail("IOException expected!");
+        }
+        catch (IOException e) {
+            // Ok; expected...
+        }
+        assertTrue(count > 0 && count < ENTRY_COUNT);
+    }
+
+    /**
+     * Tests that closing the reader stops the reading thread.
+     */
+    public void testCloseStopsReadingOk() throws Exception {
+        createReader(createJar(), 1 /* capacity */);
+
+        assertEquals(getEntryName(0), m_reader.getNextEntryName());
+        m_reader.close();
+
+        try {
+            m_reader.getNextEntryName();
+            fail("IOException expected!");
+        }
+        catch (IOException e) {
+            // Ok; expected...
+        }
+        assertFalse(new File(m_contentDir, getEntryName(ENTRY_COUNT - 1)).exists());
+    }
+
+    /**
+     * Tests that closing the reader wakes up a reading thread that is blocked on an interruptible stream.
+     */
+    public void testCloseInterruptsStalledReadOk() throws Exception {
+        byte[] jar = createJar();
+        PipedOutputStream pos = new PipedOutputStream();
+        PipedInputStream pis = new PipedInputStream(pos, jar.length);
+        // Only the first half of the JAR arrives, after which the stream stalls...
+        pos.write(jar, 0, jar.length / 2);
+
+        createReader(pis, 1 /* capacity */, PipelinedEntryReader.CLOSE_TIMEOUT);
+        assertEquals(getEntryName(0), m_reader.getNextEntryName());
+
+        long start = System.currentTimeMillis();
+        m_reader.close();
+        assertTrue(System.currentTimeMillis() - start < PipelinedEntryReader.CLOSE_TIMEOUT);
+
+        pos.close();
+    }
+
+    /**
+     * Tests that closing the reader does not wait indefinitely for a reading thread that is blocked on a stalled
+     * stream.
+     */
+    public void testCloseDoesNotWaitForStalledReadOk() throws Exception {
+        byte[] jar = createJar();
+        StalledInputStream stalled = new StalledInputStream();
+        InputStream is = new SequenceInputStream(new ByteArrayInputStream(jar, 0, jar.length / 2), stalled);
+
+        try {
+            createReader(is, 1 /* capacity */, 100 /* closeTimeout */);
+            assertEquals(getEntryName(0), m_reader.getNextEntryName());
+
+            long start = System.currentTimeMillis();
+            m_reader.close();
+            assertTrue(System.currentTimeMillis() - start < PipelinedEntryReader.CLOSE_TIMEOUT);
+        }
+        finally {
+            stalled.release();
+        }
+    }
+
+    protected void setUp() throws Exception {
+        m_tempDir = File.createTempFile("pipelined_test", null);
+        m_tempDir.delete();
+        m_tempDir.mkdir();
+
+        m_contentDir = new File(m_tempDir, "contents");
+        m_contentDir.mkdir();
+    }
+
+    protected void tearDown() throws Exception {
+        if (m_reader != null) {
+            m_reader.close();
+        }
+        if (m_input != null) {
+            m_input.close();
+        }
+        Utils.delete(m_tempDir, true);
+    }
+
+    private void createReader(byte[] jar, int capacity) throws IOException {
+        createReader(new ByteArrayInputStream(jar), capacity, PipelinedEntryReader.CLOSE_TIMEOUT);
+    }
+
+    private void createReader(InputStream is, int capacity, long closeTimeout) throws IOException {
+        m_input = new ContentCopyingJarInputStream(is, new File(m_tempDir, "index.txt"), m_contentDir);
+        m_reader = new PipelinedEntryReader(m_input, m_contentDir, capacity, closeTimeout);
+        m_reader.start();
+    }
+
+    private byte[] createJar() throws IOException {
+        Manifest man = new Manifest();
+        man.getMainAttributes().putValue("Manifest-Version", "1.0");
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JarOutputStream jos = new JarOutputStream(baos, man);
+        try {
+            for (int i = 0; i < ENTRY_COUNT; i++) {
+                jos.putNextEntry(new JarEntry(getEntryName(i)));
+                byte[] contents = new byte[ENTRY_SIZE];
+                for (int j = 0; j < contents.length; j++) {
+                    contents[j] = (byte) i;
+                }
+                jos.write(contents);
+                jos.closeEntry();
+            }
+        }
+        finally {
+            jos.close();
+        }
+        return baos.toByteArray();
+    }
+
+    private static String getEntryName(int i) {
+        return "sub/" + i;
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Blocks all reads until released, ignoring interrupts, like a stalled network stream.
+     */
+    private static class StalledInputStream extends InputStream {
+        private boolean m_released;
+
+        public synchronized int read() throws IOException {
+            while (!m_released) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    // Ignore, keep stalling...
+                }
+            }
+            return -1;
+        }
+
+        public synchronized void release() {
+            m_released = true;
+            notifyAll();
+        }
+    }
+}
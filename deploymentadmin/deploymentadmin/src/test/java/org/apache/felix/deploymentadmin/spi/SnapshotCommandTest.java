@@ -83,6 +83,61 @@ public class SnapshotCommandTest extends TestCase {
         verifyArchiveContents(archiveFile, 3 /* dirs */, 6 /* files */);
     }
 
+    /**
+     * Tests that a directory (data-area) can be copied to a snapshot directory, which is not affected by later
+     * modifications of the data-area, and that such a snapshot can be correctly restored.
+     */
+    public void testStoreAndRestoreCopiedDirectoryOk() throws Exception {
+        File baseDir = createFileHierarchy();
+        File expectedDir = createTempDir();
+        SnapshotCommand.storeDirectory(baseDir, expectedDir, false /* link */);
+
+        File snapshotDir = new File(createTempDir(), "snapshot");
+        SnapshotCommand.storeDirectory(baseDir, snapshotDir, false /* link */);
+        verifyDirContents(baseDir, snapshotDir);
+
+        // Modify the data-area in place...
+        FileOutputStream fos = new FileOutputStream(new File(baseDir, "file1"), true /* append */);
+        try {
+            fos.write(new byte[] { 1, 2, 3 });
+        }
+        finally {
+            close(fos);
+        }
+        createFile(new File(baseDir, "file7"), 1024);
+
+        Utils.delete(baseDir, false /* deleteRoot */);
+        SnapshotCommand.restoreDirectory(snapshotDir, baseDir);
+
+        verifyDirContents(expectedDir, baseDir);
+        assertFalse(new File(baseDir, "file7").exists());
+    }
+
+    /**
+     * Tests that a directory (data-area) can be linked to a snapshot directory, which is not affected by replacing
+     * the files of the data-area, and that such a snapshot can be correctly restored.
+     */
+    public void testStoreAndRestoreLinkedDirectoryOk() throws Exception {
+        File baseDir = createFileHierarchy();
+        File expectedDir = createTempDir();
+        SnapshotCommand.storeDirectory(baseDir, expectedDir, false /* link */);
+
+        File snapshotDir = new File(createTempDir(), "snapshot");
+        SnapshotCommand.storeDirectory(baseDir, snapshotDir, true /* link */);
+        verifyDirContents(baseDir, snapshotDir);
+
+        // Replace a file of the data-area...
+        File file = new File(new File(baseDir, "dir1"), "file2");
+        assertTrue(file.delete());
+        createFile(file, 512);
+        verifyDirContents(expectedDir, snapshotDir);
+
+        Utils.delete(baseDir, false /* deleteRoot */);
+        SnapshotCommand.restoreDirectory(snapshotDir, baseDir);
+
+        verifyDirContents(expectedDir, baseDir);
+    }
+
     protected void tearDown() throws Exception {
         Iterator iter = m_cleanup.iterator();
         while (iter.hasNext()) {
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.fileinstall.internal;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.fileinstall.ArtifactTransformer;
+import org.apache.felix.fileinstall.ArtifactUrlTransformer;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+
+/**
+ * The headers identifying a bundle artifact.
+ */
+class BundleHeaders
+{
+    final String symbolicName;
+    final Version version;
+
+    BundleHeaders(String symbolicName, Version version)
+    {
+        this.symbolicName = symbolicName;
+        this.version = version;
+    }
+
+    static String key(String symbolicName, Version version)
+    {
+        return symbolicName + "/" + version;
+    }
+
+    /**
+     * Read the headers of the bundle an artifact is going to be installed from.
+     *
+     * @param artifact an artifact handled by an {@link ArtifactUrlTransformer}
+     *                 or an {@link ArtifactTransformer}
+     * @return the headers or null if they can't be read
+     */
+    static BundleHeaders read(Artifact artifact)
+    {
+        try
+        {
+            InputStream in;
+            if (artifact.getListener() instanceof ArtifactUrlTransformer)
+            {
+                URL transformed = artifact.getTransformedUrl();
+                in = transformed.openStream();
+            }
+            else
+            {
+                File transformed = artifact.getTransformed();
+                in = new FileInputStream(transformed != null ? transformed : artifact.getPath());
+            }
+            try
+            {
+                return read(artifact.getPath().toString(), new BufferedInputStream(in));
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Read the headers from the beginning of a bundle stream. The stream
+     * is left open.
+     */
+    static BundleHeaders read(String bundleLocation, InputStream is) throws IOException, BundleException
+    {
+        // don't let the jar stream close the underlying stream, but close it
+        // nevertheless to release its inflater
+        JarInputStream jar = new JarInputStream(new FilterInputStream(is)
+        {
+            @Override
+            public void close()
+            {
+            }
+        });
+        Manifest m;
+        try
+        {
+            m = jar.getManifest();
+        }
+        finally
+        {
+            jar.close();
+        }
+        if (m == null)
+        {
+            throw new BundleException(
+                    "The bundle " + bundleLocation + " does not have a META-INF/MANIFEST.MF! " +
+                            "Make sure, META-INF and MANIFEST.MF are the first 2 entries in your JAR!");
+        }
+        String sn = m.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLICNAME);
+        if (sn != null && sn.indexOf(';') >= 0)
+        {
+            // strip directives like singleton:=true
+            sn = sn.substring(0, sn.indexOf(';'));
+        }
+        sn = sn != null ? sn.trim() : null;
+        String vStr = m.getMainAttributes().getValue(Constants.BUNDLE_VERSION);
+        Version v = vStr == null ? Version.emptyVersion : Version.parseVersion(vStr);
+        return new BundleHeaders(sn, v);
+    }
+}
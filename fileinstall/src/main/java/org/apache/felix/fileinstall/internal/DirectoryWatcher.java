@@ -39,9 +39,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
 import java.util.regex.Pattern;
 
 import org.apache.felix.fileinstall.ArtifactInstaller;
@@ -63,6 +68,9 @@ import org.osgi.framework.Version;
 import org.osgi.framework.startlevel.BundleStartLevel;
 import org.osgi.framework.startlevel.FrameworkStartLevel;
 import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
 
 /**
  * -DirectoryWatcher-
@@ -110,6 +118,8 @@ public class DirectoryWatcher extends Thread implements BundleListener
     public final static String FRAGMENT_SCOPE = "felix.fileinstall.fragmentRefreshScope";
     public final static String DISABLE_NIO2 = "felix.fileinstall.disableNio2";
     public final static String SUBDIR_MODE = "felix.fileinstall.subdir.mode";
+    public final static String RECONCILE = "felix.fileinstall.reconcile";
+    public final static String BATCH_THREADS = "felix.fileinstall.batch.threads";
 
     public final static String SCOPE_NONE = "none";
     public final static String SCOPE_MANAGED = "managed";
@@ -124,6 +134,8 @@ public class DirectoryWatcher extends Thread implements BundleListener
     File watchedDirectory;
     File tmpDir;
     long poll;
+    long reconcile;
+    int batchThreads;
     int logLevel;
     boolean startBundles;
     boolean useStartTransient;
@@ -147,6 +159,9 @@ public class DirectoryWatcher extends Thread implements BundleListener
     // The scanner to report files changes
     Scanner scanner;
 
+    // The threads computing checksums and reading headers of a batch, or null
+    ExecutorService batchExecutor;
+
     // Represents files that could not be processed because of a missing artifact listener
     final Set<File> processingFailures = new HashSet<File>();
     
@@ -163,6 +178,10 @@ public class DirectoryWatcher extends Thread implements BundleListener
     // which may result in an attempt to start the watched bundles
     private AtomicBoolean stateChanged = new AtomicBoolean();
 
+    // whether the main loop is waiting without any pending file change,
+    // in which case a file event ends the wait early
+    private boolean idle;
+
     public DirectoryWatcher(FileInstall fileInstall, Map<String, String> properties, BundleContext context)
     {
         super("fileinstall-" + getThreadName(properties));
@@ -171,6 +190,8 @@ public class DirectoryWatcher extends Thread implements BundleListener
         this.context = context;
         systemBundle = context.getBundle(Constants.SYSTEM_BUNDLE_LOCATION);
         poll = getLong(properties, POLL, 2000);
+        reconcile = getLong(properties, RECONCILE, 300000);
+        batchThreads = getInt(properties, BATCH_THREADS, Runtime.getRuntime().availableProcessors());
         logLevel = getInt(properties, LOG_LEVEL, Util.getGlobalLogLevel(context));
         originatingFileName = properties.get(FILENAME);
         watchedDirectory = getFile(properties, DIR, new File("./load"));
@@ -194,11 +215,33 @@ public class DirectoryWatcher extends Thread implements BundleListener
             scanner = new Scanner(watchedDirectory, filter, properties.get(SUBDIR_MODE));
         } else {
             try {
-                scanner = new WatcherScanner(context, watchedDirectory, filter, properties.get(SUBDIR_MODE));
+                scanner = new WatcherScanner(context, watchedDirectory, filter, properties.get(SUBDIR_MODE), reconcile);
             } catch (Throwable t) {
                 scanner = new Scanner(watchedDirectory, filter, properties.get(SUBDIR_MODE));
             }
         }
+        if (batchThreads > 1) {
+            batchExecutor = createBatchExecutor();
+            scanner.setExecutor(batchExecutor, batchThreads);
+        }
+    }
+
+    /**
+     * Create the executor for batches. Its threads are only started when
+     * a batch is processed, and stop again once they are idle.
+     */
+    private ExecutorService createBatchExecutor()
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(batchThreads, batchThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, getName() + "-batch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     private void verifyWatchedDir()
@@ -302,6 +345,14 @@ public class DirectoryWatcher extends Thread implements BundleListener
             fileInstall.lock.readLock().unlock();
         }
 
+        if (scanner instanceof WatcherScanner) {
+            ((WatcherScanner) scanner).setChangeListener(new Runnable() {
+                public void run() {
+                    fileChanged();
+                }
+            });
+        }
+
         while (!interrupted()) {
             try {
                 FrameworkStartLevel startLevelSvc = systemBundle.adapt(FrameworkStartLevel.class);
@@ -317,7 +368,16 @@ public class DirectoryWatcher extends Thread implements BundleListener
                     }
                 }
                 synchronized (this) {
-                    wait(poll);
+                    // Changes waiting for their checksum to settle are checked
+                    // again after a full poll interval, otherwise a file event
+                    // triggers the next scan right away.
+                    idle = scanner instanceof WatcherScanner
+                            && !((WatcherScanner) scanner).hasPendingChanges();
+                    try {
+                        wait(poll);
+                    } finally {
+                        idle = false;
+                    }
                 }
             } catch (InterruptedException e) {
                 interrupt();
@@ -334,6 +394,20 @@ public class DirectoryWatcher extends Thread implements BundleListener
         }
     }
 
+    /**
+     * Called by the watch service when a file has been changed.
+     */
+    void fileChanged()
+    {
+        synchronized (this)
+        {
+            if (idle)
+            {
+                notifyAll();
+            }
+        }
+    }
+
     public void bundleChanged(BundleEvent bundleEvent)
     {
         int type = bundleEvent.getType();
@@ -791,6 +865,10 @@ public class DirectoryWatcher extends Thread implements BundleListener
         {
             // Ignore
         }
+        if (batchExecutor != null)
+        {
+            batchExecutor.shutdownNow();
+        }
         try
         {
             join(10000);
@@ -877,11 +955,16 @@ public class DirectoryWatcher extends Thread implements BundleListener
      * @param artifacts Collection of {@link Artifact}s to be installed
      * @return List of Bundles just installed
      */
-    private Collection<Bundle> install(Collection<Artifact> artifacts)
+    private Collection<Bundle> install(Collection<Artifact> artifacts) throws InterruptedException
     {
         List<Bundle> bundles = new ArrayList<Bundle>();
+        if (artifacts.isEmpty()) {
+            return bundles;
+        }
+        Map<Artifact, BundleHeaders> headers = readHeaders(artifacts);
+        Map<String, Bundle> installed = indexBundles();
         for (Artifact artifact : artifacts) {
-            Bundle bundle = install(artifact);
+            Bundle bundle = install(artifact, headers.get(artifact), installed);
             if (bundle != null) {
                 bundles.add(bundle);
             }
@@ -889,6 +972,68 @@ public class DirectoryWatcher extends Thread implements BundleListener
         return bundles;
     }
 
+    /**
+     * Read the symbolic name and version of the bundles to install ahead of
+     * the installation, using up to {@link #BATCH_THREADS} threads.
+     * Artifacts whose headers can not be read are left out, they are read
+     * again and reported when installed.
+     */
+    private Map<Artifact, BundleHeaders> readHeaders(Collection<Artifact> artifacts) throws InterruptedException
+    {
+        final Map<Artifact, BundleHeaders> headers = new ConcurrentHashMap<Artifact, BundleHeaders>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Artifact artifact : artifacts) {
+            if (!(artifact.getListener() instanceof ArtifactUrlTransformer)
+                    && !(artifact.getListener() instanceof ArtifactTransformer)) {
+                continue;
+            }
+            Artifact badArtifact = installationFailures.get(artifact.getPath());
+            if (badArtifact != null && badArtifact.getChecksum() == artifact.getChecksum()) {
+                continue;
+            }
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    BundleHeaders h = BundleHeaders.read(artifact);
+                    if (h != null) {
+                        headers.put(artifact, h);
+                    }
+                    return null;
+                }
+            });
+        }
+        if (batchExecutor != null && tasks.size() > 1) {
+            batchExecutor.invokeAll(tasks);
+        } else {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    // can't happen
+                }
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Index the installed bundles by symbolic name and version, so that
+     * installing a batch of artifacts does not look at all bundles for
+     * each artifact.
+     */
+    private Map<String, Bundle> indexBundles()
+    {
+        Map<String, Bundle> index = new HashMap<String, Bundle>();
+        for (Bundle b : context.getBundles()) {
+            if (b.getSymbolicName() != null) {
+                String key = BundleHeaders.key(b.getSymbolicName(), b.getVersion());
+                if (!index.containsKey(key)) {
+                    index.put(key, b);
+                }
+            }
+        }
+        return index;
+    }
+
     /**
      * This method uninstalls a collection of artifacts.
      * @param artifacts Collection of {@link Artifact}s to be uninstalled
@@ -937,7 +1082,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
      * @param artifact the artifact to be installed
      * @return Bundle object that was installed
      */
-    private Bundle install(Artifact artifact)
+    private Bundle install(Artifact artifact, BundleHeaders headers, Map<String, Bundle> installed)
     {
         File path = artifact.getPath();
         Bundle bundle = null;
@@ -960,7 +1105,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
                 URL transformed = artifact.getTransformedUrl();
                 String location = transformed.toString();
                 BufferedInputStream in = new BufferedInputStream(transformed.openStream());
-                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified);
+                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified, headers, installed);
                 artifact.setBundleId(bundle.getBundleId());
             }
             // if the listener is an artifact transformer
@@ -974,7 +1119,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
                 File transformed = artifact.getTransformed();
                 String location = path.toURI().normalize().toString();
                 BufferedInputStream in = new BufferedInputStream(new FileInputStream(transformed != null ? transformed : path));
-                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified);
+                bundle = installOrUpdateBundle(location, in, artifact.getChecksum(), modified, headers, installed);
                 artifact.setBundleId(bundle.getBundleId());
             }
             installationFailures.remove(path);
@@ -993,50 +1138,41 @@ public class DirectoryWatcher extends Thread implements BundleListener
     }
 
     private Bundle installOrUpdateBundle(
-        String bundleLocation, BufferedInputStream is, long checksum, AtomicBoolean modified)
+        String bundleLocation, BufferedInputStream is, long checksum, AtomicBoolean modified,
+        BundleHeaders headers, Map<String, Bundle> installed)
         throws IOException, BundleException
     {
-        JarInputStream jar = null;
         try {
-            is.mark(256 * 1024);
-            jar = new JarInputStream(is);
-            Manifest m = jar.getManifest();
-            if( m == null ) {
-                throw new BundleException(
-                        "The bundle " + bundleLocation + " does not have a META-INF/MANIFEST.MF! " +
-                                "Make sure, META-INF and MANIFEST.MF are the first 2 entries in your JAR!");
+            if (headers == null) {
+                is.mark(256 * 1024);
+                headers = BundleHeaders.read(bundleLocation, is);
+                is.reset();
             }
-            String sn = m.getMainAttributes().getValue(Constants.BUNDLE_SYMBOLICNAME);
-            String vStr = m.getMainAttributes().getValue(Constants.BUNDLE_VERSION);
-            Version v = vStr == null ? Version.emptyVersion : Version.parseVersion(vStr);
-            Bundle[] bundles = context.getBundles();
-            for (Bundle b : bundles) {
-                if (b.getSymbolicName() != null && b.getSymbolicName().equals(sn)) {
-                    vStr = b.getHeaders().get(Constants.BUNDLE_VERSION);
-                    Version bv = vStr == null ? Version.emptyVersion : Version.parseVersion(vStr);
-                    if (v.equals(bv)) {
-                        is.reset();
-                        if (Util.loadChecksum(b, context) != checksum) {
-                            log(Logger.LOG_WARNING,
-                                    "A bundle with the same symbolic name ("
-                                            + sn + ") and version (" + vStr
-                                            + ") is already installed.  Updating this bundle instead.", null
-                            );
-                            stopTransient(b);
-                            Util.storeChecksum(b, checksum, context);
-                            b.update(is);
-                            modified.set(true);
-                        }
-                        return b;
-                    }
+            String sn = headers.symbolicName;
+            Version v = headers.version;
+            Bundle b = installed.get(BundleHeaders.key(sn, v));
+            if (b != null) {
+                if (Util.loadChecksum(b, context) != checksum) {
+                    log(Logger.LOG_WARNING,
+                            "A bundle with the same symbolic name ("
+                                    + sn + ") and version (" + v
+                                    + ") is already installed.  Updating this bundle instead.", null
+                    );
+                    stopTransient(b);
+                    Util.storeChecksum(b, checksum, context);
+                    b.update(is);
+                    modified.set(true);
                 }
+                return b;
             }
-            is.reset();
             Util.log(context, Logger.LOG_INFO, "Installing bundle " + sn
                     + " / " + v, null);
-            Bundle b = context.installBundle(bundleLocation, is);
+            b = context.installBundle(bundleLocation, is);
             Util.storeChecksum(b, checksum, context);
             modified.set(true);
+            if (b.getSymbolicName() != null) {
+                installed.put(BundleHeaders.key(b.getSymbolicName(), b.getVersion()), b);
+            }
 
             // Set default start level at install time, the user can override it if he wants
             if (startLevel != 0) {
@@ -1047,10 +1183,7 @@ public class DirectoryWatcher extends Thread implements BundleListener
         }
         finally
         {
-            if (jar != null)
-            {
-                jar.close();
-            }
+            is.close();
         }
     }
 
@@ -1228,13 +1361,66 @@ public class DirectoryWatcher extends Thread implements BundleListener
     {
         // Check if this is the consistent set of bundles which failed previously.
         boolean logFailures = !consistentlyFailingBundles.equals(bundles);
-        for (Iterator<Bundle> b = bundles.iterator(); b.hasNext(); )
+        for (Bundle bundle : inDependencyOrder(bundles))
         {
-            if (startBundle(b.next(), logFailures))
+            if (startBundle(bundle, logFailures))
             {
-                b.remove();
+                bundles.remove(bundle);
+            }
+        }
+    }
+
+    /**
+     * Resolve the bundles together and order them, so that a bundle comes
+     * after the bundles of the collection it is wired to.
+     */
+    List<Bundle> inDependencyOrder(Collection<Bundle> bundles)
+    {
+        if (bundles.size() < 2)
+        {
+            return new ArrayList<Bundle>(bundles);
+        }
+        Set<Bundle> candidates = new LinkedHashSet<Bundle>();
+        for (Bundle bundle : bundles)
+        {
+            if (bundle.getState() != Bundle.UNINSTALLED)
+            {
+                candidates.add(bundle);
+            }
+        }
+        FrameworkWiring wiring = systemBundle.adapt(FrameworkWiring.class);
+        if (wiring != null)
+        {
+            wiring.resolveBundles(candidates);
+        }
+        List<Bundle> ordered = new ArrayList<Bundle>(candidates.size());
+        Set<Bundle> visited = new HashSet<Bundle>();
+        for (Bundle bundle : candidates)
+        {
+            addInDependencyOrder(bundle, candidates, visited, ordered);
+        }
+        return ordered;
+    }
+
+    private void addInDependencyOrder(Bundle bundle, Set<Bundle> candidates, Set<Bundle> visited, List<Bundle> ordered)
+    {
+        if (!visited.add(bundle))
+        {
+            return;
+        }
+        BundleWiring wiring = bundle.adapt(BundleWiring.class);
+        if (wiring != null && wiring.isInUse())
+        {
+            for (BundleWire wire : wiring.getRequiredWires(null))
+            {
+                Bundle provider = wire.getProviderWiring().getBundle();
+                if (provider != bundle && candidates.contains(provider))
+                {
+                    addInDependencyOrder(provider, candidates, visited, ordered);
+                }
             }
         }
+        ordered.add(bundle);
     }
 
      /**
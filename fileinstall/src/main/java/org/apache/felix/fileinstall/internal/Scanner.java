@@ -22,13 +22,19 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.zip.CRC32;
 
@@ -57,10 +63,17 @@ public class Scanner implements Closeable {
     final boolean skipSubdir;
     final boolean recurseSubdir;
 
+    // The number of files per task when computing checksums in parallel
+    static final int PARALLEL_CHECKSUMS = 64;
+
     // Store checksums of files or directories
     Map<File, Long> lastChecksums = new HashMap<File, Long>();
     Map<File, Long> storedChecksums = new HashMap<File, Long>();
 
+    // Computes the checksums of large scans in parallel, if set
+    ExecutorService executor;
+    int parallelism;
+
     /**
      * Create a scanner for the specified directory
      *
@@ -114,6 +127,19 @@ public class Scanner implements Closeable {
         storedChecksums.putAll(checksums);
     }
 
+    /**
+     * Compute the checksums of the files of large scans with the given executor
+     * as well as the scanning thread.
+     *
+     * @param executor the executor, or null to compute the checksums serially
+     * @param parallelism the number of threads of the executor
+     */
+    public void setExecutor(ExecutorService executor, int parallelism)
+    {
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
     /**
      * Report a set of new, modified or deleted files.
      * Modifications are checked against a computed checksum on some file
@@ -139,6 +165,7 @@ public class Scanner implements Closeable {
         }
         Set<File> files = new HashSet<File>();
         Set<File> removed = new HashSet<File>(storedChecksums.keySet());
+        List<File> candidates = new ArrayList<File>();
         for (File file : list)
         {
             if (file.isDirectory())
@@ -153,9 +180,14 @@ public class Scanner implements Closeable {
                     continue;
                 }
             }
+            candidates.add(file);
+        }
+        Map<File, Long> checksums = checksums(candidates);
+        for (File file : candidates)
+        {
             long lastChecksum = lastChecksums.get(file) != null ? (Long) lastChecksums.get(file) : 0;
             long storedChecksum = storedChecksums.get(file) != null ? (Long) storedChecksums.get(file) : 0;
-            long newChecksum = checksum(file);
+            long newChecksum = checksums.get(file);
             lastChecksums.put(file, newChecksum);
             // Only handle file when it does not change anymore and it has changed
             // since last reported
@@ -216,6 +248,77 @@ public class Scanner implements Closeable {
         }
     }
 
+    /**
+     * Compute the checksums of the given files. A checksum is cheap to compute,
+     * so they are only computed in parallel if an executor is set and there are
+     * at least {@link #PARALLEL_CHECKSUMS} files, each task computing a share of them.
+     *
+     * @param files the files or directories
+     * @return the checksums of the files
+     */
+    Map<File, Long> checksums(Collection<File> files)
+    {
+        final Map<File, Long> checksums = new HashMap<File, Long>();
+        if (executor == null || parallelism < 2 || files.size() < PARALLEL_CHECKSUMS)
+        {
+            for (File file : files)
+            {
+                checksums.put(file, checksum(file));
+            }
+            return checksums;
+        }
+
+        final File[] all = files.toArray(new File[files.size()]);
+        final long[] values = new long[all.length];
+        int shares = Math.min(parallelism, all.length / PARALLEL_CHECKSUMS + 1);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        // The scanning thread computes the first share itself
+        for (int share = 1; share < shares; share++)
+        {
+            final int from = share * all.length / shares;
+            final int to = (share + 1) * all.length / shares;
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    checksums(all, values, from, to);
+                }
+            }));
+        }
+        checksums(all, values, 0, all.length / shares);
+        for (int share = 1; share < shares; share++)
+        {
+            int from = share * all.length / shares;
+            int to = (share + 1) * all.length / shares;
+            try
+            {
+                futures.get(share - 1).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                checksums(all, values, from, to);
+            }
+            catch (ExecutionException e)
+            {
+                checksums(all, values, from, to);
+            }
+        }
+        for (int i = 0; i < all.length; i++)
+        {
+            checksums.put(all[i], values[i]);
+        }
+        return checksums;
+    }
+
+    private static void checksums(File[] files, long[] checksums, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            checksums[i] = checksum(files[i]);
+        }
+    }
+
     /**
      * Compute a cheksum for the file or directory that consists of the name, length and the last modified date
      * for a file and its children in case of a directory
@@ -39,6 +39,7 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
@@ -59,6 +60,7 @@ public abstract class Watcher implements Closeable {
     private final Map<WatchKey, Path> keys = new ConcurrentHashMap<WatchKey, Path>();
     private volatile long lastModified;
     private final Map<Path, Boolean> processedMap = new ConcurrentHashMap<Path, Boolean>();
+    private final AtomicBoolean overflow = new AtomicBoolean();
 
     public void init() throws IOException {
         if (root == null) {
@@ -164,62 +166,93 @@ public abstract class Watcher implements Closeable {
             if (key == null) {
                 break;
             }
-            Path dir = keys.get(key);
-            if (dir == null) {
-                warn("Could not find key for " + key);
+            if (!processKey(key)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Block until the watch service reports a change and process
+     * it together with all other pending changes.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     * @throws java.nio.file.ClosedWatchServiceException if the watcher has been closed
+     */
+    public void awaitEvents() throws InterruptedException {
+        WatchKey key = watcher.take();
+        if (processKey(key)) {
+            processEvents();
+        }
+    }
+
+    /**
+     * Whether events have been lost since the last call, in which
+     * case the whole tree has to be rescanned.
+     */
+    public boolean checkOverflow() {
+        return overflow.getAndSet(false);
+    }
+
+    private boolean processKey(WatchKey key) {
+        Path dir = keys.get(key);
+        if (dir == null) {
+            warn("Could not find key for " + key);
+            return true;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind kind = event.kind();
+
+            if (kind == OVERFLOW) {
+                debug("Events lost for directory {}", dir);
+                overflow.set(true);
                 continue;
             }
 
-            for (WatchEvent<?> event : key.pollEvents()) {
-                WatchEvent.Kind kind = event.kind();
-                WatchEvent<Path> ev = (WatchEvent<Path>)event;
+            WatchEvent<Path> ev = (WatchEvent<Path>)event;
 
-                // Context for directory entry event is the file name of entry
-                Path name = ev.context();
-                Path child = dir.resolve(name);
+            // Context for directory entry event is the file name of entry
+            Path name = ev.context();
+            Path child = dir.resolve(name);
 
-                debug("Processing event {} on path {}", kind, child);
+            debug("Processing event {} on path {}", kind, child);
 
-                if (kind == OVERFLOW) {
-//                    rescan();
-                    continue;
-                }
+            try {
+                if (kind == ENTRY_CREATE) {
+                    if (Files.isDirectory(child)) {
 
-                try {
-                    if (kind == ENTRY_CREATE) {
-                        if (Files.isDirectory(child)) {
-
-                            // if directory is created, and watching recursively, then
-                            // register it and its sub-directories
-                            Files.walkFileTree(child, new FilteringFileVisitor());
-                        } else if (Files.isRegularFile(child)) {
-                            scan(child);
-                        }
-                    } else if (kind == ENTRY_MODIFY) {
-                        if (Files.isRegularFile(child)) {
-                            scan(child);
-                        }
-                    } else if (kind == ENTRY_DELETE) {
-                        unscan(child);
+                        // if directory is created, and watching recursively, then
+                        // register it and its sub-directories
+                        Files.walkFileTree(child, new FilteringFileVisitor());
+                    } else if (Files.isRegularFile(child)) {
+                        scan(child);
+                    }
+                } else if (kind == ENTRY_MODIFY) {
+                    if (Files.isRegularFile(child)) {
+                        scan(child);
                     }
-                } catch (IOException x) {
-                    // ignore to keep sample readbale
-                    x.printStackTrace();
+                } else if (kind == ENTRY_DELETE) {
+                    unscan(child);
                 }
+            } catch (IOException x) {
+                // ignore to keep sample readbale
+                x.printStackTrace();
             }
+        }
 
-            // reset key and remove from set if directory no longer accessible
-            boolean valid = key.reset();
-            if (!valid) {
-                debug("Removing key " + key + " and dir " + dir + " from keys");
-                keys.remove(key);
+        // reset key and remove from set if directory no longer accessible
+        boolean valid = key.reset();
+        if (!valid) {
+            debug("Removing key " + key + " and dir " + dir + " from keys");
+            keys.remove(key);
 
-                // all directories are inaccessible
-                if (keys.isEmpty()) {
-                    break;
-                }
+            // all directories are inaccessible
+            if (keys.isEmpty()) {
+                return false;
             }
         }
+        return true;
     }
 
     private void scan(final Path file) throws IOException {
@@ -20,11 +20,13 @@ package org.apache.felix.fileinstall.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.osgi.framework.BundleContext;
@@ -34,6 +36,9 @@ public class WatcherScanner extends Scanner {
     BundleContext bundleContext;
     PathMatcher fileMatcher;
     Watcher watcher;
+    long reconcileInterval;
+    long nextReconcile;
+    Thread eventThread;
 
     Set<File> changed = new HashSet<File>();
 
@@ -45,8 +50,23 @@ public class WatcherScanner extends Scanner {
      * @param subdirMode to use when scanning
      */
     public WatcherScanner(BundleContext bundleContext, File directory, String filterString, String subdirMode) throws IOException {
+        this(bundleContext, directory, filterString, subdirMode, 0);
+    }
+
+    /**
+     * Create a scanner for the specified directory and file filter
+     *
+     * @param directory the directory to scan
+     * @param filterString a filter for file names
+     * @param subdirMode to use when scanning
+     * @param reconcileInterval interval in milliseconds between full rescans of the directory,
+     *                          in case the watch service missed a change, or 0 to disable them
+     */
+    public WatcherScanner(BundleContext bundleContext, File directory, String filterString, String subdirMode,
+                          long reconcileInterval) throws IOException {
         super(directory, filterString, subdirMode);
         this.bundleContext = bundleContext;
+        this.reconcileInterval = reconcileInterval;
         if (filterString != null) {
             this.fileMatcher = FileSystems.getDefault().getPathMatcher("regex:" + filterString);
         } else {
@@ -57,10 +77,50 @@ public class WatcherScanner extends Scanner {
         this.watcher.setRootDirectory(this.directory);
         this.watcher.init();
         this.watcher.rescan();
+        this.nextReconcile = System.currentTimeMillis() + reconcileInterval;
+    }
+
+    /**
+     * Notify the given listener whenever the watch service reports a change,
+     * so that the change can be scanned without waiting for the next poll.
+     *
+     * @param listener the listener, called from a dedicated thread
+     */
+    public void setChangeListener(final Runnable listener) {
+        if (eventThread != null) {
+            throw new IllegalStateException("Change listener already set");
+        }
+        eventThread = new Thread("fileinstall-events-" + directory.getPath()) {
+            public void run() {
+                try {
+                    while (!isInterrupted()) {
+                        watcher.awaitEvents();
+                        listener.run();
+                    }
+                } catch (InterruptedException e) {
+                    // closed
+                } catch (ClosedWatchServiceException e) {
+                    // closed
+                }
+            }
+        };
+        eventThread.setDaemon(true);
+        eventThread.start();
+    }
+
+    /**
+     * Whether a change has been seen which has not been reported yet,
+     * usually because its checksum did not settle yet.
+     */
+    public boolean hasPendingChanges() {
+        synchronized (changed) {
+            return !changed.isEmpty();
+        }
     }
 
     public Set<File> scan(boolean reportImmediately) {
         watcher.processEvents();
+        reconcile();
         synchronized (changed) {
             if (changed.isEmpty()) {
                 return new HashSet<File>();
@@ -70,11 +130,12 @@ public class WatcherScanner extends Scanner {
             if (reportImmediately) {
                 removed.addAll(storedChecksums.keySet());
             }
+            Map<File, Long> checksums = checksums(changed);
             for (Iterator<File> iterator = changed.iterator(); iterator.hasNext(); ) {
                 File file = iterator.next();
                 long lastChecksum = lastChecksums.get(file) != null ? (Long) lastChecksums.get(file) : 0;
                 long storedChecksum = storedChecksums.get(file) != null ? (Long) storedChecksums.get(file) : 0;
-                long newChecksum = checksum(file);
+                long newChecksum = checksums.get(file);
                 lastChecksums.put(file, newChecksum);
                 if (file.exists()) {
                     // Only handle file when it does not change anymore and it has changed since last reported
@@ -108,8 +169,34 @@ public class WatcherScanner extends Scanner {
         }
     }
 
+    /**
+     * Check all files if events have been lost or the reconcile interval
+     * has elapsed. The checksums are left untouched, so only files which
+     * really changed are going to be reported.
+     */
+    private void reconcile() {
+        boolean overflow = watcher.checkOverflow();
+        long now = System.currentTimeMillis();
+        if (!overflow && (reconcileInterval <= 0 || now < nextReconcile)) {
+            return;
+        }
+        nextReconcile = now + reconcileInterval;
+        try {
+            watcher.rescan();
+        } catch (IOException e) {
+            Util.log(bundleContext, Util.Logger.LOG_WARNING, "Unable to rescan " + directory, e);
+        }
+        synchronized (changed) {
+            // also check known files, so that lost deletions are noticed
+            changed.addAll(storedChecksums.keySet());
+        }
+    }
+
     public void close() throws IOException {
         watcher.close();
+        if (eventThread != null) {
+            eventThread.interrupt();
+        }
     }
 
     class ScannerWatcher extends Watcher {
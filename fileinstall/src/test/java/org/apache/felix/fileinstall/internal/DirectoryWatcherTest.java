@@ -21,9 +21,13 @@ package org.apache.felix.fileinstall.internal;
 
 import java.io.File;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import junit.framework.TestCase;
@@ -38,6 +42,8 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.startlevel.FrameworkStartLevel;
 import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.log.LogService;
 
 
@@ -273,6 +279,45 @@ public class DirectoryWatcherTest extends TestCase
         }
     }
 
+    public void testBundlesAreStartedInDependencyOrder() throws Exception
+    {
+        mockBundleContext.addBundleListener((BundleListener) org.easymock.EasyMock.anyObject());
+        Bundle a = EasyMock.createNiceMock(Bundle.class);
+        Bundle b = EasyMock.createNiceMock(Bundle.class);
+        Bundle c = EasyMock.createNiceMock(Bundle.class);
+        Bundle d = EasyMock.createNiceMock(Bundle.class);
+        // a -> b -> c, d has no dependencies
+        wire(a, b);
+        wire(b, c);
+        wire(c, null);
+        EasyMock.expect(d.getState()).andReturn(Bundle.INSTALLED).anyTimes();
+        EasyMock.replay(mockBundleContext, mockBundle, mockSysBundle, mockStartLevel, a, b, c, d);
+
+        dw = new DirectoryWatcher(new FileInstall(), props, mockBundleContext);
+        Set<Bundle> bundles = new LinkedHashSet<Bundle>(Arrays.asList(a, d, b, c));
+        assertEquals(Arrays.asList(c, b, a, d), dw.inDependencyOrder(bundles));
+    }
+
+    private void wire(Bundle bundle, Bundle provider)
+    {
+        BundleWiring wiring = EasyMock.createNiceMock(BundleWiring.class);
+        List<BundleWire> wires = new ArrayList<BundleWire>();
+        if (provider != null)
+        {
+            BundleWire wire = EasyMock.createNiceMock(BundleWire.class);
+            BundleWiring providerWiring = EasyMock.createNiceMock(BundleWiring.class);
+            EasyMock.expect(providerWiring.getBundle()).andReturn(provider).anyTimes();
+            EasyMock.expect(wire.getProviderWiring()).andReturn(providerWiring).anyTimes();
+            EasyMock.replay(wire, providerWiring);
+            wires.add(wire);
+        }
+        EasyMock.expect(wiring.isInUse()).andReturn(true).anyTimes();
+        EasyMock.expect(wiring.getRequiredWires(null)).andReturn(wires).anyTimes();
+        EasyMock.replay(wiring);
+        EasyMock.expect(bundle.getState()).andReturn(Bundle.RESOLVED).anyTimes();
+        EasyMock.expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+    }
+
     /**
      * Test the {@link DirectoryWatcher#initializeCurrentManagedBundles()} in conjunction with a non opaque Bundle Location.
      * Assert that a new created {@link Artifact} will be added into the {@link DirectoryWatcher#currentManagedArtifacts}.
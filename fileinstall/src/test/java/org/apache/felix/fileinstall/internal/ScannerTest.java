@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.fileinstall.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Test class for the Scanner
+ */
+public class ScannerTest extends TestCase
+{
+    File dir;
+    ExecutorService executor;
+    AtomicInteger submitted = new AtomicInteger();
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File("target/scanner-" + getName());
+        delete(dir);
+        dir.mkdirs();
+        executor = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>())
+        {
+            public void execute(Runnable command)
+            {
+                submitted.incrementAndGet();
+                super.execute(command);
+            }
+        };
+    }
+
+    protected void tearDown() throws Exception
+    {
+        executor.shutdownNow();
+        delete(dir);
+        super.tearDown();
+    }
+
+    public void testSmallScanIsComputedInline() throws Exception
+    {
+        List<File> files = write(Scanner.PARALLEL_CHECKSUMS - 1);
+        Scanner scanner = new Scanner(dir);
+        scanner.setExecutor(executor, 4);
+
+        Map<File, Long> checksums = scanner.checksums(files);
+
+        assertEquals(0, submitted.get());
+        assertChecksums(files, checksums);
+    }
+
+    public void testLargeScanIsComputedInParallel() throws Exception
+    {
+        List<File> files = write(Scanner.PARALLEL_CHECKSUMS * 3 + 5);
+        Scanner scanner = new Scanner(dir);
+        scanner.setExecutor(executor, 4);
+
+        Map<File, Long> checksums = scanner.checksums(files);
+
+        // one share per 64 files, up to the number of threads, the first one on the scanning thread
+        assertEquals(3, submitted.get());
+        assertChecksums(files, checksums);
+    }
+
+    private void assertChecksums(List<File> files, Map<File, Long> checksums)
+    {
+        assertEquals(files.size(), checksums.size());
+        for (File file : files)
+        {
+            assertEquals(Long.valueOf(Scanner.checksum(file)), checksums.get(file));
+        }
+    }
+
+    private List<File> write(int count) throws IOException
+    {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < count; i++)
+        {
+            File file = new File(dir, "file" + i + ".jar");
+            FileOutputStream os = new FileOutputStream(file);
+            try
+            {
+                os.write(("content" + i).getBytes());
+            }
+            finally
+            {
+                os.close();
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
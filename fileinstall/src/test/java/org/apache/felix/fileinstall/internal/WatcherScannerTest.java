@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.fileinstall.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import org.easymock.EasyMock;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Test class for the WatcherScanner
+ */
+public class WatcherScannerTest extends TestCase
+{
+    File dir;
+    BundleContext mockBundleContext;
+    WatcherScanner scanner;
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        dir = new File("target/watcher-" + getName());
+        delete(dir);
+        dir.mkdirs();
+        mockBundleContext = EasyMock.createNiceMock(BundleContext.class);
+        EasyMock.replay(mockBundleContext);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        if (scanner != null)
+        {
+            scanner.close();
+        }
+        delete(dir);
+        super.tearDown();
+    }
+
+    public void testChangeIsReportedOnceChecksumSettled() throws Exception
+    {
+        scanner = new WatcherScanner(mockBundleContext, dir, null, null);
+        assertTrue(scanner.scan(false).isEmpty());
+        assertFalse(scanner.hasPendingChanges());
+
+        File file = write("a.jar", "content");
+        awaitPendingChange();
+
+        // first scan only records the checksum
+        assertTrue(scanner.scan(false).isEmpty());
+        Set<File> files = scanner.scan(false);
+        assertEquals(1, files.size());
+        assertEquals(file.getName(), files.iterator().next().getName());
+
+        // nothing left to report
+        assertTrue(scanner.scan(false).isEmpty());
+        assertFalse(scanner.hasPendingChanges());
+    }
+
+    public void testChangeListenerIsNotified() throws Exception
+    {
+        scanner = new WatcherScanner(mockBundleContext, dir, null, null);
+        final CountDownLatch latch = new CountDownLatch(1);
+        scanner.setChangeListener(new Runnable()
+        {
+            public void run()
+            {
+                latch.countDown();
+            }
+        });
+
+        write("b.jar", "content");
+        // polling watch services, e.g. on macOS, might take a while
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertTrue(scanner.hasPendingChanges());
+    }
+
+    public void testReconcileNoticesMissedDeletion() throws Exception
+    {
+        File file = new File(dir, "c.jar").getCanonicalFile();
+
+        // without reconciliation only reported events are looked at
+        scanner = new WatcherScanner(mockBundleContext, dir, null, null, 0);
+        scanner.initialize(Collections.singletonMap(file, 1L));
+        assertTrue(scanner.scan(false).isEmpty());
+        scanner.close();
+
+        scanner = new WatcherScanner(mockBundleContext, dir, null, null, 1);
+        scanner.initialize(Collections.singletonMap(file, 1L));
+        Thread.sleep(5);
+        Set<File> files = scanner.scan(false);
+        assertEquals(1, files.size());
+        assertTrue(files.contains(file));
+        assertEquals(0, scanner.getChecksum(file));
+    }
+
+    private void awaitPendingChange() throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < end)
+        {
+            scanner.watcher.processEvents();
+            if (scanner.hasPendingChanges())
+            {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("No change detected");
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private File write(String name, String content) throws IOException
+    {
+        File file = new File(dir, name);
+        FileOutputStream fos = new FileOutputStream(file);
+        try
+        {
+            fos.write(content.getBytes("UTF-8"));
+        }
+        finally
+        {
+            fos.close();
+        }
+        return file;
+    }
+}
@@ -81,7 +81,7 @@ public class Closure implements Function, Evaluate
         {
             try
             {
-                this.program = new Parser(source).program();
+                this.program = session.programs().program(source);
             }
             catch (Exception e)
             {
@@ -52,6 +52,7 @@ public class CommandProcessorImpl implements CommandProcessor
     protected final Map<String, Object> constants = new ConcurrentHashMap<>();
     protected final ThreadIO threadIO;
     protected final WeakHashMap<CommandSession, Object> sessions = new WeakHashMap<>();
+    final ProgramCache programs = new ProgramCache();
     protected boolean stopped;
 
     public CommandProcessorImpl()
@@ -275,6 +276,7 @@ public class CommandProcessorImpl implements CommandProcessor
         {
             cmdMap.remove(target);
         }
+        clearReflectiveCache(target);
     }
 
     public void removeCommand(Object target)
@@ -283,6 +285,23 @@ public class CommandProcessorImpl implements CommandProcessor
         {
             cmdMap.remove(target);
         }
+        clearReflectiveCache(target);
+    }
+
+    private static void clearReflectiveCache(Object target)
+    {
+        if (target instanceof CommandProxy)
+        {
+            Class<?> type = ((CommandProxy) target).getTargetClass();
+            if (type != null)
+            {
+                Reflective.clearCache(type);
+            }
+        }
+        else if (target != null)
+        {
+            Reflective.clearCache(target.getClass());
+        }
     }
 
     private String[] getFunctions(Class<?> target)
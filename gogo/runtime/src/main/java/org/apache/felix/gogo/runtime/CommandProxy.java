@@ -31,6 +31,7 @@ public class CommandProxy implements Function
     private ServiceReference<?> reference;
     private String function;
     private Object target;
+    private volatile Class<?> targetClass;
 
     public CommandProxy(BundleContext context, ServiceReference<?> reference, String function)
     {
@@ -50,6 +51,15 @@ public class CommandProxy implements Function
         return (context != null ? context.getService(reference) : target);
     }
 
+    /**
+     * The class of the target the last time the command was executed.
+     * @return the class or null if the command has not been executed yet
+     */
+    Class<?> getTargetClass()
+    {
+        return targetClass;
+    }
+
     public void ungetTarget()
     {
         if (context != null)
@@ -88,6 +98,7 @@ public class CommandProxy implements Function
             }
             else
             {
+                targetClass = tgt.getClass();
                 return Reflective.invoke(session, tgt, function, arguments);
             }
         }
@@ -127,6 +127,11 @@ public class CommandSessionImpl implements CommandSession, Converter
         return processor;
     }
 
+    ProgramCache programs()
+    {
+        return processor.programs;
+    }
+
     public ConcurrentMap<String, Object> getVariables()
     {
         return variables;
@@ -48,8 +48,8 @@ public class Parser
         public Statement(Token cs, List<Token> tokens, List<Token> redirections)
         {
             super(cs);
-            this.tokens = tokens;
-            this.redirections = redirections;
+            this.tokens = Collections.unmodifiableList(tokens);
+            this.redirections = Collections.unmodifiableList(redirections);
         }
 
         public List<Token> tokens()
@@ -64,6 +64,9 @@ public class Parser
 
     /**
      * pipe1 ; pipe2 ; ...
+     *
+     * Programs are immutable, so a parsed program can be evaluated
+     * repeatedly and concurrently.
      */
     public static class Program extends Token
     {
@@ -72,7 +75,7 @@ public class Parser
         public Program(Token cs, List<Executable> tokens)
         {
             super(cs);
-            this.tokens = tokens;
+            this.tokens = Collections.unmodifiableList(tokens);
         }
 
         public List<Executable> tokens()
@@ -91,7 +94,7 @@ public class Parser
         public Pipeline(Token cs, List<Executable> tokens)
         {
             super(cs);
-            this.tokens = tokens;
+            this.tokens = Collections.unmodifiableList(tokens);
         }
 
         public List<Executable> tokens()
@@ -152,8 +155,8 @@ public class Parser
         {
             super(cs);
             assert list != null ^ map != null;
-            this.list = list;
-            this.map = map;
+            this.list = list != null ? Collections.unmodifiableList(list) : null;
+            this.map = map != null ? Collections.unmodifiableMap(map) : null;
         }
 
         public List<Token> list()
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.gogo.runtime;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.felix.gogo.runtime.Parser.Program;
+
+/**
+ * Parsed programs by source text, so that scripts which are executed over
+ * and over again are only parsed once. The cached programs are immutable
+ * and can be evaluated by any number of closures at the same time.
+ *
+ * Syntax errors are not cached, an incomplete program is usually completed
+ * by the next attempt of an interactive shell.
+ */
+final class ProgramCache
+{
+    static final int DEFAULT_MAX_ENTRIES = 256;
+    static final int DEFAULT_MAX_LENGTH = 16 * 1024;
+
+    private final int maxLength;
+    private final Map<String, Program> programs;
+
+    ProgramCache()
+    {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_LENGTH);
+    }
+
+    ProgramCache(final int maxEntries, final int maxLength)
+    {
+        this.maxLength = maxLength;
+        this.programs = new LinkedHashMap<String, Program>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the parsed program for the given source, parsing it if needed.
+     * @param source the source text
+     * @return the program
+     */
+    Program program(CharSequence source)
+    {
+        // tokens carry their position in an enclosing source
+        if (source instanceof Token || source.length() > maxLength)
+        {
+            return new Parser(source).program();
+        }
+
+        String key = source.toString();
+        Program program;
+        synchronized (programs)
+        {
+            program = programs.get(key);
+        }
+        if (program == null)
+        {
+            // parse outside of the lock, another thread parsing the same
+            // source concurrently just replaces an equal program
+            program = new Parser(key).program();
+            synchronized (programs)
+            {
+                programs.put(key, program);
+            }
+        }
+        return program;
+    }
+
+    int size()
+    {
+        synchronized (programs)
+        {
+            return programs.size();
+        }
+    }
+
+    void clear()
+    {
+        synchronized (programs)
+        {
+            programs.clear();
+        }
+    }
+}
@@ -32,6 +32,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.felix.service.command.CommandSession;
 import org.apache.felix.service.command.Parameter;
@@ -50,6 +52,23 @@ public final class Reflective
                 "finally", "long", "strictfp", "volatile", "const", "float", "native",
                 "super", "while"));
 
+    private static final Candidate[] NO_CANDIDATES = new Candidate[0];
+
+    /**
+     * Method candidates per class and lower cased command name. Entries go
+     * away together with the class, so commands of a stopped bundle do not
+     * keep their class loader alive.
+     */
+    private static final ClassValue<ConcurrentMap<String, Candidates>> CANDIDATES =
+        new ClassValue<ConcurrentMap<String, Candidates>>()
+        {
+            @Override
+            protected ConcurrentMap<String, Candidates> computeValue(Class<?> type)
+            {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
     /**
      * invokes the named method on the given target using the supplied args,
      * which are converted if necessary.
@@ -63,69 +82,67 @@ public final class Reflective
     public static Object invoke(CommandSession session, Object target, String name,
         List<Object> args) throws Exception
     {
-        Method[] methods = target.getClass().getMethods();
         name = name.toLowerCase(Locale.ENGLISH);
 
         String org = name;
-        String get = "get" + name;
-        String is = "is" + name;
-        String set = "set" + name;
 
         if (KEYWORDS.contains(name))
         {
             name = "_" + name;
         }
 
+        Candidates candidates = null;
         if (target instanceof Class<?>)
         {
-            Method[] staticMethods = ((Class<?>) target).getMethods();
-            for (Method m : staticMethods)
-            {
-                String mname = m.getName().toLowerCase(Locale.ENGLISH);
-                if (mname.equals(name) || mname.equals(get) || mname.equals(set)
-                    || mname.equals(is) || mname.equals(MAIN))
-                {
-                    methods = staticMethods;
-                    break;
-                }
-            }
+            candidates = getCandidates((Class<?>) target, org);
+        }
+        if (candidates == null)
+        {
+            candidates = getCandidates(target.getClass(), org);
         }
 
-        Method bestMethod = null;
+        Candidate chosen = null;
         Object[] bestArgs = null;
-        int lowestMatch = Integer.MAX_VALUE;
         ArrayList<Class<?>[]> possibleTypes = new ArrayList<>();
 
-        for (Method m : methods)
+        Class<?>[] signature = candidates != null ? candidates.getSignature(session, args) : null;
+        if (signature != null)
         {
-            String mname = m.getName().toLowerCase(Locale.ENGLISH);
-            if (mname.equals(name) || mname.equals(get) || mname.equals(set)
-                || mname.equals(is) || mname.equals(MAIN))
+            // the method which matched the same argument types without any
+            // coercion last time is going to be the first one to match again
+            Candidate c = candidates.getWinner(signature);
+            if (c != null)
             {
-                Class<?>[] types = m.getParameterTypes();
-                ArrayList<Object> xargs = new ArrayList<>(args);
-
-                // pass command name as argv[0] to main, so it can handle
-                // multiple commands
-                if (mname.equals(MAIN))
+                Object[] parms = new Object[c.types.length];
+                if (coerce(session, target, c, parms, c.arguments(org, args)) == 0)
                 {
-                    xargs.add(0, org);
+                    chosen = c;
+                    bestArgs = parms;
                 }
+            }
+        }
 
-                Object[] parms = new Object[types.length];
-                int match = coerce(session, target, m, types, parms, xargs);
+        if (chosen == null)
+        {
+            int lowestMatch = Integer.MAX_VALUE;
+            Candidate best = null;
+
+            for (Candidate c : candidates != null ? candidates.candidates : NO_CANDIDATES)
+            {
+                Object[] parms = new Object[c.types.length];
+                int match = coerce(session, target, c, parms, c.arguments(org, args));
 
                 if (match < 0)
                 {
                     // coerce failed
-                    possibleTypes.add(types);
+                    possibleTypes.add(c.types);
                 }
                 else
                 {
                     if (match < lowestMatch)
                     {
                         lowestMatch = match;
-                        bestMethod = m;
+                        best = c;
                         bestArgs = parms;
                     }
 
@@ -133,14 +150,22 @@ public final class Reflective
                         break; // can't get better score
                 }
             }
+
+            if (best != null)
+            {
+                chosen = best;
+                if (lowestMatch == 0 && signature != null)
+                {
+                    candidates.setWinner(signature, best);
+                }
+            }
         }
 
-        if (bestMethod != null)
+        if (chosen != null)
         {
-            bestMethod.setAccessible(true);
             try
             {
-                return bestMethod.invoke(target, bestArgs);
+                return chosen.accessible().invoke(target, bestArgs);
             }
             catch (InvocationTargetException e)
             {
@@ -206,15 +231,45 @@ public final class Reflective
         }
     }
 
+    /**
+     * Drop the cached method candidates of the given class, e.g. when the
+     * command it provides is removed.
+     * @param type the class of a command target
+     */
+    public static void clearCache(Class<?> type)
+    {
+        CANDIDATES.remove(type);
+    }
+
+    private static Candidates getCandidates(Class<?> type, String name)
+    {
+        ConcurrentMap<String, Candidates> cache = CANDIDATES.get(type);
+        Candidates candidates = cache.get(name);
+        if (candidates == null)
+        {
+            candidates = new Candidates(type.getMethods(), name);
+            if (candidates.candidates.length == 0)
+            {
+                // don't remember arbitrary names which match nothing
+                return null;
+            }
+            Candidates existing = cache.putIfAbsent(name, candidates);
+            if (existing != null)
+            {
+                candidates = existing;
+            }
+        }
+        return candidates;
+    }
+
     /**
      * transform name/value parameters into ordered argument list.
      * params: --param2, value2, --flag1, arg3
      * args: true, value2, arg3
      * @return new ordered list of args.
      */
-    private static List<Object> transformParameters(Method method, List<Object> in)
+    private static List<Object> transformParameters(Annotation[][] pas, List<Object> in)
     {
-        Annotation[][] pas = method.getParameterAnnotations();
         ArrayList<Object> out = new ArrayList<>();
         ArrayList<Object> parms = new ArrayList<>(in);
 
@@ -268,9 +323,11 @@ public final class Reflective
      * @return -1 if arguments can't be coerced; 0 if no coercion was necessary;
      *          > 0 if coercion was needed.
      */
-    private static int coerce(CommandSession session, Object target, Method m,
-        Class<?> types[], Object out[], List<Object> in)
+    private static int coerce(CommandSession session, Object target, Candidate c,
+        Object out[], List<Object> in)
     {
+        Method m = c.method;
+        Class<?> types[] = c.types;
         List<Object> cnvIn = new ArrayList<>();
         List<Object> cnvIn2 = new ArrayList<>();
         int different = 0;
@@ -290,10 +347,13 @@ public final class Reflective
             }
         }
 
-        cnvIn = transformParameters(m, cnvIn);
-        if (different != 0)
+        if (c.parameters)
         {
-            cnvIn2 = transformParameters(m, cnvIn2);
+            cnvIn = transformParameters(c.annotations, cnvIn);
+            if (different != 0)
+            {
+                cnvIn2 = transformParameters(c.annotations, cnvIn2);
+            }
         }
         if (cnvIn == null || cnvIn2 == null)
         {
@@ -639,4 +699,158 @@ public final class Reflective
         return null;
     }
 
+    /**
+     * The methods of a class which match a command name.
+     */
+    private static final class Candidates
+    {
+        final Candidate[] candidates;
+
+        // whether any candidate has @Parameter annotations, which make
+        // the match depend on the argument values
+        final boolean parameters;
+
+        // the method which matched without coercion, per number of arguments
+        private final ConcurrentMap<Integer, Winner> winners = new ConcurrentHashMap<>();
+
+        Candidates(Method[] methods, String org)
+        {
+            String name = KEYWORDS.contains(org) ? "_" + org : org;
+            String get = "get" + org;
+            String is = "is" + org;
+            String set = "set" + org;
+
+            List<Candidate> list = new ArrayList<>();
+            boolean parameters = false;
+            for (Method m : methods)
+            {
+                String mname = m.getName().toLowerCase(Locale.ENGLISH);
+                if (mname.equals(name) || mname.equals(get) || mname.equals(set)
+                    || mname.equals(is) || mname.equals(MAIN))
+                {
+                    Candidate c = new Candidate(m, mname.equals(MAIN));
+                    parameters |= c.parameters;
+                    list.add(c);
+                }
+            }
+            this.candidates = list.toArray(new Candidate[list.size()]);
+            this.parameters = parameters;
+        }
+
+        /**
+         * The classes of the arguments, which determine whether a method
+         * matches without coercion.
+         * @return the signature or null if the match depends on more than that
+         */
+        Class<?>[] getSignature(CommandSession session, List<Object> args)
+        {
+            if (parameters)
+            {
+                return null;
+            }
+            Class<?>[] signature = new Class<?>[args.size() + 1];
+            int i = 0;
+            for (Object arg : args)
+            {
+                if (arg instanceof Token)
+                {
+                    return null;
+                }
+                signature[i++] = arg != null ? arg.getClass() : null;
+            }
+            signature[i] = session.getClass();
+            return signature;
+        }
+
+        Candidate getWinner(Class<?>[] signature)
+        {
+            Winner winner = winners.get(signature.length);
+            if (winner != null && Arrays.equals(winner.signature, signature))
+            {
+                return winner.candidate;
+            }
+            return null;
+        }
+
+        void setWinner(Class<?>[] signature, Candidate candidate)
+        {
+            winners.put(signature.length, new Winner(signature, candidate));
+        }
+    }
+
+    private static final class Candidate
+    {
+        final Method method;
+        final Class<?>[] types;
+        final Annotation[][] annotations;
+        final boolean parameters;
+        final boolean main;
+        private volatile boolean accessible;
+
+        Candidate(Method method, boolean main)
+        {
+            this.method = method;
+            this.types = method.getParameterTypes();
+            this.annotations = method.getParameterAnnotations();
+            this.main = main;
+            boolean parameters = false;
+            for (Annotation[] as : annotations)
+            {
+                for (Annotation a : as)
+                {
+                    parameters |= a instanceof Parameter;
+                }
+            }
+            this.parameters = parameters;
+        }
+
+        /**
+         * The method, made accessible the first time it is chosen, rather
+         * than for every candidate considered.
+         * @return the method
+         */
+        Method accessible()
+        {
+            if (!accessible)
+            {
+                try
+                {
+                    method.setAccessible(true);
+                }
+                catch (RuntimeException e)
+                {
+                    // e.g. a method of a package that is not open to us,
+                    // which can still be invoked if it is public
+                }
+                accessible = true;
+            }
+            return method;
+        }
+
+        List<Object> arguments(String org, List<Object> args)
+        {
+            ArrayList<Object> xargs = new ArrayList<>(args.size() + 1);
+
+            // pass command name as argv[0] to main, so it can handle
+            // multiple commands
+            if (main)
+            {
+                xargs.add(org);
+            }
+            xargs.addAll(args);
+            return xargs;
+        }
+    }
+
+    private static final class Winner
+    {
+        final Class<?>[] signature;
+        final Candidate candidate;
+
+        Winner(Class<?>[] signature, Candidate candidate)
+        {
+            this.signature = signature;
+            this.candidate = candidate;
+        }
+    }
 }
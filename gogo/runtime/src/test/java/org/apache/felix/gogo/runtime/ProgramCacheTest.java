@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.gogo.runtime;
+
+import java.io.EOFException;
+
+import org.apache.felix.gogo.runtime.Parser.Program;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ProgramCacheTest extends AbstractParserTest
+{
+    @Test
+    public void testProgramIsParsedOnce()
+    {
+        ProgramCache cache = new ProgramCache();
+        Program p1 = cache.program("a = 1; b = [ $a 2 ]");
+        Program p2 = cache.program(new StringBuilder("a = 1; b = [ $a 2 ]"));
+        assertSame(p1, p2);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted()
+    {
+        ProgramCache cache = new ProgramCache(2, 100);
+        Program a = cache.program("a");
+        cache.program("b");
+        cache.program("a");
+        cache.program("c");
+        assertEquals(2, cache.size());
+        assertSame(a, cache.program("a"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testLongSourceIsNotCached()
+    {
+        ProgramCache cache = new ProgramCache(2, 5);
+        assertNotSame(cache.program("echo 123456"), cache.program("echo 123456"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSyntaxErrorIsNotCached()
+    {
+        ProgramCache cache = new ProgramCache();
+        try
+        {
+            cache.program("a = { b");
+            fail("Expected an EOFError");
+        }
+        catch (EOFError e)
+        {
+            // expected
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testProgramIsImmutable()
+    {
+        new ProgramCache().program("a = 1").tokens().clear();
+    }
+
+    @Test
+    public void testRepeatedExecution() throws Exception
+    {
+        Context c = new Context();
+        c.set("a", 0L);
+        for (int i = 1; i <= 5; i++)
+        {
+            assertEquals((long) i, c.execute("a = %(a+1)"));
+        }
+        try
+        {
+            c.execute("a = {");
+            fail("Expected an EOFException");
+        }
+        catch (EOFException e)
+        {
+            // expected
+        }
+        try
+        {
+            c.execute("a = {");
+            fail("Expected an EOFException");
+        }
+        catch (EOFException e)
+        {
+            // expected
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.util.*;
 
 import org.apache.felix.service.command.CommandSession;
 import org.apache.felix.service.command.Converter;
+import org.apache.felix.service.command.Parameter;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -68,6 +69,51 @@ public class ReflectiveTest {
                 Collections.<Object>singletonList(conv));
     }
 
+    @Test
+    public void testRepeatedOverloadedInvocation() throws Exception {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        OutputStream out = new ByteArrayOutputStream();
+        CommandProcessorImpl processor = new CommandProcessorImpl(null);
+        CommandSessionImpl session = new CommandSessionImpl(processor, in, out, out);
+        Overloaded target = new Overloaded();
+
+        // the method matched for one argument type must not stick for others
+        for (int i = 0; i < 3; i++) {
+            assertEquals("string", Reflective.invoke(session, target, "over", Arrays.<Object>asList("a")));
+            assertEquals("long", Reflective.invoke(session, target, "over", Arrays.<Object>asList(1L)));
+            assertEquals("int", Reflective.invoke(session, target, "over", Arrays.<Object>asList(1)));
+            assertEquals("string", Reflective.invoke(session, target, "over", Arrays.<Object>asList("1")));
+            assertEquals("two", Reflective.invoke(session, target, "over", Arrays.<Object>asList("a", "b")));
+            assertEquals("flag", Reflective.invoke(session, target, "flag", Arrays.<Object>asList("-f")));
+            assertEquals("none", Reflective.invoke(session, target, "flag", Collections.emptyList()));
+        }
+
+        Reflective.clearCache(Overloaded.class);
+        assertEquals("long", Reflective.invoke(session, target, "over", Arrays.<Object>asList(1L)));
+    }
+
+    public static class Overloaded {
+        public String over(String s) {
+            return "string";
+        }
+
+        public String over(Long l) {
+            return "long";
+        }
+
+        public String over(Integer i) {
+            return "int";
+        }
+
+        public String over(String s1, String s2) {
+            return "two";
+        }
+
+        public String flag(@Parameter(names = "-f", absentValue = "false", presentValue = "true") boolean flag) {
+            return flag ? "flag" : "none";
+        }
+    }
+
     static class Target {
         public Object test1(CommandSession session, Object[] argv) {
             return argv;
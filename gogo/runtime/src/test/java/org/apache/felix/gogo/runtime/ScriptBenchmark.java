@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.gogo.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.felix.gogo.runtime.threadio.ThreadIOImpl;
+
+/**
+ * Measures the throughput of executing the same script over and over
+ * again, with and without the parsed program cache.
+ *
+ * Not run as part of the build, start it with
+ * <code>java -cp target/classes:target/test-classes org.apache.felix.gogo.runtime.ScriptBenchmark</code>.
+ */
+public class ScriptBenchmark
+{
+    private static final String SCRIPT = "a = [ 1 2 3 4 5 ]; m = [ k1=v1 k2=v2 ]; "
+        + "f = { x = $args ; y = %(2*3+1) }; r = %(1+2*3) ; s = \"$a $m\"";
+
+    public static void main(String[] args) throws Exception
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        ThreadIOImpl threadIO = new ThreadIOImpl();
+        threadIO.start();
+        try
+        {
+            CommandProcessorImpl processor = new CommandProcessorImpl(threadIO);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CommandSessionImpl session = processor.createSession(
+                new ByteArrayInputStream(new byte[0]), out, out);
+
+            for (int round = 0; round < 3; round++)
+            {
+                System.out.printf("round %d: execute parsed each time %,.0f scripts/s, cached %,.0f scripts/s%n",
+                    round, run(session, processor, iterations, false),
+                    run(session, processor, iterations, true));
+                System.out.printf("round %d: parse only %,.0f scripts/s, cached %,.0f scripts/s%n",
+                    round, parse(processor, iterations * 10, false),
+                    parse(processor, iterations * 10, true));
+            }
+            session.close();
+        }
+        finally
+        {
+            threadIO.stop();
+        }
+    }
+
+    private static double run(CommandSessionImpl session, CommandProcessorImpl processor,
+        int iterations, boolean cached) throws Exception
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            if (!cached)
+            {
+                processor.programs.clear();
+            }
+            session.execute(SCRIPT);
+        }
+        return iterations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static double parse(CommandProcessorImpl processor, int iterations, boolean cached)
+    {
+        int tokens = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            if (!cached)
+            {
+                processor.programs.clear();
+            }
+            tokens += processor.programs.program(SCRIPT).tokens().size();
+        }
+        double result = iterations / ((System.nanoTime() - start) / 1e9);
+        return tokens > 0 ? result : 0;
+    }
+}
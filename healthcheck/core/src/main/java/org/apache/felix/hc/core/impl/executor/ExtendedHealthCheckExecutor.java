@@ -26,7 +26,7 @@ import org.apache.felix.hc.api.execution.HealthCheckExecutor;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.osgi.framework.ServiceReference;
 
-/** Internal service used by the JMX and ServiceUnavailableFilter */
+/** Internal service used by the JMX, ServiceUnavailableFilter and HealthCheckExecutorServlet */
 public interface ExtendedHealthCheckExecutor extends HealthCheckExecutor {
 
     /** execute single health check using cache, used by JMX */
@@ -38,4 +38,8 @@ public interface ExtendedHealthCheckExecutor extends HealthCheckExecutor {
     /** internal interface to execute checks for service references */
     List<HealthCheckExecutionResult> execute(final ServiceReference<HealthCheck>[] healthCheckReferences, HealthCheckExecutionOptions options);
 
+    /** internal interface to execute checks passing each result to the callback as soon as it is available, used by the streaming
+     * formats of the servlet. The callback is called from the calling thread. */
+    void execute(HealthCheckSelector selector, HealthCheckExecutionOptions options, HealthCheckFuture.Callback callback);
+
 }
\ No newline at end of file
@@ -229,6 +229,22 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
         return results;
     }
 
+    /** @see org.apache.felix.hc.core.impl.executor.ExtendedHealthCheckExecutor#execute(HealthCheckSelector, HealthCheckExecutionOptions,
+     *      HealthCheckFuture.Callback) */
+    @Override
+    public void execute(HealthCheckSelector selector, HealthCheckExecutionOptions options, HealthCheckFuture.Callback callback) {
+        logger.debug("Starting streaming execution of checks for filter selector {} and execution options {}", selector, options);
+
+        if (ArrayUtils.isEmpty(selector.tags())) {
+            logger.debug("Using default tags");
+            selector.withTags(defaultTags);
+        }
+
+        final ServiceReference<HealthCheck>[] healthCheckReferences = selectHealthCheckReferences(selector, options);
+        final List<HealthCheckExecutionResult> results = new ArrayList<HealthCheckExecutionResult>();
+        createResultsForDescriptors(getHealthCheckMetadata(healthCheckReferences), results, options, callback);
+    }
+
     // method to get the result for one HC (using the generic method to get multiple under the hood
     private HealthCheckExecutionResult createResultsForDescriptor(final HealthCheckMetadata metadata) {
 
@@ -247,33 +263,55 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
     
     private void createResultsForDescriptors(final List<HealthCheckMetadata> healthCheckDescriptors,
             final List<HealthCheckExecutionResult> results, HealthCheckExecutionOptions options) {
+        createResultsForDescriptors(healthCheckDescriptors, results, options, null);
+    }
+
+    /** Creates the results for the given descriptors. If a callback is given, each result is passed to it as soon as it is
+     * available, i.e. results from async checks and the cache right away and results of futures as they finish. */
+    private void createResultsForDescriptors(final List<HealthCheckMetadata> healthCheckDescriptors,
+            final List<HealthCheckExecutionResult> results, HealthCheckExecutionOptions options, HealthCheckFuture.Callback callback) {
         // -- All methods below check if they can transform a healthCheckDescriptor into a result
         // -- if yes the descriptor is removed from the list and the result added
+        final List<HealthCheckExecutionResult> availableResults = new ArrayList<HealthCheckExecutionResult>();
 
         // get async results
         if (!options.isForceInstantExecution()) {
             if (asyncHealthCheckExecutor != null) {
-                asyncHealthCheckExecutor.collectAsyncResults(healthCheckDescriptors, results, healthCheckResultCache);
+                asyncHealthCheckExecutor.collectAsyncResults(healthCheckDescriptors, availableResults, healthCheckResultCache);
             }
         }
 
         // reuse cached results where possible
         if (!options.isForceInstantExecution()) {
-            healthCheckResultCache.useValidCacheResults(healthCheckDescriptors, results, resultCacheTtlInMs);
+            healthCheckResultCache.useValidCacheResults(healthCheckDescriptors, availableResults, resultCacheTtlInMs);
         }
+        addResults(availableResults, results, callback);
 
         // everything else is executed in parallel via futures
         List<HealthCheckFuture> futures = createOrReuseFutures(healthCheckDescriptors);
 
         // wait for futures at most until timeout (but will return earlier if all futures are finished)
-        waitForFuturesRespectingTimeout(futures, options);
-        collectResultsFromFutures(futures, results);
+        waitForFuturesRespectingTimeout(futures, options, results, callback);
+
+        final List<HealthCheckExecutionResult> resultsFromFutures = new ArrayList<HealthCheckExecutionResult>();
+        collectResultsFromFutures(futures, resultsFromFutures);
+        addResults(resultsFromFutures, results, callback);
+    }
 
+    private void addResults(final List<HealthCheckExecutionResult> newResults, final List<HealthCheckExecutionResult> results,
+            HealthCheckFuture.Callback callback) {
         // respect sticky results if configured via HealthCheck.KEEP_NON_OK_RESULTS_STICKY_FOR_SEC
-        appendStickyResultLogIfConfigured(results);
+        appendStickyResultLogIfConfigured(newResults);
 
         // ensure long standing TEMPORARILY_UNAVAILABLE results are marked as CRITICAL
-        tempUnavailableGracePeriodEvaluator.evaluateGracePeriodForTemporarilyUnavailableResults(results);
+        tempUnavailableGracePeriodEvaluator.evaluateGracePeriodForTemporarilyUnavailableResults(newResults);
+
+        results.addAll(newResults);
+        if (callback != null) {
+            for (HealthCheckExecutionResult result : newResults) {
+                callback.finished(result);
+            }
+        }
     }
 
     private void appendStickyResultLogIfConfigured(List<HealthCheckExecutionResult> results) {
@@ -363,9 +401,10 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
         return future;
     }
 
-    /** Wait for the futures until the timeout is reached */
+    /** Wait for the futures until the timeout is reached. If a callback is given, the results of finished futures are added
+     * to the results while waiting and the futures are removed from the list. */
     private void waitForFuturesRespectingTimeout(final List<HealthCheckFuture> futuresForResultOfThisCall,
-            HealthCheckExecutionOptions options) {
+            HealthCheckExecutionOptions options, final List<HealthCheckExecutionResult> results, HealthCheckFuture.Callback callback) {
         final StopWatch callExcutionTimeStopWatch = new StopWatch();
         callExcutionTimeStopWatch.start();
         boolean allFuturesDone;
@@ -389,8 +428,18 @@ public class HealthCheckExecutorImpl implements ExtendedHealthCheckExecutor, Ser
             }
 
             allFuturesDone = true;
-            for (final HealthCheckFuture healthCheckFuture : futuresForResultOfThisCall) {
-                allFuturesDone &= healthCheckFuture.isDone();
+            final Iterator<HealthCheckFuture> futuresIt = futuresForResultOfThisCall.iterator();
+            while (futuresIt.hasNext()) {
+                final HealthCheckFuture healthCheckFuture = futuresIt.next();
+                if (!healthCheckFuture.isDone()) {
+                    allFuturesDone = false;
+                } else if (callback != null) {
+                    // pass on the result right away instead of waiting for the slowest check
+                    final List<HealthCheckExecutionResult> finishedResults = new ArrayList<HealthCheckExecutionResult>();
+                    finishedResults.add(collectResultFromFuture(healthCheckFuture));
+                    addResults(finishedResults, results, callback);
+                    futuresIt.remove();
+                }
             }
         } while (!allFuturesDone && callExcutionTimeStopWatch.getTime() < effectiveTimeout);
     }
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.felix.hc.api.HealthCheck;
@@ -35,6 +36,7 @@ import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.ExecutionResult;
 import org.apache.felix.hc.core.impl.executor.HealthCheckExecutorThreadPool;
+import org.apache.felix.hc.core.impl.executor.HealthCheckFuture;
 import org.apache.felix.hc.core.impl.executor.HealthCheckResultCache;
 import org.apache.felix.hc.core.impl.util.HealthCheckFilter;
 import org.osgi.framework.BundleContext;
@@ -63,6 +65,8 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
 
     private Map<HealthCheckMetadata, AsyncHealthCheckJob> registeredJobs = new HashMap<HealthCheckMetadata, AsyncHealthCheckJob>();
 
+    private final List<HealthCheckFuture.Callback> resultListeners = new CopyOnWriteArrayList<HealthCheckFuture.Callback>();
+
     private BundleContext bundleContext;
 
     private QuartzCronScheduler quartzCronScheduler = null;
@@ -236,6 +240,23 @@ public class AsyncHealthCheckExecutor implements ServiceListener {
             asyncResultsByDescriptor.put(result.getHealthCheckMetadata(), (ExecutionResult) result);
             LOG.debug("Updated result for async hc {} with {}", result.getHealthCheckMetadata(), result);
         }
+        for (HealthCheckFuture.Callback resultListener : resultListeners) {
+            try {
+                resultListener.finished(result);
+            } catch (RuntimeException e) {
+                LOG.warn("Result listener {} failed for result {}: {}", resultListener, result, e, e);
+            }
+        }
+    }
+
+    /** Registers a listener that is called with every new result of async checks and of checks run by the main executor. Listeners
+     * are called from the thread that executed the check and hence must return quickly. */
+    public void addResultListener(HealthCheckFuture.Callback resultListener) {
+        resultListeners.add(resultListener);
+    }
+
+    public void removeResultListener(HealthCheckFuture.Callback resultListener) {
+        resultListeners.remove(resultListener);
     }
 
     private boolean isAsync(HealthCheckMetadata healthCheckMetadata) {
@@ -21,10 +21,14 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -37,8 +41,12 @@ import org.apache.felix.hc.api.Result;
 import org.apache.felix.hc.api.execution.HealthCheckExecutionOptions;
 import org.apache.felix.hc.api.execution.HealthCheckExecutionResult;
 import org.apache.felix.hc.api.execution.HealthCheckExecutor;
+import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.CombinedExecutionResult;
+import org.apache.felix.hc.core.impl.executor.ExtendedHealthCheckExecutor;
+import org.apache.felix.hc.core.impl.executor.HealthCheckFuture;
+import org.apache.felix.hc.core.impl.executor.async.AsyncHealthCheckExecutor;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -55,15 +63,19 @@ import org.slf4j.LoggerFactory;
  * Parameters:
  * <ul>
  * <li>tags: The health check tags to take into account
- * <li>format: html|json|jsonp|txt|verbose.txt
+ * <li>format: html|json|jsonp|txt|verbose.txt|ndjson|sse
  * <li>includeDebug: If true, debug messages from result log are included.
  * <li>callback: For jsonp, the JS callback function name (defaults to "processHealthCheckResults")
  * <li>httpStatus: health check status to http status mapping in format httpStatus=WARN:418,CRITICAL:503,HEALTH_CHECK_ERROR:500.
+ * <li>subscribe: For sse, if true the connection is kept open and status changes are pushed as they happen.
  * </ul>
  *
  * For omitted health check status values the next best code will be used (e.g. for httpStatus=CRITICAL:503 a result WARN will return 200,
  * CRITICAL 503 and HEALTH_CHECK_ERROR also 503). By default all requests answer with an http status of 200.
  * <p>
+ * The streaming formats ndjson and sse write each result as soon as its check is finished, followed by the overall result. As the
+ * response is committed before the overall result is known, they always answer with an http status of 200.
+ * <p>
  * Useful in combination with load balancers. */
 @Component(configurationPolicy = ConfigurationPolicy.REQUIRE)
 @Designate(ocd = HealthCheckExecutorServletConfiguration.class, factory=true)
@@ -85,7 +97,7 @@ public class HealthCheckExecutorServlet extends HttpServlet {
 
     static final Param PARAM_TAGS = new Param("tags",
             "Comma-separated list of health checks tags to select - can also be specified via path, e.g. /system/health/tag1,tag2.json. Exclusions can be done by prepending '-' to the tag name");
-    static final Param PARAM_FORMAT = new Param("format", "Output format, html|json|jsonp|txt - an extension in the URL overrides this");
+    static final Param PARAM_FORMAT = new Param("format", "Output format, html|json|jsonp|txt|verbose.txt|ndjson|sse - an extension in the URL overrides this");
     static final Param PARAM_HTTP_STATUS = new Param("httpStatus", "Specify HTTP result code, for example"
             + " CRITICAL:503 (status 503 if result >= CRITICAL)"
             + " or CRITICAL:503,HEALTH_CHECK_ERROR:500,OK:418 for more specific HTTP status");
@@ -106,25 +118,36 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     static final Param PARAM_JSONP_CALLBACK = new Param("callback",
             "name of the JSONP callback function to use, defaults to " + JSONP_CALLBACK_DEFAULT);
 
+    static final Param PARAM_SUBSCRIBE = new Param("subscribe",
+            "For format sse, if true the connection is kept open after the results have been sent and the results of the selected health checks are pushed whenever their status changes");
+
     static final Param[] PARAM_LIST = { PARAM_TAGS, PARAM_NAMES, PARAM_FORMAT, PARAM_HTTP_STATUS, PARAM_COMBINE_TAGS_WITH_OR,
-            PARAM_FORCE_INSTANT_EXECUTION, PARAM_OVERRIDE_GLOBAL_TIMEOUT, PARAM_INCLUDE_DEBUG, PARAM_JSONP_CALLBACK };
+            PARAM_FORCE_INSTANT_EXECUTION, PARAM_OVERRIDE_GLOBAL_TIMEOUT, PARAM_INCLUDE_DEBUG, PARAM_JSONP_CALLBACK, PARAM_SUBSCRIBE };
 
     static final String FORMAT_HTML = "html";
     static final String FORMAT_JSON = "json";
     static final String FORMAT_JSONP = "jsonp";
     static final String FORMAT_TXT = "txt";
     static final String FORMAT_VERBOSE_TXT = "verbose.txt";
+    static final String FORMAT_NDJSON = "ndjson";
+    static final String FORMAT_SSE = "sse";
 
     private static final String CONTENT_TYPE_HTML = "text/html";
     private static final String CONTENT_TYPE_TXT = "text/plain";
     private static final String CONTENT_TYPE_JSON = "application/json";
     private static final String CONTENT_TYPE_JSONP = "application/javascript";
+    private static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
+    private static final String CONTENT_TYPE_SSE = "text/event-stream";
     private static final String STATUS_HEADER_NAME = "X-Health";
 
     private static final String CACHE_CONTROL_KEY = "Cache-control";
     private static final String CACHE_CONTROL_VALUE = "no-cache";
     private static final String CORS_ORIGIN_HEADER_NAME = "Access-Control-Allow-Origin";
 
+    /** Interval for comments sent to subscribers without changes, keeps proxies from closing the connection and detects closed
+     * connections */
+    static final long SUBSCRIPTION_HEARTBEAT_MS = 15000L;
+
     private String[] servletPaths;
 
     private boolean disabled;
@@ -139,6 +162,10 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     private String[] servletDefaultTags;
     private String defaultFormat;
     private boolean defaultCombineTagsWithOr;
+    private int maxSubscriptions;
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    private volatile boolean active;
     
     @Reference
     private HttpService httpService;
@@ -158,6 +185,9 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     @Reference
     ResultTxtVerboseSerializer verboseTxtSerializer;
 
+    @Reference
+    AsyncHealthCheckExecutor asyncHealthCheckExecutor;
+
     @Activate
     protected final void activate(final HealthCheckExecutorServletConfiguration configuration) {
         this.servletPath = configuration.servletPath();
@@ -183,6 +213,11 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         
         this.corsAccessControlAllowOrigin = configuration.cors_accessControlAllowOrigin();
         LOG.info("corsAccessControlAllowOrigin={}", corsAccessControlAllowOrigin);
+
+        this.maxSubscriptions = configuration.maxSubscriptions();
+        LOG.info("maxSubscriptions={}", maxSubscriptions);
+
+        this.active = true;
         
         if (disabled) {
             LOG.info("Health Check Servlet is disabled by configuration");
@@ -196,6 +231,8 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         servletsToRegister.put(this.servletPath + "." + FORMAT_JSONP, new ProxyServlet(FORMAT_JSONP));
         servletsToRegister.put(this.servletPath + "." + FORMAT_TXT, new ProxyServlet(FORMAT_TXT));
         servletsToRegister.put(this.servletPath + "." + FORMAT_VERBOSE_TXT, new ProxyServlet(FORMAT_VERBOSE_TXT));
+        servletsToRegister.put(this.servletPath + "." + FORMAT_NDJSON, new ProxyServlet(FORMAT_NDJSON));
+        servletsToRegister.put(this.servletPath + "." + FORMAT_SSE, new ProxyServlet(FORMAT_SSE));
 
         for (final Map.Entry<String, HttpServlet> servlet : servletsToRegister.entrySet()) {
             try {
@@ -211,6 +248,9 @@ public class HealthCheckExecutorServlet extends HttpServlet {
 
     @Deactivate
     public void deactivate(final ComponentContext componentContext) {
+        // ends open subscriptions
+        this.active = false;
+
         if (disabled || this.servletPaths == null) {
             return;
         }
@@ -278,6 +318,23 @@ public class HealthCheckExecutorServlet extends HttpServlet {
             executionOptions.setOverrideGlobalTimeout((int) servletDefaultTimeout);
         }
 
+        if (FORMAT_NDJSON.equals(format) || FORMAT_SSE.equals(format)) {
+            final boolean subscribe = FORMAT_SSE.equals(format) && Boolean.valueOf(request.getParameter(PARAM_SUBSCRIBE.name));
+            if (subscribe && !acquireSubscription()) {
+                LOG.debug("Rejecting subscription, {} subscriptions are open already", maxSubscriptions);
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many subscriptions");
+                return;
+            }
+            try {
+                sendStreamingResponse(selector, executionOptions, FORMAT_SSE.equals(format), subscribe, response, includeDebug);
+            } finally {
+                if (subscribe) {
+                    subscriptions.decrementAndGet();
+                }
+            }
+            return;
+        }
+
         List<HealthCheckExecutionResult> executionResults = this.healthCheckExecutor.execute(selector, executionOptions);
 
         CombinedExecutionResult combinedExecutionResult = new CombinedExecutionResult(executionResults);
@@ -301,7 +358,7 @@ public class HealthCheckExecutorServlet extends HttpServlet {
             sendTxtResponse(overallResult, response, StringUtils.equals(format, FORMAT_VERBOSE_TXT), executionResults, includeDebug);
         } else {
             response.setContentType("text/plain");
-            response.getWriter().println("Invalid format " + format + " - supported formats: html|json|jsonp|txt|verbose.txt");
+            response.getWriter().println("Invalid format " + format + " - supported formats: html|json|jsonp|txt|verbose.txt|ndjson|sse");
         }
     }
 
@@ -317,7 +374,7 @@ public class HealthCheckExecutorServlet extends HttpServlet {
     }
 
     private String[] splitFormat(String pathInfo) {
-        for (String format : new String[] { FORMAT_HTML, FORMAT_JSON, FORMAT_JSONP, FORMAT_VERBOSE_TXT, FORMAT_TXT }) {
+        for (String format : new String[] { FORMAT_HTML, FORMAT_JSON, FORMAT_JSONP, FORMAT_VERBOSE_TXT, FORMAT_TXT, FORMAT_NDJSON, FORMAT_SSE }) {
             String formatWithDot = "." + format;
             if (StringUtils.endsWith(pathInfo, formatWithDot)) {
                 return new String[] { StringUtils.substringBeforeLast(pathInfo, formatWithDot), format };
@@ -361,6 +418,154 @@ public class HealthCheckExecutorServlet extends HttpServlet {
         response.getWriter().append(this.htmlSerializer.serialize(overallResult, executionResults, getHtmlHelpText(), includeDebug));
     }
 
+    private void sendStreamingResponse(final HealthCheckSelector selector, final HealthCheckExecutionOptions executionOptions,
+            final boolean sse, final boolean subscribe, final HttpServletResponse response, final boolean includeDebug)
+            throws IOException {
+        sendNoCacheHeaders(response);
+        sendCorsHeaders(response);
+        response.setContentType(sse ? CONTENT_TYPE_SSE : CONTENT_TYPE_NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        final PrintWriter writer = response.getWriter();
+
+        // the listener is registered before the execution to not miss changes happening in the meantime
+        final PendingResults updates = subscribe ? new PendingResults() : null;
+        if (subscribe) {
+            asyncHealthCheckExecutor.addResultListener(updates);
+        }
+        try {
+            final Map<HealthCheckMetadata, HealthCheckExecutionResult> latestResults = new LinkedHashMap<HealthCheckMetadata, HealthCheckExecutionResult>();
+            final HealthCheckFuture.Callback streamingCallback = new HealthCheckFuture.Callback() {
+                @Override
+                public void finished(HealthCheckExecutionResult result) {
+                    latestResults.put(result.getHealthCheckMetadata(), result);
+                    writeStreamedResult(writer, sse, result, includeDebug);
+                }
+            };
+            if (this.healthCheckExecutor instanceof ExtendedHealthCheckExecutor) {
+                ((ExtendedHealthCheckExecutor) this.healthCheckExecutor).execute(selector, executionOptions, streamingCallback);
+            } else {
+                for (HealthCheckExecutionResult result : this.healthCheckExecutor.execute(selector, executionOptions)) {
+                    streamingCallback.finished(result);
+                }
+            }
+            writeStreamedOverallResult(writer, sse, latestResults);
+
+            if (subscribe) {
+                updates.select(latestResults.keySet());
+                pushStatusChanges(writer, updates, latestResults, includeDebug);
+            }
+        } finally {
+            if (subscribe) {
+                asyncHealthCheckExecutor.removeResultListener(updates);
+            }
+        }
+    }
+
+    /** Subscriptions block a request thread each, so their number is limited to not exhaust the threads of the http service. */
+    private boolean acquireSubscription() {
+        int current;
+        do {
+            current = subscriptions.get();
+            if (current >= maxSubscriptions) {
+                return false;
+            }
+        } while (!subscriptions.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /** Pushes results of the selected checks whose status has changed, until the client disconnects or the servlet is deactivated.
+     * As all subscribers are fed from the results of the scheduled async checks and of executions triggered by other requests, any
+     * number of subscribers share the same executions. */
+    private void pushStatusChanges(final PrintWriter writer, final PendingResults updates,
+            final Map<HealthCheckMetadata, HealthCheckExecutionResult> latestResults, final boolean includeDebug) {
+        while (active && !writer.checkError()) {
+            HealthCheckExecutionResult update;
+            try {
+                update = updates.poll(SUBSCRIPTION_HEARTBEAT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (update == null) {
+                // an sse comment, checkError() detects a closed connection when flushing it
+                writer.write(":\n\n");
+                continue;
+            }
+            HealthCheckExecutionResult previousResult = latestResults.get(update.getHealthCheckMetadata());
+            latestResults.put(update.getHealthCheckMetadata(), update);
+            if (previousResult.getHealthCheckResult().getStatus() != update.getHealthCheckResult().getStatus()) {
+                writeStreamedResult(writer, true, update, includeDebug);
+                writeStreamedOverallResult(writer, true, latestResults);
+            }
+        }
+        LOG.debug("Subscription ended");
+    }
+
+    /** Results waiting to be pushed to a subscriber. Only the latest result of each check is kept, so a subscriber that is slower
+     * than the checks does not accumulate results. Results of checks not selected by the subscription are dropped as soon as the
+     * selection is known, that is after the initial execution. */
+    static final class PendingResults implements HealthCheckFuture.Callback {
+
+        private final Map<HealthCheckMetadata, HealthCheckExecutionResult> pending = new LinkedHashMap<HealthCheckMetadata, HealthCheckExecutionResult>();
+        private Set<HealthCheckMetadata> selected;
+
+        @Override
+        public synchronized void finished(HealthCheckExecutionResult result) {
+            HealthCheckMetadata metadata = result.getHealthCheckMetadata();
+            if (selected != null && !selected.contains(metadata)) {
+                return;
+            }
+            // removed first to keep the results in the order they arrived
+            pending.remove(metadata);
+            pending.put(metadata, result);
+            notifyAll();
+        }
+
+        synchronized void select(Set<HealthCheckMetadata> selection) {
+            selected = new HashSet<HealthCheckMetadata>(selection);
+            pending.keySet().retainAll(selected);
+        }
+
+        /** @return the oldest pending result, or null if there is none within the given timeout */
+        synchronized HealthCheckExecutionResult poll(long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            long remaining = timeoutMs;
+            while (pending.isEmpty() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            Iterator<HealthCheckExecutionResult> it = pending.values().iterator();
+            HealthCheckExecutionResult result = it.next();
+            it.remove();
+            return result;
+        }
+    }
+
+    private void writeStreamedResult(final PrintWriter writer, final boolean sse, final HealthCheckExecutionResult result,
+            final boolean includeDebug) {
+        writeStreamedLine(writer, sse, "result", jsonSerializer.serializeResult(result, includeDebug));
+    }
+
+    private void writeStreamedOverallResult(final PrintWriter writer, final boolean sse,
+            final Map<HealthCheckMetadata, HealthCheckExecutionResult> latestResults) {
+        Result overallResult = new CombinedExecutionResult(new ArrayList<HealthCheckExecutionResult>(latestResults.values()))
+                .getHealthCheckResult();
+        writeStreamedLine(writer, sse, "overallResult", jsonSerializer.serializeOverallResult(overallResult));
+    }
+
+    private void writeStreamedLine(final PrintWriter writer, final boolean sse, final String event, final String json) {
+        if (sse) {
+            writer.write("event: " + event + "\ndata: " + json + "\n\n");
+        } else {
+            writer.write(json + "\n");
+        }
+        // sends the line to the client right away
+        writer.flush();
+    }
+
     private void sendNoCacheHeaders(final HttpServletResponse response) {
         response.setHeader(CACHE_CONTROL_KEY, CACHE_CONTROL_VALUE);
     }
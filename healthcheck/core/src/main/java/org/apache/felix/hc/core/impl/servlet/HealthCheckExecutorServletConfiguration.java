@@ -20,7 +20,7 @@ package org.apache.felix.hc.core.impl.servlet;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
-@ObjectClassDefinition(name = "Apache Felix Health Check Executor Servlet", description = "Serializes health check results into html, json or txt format")
+@ObjectClassDefinition(name = "Apache Felix Health Check Executor Servlet", description = "Serializes health check results into html, json, txt, ndjson or sse format")
 @interface HealthCheckExecutorServletConfiguration {
 
     String SERVLET_PATH_DEFAULT = "/system/health";
@@ -50,6 +50,9 @@ import org.osgi.service.metatype.annotations.ObjectClassDefinition;
     @AttributeDefinition(name = "CORS Access-Control-Allow-Origin", description = "Sets the Access-Control-Allow-Origin CORS header. If blank no header is sent.")
     String cors_accessControlAllowOrigin() default "*";
 
+    @AttributeDefinition(name = "Max Subscriptions", description = "Maximum number of concurrent sse subscriptions (subscribe=true). Each subscription keeps a request thread busy, further subscriptions are rejected with http status 503.")
+    int maxSubscriptions() default 10;
+
     @AttributeDefinition
     String webconsole_configurationFactory_nameHint() default "{servletPath} default format:{format} default tags:{tags} ";
 
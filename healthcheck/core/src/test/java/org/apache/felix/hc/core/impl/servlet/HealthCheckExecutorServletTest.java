@@ -18,12 +18,18 @@
 package org.apache.felix.hc.core.impl.servlet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -31,8 +37,10 @@ import static org.mockito.MockitoAnnotations.initMocks;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -48,12 +56,17 @@ import org.apache.felix.hc.api.execution.HealthCheckExecutor;
 import org.apache.felix.hc.api.execution.HealthCheckMetadata;
 import org.apache.felix.hc.api.execution.HealthCheckSelector;
 import org.apache.felix.hc.core.impl.executor.ExecutionResult;
+import org.apache.felix.hc.core.impl.executor.ExtendedHealthCheckExecutor;
+import org.apache.felix.hc.core.impl.executor.HealthCheckFuture;
+import org.apache.felix.hc.core.impl.executor.async.AsyncHealthCheckExecutor;
 import org.hamcrest.Description;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
 
@@ -103,6 +116,7 @@ public class HealthCheckExecutorServletTest {
         doReturn("OK:200").when(healthCheckExecutorServletConfig).httpStatusMapping();
         doReturn(new String[0]).when(healthCheckExecutorServletConfig).tags();
         doReturn(HealthCheckExecutorServlet.FORMAT_HTML).when(healthCheckExecutorServletConfig).format();
+        doReturn(1).when(healthCheckExecutorServletConfig).maxSubscriptions();
         healthCheckExecutorServlet.activate(healthCheckExecutorServletConfig);
     }
 
@@ -221,6 +235,163 @@ public class HealthCheckExecutorServletTest {
 
     }
 
+    @Test
+    public void testDoGetNdjson() throws ServletException, IOException {
+
+        StringWriter output = useJsonSerializerAndStringWriter();
+        doReturn("/testTag.ndjson").when(request).getPathInfo();
+        List<HealthCheckExecutionResult> executionResults = Arrays.<HealthCheckExecutionResult> asList(
+                getExecutionResult(hcServiceRef, Result.Status.WARN), getExecutionResult(serviceRef(501L), Result.Status.OK));
+        doReturn(executionResults).when(healthCheckExecutor).execute(selector(new String[] { "testTag" }, new String[0]),
+                any(HealthCheckExecutionOptions.class));
+
+        healthCheckExecutorServlet.doGet(request, response);
+
+        verify(response).setContentType("application/x-ndjson");
+        verify(response, never()).setStatus(anyInt());
+        String[] lines = output.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{") && lines[0].contains("\"status\":\"WARN\""));
+        assertTrue(lines[1], lines[1].startsWith("{") && lines[1].contains("\"status\":\"OK\""));
+        assertEquals("{\"overallResult\":\"WARN\"}", lines[2]);
+    }
+
+    @Test
+    public void testDoGetSseStreamsResultsAsTheyFinish() throws ServletException, IOException {
+
+        final StringWriter output = useJsonSerializerAndStringWriter();
+        doReturn("/testTag.sse").when(request).getPathInfo();
+        ExtendedHealthCheckExecutor extendedHealthCheckExecutor = mock(ExtendedHealthCheckExecutor.class);
+        healthCheckExecutorServlet.healthCheckExecutor = extendedHealthCheckExecutor;
+        final ServiceReference otherHcServiceRef = serviceRef(501L);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                HealthCheckFuture.Callback callback = (HealthCheckFuture.Callback) invocation.getArguments()[2];
+                callback.finished(getExecutionResult(hcServiceRef, Result.Status.OK));
+                // the first result is sent before the second check finishes
+                assertTrue(output.toString().startsWith("event: result\ndata: {"));
+                callback.finished(getExecutionResult(otherHcServiceRef, Result.Status.CRITICAL));
+                return null;
+            }
+        }).when(extendedHealthCheckExecutor).execute(selector(new String[] { "testTag" }, new String[0]),
+                any(HealthCheckExecutionOptions.class), any(HealthCheckFuture.Callback.class));
+
+        healthCheckExecutorServlet.doGet(request, response);
+
+        verify(response).setContentType("text/event-stream");
+        String[] events = output.toString().split("\n\n");
+        assertEquals(3, events.length);
+        assertTrue(events[1], events[1].startsWith("event: result\ndata: {") && events[1].contains("\"status\":\"CRITICAL\""));
+        assertEquals("event: overallResult\ndata: {\"overallResult\":\"CRITICAL\"}", events[2]);
+    }
+
+    @Test(timeout = 10000)
+    public void testDoGetSseSubscribePushesStatusChanges() throws Exception {
+
+        final StringWriter output = useJsonSerializerAndStringWriter();
+        doReturn("/testTag.sse").when(request).getPathInfo();
+        doReturn("true").when(request).getParameter(HealthCheckExecutorServlet.PARAM_SUBSCRIBE.name);
+        final ServiceReference otherHcServiceRef = serviceRef(501L);
+        doReturn(Arrays.<HealthCheckExecutionResult> asList(getExecutionResult(hcServiceRef, Result.Status.OK),
+                getExecutionResult(otherHcServiceRef, Result.Status.OK))).when(healthCheckExecutor)
+                        .execute(selector(new String[] { "testTag" }, new String[0]), any(HealthCheckExecutionOptions.class));
+        AsyncHealthCheckExecutor asyncHealthCheckExecutor = new AsyncHealthCheckExecutor();
+        healthCheckExecutorServlet.asyncHealthCheckExecutor = asyncHealthCheckExecutor;
+
+        Thread subscriber = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    healthCheckExecutorServlet.doGet(request, response);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        subscriber.start();
+        waitForOutput(output, "overallResult");
+
+        // a result without status change and a result of a check that was not selected are not pushed
+        asyncHealthCheckExecutor.updateWith(getExecutionResult(hcServiceRef, Result.Status.OK));
+        asyncHealthCheckExecutor.updateWith(getExecutionResult(serviceRef(502L), Result.Status.CRITICAL));
+        asyncHealthCheckExecutor.updateWith(getExecutionResult(otherHcServiceRef, Result.Status.WARN));
+        waitForOutput(output, "{\"overallResult\":\"WARN\"}");
+
+        healthCheckExecutorServlet.deactivate(null);
+        // wakes up the subscriber to end the subscription
+        asyncHealthCheckExecutor.updateWith(getExecutionResult(hcServiceRef, Result.Status.OK));
+        subscriber.join();
+
+        String[] events = output.toString().split("\n\n");
+        assertEquals(5, events.length);
+        assertTrue(events[3], events[3].startsWith("event: result\ndata: {") && events[3].contains("\"status\":\"WARN\""));
+        assertEquals("event: overallResult\ndata: {\"overallResult\":\"WARN\"}", events[4]);
+        assertFalse(output.toString().contains("CRITICAL"));
+    }
+
+    @Test
+    public void testDoGetSseSubscribeRejectedWhenMaxSubscriptionsReached() throws Exception {
+
+        doReturn(0).when(healthCheckExecutorServletConfig).maxSubscriptions();
+        healthCheckExecutorServlet.activate(healthCheckExecutorServletConfig);
+        doReturn("/testTag.sse").when(request).getPathInfo();
+        doReturn("true").when(request).getParameter(HealthCheckExecutorServlet.PARAM_SUBSCRIBE.name);
+
+        healthCheckExecutorServlet.doGet(request, response);
+
+        verify(response).sendError(eq(503), anyString());
+        verifyZeroInteractions(healthCheckExecutor);
+    }
+
+    @Test
+    public void testPendingResultsKeepLatestResultOfSelectedChecks() throws Exception {
+
+        final ServiceReference otherHcServiceRef = serviceRef(501L);
+        HealthCheckExecutorServlet.PendingResults pendingResults = new HealthCheckExecutorServlet.PendingResults();
+        pendingResults.finished(getExecutionResult(hcServiceRef, Result.Status.OK));
+        pendingResults.finished(getExecutionResult(serviceRef(502L), Result.Status.OK));
+        pendingResults.finished(getExecutionResult(otherHcServiceRef, Result.Status.OK));
+        pendingResults.finished(getExecutionResult(hcServiceRef, Result.Status.WARN));
+
+        // results received during the initial execution are kept for the selected checks only
+        pendingResults.select(new HashSet<HealthCheckMetadata>(Arrays.asList(new HealthCheckMetadata(hcServiceRef),
+                new HealthCheckMetadata(otherHcServiceRef))));
+        pendingResults.finished(getExecutionResult(serviceRef(502L), Result.Status.CRITICAL));
+        pendingResults.finished(getExecutionResult(otherHcServiceRef, Result.Status.CRITICAL));
+
+        HealthCheckExecutionResult result = pendingResults.poll(0);
+        assertEquals(new HealthCheckMetadata(hcServiceRef), result.getHealthCheckMetadata());
+        assertEquals(Result.Status.WARN, result.getHealthCheckResult().getStatus());
+        result = pendingResults.poll(0);
+        assertEquals(new HealthCheckMetadata(otherHcServiceRef), result.getHealthCheckMetadata());
+        assertEquals(Result.Status.CRITICAL, result.getHealthCheckResult().getStatus());
+        assertNull(pendingResults.poll(10));
+    }
+
+    private StringWriter useJsonSerializerAndStringWriter() throws IOException {
+        healthCheckExecutorServlet.jsonSerializer = new ResultJsonSerializer();
+        StringWriter output = new StringWriter();
+        doReturn(new PrintWriter(output)).when(response).getWriter();
+        return output;
+    }
+
+    private static void waitForOutput(StringWriter output, String expected) throws InterruptedException {
+        while (!output.toString().contains(expected)) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static ServiceReference serviceRef(long serviceId) {
+        ServiceReference serviceRef = mock(ServiceReference.class);
+        doReturn(serviceId).when(serviceRef).getProperty(Constants.SERVICE_ID);
+        return serviceRef;
+    }
+
+    private static HealthCheckExecutionResult getExecutionResult(ServiceReference serviceRef, Result.Status status) {
+        return new ExecutionResult(new HealthCheckMetadata(serviceRef), new Result(status, status.name()), 100);
+    }
+
     private List<HealthCheckExecutionResult> getExecutionResults(Result.Status worstStatus) {
         List<HealthCheckExecutionResult> results = new ArrayList<HealthCheckExecutionResult>();
         results.add(new ExecutionResult(new HealthCheckMetadata(hcServiceRef), new Result(worstStatus, worstStatus.name()), 100));
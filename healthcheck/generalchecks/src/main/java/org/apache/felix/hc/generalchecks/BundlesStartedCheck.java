@@ -17,6 +17,13 @@
  */
 package org.apache.felix.hc.generalchecks;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -26,10 +33,13 @@ import org.apache.felix.hc.api.HealthCheck;
 import org.apache.felix.hc.api.Result;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.Designate;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
@@ -63,6 +73,12 @@ public class BundlesStartedCheck implements HealthCheck {
         @AttributeDefinition(name = "CRITICAL for inactive bundles", description = "By default inactive bundles produce warnings, if this is set to true inactive bundles produce a CRITICAL result")
         boolean useCriticalForInactive() default false;
         
+        @AttributeDefinition(name = "Incremental", description = "If true, the state of the bundles is tracked via bundle events and the result is only computed again after a change, instead of reading all bundles on every execution")
+        boolean incremental() default false;
+
+        @AttributeDefinition(name = "Full recomputation interval", description = "In incremental mode, interval in seconds after which the state of all bundles is read again")
+        long fullRecomputationIntervalInSec() default 300;
+
         @AttributeDefinition
         String webconsole_configurationFactory_nameHint() default "Bundles started includes: {includesRegex} excludes: {excludesRegex}";
     }
@@ -72,64 +88,149 @@ public class BundlesStartedCheck implements HealthCheck {
     private Pattern excludesRegex;
     boolean useCriticalForInactive;
 
+    private boolean incremental;
+    private long fullRecomputationIntervalInMs;
+    private BundleListener bundleListener;
+    // guarded by this, replaced as a whole on full recomputation
+    private Map<Long, BundleStatus> bundleStatuses = new TreeMap<>();
+    private final AtomicLong changeCount = new AtomicLong();
+    private volatile CachedResult cachedResult;
+
     @Activate
     protected void activate(BundleContext bundleContext, Config config) {
         this.bundleContext = bundleContext;
         this.includesRegex = Pattern.compile(config.includesRegex());
         this.excludesRegex = StringUtils.isNotBlank(config.excludesRegex()) ? Pattern.compile(config.excludesRegex()) : null;
         this.useCriticalForInactive = config.useCriticalForInactive();
-        LOG.debug("Activated bundles started HC for includesRegex={} excludesRegex={}% useCriticalForInactive={}", includesRegex, excludesRegex, useCriticalForInactive);
+        this.incremental = config.incremental();
+        this.fullRecomputationIntervalInMs = TimeUnit.SECONDS.toMillis(config.fullRecomputationIntervalInSec());
+        if (incremental) {
+            // register before the first full computation to not miss any change
+            bundleListener = this::bundleChanged;
+            bundleContext.addBundleListener(bundleListener);
+        }
+        LOG.debug("Activated bundles started HC for includesRegex={} excludesRegex={}% useCriticalForInactive={} incremental={}", includesRegex, excludesRegex, useCriticalForInactive, incremental);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (bundleListener != null) {
+            bundleContext.removeBundleListener(bundleListener);
+            bundleListener = null;
+        }
+        synchronized (this) {
+            bundleStatuses = new TreeMap<>();
+        }
+        cachedResult = null;
     }
 
-    
     @Override
     public Result execute() {
+        if (!incremental) {
+            Bundle[] bundles = this.bundleContext.getBundles();
+            List<BundleStatus> statuses = new ArrayList<>(bundles.length);
+            for (Bundle bundle : bundles) {
+                statuses.add(getBundleStatus(bundle));
+            }
+            return createResult(statuses);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedResult cached = cachedResult;
+        if (cached == null || cached.changeCount != changeCount.get() || now - cached.fullComputationTime >= fullRecomputationIntervalInMs) {
+            cached = updateResult(now);
+        }
+        return cached.result;
+    }
+
+    private synchronized CachedResult updateResult(long now) {
+        CachedResult cached = cachedResult;
+        long count = changeCount.get();
+        if (cached == null || now - cached.fullComputationTime >= fullRecomputationIntervalInMs) {
+            // bundle events are applied under the same lock, so none is lost while the new map is built
+            Map<Long, BundleStatus> statuses = new TreeMap<>();
+            for (Bundle bundle : this.bundleContext.getBundles()) {
+                if (bundle.getState() != Bundle.UNINSTALLED) {
+                    statuses.put(bundle.getBundleId(), getBundleStatus(bundle));
+                }
+            }
+            bundleStatuses = statuses;
+            cached = new CachedResult(createResult(statuses.values()), count, now);
+        } else if (cached.changeCount != count) {
+            cached = new CachedResult(createResult(bundleStatuses.values()), count, cached.fullComputationTime);
+        }
+        cachedResult = cached;
+        return cached;
+    }
+
+    private synchronized void bundleChanged(BundleEvent event) {
+        Bundle bundle = event.getBundle();
+        if (event.getType() == BundleEvent.UNINSTALLED) {
+            bundleStatuses.remove(bundle.getBundleId());
+        } else {
+            bundleStatuses.put(bundle.getBundleId(), getBundleStatus(bundle));
+        }
+        changeCount.incrementAndGet();
+    }
+
+    private BundleStatus getBundleStatus(Bundle bundle) {
+        String bundleSymbolicName = bundle.getSymbolicName();
+        int bundleState = bundle.getState();
+
+        if(!includesRegex.matcher(bundleSymbolicName).matches()) {
+            LOG.debug("Bundle {} not matched by {}", bundleSymbolicName, includesRegex);
+            return new BundleStatus(bundle.getBundleId(), bundleSymbolicName, bundleState, false, false, false);
+        }
+
+        if(excludesRegex!=null && excludesRegex.matcher(bundleSymbolicName).matches()) {
+            LOG.debug("Bundle {} excluded {}", bundleSymbolicName, excludesRegex);
+            return new BundleStatus(bundle.getBundleId(), bundleSymbolicName, bundleState, true, true, false);
+        }
+
+        boolean inactive = false;
+        if (bundleState != Bundle.ACTIVE) {
+            // support lazy activation (https://www.osgi.org/developer/design/lazy-start/)
+            if (bundleState == Bundle.STARTING && isLazyActivation(bundle)) {
+                LOG.debug("Ignoring lazily activated bundle {}", bundleSymbolicName);
+            } else  if (StringUtils.isNotBlank((String) bundle.getHeaders().get(Constants.FRAGMENT_HOST))) {
+                LOG.debug("Ignoring bundle fragment: {}", bundleSymbolicName);
+            } else {
+                inactive = true;
+            }
+        }
+        return new BundleStatus(bundle.getBundleId(), bundleSymbolicName, bundleState, true, false, inactive);
+    }
+
+    private Result createResult(Collection<BundleStatus> statuses) {
         FormattingResultLog log = new FormattingResultLog();
 
-        Bundle[] bundles = this.bundleContext.getBundles();
-        log.debug("Framwork has {} bundles in total", bundles.length);
+        log.debug("Framwork has {} bundles in total", statuses.size());
  
         int countExcluded = 0;
         int relevantBundlesCount = 0;
         int inctiveCount = 0;
-        for (Bundle bundle : bundles) {
-            String bundleSymbolicName = bundle.getSymbolicName();
-            int bundleState = bundle.getState();
-            
-            if(!includesRegex.matcher(bundleSymbolicName).matches()) {
-                LOG.debug("Bundle {} not matched by {}", bundleSymbolicName, includesRegex);
+        for (BundleStatus status : statuses) {
+            if (!status.included) {
                 continue;
             }
-
-            if(excludesRegex!=null && excludesRegex.matcher(bundleSymbolicName).matches()) {
-                LOG.debug("Bundle {} excluded {}", bundleSymbolicName, excludesRegex);
+            if (status.excluded) {
                 countExcluded ++;
                 continue;
             }
             relevantBundlesCount++;
-            
-            boolean bundleIsLogged = false;
-            if (bundleState != Bundle.ACTIVE) {
-                // support lazy activation (https://www.osgi.org/developer/design/lazy-start/)
-                if (bundleState == Bundle.STARTING && isLazyActivation(bundle)) {
-                    LOG.debug("Ignoring lazily activated bundle {}", bundleSymbolicName);
-                } else  if (StringUtils.isNotBlank((String) bundle.getHeaders().get(Constants.FRAGMENT_HOST))) {
-                    LOG.debug("Ignoring bundle fragment: {}", bundleSymbolicName);
+
+            if (status.inactive) {
+                String msg = "Inactive bundle {} {}: {}";
+                Object[] msgObjs = new Object[] {status.bundleId, status.symbolicName, getStateLabel(status.state)};
+                LOG.debug(msg, msgObjs);
+                if(useCriticalForInactive) {
+                    log.critical(msg, msgObjs);
                 } else {
-                    String msg = "Inactive bundle {} {}: {}";
-                    Object[] msgObjs = new Object[] {bundle.getBundleId(), bundleSymbolicName, getStateLabel(bundleState)};
-                    LOG.debug(msg, msgObjs);
-                    if(useCriticalForInactive) {
-                        log.critical(msg, msgObjs);
-                    } else {
-                        log.warn(msg, msgObjs);
-                    }
-                    bundleIsLogged = true;
-                    inctiveCount++;
+                    log.warn(msg, msgObjs);
                 }
-            }
-            if(!bundleIsLogged) {
-                log.debug("Bundle {} {}: {}", bundle.getBundleId(), bundleSymbolicName, getStateLabel(bundleState));
+                inctiveCount++;
+            } else {
+                log.debug("Bundle {} {}: {}", status.bundleId, status.symbolicName, getStateLabel(status.state));
             }
         }
         
@@ -160,4 +261,35 @@ public class BundlesStartedCheck implements HealthCheck {
         }
     } 
 
+    /** The state of a bundle relevant for this check, as read when the bundle changed. */
+    private static final class BundleStatus {
+        final long bundleId;
+        final String symbolicName;
+        final int state;
+        final boolean included;
+        final boolean excluded;
+        final boolean inactive;
+
+        BundleStatus(long bundleId, String symbolicName, int state, boolean included, boolean excluded, boolean inactive) {
+            this.bundleId = bundleId;
+            this.symbolicName = symbolicName;
+            this.state = state;
+            this.included = included;
+            this.excluded = excluded;
+            this.inactive = inactive;
+        }
+    }
+
+    private static final class CachedResult {
+        final Result result;
+        final long changeCount;
+        final long fullComputationTime;
+
+        CachedResult(Result result, long changeCount, long fullComputationTime) {
+            this.result = result;
+            this.changeCount = changeCount;
+            this.fullComputationTime = fullComputationTime;
+        }
+    }
+
 }
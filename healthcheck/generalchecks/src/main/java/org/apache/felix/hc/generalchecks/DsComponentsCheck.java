@@ -23,6 +23,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.felix.hc.annotation.HealthCheckService;
@@ -32,9 +34,13 @@ import org.apache.felix.hc.api.Result;
 import org.apache.felix.hc.api.ResultLog.Entry;
 import org.apache.felix.hc.generalchecks.scrutil.DsRootCauseAnalyzer;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceListener;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicyOption;
@@ -73,6 +79,12 @@ public class DsComponentsCheck implements HealthCheck {
         @AttributeDefinition(name = "Status for missing component", description = "Status in case components are missing enabled components")
         Result.Status statusForMissing() default Result.Status.TEMPORARILY_UNAVAILABLE;
 
+        @AttributeDefinition(name = "Incremental", description = "If true, the result is only computed again after the service component runtime reported a change (via its service.changecount property), instead of reading all components on every execution")
+        boolean incremental() default false;
+
+        @AttributeDefinition(name = "Full recomputation interval", description = "In incremental mode, interval in seconds after which the result is computed again even if no change was reported")
+        long fullRecomputationIntervalInSec() default 300;
+
         @AttributeDefinition
         String webconsole_configurationFactory_nameHint() default "{hc.name}: {components.list} / missing -> {statusForMissing}";
     }
@@ -80,6 +92,13 @@ public class DsComponentsCheck implements HealthCheck {
     private List<String> componentsList;
     private Result.Status statusForMissing;
 
+    private boolean incremental;
+    private long fullRecomputationIntervalInMs;
+    private BundleContext bundleContext;
+    private ServiceListener scrListener;
+    private final AtomicLong changeCount = new AtomicLong();
+    private volatile CachedResult cachedResult;
+
     @Reference(policyOption = ReferencePolicyOption.GREEDY)
     private DsRootCauseAnalyzer analyzer;
 
@@ -90,11 +109,52 @@ public class DsComponentsCheck implements HealthCheck {
     public void activate(final BundleContext ctx, final Config config) throws InterruptedException {
         componentsList = Arrays.asList(config.components_list());
         statusForMissing = config.statusForMissing();
-        LOG.debug("Activated DS Components HC for componentsList={}", componentsList);
+        incremental = config.incremental();
+        fullRecomputationIntervalInMs = TimeUnit.SECONDS.toMillis(config.fullRecomputationIntervalInSec());
+        if (incremental) {
+            // SCR updates the service.changecount property of its service whenever the state of a component changes
+            bundleContext = ctx;
+            scrListener = event -> changeCount.incrementAndGet();
+            try {
+                ctx.addServiceListener(scrListener, "(" + Constants.OBJECTCLASS + "=" + ServiceComponentRuntime.class.getName() + ")");
+            } catch (InvalidSyntaxException e) {
+                throw new IllegalStateException("Invalid filter for the service component runtime", e);
+            }
+        }
+        LOG.debug("Activated DS Components HC for componentsList={} incremental={}", componentsList, incremental);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        if (scrListener != null) {
+            bundleContext.removeServiceListener(scrListener);
+            scrListener = null;
+        }
+        cachedResult = null;
     }
 
     @Override
     public Result execute() {
+        if (!incremental) {
+            return computeResult();
+        }
+
+        long now = System.currentTimeMillis();
+        CachedResult cached = cachedResult;
+        if (cached == null || cached.changeCount != changeCount.get() || now - cached.computationTime >= fullRecomputationIntervalInMs) {
+            synchronized (this) {
+                cached = cachedResult;
+                long count = changeCount.get();
+                if (cached == null || cached.changeCount != count || now - cached.computationTime >= fullRecomputationIntervalInMs) {
+                    cached = new CachedResult(computeResult(), count, now);
+                    cachedResult = cached;
+                }
+            }
+        }
+        return cached.result;
+    }
+
+    private Result computeResult() {
 
         Collection<ComponentDescriptionDTO> componentDescriptionDTOs = scr.getComponentDescriptionDTOs();
         List<ComponentDescriptionDTO> watchedComps = new LinkedList<ComponentDescriptionDTO>();
@@ -181,4 +241,16 @@ public class DsComponentsCheck implements HealthCheck {
         }
     }
 
+    private static final class CachedResult {
+        final Result result;
+        final long changeCount;
+        final long computationTime;
+
+        CachedResult(Result result, long changeCount, long computationTime) {
+            this.result = result;
+            this.changeCount = changeCount;
+            this.computationTime = computationTime;
+        }
+    }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.hc.generalchecks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Hashtable;
+
+import org.apache.felix.hc.api.Result;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+public class BundlesStartedCheckTest {
+
+    private BundleContext bundleContext;
+    private Bundle bundleA;
+    private Bundle bundleB;
+
+    @Before
+    public void setup() {
+        bundleContext = mock(BundleContext.class);
+        bundleA = mockBundle(1, "bundle.a", Bundle.ACTIVE);
+        bundleB = mockBundle(2, "bundle.b", Bundle.ACTIVE);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] { bundleA, bundleB });
+    }
+
+    @Test
+    public void testAllBundlesStarted() {
+        BundlesStartedCheck check = createCheck(false, 300);
+        assertEquals(Result.Status.OK, check.execute().getStatus());
+
+        when(bundleB.getState()).thenReturn(Bundle.RESOLVED);
+        assertEquals(Result.Status.WARN, check.execute().getStatus());
+        verify(bundleContext, times(2)).getBundles();
+    }
+
+    @Test
+    public void testIncrementalUpdatesFromBundleEvents() {
+        BundlesStartedCheck check = createCheck(true, 300);
+        ArgumentCaptor<BundleListener> listener = ArgumentCaptor.forClass(BundleListener.class);
+        verify(bundleContext).addBundleListener(listener.capture());
+
+        Result result = check.execute();
+        assertEquals(Result.Status.OK, result.getStatus());
+        assertSame(result, check.execute());
+
+        when(bundleB.getState()).thenReturn(Bundle.RESOLVED);
+        listener.getValue().bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundleB));
+        assertEquals(Result.Status.WARN, check.execute().getStatus());
+
+        listener.getValue().bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundleB));
+        assertEquals(Result.Status.OK, check.execute().getStatus());
+
+        // the bundles are only read once, all changes come from the events
+        verify(bundleContext, times(1)).getBundles();
+
+        check.deactivate();
+        verify(bundleContext).removeBundleListener(listener.getValue());
+    }
+
+    @Test
+    public void testIncrementalFullRecomputation() {
+        BundlesStartedCheck check = createCheck(true, 0);
+        assertEquals(Result.Status.OK, check.execute().getStatus());
+
+        // a change without event is picked up by the full recomputation
+        when(bundleB.getState()).thenReturn(Bundle.RESOLVED);
+        assertEquals(Result.Status.WARN, check.execute().getStatus());
+        verify(bundleContext, times(2)).getBundles();
+    }
+
+    private BundlesStartedCheck createCheck(boolean incremental, long fullRecomputationIntervalInSec) {
+        BundlesStartedCheck.Config config = mock(BundlesStartedCheck.Config.class);
+        when(config.includesRegex()).thenReturn(".*");
+        when(config.excludesRegex()).thenReturn("");
+        when(config.incremental()).thenReturn(incremental);
+        when(config.fullRecomputationIntervalInSec()).thenReturn(fullRecomputationIntervalInSec);
+
+        BundlesStartedCheck check = new BundlesStartedCheck();
+        check.activate(bundleContext, config);
+        return check;
+    }
+
+    private static Bundle mockBundle(long id, String symbolicName, int state) {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(id);
+        when(bundle.getSymbolicName()).thenReturn(symbolicName);
+        when(bundle.getState()).thenReturn(state);
+        when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+        return bundle;
+    }
+}
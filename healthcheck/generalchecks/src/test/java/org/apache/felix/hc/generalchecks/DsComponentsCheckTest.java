@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.hc.generalchecks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.apache.felix.hc.api.Result;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.component.runtime.ServiceComponentRuntime;
+import org.osgi.service.component.runtime.dto.ComponentConfigurationDTO;
+import org.osgi.service.component.runtime.dto.ComponentDescriptionDTO;
+
+public class DsComponentsCheckTest {
+
+    private BundleContext bundleContext;
+    private ServiceComponentRuntime scr;
+    private ComponentDescriptionDTO component;
+    private ComponentConfigurationDTO configuration;
+
+    @Before
+    public void setup() {
+        bundleContext = mock(BundleContext.class);
+        scr = mock(ServiceComponentRuntime.class);
+
+        component = new ComponentDescriptionDTO();
+        component.name = "component.a";
+        configuration = new ComponentConfigurationDTO();
+        configuration.id = 1;
+        configuration.state = ComponentConfigurationDTO.ACTIVE;
+        when(scr.getComponentDescriptionDTOs()).thenReturn(Collections.singletonList(component));
+        when(scr.isComponentEnabled(component)).thenReturn(true);
+        when(scr.getComponentConfigurationDTOs(component)).thenReturn(Collections.singletonList(configuration));
+    }
+
+    @Test
+    public void testComponentsReadOnEveryExecution() throws Exception {
+        DsComponentsCheck check = createCheck(false, 300);
+        assertEquals(Result.Status.OK, check.execute().getStatus());
+
+        configuration.state = ComponentConfigurationDTO.UNSATISFIED_REFERENCE;
+        assertEquals(Result.Status.TEMPORARILY_UNAVAILABLE, check.execute().getStatus());
+        verify(scr, times(2)).getComponentDescriptionDTOs();
+    }
+
+    @Test
+    public void testIncrementalUpdatesFromScrChanges() throws Exception {
+        DsComponentsCheck check = createCheck(true, 300);
+        ArgumentCaptor<ServiceListener> listener = ArgumentCaptor.forClass(ServiceListener.class);
+        verify(bundleContext).addServiceListener(listener.capture(), anyString());
+
+        Result result = check.execute();
+        assertEquals(Result.Status.OK, result.getStatus());
+
+        // no change reported, the cached result is returned
+        configuration.state = ComponentConfigurationDTO.UNSATISFIED_REFERENCE;
+        assertSame(result, check.execute());
+        verify(scr, times(1)).getComponentDescriptionDTOs();
+
+        // SCR updated its service.changecount
+        listener.getValue().serviceChanged(new ServiceEvent(ServiceEvent.MODIFIED, mock(ServiceReference.class)));
+        assertEquals(Result.Status.TEMPORARILY_UNAVAILABLE, check.execute().getStatus());
+        verify(scr, times(2)).getComponentDescriptionDTOs();
+
+        check.deactivate();
+        verify(bundleContext).removeServiceListener(listener.getValue());
+    }
+
+    @Test
+    public void testIncrementalFullRecomputation() throws Exception {
+        DsComponentsCheck check = createCheck(true, 0);
+        assertEquals(Result.Status.OK, check.execute().getStatus());
+
+        // a change without service event is picked up by the full recomputation
+        configuration.state = ComponentConfigurationDTO.UNSATISFIED_REFERENCE;
+        assertEquals(Result.Status.TEMPORARILY_UNAVAILABLE, check.execute().getStatus());
+        verify(scr, times(2)).getComponentDescriptionDTOs();
+    }
+
+    @Test
+    public void testListenerFilterSelectsScr() throws Exception {
+        createCheck(true, 300);
+        verify(bundleContext).addServiceListener(any(ServiceListener.class),
+                eq("(objectClass=" + ServiceComponentRuntime.class.getName() + ")"));
+    }
+
+    private DsComponentsCheck createCheck(boolean incremental, long fullRecomputationIntervalInSec) throws InterruptedException {
+        DsComponentsCheck.Config config = mock(DsComponentsCheck.Config.class);
+        when(config.components_list()).thenReturn(new String[] { "component.a" });
+        when(config.statusForMissing()).thenReturn(Result.Status.TEMPORARILY_UNAVAILABLE);
+        when(config.incremental()).thenReturn(incremental);
+        when(config.fullRecomputationIntervalInSec()).thenReturn(fullRecomputationIntervalInSec);
+
+        DsComponentsCheck check = new DsComponentsCheck();
+        check.scr = scr;
+        check.activate(bundleContext, config);
+        return check;
+    }
+}
@@ -30,10 +30,28 @@ public class HttpConfig {
 
     public static final boolean DEFAULT_UNIQUE_SESSION_ID = true;
 
+    public static final String PROP_RESOURCE_CACHE_MAX_SIZE = "org.apache.felix.http.resource.cache.maxsize";
+
+    public static final long DEFAULT_RESOURCE_CACHE_MAX_SIZE = 0;
+
+    public static final String PROP_RESOURCE_CACHE_MAX_ENTRY_SIZE = "org.apache.felix.http.resource.cache.maxentrysize";
+
+    public static final long DEFAULT_RESOURCE_CACHE_MAX_ENTRY_SIZE = 256 * 1024;
+
+    public static final String PROP_RESOURCE_GZIP = "org.apache.felix.http.resource.gzip";
+
+    public static final boolean DEFAULT_RESOURCE_GZIP = true;
+
     private volatile boolean uniqueSessionId;
 
     private volatile boolean invalidateContainerSession;
 
+    private volatile long resourceCacheMaxSize;
+
+    private volatile long resourceCacheMaxEntrySize;
+
+    private volatile boolean resourceGzip;
+
     public boolean isUniqueSessionId() {
         return uniqueSessionId;
     }
@@ -50,9 +68,44 @@ public class HttpConfig {
         this.invalidateContainerSession = invalidateContainerSession;
     }
 
+    /**
+     * The maximum number of bytes the resource cache may hold.
+     * @return The maximum size, a value less or equal to zero disables the cache.
+     */
+    public long getResourceCacheMaxSize() {
+        return resourceCacheMaxSize;
+    }
+
+    public void setResourceCacheMaxSize(long resourceCacheMaxSize) {
+        this.resourceCacheMaxSize = resourceCacheMaxSize;
+    }
+
+    /**
+     * The maximum size of a single resource to be held in the resource cache.
+     * @return The maximum size of a cached resource.
+     */
+    public long getResourceCacheMaxEntrySize() {
+        return resourceCacheMaxEntrySize;
+    }
+
+    public void setResourceCacheMaxEntrySize(long resourceCacheMaxEntrySize) {
+        this.resourceCacheMaxEntrySize = resourceCacheMaxEntrySize;
+    }
+
+    public boolean isResourceGzip() {
+        return resourceGzip;
+    }
+
+    public void setResourceGzip(boolean resourceGzip) {
+        this.resourceGzip = resourceGzip;
+    }
+
     public void configure(@NotNull final Dictionary<String, Object> props) {
         this.setUniqueSessionId(this.getBooleanProperty(props, PROP_UNIQUE_SESSION_ID, DEFAULT_UNIQUE_SESSION_ID));
         this.setInvalidateContainerSession(this.getBooleanProperty(props, PROP_INVALIDATE_SESSION, DEFAULT_INVALIDATE_SESSION));
+        this.setResourceCacheMaxSize(this.getLongProperty(props, PROP_RESOURCE_CACHE_MAX_SIZE, DEFAULT_RESOURCE_CACHE_MAX_SIZE));
+        this.setResourceCacheMaxEntrySize(this.getLongProperty(props, PROP_RESOURCE_CACHE_MAX_ENTRY_SIZE, DEFAULT_RESOURCE_CACHE_MAX_ENTRY_SIZE));
+        this.setResourceGzip(this.getBooleanProperty(props, PROP_RESOURCE_GZIP, DEFAULT_RESOURCE_GZIP));
     }
 
 
@@ -67,4 +120,22 @@ public class HttpConfig {
 
         return defValue;
     }
+
+    private long getLongProperty(final Dictionary<String, Object> props, final String name, final long defValue)
+    {
+        final Object v = props.get(name);
+        if ( v != null )
+        {
+            try
+            {
+                return Long.parseLong(String.valueOf(v).trim());
+            }
+            catch (final NumberFormatException nfe)
+            {
+                // ignore and use default
+            }
+        }
+
+        return defValue;
+    }
 }
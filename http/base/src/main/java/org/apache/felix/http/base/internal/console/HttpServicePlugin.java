@@ -37,6 +37,9 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.felix.http.base.internal.runtime.dto.ExtFilterDTO;
+import org.apache.felix.http.base.internal.runtime.dto.ExtServletDTO;
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
@@ -476,6 +479,61 @@ public class HttpServicePlugin extends HttpServlet
         sb.append("${ranking} : ").append(String.valueOf(ranking)).append("\n");
     }
 
+    private void appendRequestMetrics(final StringBuilder sb, final RequestMetricsDTO metrics)
+    {
+        if ( metrics == null )
+        {
+            return;
+        }
+        sb.append("${requests} : ").append(String.valueOf(metrics.requestCount)).append("\n");
+        sb.append("${errors} : ").append(String.valueOf(metrics.errorCount)).append("\n");
+        sb.append("${in flight} : ").append(String.valueOf(metrics.inFlight)).append("\n");
+        if ( metrics.requestCount > 0 )
+        {
+            sb.append("${average time} : ").append(String.valueOf(metrics.totalTimeMillis / metrics.requestCount)).append(" ms\n");
+            sb.append("${max time} : ").append(String.valueOf(metrics.maxTimeMillis)).append(" ms\n");
+            sb.append("${latency} :");
+            for(int i=0; i<metrics.histogramCounts.length; i++)
+            {
+                if ( metrics.histogramCounts[i] > 0 )
+                {
+                    if ( i < metrics.histogramBoundsMillis.length )
+                    {
+                        sb.append(" <").append(String.valueOf(metrics.histogramBoundsMillis[i]));
+                    }
+                    else
+                    {
+                        sb.append(" >=").append(String.valueOf(metrics.histogramBoundsMillis[i - 1]));
+                    }
+                    sb.append("ms=").append(String.valueOf(metrics.histogramCounts[i]));
+                }
+            }
+            sb.append("\n");
+        }
+    }
+
+    private void printRequestMetrics(final PrintWriter pw, final RequestMetricsDTO metrics)
+    {
+        if ( metrics != null )
+        {
+            pw.print("Requests : ");
+            pw.print(String.valueOf(metrics.requestCount));
+            pw.print(", errors : ");
+            pw.print(String.valueOf(metrics.errorCount));
+            pw.print(", in flight : ");
+            pw.print(String.valueOf(metrics.inFlight));
+            if ( metrics.requestCount > 0 )
+            {
+                pw.print(", average : ");
+                pw.print(String.valueOf(metrics.totalTimeMillis / metrics.requestCount));
+                pw.print(" ms, max : ");
+                pw.print(String.valueOf(metrics.maxTimeMillis));
+                pw.print(" ms");
+            }
+            pw.println();
+        }
+    }
+
     private void printFilterDetails(final PrintWriter pw, final ServletContextDTO dto)
     {
         if ( dto.filterDTOs.length == 0 )
@@ -511,6 +569,10 @@ public class HttpServicePlugin extends HttpServlet
                 sb.append(ref.getBundle().getSymbolicName());
                 sb.append("${link#}\n");
             }
+            if ( filter instanceof ExtFilterDTO )
+            {
+                appendRequestMetrics(sb, ((ExtFilterDTO)filter).requestMetrics);
+            }
 
             final List<String> patterns = new ArrayList<>();
             patterns.addAll(Arrays.asList(filter.patterns));
@@ -651,6 +713,10 @@ public class HttpServicePlugin extends HttpServlet
                 sb.append(ref.getBundle().getSymbolicName());
                 sb.append("${link#}\n");
             }
+            if ( servlet instanceof ExtServletDTO )
+            {
+                appendRequestMetrics(sb, ((ExtServletDTO)servlet).requestMetrics);
+            }
 
             final StringBuilder psb = new StringBuilder();
             for(final String p : servlet.patterns)
@@ -1041,6 +1107,10 @@ public class HttpServicePlugin extends HttpServlet
                         pw.print(String.valueOf(ref.getBundle().getBundleId()));
                         pw.println(">");
                     }
+                    if ( servlet instanceof ExtServletDTO )
+                    {
+                        printRequestMetrics(pw, ((ExtServletDTO)servlet).requestMetrics);
+                    }
                     pw.println();
                 }
                 pw.println();
@@ -1078,6 +1148,10 @@ public class HttpServicePlugin extends HttpServlet
                         pw.print(String.valueOf(ref.getBundle().getBundleId()));
                         pw.println(">");
                     }
+                    if ( filter instanceof ExtFilterDTO )
+                    {
+                        printRequestMetrics(pw, ((ExtFilterDTO)filter).requestMetrics);
+                    }
                     pw.println();
                 }
                 pw.println();
@@ -17,6 +17,7 @@
 package org.apache.felix.http.base.internal.dispatch;
 
 import static javax.servlet.http.HttpServletResponse.SC_FORBIDDEN;
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 import java.io.IOException;
@@ -30,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.RequestMetrics;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 
 public class InvocationChain implements FilterChain
@@ -74,6 +76,10 @@ public class InvocationChain implements FilterChain
         }
         this.index++;
 
+        final RequestMetrics metrics = (this.index < this.filterHandlers.length
+                ? this.filterHandlers[this.index].getMetrics() : this.servletHandler.getMetrics());
+        final long startTime = metrics.start();
+        boolean error = true;
         try
         {
             if (this.index < this.filterHandlers.length)
@@ -85,8 +91,11 @@ public class InvocationChain implements FilterChain
                 // Last entry in the chain...
                 this.servletHandler.handle(req, res);
             }
+            error = res instanceof HttpServletResponse && ((HttpServletResponse) res).getStatus() >= SC_INTERNAL_SERVER_ERROR;
         }
         finally {
+            metrics.end(startTime, error);
+
             if ( callFinish )
             {
                 final HttpServletRequest hReq = (HttpServletRequest) req;
@@ -44,6 +44,8 @@ public abstract class FilterHandler implements Comparable<FilterHandler>
 
     private volatile Filter filter;
 
+    private final RequestMetrics metrics = new RequestMetrics();
+
     protected volatile int useCount;
 
     public FilterHandler(final long contextServiceId,
@@ -81,6 +83,15 @@ public abstract class FilterHandler implements Comparable<FilterHandler>
         this.filter = f;
     }
 
+    /**
+     * The request metrics of this handler
+     * @return The metrics
+     */
+    public RequestMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
     public FilterInfo getFilterInfo()
     {
         return this.filterInfo;
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.handler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Request metrics of a single servlet or filter handler.
+ * The metrics are updated without locking and can be read at any time.
+ */
+public final class RequestMetrics
+{
+    /** Upper bounds of the latency histogram buckets in milliseconds. */
+    private static final long[] BUCKET_BOUNDS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong totalTime = new AtomicLong();
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /** One bucket per bound plus one for everything above the last bound. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+    /**
+     * Mark the start of a request
+     * @return The start time to be passed to {@link #end(long, boolean)}
+     */
+    public long start()
+    {
+        this.inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Mark the end of a request
+     * @param startTime The value returned by {@link #start()}
+     * @param error Whether the request failed
+     */
+    public void end(final long startTime, final boolean error)
+    {
+        final long duration = System.nanoTime() - startTime;
+        this.inFlight.decrementAndGet();
+        this.requestCount.incrementAndGet();
+        if ( error )
+        {
+            this.errorCount.incrementAndGet();
+        }
+        this.totalTime.addAndGet(duration);
+
+        long max = this.maxTime.get();
+        while ( duration > max && !this.maxTime.compareAndSet(max, duration) )
+        {
+            max = this.maxTime.get();
+        }
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(duration);
+        int index = 0;
+        while ( index < BUCKET_BOUNDS.length && millis >= BUCKET_BOUNDS[index] )
+        {
+            index++;
+        }
+        this.buckets.incrementAndGet(index);
+    }
+
+    public long getRequestCount()
+    {
+        return this.requestCount.get();
+    }
+
+    public long getErrorCount()
+    {
+        return this.errorCount.get();
+    }
+
+    public long getInFlight()
+    {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Create a snapshot of the current metrics
+     * @return The metrics DTO
+     */
+    public @NotNull RequestMetricsDTO toDTO()
+    {
+        final RequestMetricsDTO dto = new RequestMetricsDTO();
+        dto.requestCount = this.requestCount.get();
+        dto.errorCount = this.errorCount.get();
+        dto.inFlight = this.inFlight.get();
+        dto.totalTimeMillis = TimeUnit.NANOSECONDS.toMillis(this.totalTime.get());
+        dto.maxTimeMillis = TimeUnit.NANOSECONDS.toMillis(this.maxTime.get());
+        dto.histogramBoundsMillis = BUCKET_BOUNDS.clone();
+        dto.histogramCounts = new long[this.buckets.length()];
+        for(int i=0; i<dto.histogramCounts.length; i++)
+        {
+            dto.histogramCounts[i] = this.buckets.get(i);
+        }
+        return dto;
+    }
+}
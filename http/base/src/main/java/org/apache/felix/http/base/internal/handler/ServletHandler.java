@@ -53,6 +53,8 @@ public abstract class ServletHandler implements Comparable<ServletHandler>
 
     private final MultipartConfig mpConfig;
 
+    private final RequestMetrics metrics = new RequestMetrics();
+
     public ServletHandler(final long contextServiceId,
             final ExtServletContext context,
             final ServletInfo servletInfo)
@@ -128,6 +130,15 @@ public abstract class ServletHandler implements Comparable<ServletHandler>
         }
     }
 
+    /**
+     * The request metrics of this handler
+     * @return The metrics
+     */
+    public RequestMetrics getMetrics()
+    {
+        return this.metrics;
+    }
+
     public ServletInfo getServletInfo()
     {
         return this.servletInfo;
@@ -28,6 +28,7 @@ import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.service.ResourceCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.service.http.runtime.dto.ServletContextDTO;
@@ -47,6 +48,8 @@ public final class HandlerRegistry
 
     private final HttpConfig config;
 
+    private volatile ResourceCache resourceCache;
+
     public HandlerRegistry(final HttpConfig config)
     {
         this.config = config;
@@ -57,11 +60,21 @@ public final class HandlerRegistry
         return this.config;
     }
 
+    /**
+     * Get the cache for static resources
+     * @return The resource cache, might be {@code null} if the registry is not initialized
+     */
+    public @Nullable ResourceCache getResourceCache()
+    {
+        return this.resourceCache;
+    }
+
     /**
      * Register default context registry for Http Service
      */
     public void init()
     {
+        this.resourceCache = new ResourceCache(config);
         this.add(new PerContextHandlerRegistry(config));
     }
 
@@ -92,6 +105,13 @@ public final class HandlerRegistry
         {
             r.removeAll();
         }
+
+        final ResourceCache cache = this.resourceCache;
+        this.resourceCache = null;
+        if ( cache != null )
+        {
+            cache.clear();
+        }
     }
 
     /**
@@ -55,7 +55,17 @@ public final class FilterDTOBuilder
      */
     public static @NotNull FilterDTO build(@NotNull final FilterHandler handler, final int reason)
     {
-        final FilterDTO filterDTO = build(handler.getFilterInfo(), reason);
+        final FilterDTO filterDTO;
+        if ( reason == -1 )
+        {
+            final ExtFilterDTO extDTO = new ExtFilterDTO();
+            extDTO.requestMetrics = handler.getMetrics().toDTO();
+            filterDTO = fill(extDTO, handler.getFilterInfo(), reason);
+        }
+        else
+        {
+            filterDTO = build(handler.getFilterInfo(), reason);
+        }
 
         filterDTO.name = handler.getName();
         filterDTO.servletContextId = handler.getContextServiceId();
@@ -70,8 +80,11 @@ public final class FilterDTOBuilder
      */
     public static @NotNull FilterDTO build(@NotNull final FilterInfo info, final int reason)
     {
-        final FilterDTO filterDTO = (reason != -1 ? new FailedFilterDTO() : new FilterDTO());
+        return fill(reason != -1 ? new FailedFilterDTO() : new FilterDTO(), info, reason);
+    }
 
+    private static @NotNull FilterDTO fill(@NotNull final FilterDTO filterDTO, @NotNull final FilterInfo info, final int reason)
+    {
         filterDTO.asyncSupported = info.isAsyncSupported();
         filterDTO.dispatcher = getNames(info.getDispatcher());
         filterDTO.initParams = info.getInitParameters();
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.runtime.dto;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Request metrics of a servlet or filter.
+ */
+public class RequestMetricsDTO extends DTO
+{
+    /** Number of finished requests. */
+    public long requestCount;
+
+    /** Number of requests which threw an exception or ended with a status code of 500 or higher. */
+    public long errorCount;
+
+    /** Number of requests currently being processed. */
+    public long inFlight;
+
+    /** Accumulated processing time of all finished requests. */
+    public long totalTimeMillis;
+
+    /** Longest processing time of a single request. */
+    public long maxTimeMillis;
+
+    /**
+     * Upper bounds (exclusive) of the latency histogram buckets. The
+     * last entry of {@link #histogramCounts} counts all requests above
+     * the last bound.
+     */
+    public long[] histogramBoundsMillis;
+
+    /** Number of requests per latency bucket. */
+    public long[] histogramCounts;
+}
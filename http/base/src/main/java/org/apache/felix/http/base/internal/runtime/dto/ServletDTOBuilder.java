@@ -34,7 +34,17 @@ public final class ServletDTOBuilder extends BaseServletDTOBuilder
      */
     public static ServletDTO build(final ServletHandler handler, final int reason)
     {
-        final ServletDTO dto = build(handler.getServletInfo(), reason);
+        final ServletDTO dto;
+        if ( reason == -1 )
+        {
+            final ExtServletDTO extDTO = new ExtServletDTO();
+            extDTO.requestMetrics = handler.getMetrics().toDTO();
+            dto = fill(extDTO, handler.getServletInfo(), reason);
+        }
+        else
+        {
+            dto = build(handler.getServletInfo(), reason);
+        }
 
         BaseServletDTOBuilder.fill(dto, handler);
 
@@ -48,8 +58,11 @@ public final class ServletDTOBuilder extends BaseServletDTOBuilder
      */
     public static ServletDTO build(final ServletInfo info, final int reason)
     {
-        final ServletDTO dto = (reason != -1 ? new FailedServletDTO() : new ServletDTO());
+        return fill(reason != -1 ? new FailedServletDTO() : new ServletDTO(), info, reason);
+    }
 
+    private static ServletDTO fill(final ServletDTO dto, final ServletInfo info, final int reason)
+    {
         BaseServletDTOBuilder.fill(dto, info);
 
         if ( reason != -1 )
@@ -94,7 +94,7 @@ public final class PerBundleHttpServiceImpl implements HttpService
         }
         try
         {
-            final Servlet servlet = new ResourceServlet(name);
+            final Servlet servlet = new ResourceServlet(name, this.sharedHttpService.getHandlerRegistry().getResourceCache());
             registerServlet(alias, servlet, null, context);
         }
         catch (ServletException e)
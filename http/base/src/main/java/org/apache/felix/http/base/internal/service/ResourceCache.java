@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.felix.http.base.internal.HttpConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Size bounded in memory cache for static resources served by the
+ * {@link ResourceServlet}. Entries are evicted in least recently used
+ * order once the configured maximum size is exceeded.
+ */
+public final class ResourceCache
+{
+    /**
+     * A cached resource
+     */
+    public static final class Entry
+    {
+        private final byte[] content;
+
+        private final byte[] gzipContent;
+
+        private final long lastModified;
+
+        private final String etag;
+
+        Entry(@NotNull final byte[] content, @Nullable final byte[] gzipContent, final long lastModified)
+        {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.lastModified = lastModified;
+            final CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length);
+            this.etag = Long.toHexString(lastModified).concat("-")
+                    .concat(Integer.toHexString(content.length)).concat("-")
+                    .concat(Long.toHexString(crc.getValue()));
+        }
+
+        public @NotNull byte[] getContent()
+        {
+            return this.content;
+        }
+
+        /**
+         * The gzip compressed content
+         * @return The compressed content or {@code null} if compressing the resource is not worth it.
+         */
+        public @Nullable byte[] getGzipContent()
+        {
+            return this.gzipContent;
+        }
+
+        public long getLastModified()
+        {
+            return this.lastModified;
+        }
+
+        /**
+         * Strong entity tag derived from the resource content.
+         * @return The entity tag including the quotes
+         */
+        public @NotNull String getETag()
+        {
+            return "\"".concat(this.etag).concat("\"");
+        }
+
+        /**
+         * Strong entity tag of the gzip compressed representation.
+         * @return The entity tag including the quotes
+         */
+        public @NotNull String getGzipETag()
+        {
+            return "\"".concat(this.etag).concat("-gz\"");
+        }
+
+        long getSize()
+        {
+            return this.content.length + (this.gzipContent == null ? 0 : this.gzipContent.length);
+        }
+    }
+
+    private final long maxSize;
+
+    private final long maxEntrySize;
+
+    private final boolean gzip;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentSize;
+
+    public ResourceCache(@NotNull final HttpConfig config)
+    {
+        this(config.getResourceCacheMaxSize(), config.getResourceCacheMaxEntrySize(), config.isResourceGzip());
+    }
+
+    ResourceCache(final long maxSize, final long maxEntrySize, final boolean gzip)
+    {
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxSize, maxEntrySize);
+        this.gzip = gzip;
+    }
+
+    /**
+     * Is the cache enabled?
+     * @return {@code true} if resources can be cached
+     */
+    public boolean isEnabled()
+    {
+        return this.maxSize > 0 && this.maxEntrySize > 0;
+    }
+
+    /**
+     * Check whether a resource of the given size can be cached
+     * @param length The length of the resource
+     * @return {@code true} if the resource can be cached
+     */
+    public boolean isCacheable(final long length)
+    {
+        return isEnabled() && length >= 0 && length <= this.maxEntrySize;
+    }
+
+    /**
+     * Get a cached resource
+     * @param key The key of the resource
+     * @param lastModified The current last modified time stamp of the resource
+     * @return The entry or {@code null} if the resource is not cached or the cached
+     *         entry is outdated.
+     */
+    public @Nullable Entry get(@NotNull final String key, final long lastModified)
+    {
+        synchronized ( this.entries )
+        {
+            final Entry entry = this.entries.get(key);
+            if ( entry != null && entry.getLastModified() != lastModified )
+            {
+                this.entries.remove(key);
+                this.currentSize -= entry.getSize();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Add a resource to the cache
+     * @param key The key of the resource
+     * @param lastModified The last modified time stamp of the resource
+     * @param content The content of the resource
+     * @param contentType The content type of the resource, might be {@code null}
+     * @return The cache entry
+     */
+    public @NotNull Entry put(@NotNull final String key,
+            final long lastModified,
+            @NotNull final byte[] content,
+            @Nullable final String contentType)
+    {
+        final Entry entry = new Entry(content, compress(content, contentType), lastModified);
+        if ( entry.getSize() > this.maxSize )
+        {
+            return entry;
+        }
+        synchronized ( this.entries )
+        {
+            final Entry old = this.entries.put(key, entry);
+            if ( old != null )
+            {
+                this.currentSize -= old.getSize();
+            }
+            this.currentSize += entry.getSize();
+
+            final Iterator<Entry> iter = this.entries.values().iterator();
+            while ( this.currentSize > this.maxSize && iter.hasNext() )
+            {
+                final Entry eldest = iter.next();
+                if ( eldest != entry )
+                {
+                    iter.remove();
+                    this.currentSize -= eldest.getSize();
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear()
+    {
+        synchronized ( this.entries )
+        {
+            this.entries.clear();
+            this.currentSize = 0;
+        }
+    }
+
+    long getCurrentSize()
+    {
+        synchronized ( this.entries )
+        {
+            return this.currentSize;
+        }
+    }
+
+    private byte[] compress(final byte[] content, final String contentType)
+    {
+        if ( !this.gzip || content.length < 256 || !isCompressible(contentType) )
+        {
+            return null;
+        }
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 2);
+        try (final GZIPOutputStream gos = new GZIPOutputStream(bos))
+        {
+            gos.write(content);
+        }
+        catch (final IOException ignore)
+        {
+            return null;
+        }
+        // only keep the compressed variant if it saves at least ten percent
+        if ( bos.size() > content.length - content.length / 10 )
+        {
+            return null;
+        }
+        return bos.toByteArray();
+    }
+
+    static boolean isCompressible(final String contentType)
+    {
+        if ( contentType == null )
+        {
+            return false;
+        }
+        final String type = contentType.toLowerCase();
+        return type.startsWith("text/")
+                || type.contains("javascript")
+                || type.contains("json")
+                || type.contains("xml")
+                || type.startsWith("image/svg");
+    }
+}
@@ -22,12 +22,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * The resource servlet
  */
@@ -35,12 +41,23 @@ public final class ResourceServlet extends HttpServlet
 {
     private static final long serialVersionUID = 1L;
 
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     /** The path of the resource registration. */
     private final String prefix;
 
+    /** Optional cache for the resources. */
+    private final transient ResourceCache cache;
+
     public ResourceServlet(final String prefix)
+    {
+        this(prefix, null);
+    }
+
+    public ResourceServlet(final String prefix, @Nullable final ResourceCache cache)
     {
         this.prefix = prefix;
+        this.cache = cache;
     }
 
     @Override
@@ -72,29 +89,298 @@ public final class ResourceServlet extends HttpServlet
             res.setContentType(contentType);
         }
 
-        final long lastModified = getLastModified(url);
+        URLConnection conn = url.openConnection();
+        final long lastModified = getLastModified(conn);
         if (lastModified != 0)
         {
             res.setDateHeader("Last-Modified", lastModified);
         }
 
-        if (!resourceModified(lastModified, req.getDateHeader("If-Modified-Since")))
+        ResourceCache.Entry entry = getCacheEntry(url, lastModified);
+        if (entry == null && isCacheable(lastModified, getContentLength(conn)))
+        {
+            entry = loadCacheEntry(conn, url, lastModified, contentType);
+            if (entry == null)
+            {
+                // the content of the connection has been consumed
+                conn = url.openConnection();
+            }
+        }
+
+        if (entry != null)
+        {
+            handleCached(req, res, entry);
+        }
+        else if (!resourceModified(lastModified, req.getDateHeader("If-Modified-Since")))
         {
             res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
         }
         else
         {
-            copyResource(url, res);
+            copyResource(conn, url, req, res, lastModified);
+        }
+    }
+
+    /**
+     * Get the resource from the cache.
+     * Resources without a last modified time stamp are not cached, as
+     * it is not possible to detect changes for them.
+     */
+    private ResourceCache.Entry getCacheEntry(final URL url, final long lastModified)
+    {
+        if (this.cache == null || !this.cache.isEnabled() || lastModified == 0)
+        {
+            return null;
+        }
+        return this.cache.get(url.toExternalForm(), lastModified);
+    }
+
+    private boolean isCacheable(final long lastModified, final long len)
+    {
+        return this.cache != null && this.cache.isEnabled() && lastModified != 0 && this.cache.isCacheable(len);
+    }
+
+    /**
+     * Read the content of the resource and add it to the cache.
+     * @return The cache entry, or {@code null} if the content did not
+     *         match the expected length.
+     */
+    private ResourceCache.Entry loadCacheEntry(final URLConnection conn, final URL url,
+            final long lastModified, final String contentType)
+    throws IOException
+    {
+        final byte[] content = new byte[(int) getContentLength(conn)];
+        try (final InputStream is = conn.getInputStream())
+        {
+            int offset = 0;
+            while (offset < content.length)
+            {
+                final int n = is.read(content, offset, content.length - offset);
+                if (n < 0)
+                {
+                    // length did not match, don't cache
+                    return null;
+                }
+                offset += n;
+            }
+            if (is.read() != -1)
+            {
+                return null;
+            }
+        }
+        return this.cache.put(url.toExternalForm(), lastModified, content, contentType);
+    }
+
+    private void handleCached(final HttpServletRequest req,
+            final HttpServletResponse res, final ResourceCache.Entry entry)
+    throws IOException
+    {
+        final String rangeHeader = req.getHeader("Range");
+        final boolean gzip = entry.getGzipContent() != null && rangeHeader == null && acceptsGzip(req);
+        if (entry.getGzipContent() != null)
+        {
+            res.setHeader("Vary", "Accept-Encoding");
+        }
+        final String etag = gzip ? entry.getGzipETag() : entry.getETag();
+        res.setHeader("ETag", etag);
+        res.setHeader("Accept-Ranges", "bytes");
+
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null ? matchesETag(ifNoneMatch, etag, true)
+                : !resourceModified(entry.getLastModified(), req.getDateHeader("If-Modified-Since")))
+        {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        final byte[] content = gzip ? entry.getGzipContent() : entry.getContent();
+        if (gzip)
+        {
+            res.setHeader("Content-Encoding", "gzip");
+        }
+
+        long[] range = null;
+        if (rangeHeader != null && ifRangeMatches(req, etag, entry.getLastModified()))
+        {
+            range = parseRange(rangeHeader, content.length);
+            if (range == UNSATISFIABLE)
+            {
+                sendRangeNotSatisfiable(res, content.length);
+                return;
+            }
+        }
+
+        final int start = range == null ? 0 : (int) range[0];
+        final int length = range == null ? content.length : (int) (range[1] - range[0] + 1);
+        if (range != null)
+        {
+            setPartialContent(res, range, content.length);
+        }
+        res.setContentLength(length);
+        try (final OutputStream os = res.getOutputStream())
+        {
+            os.write(content, start, length);
         }
     }
 
-    private long getLastModified(final URL url)
+    /** Marker for a range header which can't be satisfied. */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * Parse a range header. Only a single byte range is supported, for
+     * multiple ranges the full content is returned as permitted by RFC 7233.
+     * @return The inclusive range, {@code null} if the header should be ignored
+     *         or {@link #UNSATISFIABLE}
+     */
+    static long[] parseRange(final String header, final long length)
+    {
+        if (length < 0 || !header.startsWith("bytes="))
+        {
+            return null;
+        }
+        final String spec = header.substring(6).trim();
+        if (spec.indexOf(',') != -1)
+        {
+            return null;
+        }
+        final int dash = spec.indexOf('-');
+        if (dash == -1)
+        {
+            return null;
+        }
+        try
+        {
+            final String first = spec.substring(0, dash).trim();
+            final String last = spec.substring(dash + 1).trim();
+            final long start;
+            long end;
+            if (first.isEmpty())
+            {
+                // suffix range
+                if (last.isEmpty())
+                {
+                    return null;
+                }
+                final long suffix = Long.parseLong(last);
+                if (suffix == 0)
+                {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            }
+            else
+            {
+                start = Long.parseLong(first);
+                if (last.isEmpty())
+                {
+                    end = length - 1;
+                }
+                else
+                {
+                    end = Long.parseLong(last);
+                    if (end < start)
+                    {
+                        // syntactically invalid
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            }
+            if (start >= length)
+            {
+                return UNSATISFIABLE;
+            }
+            return new long[] {start, end};
+        }
+        catch (final NumberFormatException nfe)
+        {
+            return null;
+        }
+    }
+
+    private boolean ifRangeMatches(final HttpServletRequest req, final String etag, final long lastModified)
+    {
+        final String ifRange = req.getHeader("If-Range");
+        if (ifRange == null)
+        {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+        {
+            return etag != null && matchesETag(ifRange, etag, false);
+        }
+        try
+        {
+            return lastModified != 0 && req.getDateHeader("If-Range") / 1000 == lastModified / 1000;
+        }
+        catch (final IllegalArgumentException iae)
+        {
+            return false;
+        }
+    }
+
+    private static boolean matchesETag(final String header, final String etag, final boolean weak)
+    {
+        for (final String candidate : header.split(","))
+        {
+            String value = candidate.trim();
+            if ("*".equals(value))
+            {
+                return true;
+            }
+            if (value.startsWith("W/"))
+            {
+                if (!weak)
+                {
+                    continue;
+                }
+                value = value.substring(2);
+            }
+            if (value.equals(etag))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(final HttpServletRequest req)
+    {
+        final String accept = req.getHeader("Accept-Encoding");
+        if (accept == null)
+        {
+            return false;
+        }
+        for (final String coding : accept.split(","))
+        {
+            final String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim()))
+            {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static void setPartialContent(final HttpServletResponse res, final long[] range, final long length)
+    {
+        res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        res.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+    }
+
+    private static void sendRangeNotSatisfiable(final HttpServletResponse res, final long length)
+    {
+        res.setHeader("Content-Range", "bytes */" + length);
+        res.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    private long getLastModified(final URLConnection conn)
     {
         long lastModified = 0;
 
         try
         {
-            final URLConnection conn = url.openConnection();
             lastModified = conn.getLastModified();
         }
         catch (final Exception e)
@@ -104,7 +390,7 @@ public final class ResourceServlet extends HttpServlet
 
         if (lastModified == 0)
         {
-            final String filepath = url.getPath();
+            final String filepath = conn.getURL().getPath();
             if (filepath != null)
             {
                 final File f = new File(filepath);
@@ -126,53 +412,129 @@ public final class ResourceServlet extends HttpServlet
         return resTimestamp == 0 || modSince == -1 || resTimestamp > modSince;
     }
 
-    private void copyResource(final URL url, final HttpServletResponse res) throws IOException
+    private void copyResource(final URLConnection conn,
+            final URL url,
+            final HttpServletRequest req,
+            final HttpServletResponse res,
+            final long lastModified)
+    throws IOException
     {
-        URLConnection conn = null;
-        OutputStream os = null;
-        InputStream is = null;
-
-        try
+        try (final InputStream is = conn.getInputStream())
         {
-            conn = url.openConnection();
-
-            is = conn.getInputStream();
-            os = res.getOutputStream();
             // FELIX-3987 content length should be set *before* any streaming is done
             // as headers should be written before the content is actually written...
-            int len = getContentLength(conn);
+            final long len = getContentLength(conn);
+
+            long[] range = null;
             if (len >= 0)
             {
-                res.setContentLength(len);
+                // ranges are only supported if the length is known
+                res.setHeader("Accept-Ranges", "bytes");
+            }
+            final String rangeHeader = req.getHeader("Range");
+            if (len >= 0 && rangeHeader != null && ifRangeMatches(req, null, lastModified))
+            {
+                range = parseRange(rangeHeader, len);
+                if (range == UNSATISFIABLE)
+                {
+                    sendRangeNotSatisfiable(res, len);
+                    return;
+                }
+            }
+            final long start = range == null ? 0 : range[0];
+            final long count = range == null ? len : range[1] - range[0] + 1;
+            if (range != null)
+            {
+                setPartialContent(res, range, len);
+            }
+            if (count >= 0)
+            {
+                res.setContentLengthLong(count);
             }
 
-            byte[] buf = new byte[1024];
-            int n;
-
-            while ((n = is.read(buf, 0, buf.length)) >= 0)
+            try (final OutputStream os = res.getOutputStream())
             {
-                os.write(buf, 0, n);
+                final File file = getFile(url);
+                if (file != null && count >= 0)
+                {
+                    // resource from an exploded bundle: let the file channel do the transfer
+                    transfer(file, start, count, os);
+                }
+                else
+                {
+                    copy(is, start, count, os);
+                }
             }
         }
-        finally
+    }
+
+    private static File getFile(final URL url)
+    {
+        if ("file".equals(url.getProtocol()))
         {
-            if (is != null)
+            final File f = new File(url.getPath());
+            if (f.isFile())
             {
-                is.close();
+                return f;
             }
+        }
+        return null;
+    }
 
-            if (os != null)
+    private static void transfer(final File file, final long start, final long count, final OutputStream os)
+    throws IOException
+    {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final WritableByteChannel target = Channels.newChannel(os);
+            long position = start;
+            final long end = start + count;
+            while (position < end)
             {
-                os.close();
+                final long n = channel.transferTo(position, end - position, target);
+                if (n <= 0)
+                {
+                    break;
+                }
+                position += n;
             }
         }
     }
 
-    private int getContentLength(final URLConnection conn)
+    private static void copy(final InputStream is, final long start, final long count, final OutputStream os)
+    throws IOException
     {
-        int length = -1;
+        long toSkip = start;
+        while (toSkip > 0)
+        {
+            final long n = is.skip(toSkip);
+            if (n <= 0)
+            {
+                if (is.read() == -1)
+                {
+                    return;
+                }
+                toSkip--;
+            }
+            else
+            {
+                toSkip -= n;
+            }
+        }
 
-        length = conn.getContentLength();
+        final byte[] buf = new byte[BUFFER_SIZE];
+        long remaining = count < 0 ? Long.MAX_VALUE : count;
+        int n;
+        while (remaining > 0 && (n = is.read(buf, 0, (int) Math.min(buf.length, remaining))) >= 0)
+        {
+            os.write(buf, 0, n);
+            remaining -= n;
+        }
+    }
+
+    private long getContentLength(final URLConnection conn)
+    {
+        long length = conn.getContentLengthLong();
         if (length < 0)
         {
             // Unknown, try whether it is a file, and if so, use the file
@@ -181,10 +543,9 @@ public final class ResourceServlet extends HttpServlet
             if (path != null)
             {
                 File f = new File(path);
-                // In case more than 2GB is streamed
-                if (f.length() < Integer.MAX_VALUE)
+                if (f.isFile())
                 {
-                    length = (int) f.length();
+                    length = f.length();
                 }
             }
         }
@@ -810,7 +810,7 @@ public final class WhiteboardManager
                             handler.getContextInfo().getServiceId(),
                             servletContext,
                             servletInfo,
-                            new ResourceServlet(servletInfo.getPrefix()));
+                            new ResourceServlet(servletInfo.getPrefix(), this.registry.getResourceCache()));
                     handler.getRegistry().registerServlet(servleHandler);
                 }
             }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.http.base.internal.runtime.dto.RequestMetricsDTO;
+import org.junit.Test;
+
+public class RequestMetricsTest
+{
+    @Test
+    public void testCounts()
+    {
+        final RequestMetrics metrics = new RequestMetrics();
+        final long start1 = metrics.start();
+        final long start2 = metrics.start();
+        assertEquals(2, metrics.getInFlight());
+
+        metrics.end(start1, false);
+        metrics.end(start2, true);
+
+        assertEquals(0, metrics.getInFlight());
+        assertEquals(2, metrics.getRequestCount());
+        assertEquals(1, metrics.getErrorCount());
+    }
+
+    @Test
+    public void testHistogram()
+    {
+        final RequestMetrics metrics = new RequestMetrics();
+        final long now = System.nanoTime();
+        metrics.start();
+        metrics.end(now, false);
+        metrics.start();
+        metrics.end(now - TimeUnit.MILLISECONDS.toNanos(30), false);
+        metrics.start();
+        metrics.end(now - TimeUnit.SECONDS.toNanos(20), false);
+
+        final RequestMetricsDTO dto = metrics.toDTO();
+        assertEquals(3, dto.requestCount);
+        assertEquals(dto.histogramBoundsMillis.length + 1, dto.histogramCounts.length);
+        // < 1ms
+        assertEquals(1, dto.histogramCounts[0]);
+        // 25ms - 50ms
+        assertEquals(1, dto.histogramCounts[4]);
+        // above 10s
+        assertEquals(1, dto.histogramCounts[dto.histogramCounts.length - 1]);
+        assertTrue(dto.maxTimeMillis >= 20000);
+        assertTrue(dto.totalTimeMillis >= 20030);
+    }
+}
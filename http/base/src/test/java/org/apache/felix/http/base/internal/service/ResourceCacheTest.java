@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ResourceCacheTest
+{
+    private static byte[] content(final int size, final char c)
+    {
+        final byte[] b = new byte[size];
+        Arrays.fill(b, (byte)c);
+        return b;
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        final ResourceCache cache = new ResourceCache(0, 1024, true);
+        assertFalse(cache.isEnabled());
+        assertFalse(cache.isCacheable(10));
+    }
+
+    @Test
+    public void testGetAndOutdated()
+    {
+        final ResourceCache cache = new ResourceCache(1024, 512, false);
+        assertTrue(cache.isCacheable(512));
+        assertFalse(cache.isCacheable(513));
+
+        final ResourceCache.Entry entry = cache.put("a", 1000L, content(100, 'a'), "text/plain");
+        assertSame(entry, cache.get("a", 1000L));
+        assertNull(entry.getGzipContent());
+
+        // changed time stamp invalidates the entry
+        assertNull(cache.get("a", 2000L));
+        assertNull(cache.get("a", 1000L));
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    @Test
+    public void testLRUEviction()
+    {
+        final ResourceCache cache = new ResourceCache(300, 300, false);
+        cache.put("a", 1L, content(100, 'a'), null);
+        cache.put("b", 1L, content(100, 'b'), null);
+        cache.put("c", 1L, content(100, 'c'), null);
+        assertEquals(300, cache.getCurrentSize());
+
+        // touch a, so b is the eldest entry
+        assertNotNull(cache.get("a", 1L));
+        cache.put("d", 1L, content(100, 'd'), null);
+
+        assertNull(cache.get("b", 1L));
+        assertNotNull(cache.get("a", 1L));
+        assertNotNull(cache.get("c", 1L));
+        assertNotNull(cache.get("d", 1L));
+        assertEquals(300, cache.getCurrentSize());
+
+        cache.clear();
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    @Test
+    public void testGzipAndETag()
+    {
+        final ResourceCache cache = new ResourceCache(100 * 1024, 100 * 1024, true);
+        final ResourceCache.Entry text = cache.put("a", 1L, content(4096, 'a'), "text/css");
+        assertNotNull(text.getGzipContent());
+        assertTrue(text.getGzipContent().length < 4096);
+        assertNotEquals(text.getETag(), text.getGzipETag());
+        assertTrue(text.getETag().startsWith("\""));
+
+        final ResourceCache.Entry image = cache.put("b", 1L, content(4096, 'b'), "image/png");
+        assertNull(image.getGzipContent());
+
+        final ResourceCache.Entry other = cache.put("c", 1L, content(4096, 'c'), "text/css");
+        assertNotEquals(text.getETag(), other.getETag());
+    }
+
+    @Test
+    public void testParseRange()
+    {
+        assertArrayEquals(new long[] {0, 99}, ResourceServlet.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] {500, 999}, ResourceServlet.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] {900, 999}, ResourceServlet.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] {0, 999}, ResourceServlet.parseRange("bytes=-5000", 1000));
+        assertArrayEquals(new long[] {990, 999}, ResourceServlet.parseRange("bytes=990-2000", 1000));
+        assertEquals(0, ResourceServlet.parseRange("bytes=1000-", 1000).length);
+        assertNull(ResourceServlet.parseRange("bytes=0-1,5-6", 1000));
+        assertNull(ResourceServlet.parseRange("bytes=5-1", 1000));
+        assertNull(ResourceServlet.parseRange("lines=0-1", 1000));
+        assertNull(ResourceServlet.parseRange("bytes=a-b", 1000));
+    }
+}
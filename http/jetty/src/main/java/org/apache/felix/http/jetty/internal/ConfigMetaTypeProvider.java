@@ -171,6 +171,13 @@ class ConfigMetaTypeProvider implements MetaTypeProvider
                 -1,
                 bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_THREADPOOL_MAX)));
 
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_THREADPOOL_VIRTUAL,
+                "Virtual Threads",
+                "Whether requests are handled on virtual threads instead of the bounded thread pool. This requires Java 21 or later, "
+                + "on older JVMs the thread pool is used. If enabled, Thread Pool Max is ignored.",
+                false,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_THREADPOOL_VIRTUAL)));
+
         adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_ACCEPTORS,
                 "Acceptors",
                 "Number of acceptor threads to use, or -1 for a default value. Acceptors accept new TCP/IP connections. If 0, then the selector threads are used to accept connections.",
@@ -428,9 +435,51 @@ class ConfigMetaTypeProvider implements MetaTypeProvider
                 "If this property is set, each http context gets a unique session id (derived from the container session).",
                 HttpConfig.DEFAULT_UNIQUE_SESSION_ID,
                 bundle.getBundleContext().getProperty(HttpConfig.PROP_UNIQUE_SESSION_ID)));
+        adList.add(new AttributeDefinitionImpl(HttpConfig.PROP_RESOURCE_CACHE_MAX_SIZE,
+                "Resource Cache Size",
+                "Maximum number of bytes held in memory for resources registered through the Http Service or the whiteboard. "
+                + "Default is 0 which disables the cache.",
+                HttpConfig.DEFAULT_RESOURCE_CACHE_MAX_SIZE,
+                bundle.getBundleContext().getProperty(HttpConfig.PROP_RESOURCE_CACHE_MAX_SIZE)));
+        adList.add(new AttributeDefinitionImpl(HttpConfig.PROP_RESOURCE_CACHE_MAX_ENTRY_SIZE,
+                "Resource Cache Entry Size",
+                "Maximum size in bytes of a single resource to be cached. Default is 256KB.",
+                HttpConfig.DEFAULT_RESOURCE_CACHE_MAX_ENTRY_SIZE,
+                bundle.getBundleContext().getProperty(HttpConfig.PROP_RESOURCE_CACHE_MAX_ENTRY_SIZE)));
+        adList.add(new AttributeDefinitionImpl(HttpConfig.PROP_RESOURCE_GZIP,
+                "Resource Gzip",
+                "If this property is set, cached text resources are additionally kept gzip compressed and served compressed to clients accepting it.",
+                HttpConfig.DEFAULT_RESOURCE_GZIP,
+                bundle.getBundleContext().getProperty(HttpConfig.PROP_RESOURCE_GZIP)));
         adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_STOP_TIMEOUT, "Server stop timeout",
                 "If not -1, stop timeout for the server in milliseconds.", -1L,
                 bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_STOP_TIMEOUT)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_ENABLE,
+                "Enable HTTP/2",
+                "Whether HTTP/2 is enabled. The HTTP connector additionally accepts cleartext HTTP/2 (h2c), the HTTPS "
+                + "connector negotiates HTTP/2 through ALPN, which requires Java 9 or later. Default is false.",
+                false,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_ENABLE)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_MAX_CONCURRENT_STREAMS,
+                "HTTP/2 Max Concurrent Streams",
+                "The maximum number of concurrent streams per HTTP/2 connection. Default is 128.",
+                128,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_MAX_CONCURRENT_STREAMS)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW,
+                "HTTP/2 Initial Stream Receive Window",
+                "The initial receive flow control window of a HTTP/2 stream in bytes. Default is 524288.",
+                512 * 1024,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW,
+                "HTTP/2 Initial Session Receive Window",
+                "The initial receive flow control window of a HTTP/2 connection in bytes. Default is 1048576.",
+                1024 * 1024,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_PUSH_ENABLE,
+                "HTTP/2 Push",
+                "Whether HTTP/2 server push is enabled for clients accepting it. Default is false.",
+                false,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_PUSH_ENABLE)));
 
         return new ObjectClassDefinition()
         {
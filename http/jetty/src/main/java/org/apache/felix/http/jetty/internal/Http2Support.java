@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.GoAwayFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.ResetFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * Creates the connection factories for HTTP/2. All references to the
+ * Jetty HTTP/2 and ALPN classes are kept in this class, so the light
+ * bundle works without these packages as long as HTTP/2 is disabled.
+ */
+final class Http2Support
+{
+    private Http2Support()
+    {
+        // no instances
+    }
+
+    /**
+     * Create the connection factories for cleartext HTTP/2 (h2c). HTTP/1.1
+     * stays the default protocol; clients can upgrade or use prior knowledge.
+     * @param http1 The HTTP/1.1 connection factory
+     * @param config The configuration
+     * @return The connection factories for the connector
+     */
+    static ConnectionFactory[] createCleartext(final HttpConnectionFactory http1, final JettyConfig config)
+    {
+        final HTTP2CServerConnectionFactory h2c = new HTTP2CServerConnectionFactory(http1.getHttpConfiguration())
+        {
+            @Override
+            protected ServerSessionListener newSessionListener(final Connector connector, final EndPoint endPoint)
+            {
+                return wrapSessionListener(super.newSessionListener(connector, endPoint), config);
+            }
+        };
+        configure(h2c, config);
+        return new ConnectionFactory[] {http1, h2c};
+    }
+
+    /**
+     * Create the connection factories for HTTP/2 over TLS. The protocol is
+     * negotiated through ALPN, with HTTP/1.1 as the fallback.
+     * @param http1 The HTTP/1.1 connection factory
+     * @param sslContextFactory The ssl context factory
+     * @param config The configuration
+     * @return The connection factories for the connector
+     */
+    static ConnectionFactory[] createSecure(final HttpConnectionFactory http1,
+            final SslContextFactory sslContextFactory,
+            final JettyConfig config)
+    {
+        final HttpConfiguration httpConfiguration = http1.getHttpConfiguration();
+        final HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpConfiguration)
+        {
+            @Override
+            protected ServerSessionListener newSessionListener(final Connector connector, final EndPoint endPoint)
+            {
+                return wrapSessionListener(super.newSessionListener(connector, endPoint), config);
+            }
+        };
+        configure(h2, config);
+
+        // the ALPN processor is looked up using the service loader and the TCCL
+        final ALPNServerConnectionFactory alpn;
+        final ClassLoader tccl = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(Http2Support.class.getClassLoader());
+        try
+        {
+            alpn = new ALPNServerConnectionFactory(h2.getProtocol(), http1.getProtocol());
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(tccl);
+        }
+        alpn.setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
+
+        // HTTP/2 requires TLS 1.2 and blacklists a number of cipher suites
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+        sslContextFactory.setUseCipherSuitesOrder(true);
+
+        return new ConnectionFactory[] {
+                new SslConnectionFactory(sslContextFactory, alpn.getProtocol()),
+                alpn,
+                h2,
+                http1
+        };
+    }
+
+    private static void configure(final AbstractHTTP2ServerConnectionFactory factory, final JettyConfig config)
+    {
+        factory.setMaxConcurrentStreams(config.getHttp2MaxConcurrentStreams());
+        factory.setInitialStreamRecvWindow(config.getHttp2InitialStreamRecvWindow());
+        factory.setInitialSessionRecvWindow(config.getHttp2InitialSessionRecvWindow());
+    }
+
+    private static ServerSessionListener wrapSessionListener(final ServerSessionListener delegate, final JettyConfig config)
+    {
+        if (config.isHttp2PushEnabled())
+        {
+            return delegate;
+        }
+        return new PushDisablingSessionListener(delegate);
+    }
+
+    /**
+     * Jetty enables server push whenever the client allows it. This listener
+     * disables push for the session again once the client settings are applied.
+     */
+    private static final class PushDisablingSessionListener implements ServerSessionListener
+    {
+        private static final Map<Integer, Integer> DISABLE_PUSH = Collections.singletonMap(SettingsFrame.ENABLE_PUSH, 0);
+
+        private final ServerSessionListener delegate;
+
+        PushDisablingSessionListener(final ServerSessionListener delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onSettings(final Session session, final SettingsFrame frame)
+        {
+            this.delegate.onSettings(session, frame);
+            if (session instanceof HTTP2Session && ((HTTP2Session) session).isPushEnabled())
+            {
+                // applying the setting locally notifies this listener again
+                ((HTTP2Session) session).onSettings(new SettingsFrame(DISABLE_PUSH, false), false);
+            }
+        }
+
+        @Override
+        public void onAccept(final Session session)
+        {
+            this.delegate.onAccept(session);
+        }
+
+        @Override
+        public Map<Integer, Integer> onPreface(final Session session)
+        {
+            return this.delegate.onPreface(session);
+        }
+
+        @Override
+        public Stream.Listener onNewStream(final Stream stream, final HeadersFrame frame)
+        {
+            return this.delegate.onNewStream(stream, frame);
+        }
+
+        @Override
+        public void onPing(final Session session, final PingFrame frame)
+        {
+            this.delegate.onPing(session, frame);
+        }
+
+        @Override
+        public void onReset(final Session session, final ResetFrame frame)
+        {
+            this.delegate.onReset(session, frame);
+        }
+
+        @Override
+        public void onClose(final Session session, final GoAwayFrame frame)
+        {
+            this.delegate.onClose(session, frame);
+        }
+
+        @Override
+        public void onClose(final Session session, final GoAwayFrame frame, final Callback callback)
+        {
+            this.delegate.onClose(session, frame, callback);
+        }
+
+        @Override
+        public boolean onIdleTimeout(final Session session)
+        {
+            return this.delegate.onIdleTimeout(session);
+        }
+
+        @Override
+        public void onFailure(final Session session, final Throwable failure)
+        {
+            this.delegate.onFailure(session, failure);
+        }
+
+        @Override
+        public void onFailure(final Session session, final Throwable failure, final Callback callback)
+        {
+            this.delegate.onFailure(session, failure, callback);
+        }
+    }
+}
@@ -87,6 +87,9 @@ public final class JettyConfig
     /** Felix specific property to control the maximum size of the jetty thread pool */
     public static final String FELIX_JETTY_THREADPOOL_MAX = "org.apache.felix.http.jetty.threadpool.max";
 
+    /** Felix specific property to run request handling on virtual threads instead of the bounded thread pool. Requires Java 21, ignored otherwise. Default is false */
+    public static final String FELIX_JETTY_THREADPOOL_VIRTUAL = "org.apache.felix.http.jetty.threadpool.virtual";
+
     /** Felix specific property to control the number of jetty acceptor threads */
     public static final String FELIX_JETTY_ACCEPTORS = "org.apache.felix.http.jetty.acceptors";
 
@@ -267,6 +270,21 @@ public final class JettyConfig
     /** Felix specific property to specify the stop timeout of the jetty server */
     public static final String FELIX_JETTY_STOP_TIMEOUT = "org.apache.felix.jetty.stopTimeout";
 
+    /** Felix specific property to enable HTTP/2. Adds h2c to the HTTP connector and h2 (negotiated through ALPN) to the HTTPS connector. Default is false */
+    public static final String FELIX_JETTY_HTTP2_ENABLE = "org.apache.felix.http.jetty.http2.enable";
+
+    /** Felix specific property to configure the maximum number of concurrent HTTP/2 streams per connection. Default is 128 */
+    public static final String FELIX_JETTY_HTTP2_MAX_CONCURRENT_STREAMS = "org.apache.felix.http.jetty.http2.maxConcurrentStreams";
+
+    /** Felix specific property to configure the initial HTTP/2 stream receive window in bytes. Default is 512KB */
+    public static final String FELIX_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW = "org.apache.felix.http.jetty.http2.initialStreamRecvWindow";
+
+    /** Felix specific property to configure the initial HTTP/2 session receive window in bytes. Default is 1MB */
+    public static final String FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW = "org.apache.felix.http.jetty.http2.initialSessionRecvWindow";
+
+    /** Felix specific property to control whether HTTP/2 server push is enabled for clients accepting it. Default is false */
+    public static final String FELIX_JETTY_HTTP2_PUSH_ENABLE = "org.apache.felix.http.jetty.http2.pushEnabled";
+
     private static String validateContextPath(String ctxPath)
     {
         // undefined, empty, or root context path
@@ -448,6 +466,11 @@ public final class JettyConfig
         return getIntProperty(FELIX_JETTY_THREADPOOL_MAX, -1);
     }
 
+    public boolean isUseVirtualThreads()
+    {
+        return getBooleanProperty(FELIX_JETTY_THREADPOOL_VIRTUAL, false);
+    }
+
     public int getAcceptors()
     {
         return getIntProperty(FELIX_JETTY_ACCEPTORS, -1);
@@ -668,6 +691,26 @@ public final class JettyConfig
         return getLongProperty(FELIX_JETTY_STOP_TIMEOUT, -1l);
     }
 
+    public boolean isHttp2Enabled() {
+        return getBooleanProperty(FELIX_JETTY_HTTP2_ENABLE, false);
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return getIntProperty(FELIX_JETTY_HTTP2_MAX_CONCURRENT_STREAMS, 128);
+    }
+
+    public int getHttp2InitialStreamRecvWindow() {
+        return getIntProperty(FELIX_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW, 512 * 1024);
+    }
+
+    public int getHttp2InitialSessionRecvWindow() {
+        return getIntProperty(FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW, 1024 * 1024);
+    }
+
+    public boolean isHttp2PushEnabled() {
+        return getBooleanProperty(FELIX_JETTY_HTTP2_PUSH_ENABLE, false);
+    }
+
     public void reset()
     {
         update(null);
@@ -688,6 +731,12 @@ public final class JettyConfig
                 HttpConfig.DEFAULT_INVALIDATE_SESSION));
         props.put(HttpConfig.PROP_UNIQUE_SESSION_ID, getBooleanProperty(HttpConfig.PROP_UNIQUE_SESSION_ID,
                 HttpConfig.DEFAULT_UNIQUE_SESSION_ID));
+        props.put(HttpConfig.PROP_RESOURCE_CACHE_MAX_SIZE, getLongProperty(HttpConfig.PROP_RESOURCE_CACHE_MAX_SIZE,
+                HttpConfig.DEFAULT_RESOURCE_CACHE_MAX_SIZE));
+        props.put(HttpConfig.PROP_RESOURCE_CACHE_MAX_ENTRY_SIZE, getLongProperty(HttpConfig.PROP_RESOURCE_CACHE_MAX_ENTRY_SIZE,
+                HttpConfig.DEFAULT_RESOURCE_CACHE_MAX_ENTRY_SIZE));
+        props.put(HttpConfig.PROP_RESOURCE_GZIP, getBooleanProperty(HttpConfig.PROP_RESOURCE_GZIP,
+                HttpConfig.DEFAULT_RESOURCE_GZIP));
 
         addCustomServiceProperties(props);
     }
@@ -38,6 +38,7 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.ConnectionStatistics;
 import org.eclipse.jetty.security.HashLoginService;
 import org.eclipse.jetty.security.UserStore;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
@@ -255,10 +256,17 @@ public final class JettyService extends AbstractLifeCycle.AbstractLifeCycleListe
         {
 
             final int threadPoolMax = this.config.getThreadPoolMax();
-            if (threadPoolMax >= 0) {
-                this.server = new Server( new QueuedThreadPool(threadPoolMax) );
+            if (this.config.isUseVirtualThreads() && VirtualThreadPool.isSupported()) {
+                this.server = new Server( new VirtualThreadPool() );
             } else {
-                this.server = new Server();
+                if (this.config.isUseVirtualThreads()) {
+                    SystemLogger.warning("Virtual threads are not supported by this JVM, using thread pool", null);
+                }
+                if (threadPoolMax >= 0) {
+                    this.server = new Server( new QueuedThreadPool(threadPoolMax) );
+                } else {
+                    this.server = new Server();
+                }
             }
             this.server.addLifeCycleListener(this);
 
@@ -361,7 +369,9 @@ public final class JettyService extends AbstractLifeCycle.AbstractLifeCycleListe
 
                 message.append(" [");
                 ThreadPool threadPool = this.server.getThreadPool();
-                if (threadPool instanceof ThreadPool.SizedThreadPool) {
+                if (threadPool instanceof VirtualThreadPool) {
+                    message.append("virtualThreads=true,");
+                } else if (threadPool instanceof ThreadPool.SizedThreadPool) {
                     ThreadPool.SizedThreadPool sizedThreadPool = (ThreadPool.SizedThreadPool) threadPool;
                     message.append("minThreads=").append(sizedThreadPool.getMinThreads()).append(",");
                     message.append("maxThreads=").append(sizedThreadPool.getMaxThreads()).append(",");
@@ -431,11 +441,21 @@ public final class JettyService extends AbstractLifeCycle.AbstractLifeCycleListe
         HttpConnectionFactory connFactory = new HttpConnectionFactory();
         configureHttpConnectionFactory(connFactory);
 
+        final ConnectionFactory[] factories;
+        if (this.config.isHttp2Enabled())
+        {
+            factories = Http2Support.createCleartext(connFactory, this.config);
+        }
+        else
+        {
+            factories = new ConnectionFactory[] {connFactory};
+        }
+
         ServerConnector connector = new ServerConnector(
             server,
             config.getAcceptors(),
             config.getSelectors(),
-            connFactory
+            factories
         );
 
         configureConnector(connector, this.config.getHttpPort());
@@ -455,12 +475,24 @@ public final class JettyService extends AbstractLifeCycle.AbstractLifeCycleListe
         SslContextFactory sslContextFactory = new SslContextFactory.Server();
         configureSslContextFactory(sslContextFactory);
 
+        final ConnectionFactory[] factories;
+        if (this.config.isHttp2Enabled())
+        {
+            factories = Http2Support.createSecure(connFactory, sslContextFactory, this.config);
+        }
+        else
+        {
+            factories = new ConnectionFactory[] {
+                new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.toString()),
+                connFactory
+            };
+        }
+
         ServerConnector connector = new ServerConnector(
             server,
             config.getAcceptors(),
             config.getSelectors(),
-            new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.toString()),
-            connFactory
+            factories
         );
 
         HttpConfiguration httpConfiguration = connFactory.getHttpConfiguration();
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * A Jetty {@link ThreadPool} running each task on a new virtual thread.
+ * Virtual threads are only available with Java 21 or later, therefore the
+ * executor is looked up reflectively and {@link #isSupported()} should
+ * be checked before using this pool.
+ */
+public final class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool
+{
+    private static final Method NEW_EXECUTOR = findExecutorFactory();
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    private volatile ExecutorService executor;
+
+    private static Method findExecutorFactory()
+    {
+        try
+        {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (final NoSuchMethodException | SecurityException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the running JVM supports virtual threads
+     * @return {@code true} if virtual threads are available
+     */
+    public static boolean isSupported()
+    {
+        return NEW_EXECUTOR != null;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (NEW_EXECUTOR == null)
+        {
+            throw new IllegalStateException("Virtual threads are not supported by this JVM");
+        }
+        this.executor = (ExecutorService) NEW_EXECUTOR.invoke(null);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        final ExecutorService service = this.executor;
+        if (service != null)
+        {
+            service.shutdown();
+            final long timeout = getStopTimeout();
+            if (timeout > 0 && !service.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+            {
+                service.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task)
+    {
+        final ExecutorService service = this.executor;
+        if (service == null)
+        {
+            throw new RejectedExecutionException("Thread pool is not started");
+        }
+        service.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                threads.incrementAndGet();
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    threads.decrementAndGet();
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return task.toString();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        final ExecutorService service = this.executor;
+        if (service != null)
+        {
+            while (!service.awaitTermination(1, TimeUnit.DAYS))
+            {
+                // wait
+            }
+        }
+    }
+
+    @Override
+    public int getThreads()
+    {
+        return this.threads.get();
+    }
+
+    /**
+     * Virtual threads are never idle, a new one is created per task
+     */
+    @Override
+    public int getIdleThreads()
+    {
+        return 0;
+    }
+
+    /**
+     * A virtual thread pool is never low on threads
+     */
+    @Override
+    public boolean isLowOnThreads()
+    {
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,threads=%d}", getClass().getSimpleName(), hashCode(), getState(), getThreads());
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Runs requests against a local cleartext HTTP/2 (h2c) connector
+ * created by {@link Http2Support}.
+ */
+public class Http2SupportTest
+{
+    private Server server;
+
+    private HTTP2Client client;
+
+    /**
+     * Servlet returning the request protocol and whether push is supported
+     */
+    private static final class ProtocolServlet extends HttpServlet
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException
+        {
+            final boolean push = Request.getBaseRequest(req).isPushSupported();
+            resp.setContentType("text/plain");
+            resp.getWriter().write(req.getProtocol() + " push=" + push);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (this.client != null)
+        {
+            this.client.stop();
+        }
+        if (this.server != null)
+        {
+            this.server.stop();
+        }
+    }
+
+    private JettyConfig createConfig(final boolean push)
+    {
+        final JettyConfig config = new JettyConfig(Mockito.mock(BundleContext.class));
+        final Hashtable<String, Object> props = new Hashtable<>();
+        props.put(JettyConfig.FELIX_JETTY_HTTP2_ENABLE, "true");
+        props.put(JettyConfig.FELIX_JETTY_HTTP2_MAX_CONCURRENT_STREAMS, "42");
+        props.put(JettyConfig.FELIX_JETTY_HTTP2_INITIAL_STREAM_RECV_WINDOW, "65536");
+        props.put(JettyConfig.FELIX_JETTY_HTTP2_PUSH_ENABLE, String.valueOf(push));
+        config.update(props);
+        return config;
+    }
+
+    private int startServer(final JettyConfig config) throws Exception
+    {
+        this.server = new Server();
+        final ServerConnector connector = new ServerConnector(this.server,
+                Http2Support.createCleartext(new HttpConnectionFactory(), config));
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        this.server.addConnector(connector);
+
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new ProtocolServlet()), "/*");
+        this.server.setHandler(context);
+        this.server.start();
+
+        return connector.getLocalPort();
+    }
+
+    private String get(final int port, final AtomicReference<Map<Integer, Integer>> serverSettings) throws Exception
+    {
+        this.client = new HTTP2Client();
+        this.client.start();
+
+        final CountDownLatch settingsLatch = new CountDownLatch(1);
+        final FuturePromise<Session> sessionPromise = new FuturePromise<>();
+        this.client.connect(new InetSocketAddress("127.0.0.1", port), new Session.Listener.Adapter()
+        {
+            @Override
+            public Map<Integer, Integer> onPreface(final Session session)
+            {
+                final Map<Integer, Integer> settings = new HashMap<>();
+                settings.put(SettingsFrame.ENABLE_PUSH, 1);
+                return settings;
+            }
+
+            @Override
+            public void onSettings(final Session session, final SettingsFrame frame)
+            {
+                serverSettings.set(frame.getSettings());
+                settingsLatch.countDown();
+            }
+        }, sessionPromise);
+        final Session session = sessionPromise.get(5, TimeUnit.SECONDS);
+
+        final MetaData.Request request = new MetaData.Request("GET",
+                new HttpURI("http://127.0.0.1:" + port + "/test"), HttpVersion.HTTP_2, new HttpFields());
+        final AtomicInteger status = new AtomicInteger();
+        final StringBuilder body = new StringBuilder();
+        final CountDownLatch responseLatch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(request, null, true), new FuturePromise<Stream>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(final Stream stream, final HeadersFrame frame)
+            {
+                if (frame.getMetaData().isResponse())
+                {
+                    status.set(((MetaData.Response) frame.getMetaData()).getStatus());
+                }
+                if (frame.isEndStream())
+                {
+                    responseLatch.countDown();
+                }
+            }
+
+            @Override
+            public void onData(final Stream stream, final DataFrame frame, final Callback callback)
+            {
+                body.append(StandardCharsets.UTF_8.decode(frame.getData()));
+                callback.succeeded();
+                if (frame.isEndStream())
+                {
+                    responseLatch.countDown();
+                }
+            }
+        });
+
+        assertTrue(settingsLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(HttpServletResponse.SC_OK, status.get());
+        return body.toString();
+    }
+
+    @Test
+    public void testCleartextHttp2() throws Exception
+    {
+        final int port = startServer(createConfig(false));
+
+        final AtomicReference<Map<Integer, Integer>> settings = new AtomicReference<>();
+        final String body = get(port, settings);
+
+        assertTrue(body, body.startsWith("HTTP/2.0"));
+        assertTrue(body, body.endsWith("push=false"));
+        assertEquals(Integer.valueOf(42), settings.get().get(SettingsFrame.MAX_CONCURRENT_STREAMS));
+        assertEquals(Integer.valueOf(65536), settings.get().get(SettingsFrame.INITIAL_WINDOW_SIZE));
+    }
+
+    @Test
+    public void testPushEnabled() throws Exception
+    {
+        final int port = startServer(createConfig(true));
+
+        final String body = get(port, new AtomicReference<Map<Integer, Integer>>());
+
+        assertTrue(body, body.endsWith("push=true"));
+    }
+
+    @Test
+    public void testHttp1StillSupported() throws Exception
+    {
+        final int port = startServer(createConfig(false));
+
+        final HttpURLConnection conn = (HttpURLConnection)
+                new URL("http://127.0.0.1:" + port + "/test").openConnection();
+        assertEquals(HttpServletResponse.SC_OK, conn.getResponseCode());
+        final String body = new Scanner(conn.getInputStream(), "UTF-8").useDelimiter("\\A").next();
+        assertTrue(body, body.startsWith("HTTP/1.1"));
+        assertFalse(body, body.endsWith("push=true"));
+    }
+}
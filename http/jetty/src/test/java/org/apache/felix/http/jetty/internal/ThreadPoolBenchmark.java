@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Load benchmark comparing the bounded {@link QueuedThreadPool} with the
+ * {@link VirtualThreadPool}. A servlet simulating a blocking call to a
+ * downstream service is served by an embedded Jetty and hammered by
+ * concurrent clients.
+ * <p>
+ * This is not run as part of the build, start it manually with
+ * <pre>
+ * java -cp ... org.apache.felix.http.jetty.internal.ThreadPoolBenchmark [clients] [requestsPerClient] [blockMillis] [poolMax]
+ * </pre>
+ * The virtual thread run is only executed on Java 21 or later.
+ */
+public class ThreadPoolBenchmark
+{
+    /**
+     * Stand-in for a servlet blocking on downstream I/O
+     */
+    private static final class BlockingServlet extends HttpServlet
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long blockMillis;
+
+        BlockingServlet(final long blockMillis)
+        {
+            this.blockMillis = blockMillis;
+        }
+
+        @Override
+        protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException
+        {
+            try
+            {
+                Thread.sleep(this.blockMillis);
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().write("ok");
+        }
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final int clients = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+        final long blockMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        final int poolMax = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        System.out.printf("clients=%d, requests/client=%d, block=%dms, pool max=%d%n", clients, requests, blockMillis, poolMax);
+
+        run("QueuedThreadPool", new QueuedThreadPool(poolMax), clients, requests, blockMillis);
+        if (VirtualThreadPool.isSupported())
+        {
+            run("VirtualThreadPool", new VirtualThreadPool(), clients, requests, blockMillis);
+        }
+        else
+        {
+            System.out.println("VirtualThreadPool: not supported by this JVM");
+        }
+    }
+
+    private static void run(final String name,
+            final ThreadPool pool,
+            final int clients,
+            final int requests,
+            final long blockMillis) throws Exception
+    {
+        final Server server = new Server(pool);
+        final ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        connector.setAcceptQueueSize(clients);
+        server.addConnector(connector);
+
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new BlockingServlet(blockMillis)), "/*");
+        server.setHandler(context);
+        server.start();
+        try
+        {
+            final URL url = new URL("http://127.0.0.1:" + connector.getLocalPort() + "/blocking");
+
+            // warm up
+            execute(url, Math.min(clients, 20), 5);
+
+            final long start = System.nanoTime();
+            final int failed = execute(url, clients, requests);
+            final long elapsed = System.nanoTime() - start;
+
+            final long total = (long) clients * requests;
+            System.out.printf("%s: %d requests (%d failed) in %d ms, %.1f req/s%n",
+                    name, total, failed, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    total * 1_000_000_000.0 / elapsed);
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    private static int execute(final URL url, final int clients, final int requests) throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try
+        {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++)
+            {
+                results.add(executor.submit(new Callable<Integer>()
+                {
+                    @Override
+                    public Integer call()
+                    {
+                        int failed = 0;
+                        final byte[] buf = new byte[256];
+                        for (int r = 0; r < requests; r++)
+                        {
+                            try
+                            {
+                                final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+                                if (conn.getResponseCode() != HttpServletResponse.SC_OK)
+                                {
+                                    failed++;
+                                }
+                                try (final InputStream is = conn.getInputStream())
+                                {
+                                    while (is.read(buf) != -1)
+                                    {
+                                        // drain so the connection is reused
+                                    }
+                                }
+                            }
+                            catch (final IOException e)
+                            {
+                                failed++;
+                            }
+                        }
+                        return failed;
+                    }
+                }));
+            }
+            int failed = 0;
+            for (final Future<Integer> f : results)
+            {
+                failed += f.get();
+            }
+            return failed;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
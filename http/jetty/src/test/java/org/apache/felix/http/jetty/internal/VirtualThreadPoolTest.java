@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.jetty.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class VirtualThreadPoolTest
+{
+    @Test
+    public void testNotStarted() throws Exception
+    {
+        final VirtualThreadPool pool = new VirtualThreadPool();
+        try
+        {
+            pool.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // nothing to do
+                }
+            });
+            fail("Pool is not started");
+        }
+        catch (final RejectedExecutionException expected)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUnsupported() throws Exception
+    {
+        Assume.assumeFalse(VirtualThreadPool.isSupported());
+        final VirtualThreadPool pool = new VirtualThreadPool();
+        try
+        {
+            pool.start();
+            fail("Virtual threads are not supported");
+        }
+        catch (final IllegalStateException expected)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExecute() throws Exception
+    {
+        Assume.assumeTrue(VirtualThreadPool.isSupported());
+        final VirtualThreadPool pool = new VirtualThreadPool();
+        pool.start();
+        try
+        {
+            final int count = 1000;
+            final CountDownLatch started = new CountDownLatch(count);
+            final CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < count; i++)
+            {
+                pool.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        started.countDown();
+                        try
+                        {
+                            release.await();
+                        }
+                        catch (final InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            // all tasks block at the same time, more than any bounded pool would allow
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(count, pool.getThreads());
+            assertFalse(pool.isLowOnThreads());
+            release.countDown();
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+}
@@ -136,6 +136,26 @@ public class Connection
         }
     }
 
+    /**
+     * Constructs a connection that reads and writes its requests through the
+     * specified streams rather than through the streams of its socket.
+     * @param socket The client socket.
+     * @param is The stream to read requests from.
+     * @param os The stream to write responses to.
+     * @param requestLimit The maximum number of consecutive requests.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     */
+    Connection(final Socket socket, final ConcreteServletInputStream is, final OutputStream os, final int requestLimit, final ServiceRegistrationResolver resolver, final Logger logger)
+    {
+        m_socket = socket;
+        m_is = is;
+        m_os = os;
+        m_requestLimit = requestLimit;
+        m_resolver = resolver;
+        m_logger = logger;
+    }
+
     /**
      * Performs the actual servicing of the connection and its subsequent requests.
      * This method will be called by threads in the thread pool. This method
@@ -160,131 +180,193 @@ public class Connection
             boolean close = false;
             while (!close)
             {
-                // Read the next request.
-                try
-                {
-                    request.parseRequestLine(m_is);
-                }
-                catch (IOException e)
-                {
-                    m_logger.log(
-                        Logger.LOG_ERROR,
-                        "Error with request: " + request.toString() + ": "
-                            + e.getMessage());
-                    throw e;
-                }
-                m_requestCount++;
+                close = processRequest(request, response);
+            }
+        }
+        finally
+        {
+            close();
+        }
+    }
+
+    /**
+     * Reads and services the next request of this connection using a new
+     * request and response.
+     * @return <tt>true</tt> if the connection should be closed after this
+     *         request, <tt>false</tt> otherwise.
+     * @throws java.io.IOException If any I/O error occurs.
+     * @throws ServletException on servlet errors
+    **/
+    boolean processRequest() throws IOException, ServletException
+    {
+        return processRequest(m_resolver.getServletRequest(m_socket),
+            m_resolver.getServletResponse(m_os));
+    }
 
-                // Keep track of whether we have failed or not,
-                // because we still want to read the bytes to clear
-                // the input stream so we can service more requests.
-                boolean error = false;
+    /**
+     * Reads the next request of this connection into the specified request
+     * and services it.
+     * @param request The request to read into.
+     * @param response The response to write to.
+     * @return <tt>true</tt> if the connection should be closed after this
+     *         request, <tt>false</tt> otherwise.
+     * @throws java.io.IOException If any I/O error occurs.
+     * @throws ServletException on servlet errors
+    **/
+    private boolean processRequest(final HttpServletRequestImpl request,
+        final HttpServletResponseImpl response) throws IOException, ServletException
+    {
+        // Read the next request.
+        try
+        {
+            request.parseRequestLine(m_is);
+        }
+        catch (IOException e)
+        {
+            m_logger.log(
+                Logger.LOG_ERROR,
+                "Error with request: " + request.toString() + ": "
+                    + e.getMessage());
+            throw e;
+        }
+        m_requestCount++;
 
-                m_logger.log(Logger.LOG_DEBUG,
-                    "Processing " + request.getRequestURI() + " (" + (m_requestLimit - m_requestCount)
-                        + " remaining)");
+        // Keep track of whether we have failed or not,
+        // because we still want to read the bytes to clear
+        // the input stream so we can service more requests.
+        boolean error = false;
+        boolean close = false;
 
-                // If client is HTTP/1.1, then send continue message.
-                if (request.getProtocol().equals(HttpConstants.HTTP11_VERSION))
-                {
-                    response.sendContinueResponse();
-                }
+        m_logger.log(Logger.LOG_DEBUG,
+            "Processing " + request.getRequestURI() + " (" + (m_requestLimit - m_requestCount)
+                + " remaining)");
 
-                // Read the header lines of the request.
-                request.parseHeader(m_is);
+        // If client is HTTP/1.1, then send continue message, unless this
+        // connection takes care of it while reading the request.
+        if (request.getProtocol().equals(HttpConstants.HTTP11_VERSION) && !isContinueSent())
+        {
+            response.sendContinueResponse();
+        }
 
-                // If we have an HTTP/1.0 request without the connection set to
-                // keep-alive or we explicitly have a request to close the connection,
-                // then set close flag to exit the loop rather than trying to read
-                // more requests.
-                String v = request.getHeader(HttpConstants.HEADER_CONNECTION);
-                if ((request.getProtocol().equals(HttpConstants.HTTP10_VERSION) && ((v == null) || (!v.equalsIgnoreCase(HttpConstants.KEEPALIVE_CONNECTION))))
-                    || ((v != null) && v.equalsIgnoreCase(HttpConstants.CLOSE_CONNECTION)))
-                {
-                    close = true;
-                    response.setConnectionType("close");
-                }
-                // If we have serviced the maximum number of requests for
-                // this connection, then set close flag so we exit the loop
-                // and close the connection.
-                else if (m_requestCount >= m_requestLimit)
-                {
-                    close = true;
-                    response.setConnectionType("close");
-                }
+        // Read the header lines of the request.
+        request.parseHeader(m_is);
 
-                // We do not support OPTIONS method so send
-                // a "not implemented" error in that case.
-                if (!HttpServletRequestImpl.isSupportedMethod(request.getMethod()))
-                {
-                    error = true;
-                    response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
-                    response.sendNotImplementedResponse();
-                }
+        // If we have an HTTP/1.0 request without the connection set to
+        // keep-alive or we explicitly have a request to close the connection,
+        // then set close flag to exit the loop rather than trying to read
+        // more requests.
+        String v = request.getHeader(HttpConstants.HEADER_CONNECTION);
+        if ((request.getProtocol().equals(HttpConstants.HTTP10_VERSION) && ((v == null) || (!v.equalsIgnoreCase(HttpConstants.KEEPALIVE_CONNECTION))))
+            || ((v != null) && v.equalsIgnoreCase(HttpConstants.CLOSE_CONNECTION)))
+        {
+            close = true;
+            response.setConnectionType("close");
+        }
+        // If we have serviced the maximum number of requests for
+        // this connection, then set close flag so we exit the loop
+        // and close the connection.
+        else if (m_requestCount >= m_requestLimit)
+        {
+            close = true;
+            response.setConnectionType("close");
+        }
 
-                // Ignore if we have already failed, otherwise send error message
-                // if an HTTP/1.1 client did not include HOST header.
-                if (!error && request.getProtocol().equals(HttpConstants.HTTP11_VERSION)
-                    && (request.getHeader(HttpConstants.HOST_HEADER) == null))
-                {
-                    error = true;
-                    response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
-                    response.sendMissingHostResponse();
-                }
+        // We do not support OPTIONS method so send
+        // a "not implemented" error in that case.
+        if (!HttpServletRequestImpl.isSupportedMethod(request.getMethod()))
+        {
+            error = true;
+            response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
+            response.sendNotImplementedResponse();
+        }
 
-                // Read in the request body.
-                request.parseBody(m_is);
+        // Ignore if we have already failed, otherwise send error message
+        // if an HTTP/1.1 client did not include HOST header.
+        if (!error && request.getProtocol().equals(HttpConstants.HTTP11_VERSION)
+            && (request.getHeader(HttpConstants.HOST_HEADER) == null))
+        {
+            error = true;
+            response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
+            response.sendMissingHostResponse();
+        }
 
-                // Only process the request if there was no error.
-                if (!error)
-                {
-                    ServiceRegistrationHandler processor = m_resolver.getProcessor(
-                        request, response, request.getRequestURI());
+        // Read in the request body.
+        request.parseBody(m_is);
 
-                    if (processor != null)
-                    {
-                        processor.handle(close);
+        // Only process the request if there was no error.
+        if (!error)
+        {
+            ServiceRegistrationHandler processor = m_resolver.getProcessor(
+                request, response, request.getRequestURI());
 
-                        m_logger.log(Logger.LOG_DEBUG, "Processed " + request.toString());
+            if (processor != null)
+            {
+                processor.handle(close);
 
-                        // TODO: Adding next line to make test cases pass, but not sure if it is correct
-                        // and needs further investigation.
-                        close = true;
-                        continue;
-                    }
+                m_logger.log(Logger.LOG_DEBUG, "Processed " + request.toString());
 
-                    close = true;
-                    response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
-                    response.sendNotFoundResponse();
-                }
+                return close || !isKeepAlive(response);
             }
+
+            close = true;
+            response.setConnectionType(HttpConstants.CLOSE_CONNECTION);
+            response.sendNotFoundResponse();
         }
-        finally
+
+        return close;
+    }
+
+    /**
+     * Determines whether the connection may read another request after a
+     * servlet or resource has written the specified response. As the blocking
+     * connection reuses its request and response for all of its requests,
+     * whose state is not reset, it is closed after servicing such a request.
+     * @param response The written response.
+     * @return <tt>true</tt> if the connection may be kept alive.
+    **/
+    boolean isKeepAlive(final HttpServletResponseImpl response)
+    {
+        return false;
+    }
+
+    /**
+     * @return <tt>true</tt> if the interim 100 (Continue) response has been
+     *         sent while reading the request, <tt>false</tt> if it must be
+     *         sent before reading the header lines of an HTTP/1.1 request.
+    **/
+    boolean isContinueSent()
+    {
+        return false;
+    }
+
+    /**
+     * Closes the streams and socket of this connection.
+    **/
+    void close()
+    {
+        try
         {
-            try
-            {
-                m_is.close();
-            }
-            catch (IOException ex)
-            {
-                m_logger.log(Logger.LOG_ERROR, "Error closing socket input stream.", ex);
-            }
-            try
-            {
-                m_os.close();
-            }
-            catch (IOException ex)
-            {
-                m_logger.log(Logger.LOG_ERROR, "Error closing socket output stream.", ex);
-            }
-            try
-            {
-                m_socket.close();
-            }
-            catch (IOException ex)
-            {
-                m_logger.log(Logger.LOG_ERROR, "Error closing socket.", ex);
-            }
+            m_is.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket input stream.", ex);
+        }
+        try
+        {
+            m_os.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket output stream.", ex);
+        }
+        try
+        {
+            m_socket.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing socket.", ex);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,479 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.StringTokenizer;
+
+import javax.servlet.ServletException;
+
+import org.apache.felix.httplite.osgi.Logger;
+import org.apache.felix.httplite.osgi.ServiceRegistrationResolver;
+import org.apache.felix.httplite.servlet.ConcreteServletInputStream;
+import org.apache.felix.httplite.servlet.HttpConstants;
+import org.apache.felix.httplite.servlet.HttpServletResponseImpl;
+
+/**
+ * This class represents a connection accepted by the {@link NioConnector}.
+ * The bytes of its requests are read by the selector thread of the connector
+ * into a pooled buffer; only once a request is complete, the connection is
+ * handed to the thread pool to service that request from the buffer. Hence,
+ * idle connections do not occupy a thread of the pool.
+**/
+class NioConnection extends Connection
+{
+    private final NioConnector m_connector;
+    private final SocketChannel m_channel;
+    private final BufferInputStream m_input;
+
+    // The following fields are only accessed by the thread that currently
+    // owns the connection: the selector thread while reading, or a pool
+    // thread while servicing a request.
+    private ByteBuffer m_buffer;
+    private int m_scanned = 0;
+    private int m_requestLength = -1;
+    private long m_lastActivity = System.currentTimeMillis();
+    private boolean m_dispatched = false;
+
+    /**
+     * Constructs a connection for the specified non-blocking channel.
+     * @param connector The connector that accepted the channel.
+     * @param channel The non-blocking client channel.
+     * @param timeout The inactivity timeout of the connection in milliseconds.
+     * @param requestLimit The maximum number of consecutive requests.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     */
+    NioConnection(final NioConnector connector, final SocketChannel channel, final int timeout, final int requestLimit, final ServiceRegistrationResolver resolver, final Logger logger)
+    {
+        this(connector, channel, new BufferInputStream(), new ChannelOutputStream(channel, timeout),
+            requestLimit, resolver, logger);
+    }
+
+    private NioConnection(final NioConnector connector, final SocketChannel channel, final BufferInputStream input, final ChannelOutputStream output, final int requestLimit, final ServiceRegistrationResolver resolver, final Logger logger)
+    {
+        super(channel.socket(), new ConcreteServletInputStream(input), new BufferedOutputStream(output),
+            requestLimit, resolver, logger);
+        m_connector = connector;
+        m_channel = channel;
+        m_input = input;
+        m_buffer = connector.acquireBuffer();
+    }
+
+    /**
+     * Services the buffered request of this connection. This method will be
+     * called by threads in the thread pool. Afterwards, the connection is
+     * either closed or handed back to the connector to read its next request.
+     * @throws java.io.IOException If any I/O error occurs.
+     * @throws ServletException on servlet errors
+    **/
+    public void process() throws IOException, ServletException
+    {
+        boolean close = true;
+        try
+        {
+            close = processRequest();
+        }
+        finally
+        {
+            if (close)
+            {
+                close();
+            }
+            else
+            {
+                m_connector.resume(this);
+            }
+        }
+    }
+
+    /**
+     * Closes the channel of this connection and returns its buffer to the pool.
+    **/
+    synchronized void close()
+    {
+        if (m_buffer != null)
+        {
+            super.close();
+            m_connector.releaseBuffer(m_buffer);
+            m_buffer = null;
+            m_input.setBuffer(null);
+        }
+    }
+
+    SocketChannel getChannel()
+    {
+        return m_channel;
+    }
+
+    boolean isDispatched()
+    {
+        return m_dispatched;
+    }
+
+    long getLastActivity()
+    {
+        return m_lastActivity;
+    }
+
+    /**
+     * Reads the available bytes from the channel, growing the buffer if it
+     * is too small to hold the current request.
+     * @return The number of bytes read, or -1 if the client closed the channel.
+     * @throws java.io.IOException If any I/O error occurs.
+    **/
+    int read() throws IOException
+    {
+        if (!m_buffer.hasRemaining())
+        {
+            // The buffer never grows beyond the size of the current request,
+            // which is limited by isRequestComplete().
+            int limit = (m_requestLength < 0) ? NioConnector.MAX_HEADER_SIZE : m_requestLength;
+            ByteBuffer buffer = ByteBuffer.allocate(Math.min(m_buffer.capacity() * 2, limit));
+            m_buffer.flip();
+            buffer.put(m_buffer);
+            m_connector.releaseBuffer(m_buffer);
+            m_buffer = buffer;
+        }
+
+        int count = m_channel.read(m_buffer);
+        if (count > 0)
+        {
+            m_lastActivity = System.currentTimeMillis();
+        }
+        return count;
+    }
+
+    /**
+     * Determines whether the buffer holds a complete request, that is, the
+     * request line, the header lines and the number of body bytes given by
+     * the content length header. Once the header is complete, an HTTP/1.1
+     * client expecting it is sent the interim 100 (Continue) response, so
+     * that it sends the body. A request exceeding the size limits of the
+     * {@link NioConnector} is rejected.
+     * @return <tt>true</tt> if a complete request has been read.
+     * @throws java.io.IOException If the request is rejected, or any I/O error occurs.
+    **/
+    boolean isRequestComplete() throws IOException
+    {
+        if (m_requestLength < 0)
+        {
+            byte[] bytes = m_buffer.array();
+            int end = m_buffer.position();
+            int headerLength = -1;
+            // Look for the empty line that ends the header; like the request
+            // parser, tolerate lines that are terminated by a bare line feed.
+            for (int i = Math.max(m_scanned, 1); i < end; i++)
+            {
+                if (bytes[i] == '\n'
+                    && (bytes[i - 1] == '\n' || (i > 1 && bytes[i - 1] == '\r' && bytes[i - 2] == '\n')))
+                {
+                    headerLength = i + 1;
+                    break;
+                }
+            }
+            m_scanned = end;
+
+            if ((headerLength < 0) ? (end >= NioConnector.MAX_HEADER_SIZE)
+                : (headerLength > NioConnector.MAX_HEADER_SIZE))
+            {
+                reject(431, "Request Header Fields Too Large");
+            }
+            if (headerLength < 0)
+            {
+                return false;
+            }
+
+            String header = getHeader(bytes, headerLength);
+            long contentLength = getContentLength(header);
+            if (contentLength > NioConnector.MAX_BODY_SIZE)
+            {
+                reject(413, "Request Entity Too Large");
+            }
+            // Both lengths are limited, so their sum cannot overflow.
+            m_requestLength = headerLength + (int) contentLength;
+
+            if ((end < m_requestLength) && isContinueExpected(header))
+            {
+                write(HttpConstants.HTTP11_VERSION + " " + HttpConstants.HTTP_RESPONSE_CONTINUE
+                    + " Continue" + HttpConstants.HEADER_TERMINATOR);
+            }
+        }
+        return m_buffer.position() >= m_requestLength;
+    }
+
+    /**
+     * Each request of this connection is serviced with a new request and
+     * response, so it is kept alive if the client can tell where the
+     * response ends.
+    **/
+    boolean isKeepAlive(final HttpServletResponseImpl response)
+    {
+        return response.isContentLengthWritten();
+    }
+
+    /**
+     * The interim 100 (Continue) response is sent by {@link #isRequestComplete()}
+     * before the body of the request is read, if the client expects it.
+    **/
+    boolean isContinueSent()
+    {
+        return true;
+    }
+
+    /**
+     * Prepares the buffered request to be read by a thread in the thread pool.
+    **/
+    void dispatch()
+    {
+        m_dispatched = true;
+        m_buffer.flip();
+        m_input.setBuffer(m_buffer);
+    }
+
+    /**
+     * Prepares the buffer to read the next request, keeping any bytes of a
+     * pipelined request that have not been read while servicing the
+     * previous one.
+    **/
+    void undispatch()
+    {
+        m_dispatched = false;
+        m_buffer.compact();
+        m_scanned = 0;
+        m_requestLength = -1;
+        m_lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Sends an error response with the specified status and fails, so that
+     * the connection is closed without servicing the request.
+    **/
+    private void reject(final int status, final String reason) throws IOException
+    {
+        write(HttpConstants.HTTP11_VERSION + " " + status + " " + reason + HttpConstants.HEADER_DELEMITER
+            + HttpConstants.HEADER_CONNECTION + HttpConstants.HEADER_VALUE_DELIMITER
+            + HttpConstants.CLOSE_CONNECTION + HttpConstants.HEADER_DELEMITER
+            + HttpConstants.HEADER_CONTENT_LENGTH + HttpConstants.HEADER_VALUE_DELIMITER + "0"
+            + HttpConstants.HEADER_TERMINATOR);
+        throw new IOException("Rejected request: " + status + " " + reason);
+    }
+
+    /**
+     * Writes a short response from the selector thread. As the selector
+     * thread must not block, the write fails if the channel is not writable.
+    **/
+    private void write(final String response) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(response.getBytes("ISO-8859-1"));
+        while (buffer.hasRemaining())
+        {
+            if (m_channel.write(buffer) == 0)
+            {
+                throw new IOException("Unable to write to " + m_channel.socket());
+            }
+        }
+    }
+
+    private static String getHeader(final byte[] bytes, final int length)
+    {
+        try
+        {
+            return new String(bytes, 0, length, "ISO-8859-1");
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            return new String(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Returns the value of the content length header, or zero if there is no
+     * valid content length header. Like the request parser, invalid values
+     * are ignored; only a number too large to be parsed is not.
+    **/
+    private static long getContentLength(final String header)
+    {
+        String value = getHeaderValue(header, HttpConstants.HEADER_CONTENT_LENGTH);
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return Math.max(0, Long.parseLong(value));
+        }
+        catch (NumberFormatException ex)
+        {
+            for (int i = 0; i < value.length(); i++)
+            {
+                if (!Character.isDigit(value.charAt(i)))
+                {
+                    return 0;
+                }
+            }
+            return (value.length() > 0) ? Long.MAX_VALUE : 0;
+        }
+    }
+
+    /**
+     * Determines whether the header is that of an HTTP/1.1 request with an
+     * <tt>Expect: 100-continue</tt> header; HTTP/1.0 clients do not
+     * understand interim responses.
+    **/
+    private static boolean isContinueExpected(final String header)
+    {
+        int idx = header.indexOf('\n');
+        String requestLine = (idx < 0) ? header : header.substring(0, idx);
+        return requestLine.trim().endsWith(HttpConstants.HTTP11_VERSION)
+            && "100-continue".equalsIgnoreCase(getHeaderValue(header, "Expect"));
+    }
+
+    /**
+     * Returns the trimmed value of the specified header line, or <tt>null</tt>
+     * if there is no such header line.
+    **/
+    private static String getHeaderValue(final String header, final String name)
+    {
+        StringTokenizer st = new StringTokenizer(header, "\r\n");
+        // Skip the request line.
+        if (st.hasMoreTokens())
+        {
+            st.nextToken();
+        }
+        while (st.hasMoreTokens())
+        {
+            String line = st.nextToken();
+            int idx = line.indexOf(':');
+            if (idx > 0 && line.substring(0, idx).trim().equalsIgnoreCase(name))
+            {
+                return line.substring(idx + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An input stream over the bytes of a buffer in read mode.
+    **/
+    private static class BufferInputStream extends InputStream
+    {
+        private ByteBuffer m_buffer;
+
+        void setBuffer(final ByteBuffer buffer)
+        {
+            m_buffer = buffer;
+        }
+
+        public int available()
+        {
+            return (m_buffer == null) ? 0 : m_buffer.remaining();
+        }
+
+        public int read()
+        {
+            if (available() == 0)
+            {
+                return -1;
+            }
+            return m_buffer.get() & 0xff;
+        }
+
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            int count = Math.min(len, available());
+            if (count == 0)
+            {
+                return -1;
+            }
+            m_buffer.get(b, off, count);
+            return count;
+        }
+    }
+
+    /**
+     * An output stream that writes to a non-blocking channel, waiting for
+     * the channel to become writable if the client does not keep up.
+    **/
+    private static class ChannelOutputStream extends OutputStream
+    {
+        private final SocketChannel m_channel;
+        private final int m_timeout;
+        private Selector m_selector;
+
+        ChannelOutputStream(final SocketChannel channel, final int timeout)
+        {
+            m_channel = channel;
+            m_timeout = timeout;
+        }
+
+        public void write(final int b) throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        public void write(final byte[] b, final int off, final int len) throws IOException
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining())
+            {
+                if (m_channel.write(buffer) == 0)
+                {
+                    awaitWritable();
+                }
+            }
+        }
+
+        public void close() throws IOException
+        {
+            if (m_selector != null)
+            {
+                m_selector.close();
+                m_selector = null;
+            }
+        }
+
+        private void awaitWritable() throws IOException
+        {
+            if (m_selector == null)
+            {
+                m_selector = Selector.open();
+                m_channel.register(m_selector, SelectionKey.OP_WRITE);
+            }
+            if (m_selector.select(m_timeout) == 0)
+            {
+                throw new SocketTimeoutException("Timed out writing to " + m_channel.socket());
+            }
+            m_selector.selectedKeys().clear();
+        }
+    }
+}
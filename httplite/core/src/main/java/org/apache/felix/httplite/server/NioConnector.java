@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.felix.httplite.osgi.Logger;
+import org.apache.felix.httplite.osgi.ServiceRegistrationResolver;
+
+/**
+ * This class implements a non-blocking connector for the server. A single
+ * selector thread accepts connections and reads their requests into pooled
+ * buffers. A connection is only handed to the thread pool once a complete
+ * request has been read, so the number of open (keep-alive) connections is
+ * not limited by the number of threads in the pool.
+**/
+public class NioConnector
+{
+    /**
+     * Size of the pooled request buffers
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    /**
+     * Maximum number of buffers kept in the pool
+     */
+    public static final int DEFAULT_BUFFER_POOL_SIZE = 16;
+    /**
+     * Maximum size of the request line and header lines of a request;
+     * larger requests are rejected with status 431
+     */
+    public static final int MAX_HEADER_SIZE = 16384;
+    /**
+     * Maximum size of the body of a request, which is buffered in memory;
+     * larger requests are rejected with status 413
+     */
+    public static final int MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Interval in milliseconds at which idle connections are checked
+     */
+    private static final int SELECT_TIMEOUT = 1000;
+
+    private final ServerSocketChannel m_serverChannel;
+    private final Selector m_selector;
+    private final ThreadPool m_threadPool;
+    private final int m_connectionTimeout;
+    private final int m_connectionRequestLimit;
+    private final ServiceRegistrationResolver m_resolver;
+    private final Logger m_logger;
+
+    private final LinkedList m_buffers = new LinkedList();
+    private final List m_resumed = new ArrayList();
+    private boolean m_closed = false;
+
+    /**
+     * Opens a connector listening on the specified port and address.
+     * @param port The port to listen on.
+     * @param bindAddr The address to bind to, or <tt>null</tt> for all addresses.
+     * @param threadPool The thread pool to service complete requests.
+     * @param connectionTimeout The inactivity timeout of connections in milliseconds.
+     * @param connectionRequestLimit The maximum number of consecutive requests per connection.
+     * @param resolver resolves a request URI to a client or servlet registration via the HTTP Service.
+     * @param logger logger instance.
+     * @throws java.io.IOException If the channel cannot be opened or bound.
+     */
+    public NioConnector(final int port, final InetAddress bindAddr, final ThreadPool threadPool,
+        final int connectionTimeout, final int connectionRequestLimit,
+        final ServiceRegistrationResolver resolver, final Logger logger) throws IOException
+    {
+        m_threadPool = threadPool;
+        m_connectionTimeout = connectionTimeout;
+        m_connectionRequestLimit = connectionRequestLimit;
+        m_resolver = resolver;
+        m_logger = logger;
+
+        m_serverChannel = ServerSocketChannel.open();
+        try
+        {
+            m_serverChannel.socket().bind(new InetSocketAddress(bindAddr, port));
+            m_serverChannel.configureBlocking(false);
+            m_selector = Selector.open();
+            m_serverChannel.register(m_selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException ex)
+        {
+            m_serverChannel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Accepts connections and reads their requests until the connector is
+     * closed. Connections that are not being serviced by the thread pool are
+     * closed when this method returns.
+     * @throws java.io.IOException If the selector fails.
+    **/
+    public void select() throws IOException
+    {
+        try
+        {
+            while (!isClosed())
+            {
+                m_selector.select(SELECT_TIMEOUT);
+
+                resumeConnections();
+
+                Iterator it = m_selector.selectedKeys().iterator();
+                while (it.hasNext())
+                {
+                    SelectionKey key = (SelectionKey) it.next();
+                    it.remove();
+
+                    if (!key.isValid())
+                    {
+                        continue;
+                    }
+                    if (key.isAcceptable())
+                    {
+                        acceptConnections();
+                    }
+                    else if (key.isReadable())
+                    {
+                        readConnection(key, (NioConnection) key.attachment());
+                    }
+                }
+
+                closeIdleConnections();
+            }
+        }
+        finally
+        {
+            close();
+
+            // Close the connections that were handed back before closing...
+            Object[] resumed;
+            synchronized (this)
+            {
+                resumed = m_resumed.toArray();
+                m_resumed.clear();
+            }
+            for (int i = 0; i < resumed.length; i++)
+            {
+                ((NioConnection) resumed[i]).close();
+            }
+
+            Iterator it = m_selector.keys().iterator();
+            while (it.hasNext())
+            {
+                Object connection = ((SelectionKey) it.next()).attachment();
+                if ((connection != null) && !((NioConnection) connection).isDispatched())
+                {
+                    ((NioConnection) connection).close();
+                }
+            }
+            m_selector.close();
+        }
+    }
+
+    /**
+     * Stops accepting connections and wakes up the selector thread.
+    **/
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (m_closed)
+            {
+                return;
+            }
+            m_closed = true;
+        }
+
+        try
+        {
+            m_serverChannel.close();
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_ERROR, "Error closing server channel.", ex);
+        }
+        m_selector.wakeup();
+    }
+
+    /**
+     * @return <tt>true</tt> if this connector has been closed.
+    **/
+    public synchronized boolean isClosed()
+    {
+        return m_closed;
+    }
+
+    /**
+     * Hands a serviced connection back to the selector thread to read its
+     * next request. If the connector is closed, the connection is closed.
+     * @param connection The serviced connection.
+    **/
+    void resume(final NioConnection connection)
+    {
+        synchronized (this)
+        {
+            if (!m_closed)
+            {
+                m_resumed.add(connection);
+                m_selector.wakeup();
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates a new buffer if the pool
+     * is empty.
+     * @return A cleared buffer.
+    **/
+    ByteBuffer acquireBuffer()
+    {
+        synchronized (m_buffers)
+        {
+            if (!m_buffers.isEmpty())
+            {
+                return (ByteBuffer) m_buffers.removeFirst();
+            }
+        }
+        return ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a buffer to the pool, unless the pool is full or the buffer
+     * was grown beyond the default size.
+     * @param buffer The buffer to return.
+    **/
+    void releaseBuffer(final ByteBuffer buffer)
+    {
+        if (buffer.capacity() != DEFAULT_BUFFER_SIZE)
+        {
+            return;
+        }
+        buffer.clear();
+        synchronized (m_buffers)
+        {
+            if (m_buffers.size() < DEFAULT_BUFFER_POOL_SIZE)
+            {
+                m_buffers.addLast(buffer);
+            }
+        }
+    }
+
+    private void acceptConnections() throws IOException
+    {
+        SocketChannel channel;
+        while ((channel = m_serverChannel.accept()) != null)
+        {
+            try
+            {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+
+                NioConnection connection = new NioConnection(this, channel,
+                    m_connectionTimeout, m_connectionRequestLimit, m_resolver, m_logger);
+                channel.register(m_selector, SelectionKey.OP_READ, connection);
+                m_logger.log(Logger.LOG_DEBUG, "Accepted a new connection.");
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_ERROR, "Error creating connection.", ex);
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ex2)
+                {
+                    m_logger.log(Logger.LOG_ERROR, "Error closing socket.", ex2);
+                }
+            }
+        }
+    }
+
+    private void readConnection(final SelectionKey key, final NioConnection connection)
+    {
+        try
+        {
+            if (connection.read() < 0)
+            {
+                m_logger.log(Logger.LOG_DEBUG, "Connection closed by client.");
+                connection.close();
+                return;
+            }
+            if (!connection.isRequestComplete())
+            {
+                return;
+            }
+        }
+        catch (IOException ex)
+        {
+            m_logger.log(Logger.LOG_DEBUG, "Error reading from connection: " + ex.getMessage());
+            connection.close();
+            return;
+        }
+
+        dispatch(key, connection);
+    }
+
+    /**
+     * Stops reading from the connection and hands it to the thread pool to
+     * service its buffered request.
+    **/
+    private void dispatch(final SelectionKey key, final NioConnection connection)
+    {
+        key.interestOps(0);
+        connection.dispatch();
+        try
+        {
+            m_threadPool.addConnection(connection);
+        }
+        catch (IllegalStateException ex)
+        {
+            // The thread pool is stopping.
+            connection.close();
+        }
+    }
+
+    private void resumeConnections()
+    {
+        Object[] resumed;
+        synchronized (this)
+        {
+            resumed = m_resumed.toArray();
+            m_resumed.clear();
+        }
+
+        for (int i = 0; i < resumed.length; i++)
+        {
+            NioConnection connection = (NioConnection) resumed[i];
+            SelectionKey key = connection.getChannel().keyFor(m_selector);
+            if ((key == null) || !key.isValid())
+            {
+                connection.close();
+                continue;
+            }
+
+            connection.undispatch();
+            // A pipelined request may already be buffered completely.
+            boolean complete;
+            try
+            {
+                complete = connection.isRequestComplete();
+            }
+            catch (IOException ex)
+            {
+                m_logger.log(Logger.LOG_DEBUG, "Error reading from connection: " + ex.getMessage());
+                connection.close();
+                continue;
+            }
+            if (complete)
+            {
+                dispatch(key, connection);
+            }
+            else
+            {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void closeIdleConnections()
+    {
+        if (m_connectionTimeout <= 0)
+        {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Iterator it = m_selector.keys().iterator();
+        while (it.hasNext())
+        {
+            SelectionKey key = (SelectionKey) it.next();
+            NioConnection connection = (NioConnection) key.attachment();
+            if (key.isValid() && (connection != null) && !connection.isDispatched()
+                && ((now - connection.getLastActivity()) >= m_connectionTimeout))
+            {
+                m_logger.log(Logger.LOG_INFO, "Connection closed due to inactivity.");
+                connection.close();
+            }
+        }
+    }
+}
@@ -69,6 +69,10 @@ public class Server
      * The address of the host interface to bind http to. The default is to bind to all interfaces.
      */
     public static final String CONFIG_PROPERTY_HTTP_HOST = "org.apache.felix.http.host"; 
+    /**
+     * Flag to use the non-blocking connector, which only occupies a pool thread while a request is serviced. The default is false.
+     */
+    public static final String CONFIG_PROPERTY_NIO_ENABLE = "org.apache.felix.http.nio.enable";
 
     /**
      * Default HTTP port to listen on.
@@ -101,10 +105,12 @@ public class Server
 
     private Thread m_serverThread;
     private ServerSocket m_serverSocket;
+    private NioConnector m_connector;
     private final ThreadPool m_threadPool;
 
     private final int m_connectionTimeout;
     private final int m_connectionRequestLimit;
+    private final boolean m_nioEnabled;
     private ServiceRegistrationResolver m_resolver;
     private final Logger m_logger;
     
@@ -138,6 +144,10 @@ public class Server
      *       connections after which the connection is closed; the default value
      *       is 10000 milliseconds.
      *   </li>
+     *   <li><tt>org.apache.felix.http.nio.enable</tt> - whether connections are served by a
+     *       non-blocking connector, which only hands a connection to the thread pool once a
+     *       complete request has been read; the default value is false.
+     *   </li>
      * </ul>
      * The configuration properties cannot be changed after construction. The
      * web server is not active until it is started.
@@ -163,6 +173,7 @@ public class Server
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_CONNECTION_TIMEOUT_PROP));
         m_connectionRequestLimit = (configMap.get(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP) == null) ? Connection.DEFAULT_CONNECTION_REQUESTLIMIT
             : Integer.parseInt((String) configMap.get(Server.CONFIG_PROPERTY_CONNECTION_REQUESTLIMIT_PROP));
+        m_nioEnabled = Boolean.valueOf((String) configMap.get(Server.CONFIG_PROPERTY_NIO_ENABLE)).booleanValue();
     }
 
     /**
@@ -266,7 +277,12 @@ public class Server
         {
             // If inactive, then create server socket, server thread, and
             // set state to active.
-            if (m_bindAddr == null)
+            if (m_nioEnabled)
+            {
+                m_connector = new NioConnector(m_port, m_bindAddr, m_threadPool,
+                    m_connectionTimeout, m_connectionRequestLimit, m_resolver, m_logger);
+            }
+            else if (m_bindAddr == null)
             {
                 m_serverSocket = new ServerSocket(m_port);
             }
@@ -279,7 +295,14 @@ public class Server
             {
 				public void run()
                 {
-                    acceptConnections();
+                    if (m_connector != null)
+                    {
+                        selectConnections();
+                    }
+                    else
+                    {
+                        acceptConnections();
+                    }
                 }
             }, "HttpServer");
             m_state = ACTIVE_STATE;
@@ -328,12 +351,19 @@ public class Server
 
                 // Close the server socket, which will cause the server thread
                 // to exit its accept() loop.
-                try
+                if (m_connector != null)
                 {
-                    m_serverSocket.close();
+                    m_connector.close();
                 }
-                catch (IOException ex)
+                else
                 {
+                    try
+                    {
+                        m_serverSocket.close();
+                    }
+                    catch (IOException ex)
+                    {
+                    }
                 }
             }
         }
@@ -397,6 +427,35 @@ public class Server
         shutdown();
     }
 
+    /**
+     * This method lets the non-blocking connector accept connections and read
+     * their requests until it is closed, after which it shuts down the server.
+     * This method is only ever called by the server thread.
+    **/
+    private void selectConnections()
+    {
+        // Start the thread pool.
+        m_threadPool.start();
+
+        m_logger.log(Logger.LOG_DEBUG, "Waiting for connections.");
+
+        try
+        {
+            m_connector.select();
+        }
+        catch (IOException ex)
+        {
+            if (!m_stopping)
+            {
+                m_logger.log(Logger.LOG_ERROR,
+                    "The selector terminated with an exception.", ex);
+            }
+        }
+
+        // Shutdown the server.
+        shutdown();
+    }
+
     /**
      * This method shuts down the server; it is only ever called by the
      * server thread.
@@ -66,6 +66,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
     private int m_statusCode = HttpURLConnection.HTTP_OK;
     private String m_customStatusMessage = null;
     private boolean m_headersWritten = false;
+    private boolean m_contentLengthWritten = false;
 
     /**
      * Constructs an HTTP response for the specified server and request.
@@ -97,6 +98,7 @@ public class HttpServletResponseImpl implements HttpServletResponse
             setContentLength(m_buffer.size());
         }
 
+        m_contentLengthWritten = m_headers.containsKey(HttpConstants.HEADER_CONTENT_LENGTH);
         m_out.write(buildResponse(m_statusCode, m_headers, m_customStatusMessage, null));
         
         if (m_cookies != null)
@@ -125,6 +127,15 @@ public class HttpServletResponseImpl implements HttpServletResponse
         }
     }
 
+    /**
+     * @return true if the last headers written include the content length, so
+     * that the client can tell where the response ends.
+     */
+    public boolean isContentLengthWritten()
+    {
+        return m_contentLengthWritten;
+    }
+
     /**
      * Copy the contents of the input to the output stream, then close the input stream.
      * @param inputStream input stream
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.httplite.server;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.httplite.osgi.HttpServiceImpl;
+import org.apache.felix.httplite.osgi.Logger;
+
+
+/**
+ * Tests the non-blocking connector with raw requests, as HTTP clients hide
+ * pipelining, interim responses and rejected requests.
+ *
+ */
+public class NioConnectorTest extends TestCase
+{
+    private Server m_server;
+    private Socket m_socket;
+
+
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+
+        ServerSocket ss = new ServerSocket( 0 );
+        int port = ss.getLocalPort();
+        ss.close();
+
+        Logger logger = new Logger();
+        logger.setLogLevel( Logger.LOG_ERROR );
+
+        Map config = new HashMap();
+        config.put( Server.CONFIG_PROPERTY_HTTP_PORT, Integer.toString( port ) );
+        config.put( Server.CONFIG_PROPERTY_NIO_ENABLE, "true" );
+        m_server = new Server( config, logger );
+
+        HttpServiceImpl httpService = new HttpServiceImpl( null, m_server, logger, new HashMap() );
+        httpService.registerServlet( "/echo", new EchoServlet(), null, null );
+        m_server.start( httpService );
+
+        m_socket = new Socket( "localhost", port );
+        m_socket.setSoTimeout( 5000 );
+    }
+
+
+    protected void tearDown() throws Exception
+    {
+        m_socket.close();
+        m_server.stop();
+        super.tearDown();
+    }
+
+
+    /**
+     * Test a GET request on a persistent connection.
+     *
+     * @throws IOException
+     */
+    public void testGet() throws IOException
+    {
+        write( "GET /echo HTTP/1.1\r\nHost: localhost\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 200\nGET /echo", readResponse() );
+
+        write( "GET /echo/again HTTP/1.1\r\nHost: localhost\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 200\nGET /echo/again", readResponse() );
+    }
+
+
+    /**
+     * Test a POST request with a body.
+     *
+     * @throws IOException
+     */
+    public void testPostWithBody() throws IOException
+    {
+        write( "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhello" );
+
+        assertEquals( "HTTP/1.1 200\nhello", readResponse() );
+    }
+
+
+    /**
+     * Test that a client expecting it receives the interim response before
+     * sending the body.
+     *
+     * @throws IOException
+     */
+    public void testContinueIsSentBeforeBody() throws IOException
+    {
+        write( "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\nExpect: 100-continue\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 100 Continue", readLine() );
+        assertEquals( "", readLine() );
+
+        write( "hello" );
+
+        assertEquals( "HTTP/1.1 200\nhello", readResponse() );
+    }
+
+
+    /**
+     * Test that pipelined requests are serviced in order.
+     *
+     * @throws IOException
+     */
+    public void testPipelinedRequests() throws IOException
+    {
+        write( "GET /echo/first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+            + "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 6\r\n\r\nsecond"
+            + "GET /echo/third HTTP/1.1\r\nHost: localhost\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 200\nGET /echo/first", readResponse() );
+        assertEquals( "HTTP/1.1 200\nsecond", readResponse() );
+        assertEquals( "HTTP/1.1 200\nGET /echo/third", readResponse() );
+    }
+
+
+    /**
+     * Test that the connection of an HTTP/1.0 request is closed after the response.
+     *
+     * @throws IOException
+     */
+    public void testHttp10RequestClosesConnection() throws IOException
+    {
+        write( "GET /echo HTTP/1.0\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 200\nGET /echo", readResponse() );
+        assertEquals( -1, m_socket.getInputStream().read() );
+    }
+
+
+    /**
+     * Test that a request with too large a header is rejected.
+     *
+     * @throws IOException
+     */
+    public void testOversizedHeaderIsRejected() throws IOException
+    {
+        StringBuffer request = new StringBuffer( "GET /echo HTTP/1.1\r\nHost: localhost\r\nX-Padding: " );
+        while ( request.length() < NioConnector.MAX_HEADER_SIZE )
+        {
+            request.append( 'x' );
+        }
+        write( request.toString() );
+
+        assertEquals( "HTTP/1.1 431 Request Header Fields Too Large", readLine() );
+        readHeaders();
+        assertEquals( -1, m_socket.getInputStream().read() );
+    }
+
+
+    /**
+     * Test that a request with too large a body is rejected before the body is read.
+     *
+     * @throws IOException
+     */
+    public void testOversizedBodyIsRejected() throws IOException
+    {
+        write( "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + ( NioConnector.MAX_BODY_SIZE + 1 )
+            + "\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 413 Request Entity Too Large", readLine() );
+        readHeaders();
+        assertEquals( -1, m_socket.getInputStream().read() );
+    }
+
+
+    /**
+     * Test that a content length overflowing the request length is rejected.
+     *
+     * @throws IOException
+     */
+    public void testOverflowingContentLengthIsRejected() throws IOException
+    {
+        write( "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + Integer.MAX_VALUE + "\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 413 Request Entity Too Large", readLine() );
+        readHeaders();
+        assertEquals( -1, m_socket.getInputStream().read() );
+
+        int port = m_socket.getPort();
+        m_socket.close();
+        m_socket = new Socket( "localhost", port );
+        m_socket.setSoTimeout( 5000 );
+        write( "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 99999999999999999999\r\n\r\n" );
+
+        assertEquals( "HTTP/1.1 413 Request Entity Too Large", readLine() );
+    }
+
+
+    private void write( String request ) throws IOException
+    {
+        OutputStream os = m_socket.getOutputStream();
+        os.write( request.getBytes( "ISO-8859-1" ) );
+        os.flush();
+    }
+
+
+    /**
+     * Read a response, returning its status line and body separated by a line feed.
+     */
+    private String readResponse() throws IOException
+    {
+        String status = readLine().trim();
+        Map headers = readHeaders();
+
+        int length = Integer.parseInt( ( String ) headers.get( "content-length" ) );
+        byte[] body = new byte[length];
+        InputStream is = m_socket.getInputStream();
+        for ( int off = 0; off < length; )
+        {
+            int count = is.read( body, off, length - off );
+            assertTrue( "Unexpected end of response", count > 0 );
+            off += count;
+        }
+        return status + "\n" + new String( body, "ISO-8859-1" );
+    }
+
+
+    private Map readHeaders() throws IOException
+    {
+        Map headers = new HashMap();
+        String line;
+        while ( ( line = readLine() ).length() > 0 )
+        {
+            int idx = line.indexOf( ':' );
+            headers.put( line.substring( 0, idx ).trim().toLowerCase(), line.substring( idx + 1 ).trim() );
+        }
+        return headers;
+    }
+
+
+    private String readLine() throws IOException
+    {
+        InputStream is = m_socket.getInputStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int b;
+        while ( ( b = is.read() ) != '\n' )
+        {
+            assertTrue( "Unexpected end of response", b >= 0 );
+            if ( b != '\r' )
+            {
+                baos.write( b );
+            }
+        }
+        return baos.toString( "ISO-8859-1" );
+    }
+
+    /**
+     * Servlet echoing the method and URI of GET requests, and the body of POST requests.
+     *
+     */
+    private static class EchoServlet extends HttpServlet
+    {
+        protected void doGet( HttpServletRequest req, HttpServletResponse resp ) throws ServletException, IOException
+        {
+            resp.getOutputStream().print( req.getMethod() + " " + req.getRequestURI() );
+        }
+
+
+        protected void doPost( HttpServletRequest req, HttpServletResponse resp ) throws ServletException, IOException
+        {
+            InputStream is = req.getInputStream();
+            int b;
+            while ( ( b = is.read() ) != -1 )
+            {
+                resp.getOutputStream().write( b );
+            }
+        }
+    }
+}
@@ -28,6 +28,7 @@ import aQute.service.reporter.Reporter;
 import org.apache.felix.ipojo.manipulator.ManipulationVisitor;
 import org.apache.felix.ipojo.manipulator.Pojoization;
 import org.apache.felix.ipojo.manipulator.ResourceStore;
+import org.apache.felix.ipojo.manipulator.cache.DirectoryManipulationCache;
 import org.apache.felix.ipojo.manipulator.metadata.AnnotationMetadataProvider;
 import org.apache.felix.ipojo.manipulator.metadata.CacheableMetadataProvider;
 import org.apache.felix.ipojo.manipulator.metadata.CompositeMetadataProvider;
@@ -50,6 +51,8 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
     private static final String PROPERTY_METADATA = "metadata";
     private static final String PROPERTY_USE_LOCAL_SCHEMAS = "use-local-schemas";
     private static final String PROPERTY_INCLUDE_EMBED_BUNDLES = "include-embed-bundles";
+    private static final String PROPERTY_PARALLELISM = "parallelism";
+    private static final String PROPERTY_CACHE_DIRECTORY = "cache-directory";
 
     private static final String DEFAULT_METADATA = "META-INF/metadata.xml";
     private static final boolean DEFAULT_USE_LOCAL_SCHEMAS = false;
@@ -58,6 +61,8 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
     private String m_metadata = DEFAULT_METADATA;
     private boolean m_useLocalSchemas = DEFAULT_USE_LOCAL_SCHEMAS;
     private boolean m_includeEmbedBundles = DEFAULT_INCLUDE_EMBED_BUNDLES;
+    private int m_parallelism = 1;
+    private File m_cacheDirectory;
 
     private Reporter m_reporter;
 
@@ -77,6 +82,16 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
         if (configuration.containsKey(PROPERTY_INCLUDE_EMBED_BUNDLES)) {
             m_includeEmbedBundles = true;
         }
+
+        // Number of classes manipulated concurrently
+        if (configuration.containsKey(PROPERTY_PARALLELISM)) {
+            m_parallelism = Integer.parseInt(configuration.get(PROPERTY_PARALLELISM));
+        }
+
+        // Keep manipulated classes between builds ?
+        if (configuration.containsKey(PROPERTY_CACHE_DIRECTORY)) {
+            m_cacheDirectory = new File(configuration.get(PROPERTY_CACHE_DIRECTORY));
+        }
     }
 
     public void setReporter(Reporter reporter) {
@@ -135,6 +150,10 @@ public class PojoizationPlugin implements Plugin, AnalyzerPlugin {
         if (m_useLocalSchemas) {
             pojoization.setUseLocalXSD();
         }
+        pojoization.setParallelism(m_parallelism);
+        if (m_cacheDirectory != null) {
+            pojoization.setManipulationCache(new DirectoryManipulationCache(m_cacheDirectory));
+        }
 
         pojoization.pojoization(store, cache, createVisitor(store, reporter), classLoader);
     }
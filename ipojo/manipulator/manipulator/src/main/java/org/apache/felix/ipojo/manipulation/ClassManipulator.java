@@ -116,6 +116,18 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     private List<String> m_methodFlags = new ArrayList<String>();
 
+    /**
+     * Slots assigned to the intercepted fields.
+     * The slot is passed to the instance manager together with the field name,
+     * so it can find the field state by index instead of by name.
+     */
+    private Map<String, Integer> m_fieldSlots = new HashMap<String, Integer>();
+
+    /**
+     * Slots assigned to the intercepted methods (by method id).
+     */
+    private Map<String, Integer> m_methodSlots = new HashMap<String, Integer>();
+
     /**
      * The list of methods visited during the previous analysis.
      * This list allows getting annotations to move to generated
@@ -398,6 +410,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitCode();
 
         Type returnType = Type.getReturnType(desc);
+        String methodId = generateMethodId(name, desc);
+        int slot = getMethodSlot(methodId);
 
         // Compute result and exception stack location
         int result = -1;
@@ -435,10 +449,11 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitVarInsn(ALOAD, 0);
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
-        mv.visitLdcInsn(generateMethodId(name, desc));
+        mv.visitLdcInsn(methodId);
+        mv.push(slot);
         mv.loadArgArray();
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", ENTRY,
-                "(Ljava/lang/Object;Ljava/lang/String;[Ljava/lang/Object;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;I[Ljava/lang/Object;)V", false);
 
         mv.visitVarInsn(ALOAD, 0);
 
@@ -453,7 +468,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitVarInsn(ALOAD, 0);
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
-        mv.visitLdcInsn(generateMethodId(name, desc));
+        mv.visitLdcInsn(methodId);
+        mv.push(slot);
         if (returnType.getSort() != Type.VOID) {
             mv.visitVarInsn(returnType.getOpcode(ILOAD), result);
             mv.box(returnType);
@@ -461,7 +477,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
             mv.visitInsn(ACONST_NULL);
         }
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", EXIT,
-                "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
         mv.visitLabel(l1);
         Label l7 = new Label();
@@ -472,10 +488,11 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitVarInsn(ALOAD, 0);
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
-        mv.visitLdcInsn(generateMethodId(name, desc));
+        mv.visitLdcInsn(methodId);
+        mv.push(slot);
         mv.visitVarInsn(ALOAD, exception);
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", ERROR,
-                "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Throwable;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Throwable;)V", false);
         mv.visitVarInsn(ALOAD, exception);
         mv.visitInsn(ATHROW);
 
@@ -593,6 +610,35 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         return id.toString();
     }
 
+    /**
+     * Gets the slot of the given field, assigning the next free slot
+     * the first time the field is seen.
+     * @param name the field name
+     * @return the slot of the field
+     */
+    private int getFieldSlot(String name) {
+        return getSlot(m_fieldSlots, name);
+    }
+
+    /**
+     * Gets the slot of the given method, assigning the next free slot
+     * the first time the method is seen.
+     * @param methodId the method id
+     * @return the slot of the method
+     */
+    private int getMethodSlot(String methodId) {
+        return getSlot(m_methodSlots, methodId);
+    }
+
+    private static int getSlot(Map<String, Integer> slots, String key) {
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(key, slot);
+        }
+        return slot;
+    }
+
     /**
      * Add the instance manager field (__im).
      */
@@ -788,7 +834,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      * @param desc : method description
      */
     private void createArraySetter(String name, String desc) {
-        MethodVisitor mv = cv.visitMethod(0, "__set" + name, desc, null, null);
+        String methodName = "__set" + name;
+        GeneratorAdapter mv = new GeneratorAdapter(cv.visitMethod(0, methodName, desc, null, null), 0, methodName, desc);
         mv.visitCode();
 
         String internalType = desc.substring(1);
@@ -811,9 +858,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(name);
+        mv.push(getFieldSlot(name));
         mv.visitVarInsn(ALOAD, 1);
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", SET,
-                "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
         mv.visitInsn(RETURN);
 
@@ -829,7 +877,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     private void createArrayGetter(String name, String desc) {
         String methodName = "__get" + name;
-        MethodVisitor mv = cv.visitMethod(0, methodName, desc, null, null);
+        GeneratorAdapter mv = new GeneratorAdapter(cv.visitMethod(0, methodName, desc, null, null), 0, methodName, desc);
         mv.visitCode();
 
         String internalType = desc.substring(2);
@@ -847,8 +895,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
         mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
         mv.visitVarInsn(ALOAD, 0);
         mv.visitLdcInsn(name);
+        mv.push(getFieldSlot(name));
         mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", GET,
-                "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
         mv.visitTypeInsn(CHECKCAST, internalType);
         mv.visitInsn(ARETURN);
 
@@ -865,7 +914,7 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      */
     private void createSimpleGetter(String name, String desc, Type type) {
         String methodName = "__get" + name;
-        MethodVisitor mv = cv.visitMethod(0, methodName, desc, null, null);
+        GeneratorAdapter mv = new GeneratorAdapter(cv.visitMethod(0, methodName, desc, null, null), 0, methodName, desc);
         mv.visitCode();
 
         switch (type.getSort()) {
@@ -896,8 +945,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -929,8 +979,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -963,8 +1014,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -997,8 +1049,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitVarInsn(ASTORE, 1);
 
                 mv.visitVarInsn(ALOAD, 1);
@@ -1027,8 +1080,9 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        GET, "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", false);
+                        GET, "(Ljava/lang/Object;Ljava/lang/String;I)Ljava/lang/Object;", false);
                 mv.visitTypeInsn(CHECKCAST, type.getInternalName());
                 mv.visitInsn(ARETURN);
 
@@ -1050,7 +1104,8 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
      * @param type : type of the property
      */
     private void createSimpleSetter(String name, String desc, Type type) {
-        MethodVisitor mv = cv.visitMethod(0, "__set" + name, desc, null, null);
+        String methodName = "__set" + name;
+        GeneratorAdapter mv = new GeneratorAdapter(cv.visitMethod(0, methodName, desc, null, null), 0, methodName, desc);
         mv.visitCode();
 
         switch (type.getSort()) {
@@ -1089,9 +1144,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitVarInsn(ALOAD, 2);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", SET,
-                        "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                        "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
                 Label l3 = new Label();
                 mv.visitLabel(l3);
@@ -1129,9 +1185,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitVarInsn(ALOAD, 3);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager",
-                        SET, "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                        SET, "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
                 l3 = new Label();
                 mv.visitLabel(l3);
@@ -1154,9 +1211,10 @@ public class ClassManipulator extends ClassVisitor implements Opcodes {
                 mv.visitFieldInsn(GETFIELD, m_owner, IM_FIELD, "Lorg/apache/felix/ipojo/InstanceManager;");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitLdcInsn(name);
+                mv.push(getFieldSlot(name));
                 mv.visitVarInsn(ALOAD, 1);
                 mv.visitMethodInsn(INVOKEVIRTUAL, "org/apache/felix/ipojo/InstanceManager", SET,
-                        "(Ljava/lang/Object;Ljava/lang/String;Ljava/lang/Object;)V", false);
+                        "(Ljava/lang/Object;Ljava/lang/String;ILjava/lang/Object;)V", false);
 
                 mv.visitInsn(RETURN);
                 break;
@@ -20,14 +20,38 @@
 package org.apache.felix.ipojo.manipulator;
 
 import org.apache.felix.ipojo.manipulation.Manipulator;
+import org.apache.felix.ipojo.manipulator.cache.ManipulatedClass;
+import org.apache.felix.ipojo.manipulator.cache.ManipulationCache;
+import org.apache.felix.ipojo.manipulator.util.Constants;
+import org.apache.felix.ipojo.manipulator.util.Streams;
+import org.objectweb.asm.ClassReader;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * A {@code ManipulationEngine} is responsible to drive the component's
  * classes manipulation.
+ * <p/>
+ * Classes can be manipulated concurrently (see {@link #setParallelism(int)}). The
+ * {@link ManipulationVisitor} is always notified from the calling thread, in the order
+ * the manipulation units were added.
  *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
@@ -57,6 +81,16 @@ public class ManipulationEngine {
      */
     private ManipulationVisitor m_manipulationVisitor;
 
+    /**
+     * The number of classes manipulated concurrently.
+     */
+    private int m_parallelism = 1;
+
+    /**
+     * The cache of previous manipulations, {@literal null} if disabled.
+     */
+    private ManipulationCache m_cache;
+
     public ManipulationEngine(ClassLoader classLoader) {
         m_classLoader = classLoader;
     }
@@ -89,6 +123,24 @@ public class ManipulationEngine {
         m_store = store;
     }
 
+    /**
+     * Sets the number of classes manipulated concurrently.
+     * The given classloader must support concurrent class loading when greater than 1.
+     * @param parallelism the number of threads, {@literal 1} (the default) to manipulate in the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        m_parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Enables the reuse of previous manipulations.
+     * An entry is reused when the class, its inner classes and its component metadata are unchanged.
+     * @param cache the cache, {@literal null} to disable it
+     */
+    public void setManipulationCache(ManipulationCache cache) {
+        m_cache = cache;
+    }
+
     /**
      * Manipulates classes of all the given component's.
      */
@@ -97,89 +149,332 @@ public class ManipulationEngine {
         // Iterates over the list of discovered components
         // Note that this list includes components from metadata.xml AND from annotations
 
-        for (ManipulationUnit info : m_manipulationUnits) {
-
-            byte[] bytecode;
-            try {
-                bytecode = m_store.read(info.getResourcePath());
-            } catch (IOException e) {
-                m_reporter.error("Cannot find bytecode for class '" + info.getClassName() + "': no bytecode found.");
-                return;
+        if (m_parallelism == 1 || m_manipulationUnits.size() < 2) {
+            for (ManipulationUnit info : m_manipulationUnits) {
+                if (!visit(info, manipulate(info))) {
+                    return;
+                }
             }
+            return;
+        }
 
-            // Is the visitor interested in this component ?
-            ManipulationResultVisitor result = m_manipulationVisitor.visitManipulationResult(info.getComponentMetadata());
-
-            if (result != null) {
-                // Should always be the case
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(m_parallelism, m_manipulationUnits.size()),
+                new ManipulationThreadFactory());
+        try {
+            List<Future<Outcome>> outcomes = new ArrayList<Future<Outcome>>();
+            for (final ManipulationUnit info : m_manipulationUnits) {
+                outcomes.add(executor.submit(new Callable<Outcome>() {
+                    public Outcome call() {
+                        return manipulate(info);
+                    }
+                }));
+            }
 
-                // Manipulation preparation
-                Manipulator manipulator = new Manipulator(m_classLoader);
+            for (int i = 0; i < m_manipulationUnits.size(); i++) {
+                ManipulationUnit info = m_manipulationUnits.get(i);
+                Outcome outcome;
                 try {
-                    manipulator.prepare(bytecode);
-                } catch (IOException e) {
-                    m_reporter.error("Cannot analyze the class " + info.getClassName() + " : " + e.getMessage());
+                    outcome = outcomes.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    m_reporter.error("Manipulation interrupted before the class " + info.getClassName());
                     return;
+                } catch (ExecutionException e) {
+                    // Keep the behavior of the sequential manipulation: unchecked exceptions are propagated
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
                 }
 
-                // Inner class preparation
-                for (String inner : manipulator.getInnerClasses()) {
-                    // Get the bytecode and start manipulation
-                    String resourcePath = inner + ".class";
-                    String outerClassInternalName = info.getClassName().replace('.', '/');
-                    byte[] innerClassBytecode;
-                    try {
-                        innerClassBytecode = m_store.read(resourcePath);
-                        manipulator.prepareInnerClass(inner, innerClassBytecode);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot find or analyze inner class '" + resourcePath + "'");
+                // The visitors and the store are not thread safe
+                synchronized (m_store) {
+                    if (!visit(info, outcome)) {
                         return;
                     }
                 }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                // Now manipulate the classes.
-                try {
-                    byte[] out = manipulator.manipulate(bytecode);
-                    // Call the visitor
-                    result.visitManipulatedResource(info.getResourcePath(), out);
-                } catch (IOException e) {
-                    m_reporter.error("Cannot manipulate the class " + info.getClassName() + " : " + e.getMessage());
-                    return;
-                }
+    /**
+     * Manipulates a component class and its inner classes.
+     * This method does not notify the visitor nor the reporter, so it can be called from any thread.
+     * @param info the component
+     * @return the manipulated class or the reason of the failure
+     */
+    private Outcome manipulate(ManipulationUnit info) {
+        byte[] bytecode;
+        try {
+            bytecode = read(info.getResourcePath());
+        } catch (IOException e) {
+            return new Outcome("Cannot find bytecode for class '" + info.getClassName() + "': no bytecode found.");
+        }
 
-                // Visit inner classes
-                for (String inner : manipulator.getInnerClasses()) {
-                    // Get the bytecode and start manipulation
-                    String resourcePath = inner + ".class";
-                    String outerClassInternalName = info.getClassName().replace('.', '/');
-                    byte[] innerClassBytecode;
-                    try {
-                        innerClassBytecode = m_store.read(resourcePath);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot find inner class '" + resourcePath + "'");
-                        return;
-                    }
+        String key = null;
+        if (m_cache != null) {
+            key = computeKey(info, bytecode);
+            ManipulatedClass cached = m_cache.get(key);
+            if (cached != null && isUpToDate(info, cached)) {
+                return new Outcome(cached);
+            }
+        }
 
-                    // Manipulate inner class
-                    // Notice that (for performance reason) re-use the class version information
-                    // discovered in the main class instead of re-parsing the inner class to find
-                    // its own class version
-                    try {
-                        byte[] manipulated = manipulator.manipulateInnerClass(inner, innerClassBytecode);
-                        // Propagate manipulated resource
-                        result.visitManipulatedResource(resourcePath, manipulated);
-                    } catch (IOException e) {
-                        m_reporter.error("Cannot manipulate inner class '" + resourcePath + "'");
-                        return;
-                    }
-                }
+        // Manipulation preparation
+        Manipulator manipulator = new Manipulator(m_classLoader);
+        try {
+            manipulator.prepare(bytecode);
+        } catch (IOException e) {
+            return new Outcome("Cannot analyze the class " + info.getClassName() + " : " + e.getMessage());
+        }
 
-                // Compute manipulation metadata
-                result.visitClassStructure(manipulator.getManipulationMetadata());
+        // Inner class preparation
+        Map<String, byte[]> inners = new LinkedHashMap<String, byte[]>();
+        for (String inner : manipulator.getInnerClasses()) {
+            // Get the bytecode and start manipulation
+            String resourcePath = inner + ".class";
+            try {
+                byte[] innerClassBytecode = read(resourcePath);
+                manipulator.prepareInnerClass(inner, innerClassBytecode);
+                inners.put(inner, innerClassBytecode);
+            } catch (IOException e) {
+                return new Outcome("Cannot find or analyze inner class '" + resourcePath + "'");
+            }
+        }
 
-                // All resources have been manipulated for this component
-                result.visitEnd();
+        // Now manipulate the classes.
+        Map<String, byte[]> resources = new LinkedHashMap<String, byte[]>();
+        try {
+            resources.put(info.getResourcePath(), manipulator.manipulate(bytecode));
+        } catch (IOException e) {
+            return new Outcome("Cannot manipulate the class " + info.getClassName() + " : " + e.getMessage());
+        }
+
+        for (Map.Entry<String, byte[]> inner : inners.entrySet()) {
+            String resourcePath = inner.getKey() + ".class";
+            // Manipulate inner class
+            // Notice that (for performance reason) re-use the class version information
+            // discovered in the main class instead of re-parsing the inner class to find
+            // its own class version
+            try {
+                resources.put(resourcePath, manipulator.manipulateInnerClass(inner.getKey(), inner.getValue()));
+            } catch (IOException e) {
+                return new Outcome("Cannot manipulate inner class '" + resourcePath + "'");
+            }
+        }
+
+        String digest = null;
+        if (key != null) {
+            MessageDigest md = createDigest();
+            for (Map.Entry<String, byte[]> inner : inners.entrySet()) {
+                update(md, inner.getKey());
+                md.update(inner.getValue());
+                updateHierarchy(md, inner.getValue());
             }
+            digest = toHex(md.digest());
+        }
+
+        // Compute manipulation metadata
+        ManipulatedClass manipulated = new ManipulatedClass(digest, resources, manipulator.getManipulationMetadata());
+        if (key != null) {
+            m_cache.put(key, manipulated);
+        }
+        return new Outcome(manipulated);
+    }
+
+    /**
+     * Notifies the visitor of the outcome of a manipulation.
+     * @param info the component
+     * @param outcome the outcome of its manipulation
+     * @return {@literal false} if the manipulation failed and the process must stop
+     */
+    private boolean visit(ManipulationUnit info, Outcome outcome) {
+        if (outcome.m_error != null) {
+            m_reporter.error(outcome.m_error);
+            return false;
+        }
+
+        // Is the visitor interested in this component ?
+        ManipulationResultVisitor result = m_manipulationVisitor.visitManipulationResult(info.getComponentMetadata());
+
+        if (result != null) {
+            // Should always be the case
+            for (Map.Entry<String, byte[]> resource : outcome.m_manipulated.getResources().entrySet()) {
+                result.visitManipulatedResource(resource.getKey(), resource.getValue());
+            }
+
+            result.visitClassStructure(outcome.m_manipulated.getClassStructure());
+
+            // All resources have been manipulated for this component
+            result.visitEnd();
+        }
+        return true;
+    }
+
+    private byte[] read(String path) throws IOException {
+        if (m_parallelism == 1) {
+            return m_store.read(path);
+        }
+        synchronized (m_store) {
+            return m_store.read(path);
+        }
+    }
+
+    /**
+     * The key covers the manipulator version, the component metadata, the class bytecode and the bytecode
+     * of its super classes and interfaces.
+     * Inner classes are only known once the class is parsed, they are checked by {@link #isUpToDate}.
+     */
+    private String computeKey(ManipulationUnit info, byte[] bytecode) {
+        MessageDigest md = createDigest();
+        update(md, Constants.getVersion());
+        update(md, info.getResourcePath());
+        update(md, String.valueOf(info.getComponentMetadata()));
+        md.update(bytecode);
+        updateHierarchy(md, bytecode);
+        return toHex(md.digest());
+    }
+
+    /**
+     * Checks that the inner classes of a cached manipulation did not change.
+     */
+    private boolean isUpToDate(ManipulationUnit info, ManipulatedClass cached) {
+        MessageDigest md = createDigest();
+        Collection<String> paths = cached.getResources().keySet();
+        for (String path : paths) {
+            if (path.equals(info.getResourcePath())) {
+                continue;
+            }
+            try {
+                byte[] bytecode = read(path);
+                update(md, path.substring(0, path.length() - ".class".length()));
+                md.update(bytecode);
+                updateHierarchy(md, bytecode);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return toHex(md.digest()).equals(cached.getInnerClassesDigest());
+    }
+
+    /**
+     * Adds the super classes and interfaces of a class to a digest.
+     * Frames are computed against the hierarchy, so a change in a parent class, even outside of the bundle,
+     * changes the manipulated bytecode. Parents are resolved from the store first, then from the classloader.
+     * Platform classes and classes that cannot be found only contribute their name.
+     */
+    private void updateHierarchy(MessageDigest md, byte[] bytecode) {
+        Set<String> visited = new HashSet<String>();
+        List<byte[]> pending = new ArrayList<byte[]>();
+        pending.add(bytecode);
+        while (!pending.isEmpty()) {
+            ClassReader reader = new ClassReader(pending.remove(pending.size() - 1));
+            List<String> parents = new ArrayList<String>();
+            if (reader.getSuperName() != null) {
+                parents.add(reader.getSuperName());
+            }
+            for (String itf : reader.getInterfaces()) {
+                parents.add(itf);
+            }
+            for (String parent : parents) {
+                if (!visited.add(parent)) {
+                    continue;
+                }
+                update(md, parent);
+                if (parent.startsWith("java/")) {
+                    continue;
+                }
+                byte[] parentBytecode = readParent(parent);
+                if (parentBytecode != null) {
+                    md.update(parentBytecode);
+                    pending.add(parentBytecode);
+                }
+            }
+        }
+    }
+
+    private byte[] readParent(String name) {
+        String path = name + ".class";
+        try {
+            return read(path);
+        } catch (IOException e) {
+            // Not in the bundle, try the classloader
+        }
+        if (m_classLoader == null) {
+            return null;
+        }
+        InputStream is = m_classLoader.getResourceAsStream(path);
+        if (is == null) {
+            return null;
+        }
+        try {
+            return Streams.readBytes(is);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM supports SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest md, String value) {
+        try {
+            md.update(String.valueOf(value).getBytes("UTF-8"));
+            md.update((byte) 0);
+        } catch (UnsupportedEncodingException e) {
+            // Every JVM supports UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Either a manipulated class or an error message.
+     */
+    private static class Outcome {
+        private final ManipulatedClass m_manipulated;
+        private final String m_error;
+
+        Outcome(ManipulatedClass manipulated) {
+            m_manipulated = manipulated;
+            m_error = null;
+        }
+
+        Outcome(String error) {
+            m_manipulated = null;
+            m_error = error;
+        }
+    }
+
+    /**
+     * Creates daemon threads, so a failed build never hangs on the manipulation pool.
+     */
+    private static class ManipulationThreadFactory implements ThreadFactory {
+        private int m_count;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "iPOJO Manipulator " + (++m_count));
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
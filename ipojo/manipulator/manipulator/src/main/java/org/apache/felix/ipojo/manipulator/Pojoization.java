@@ -19,6 +19,7 @@
 
 package org.apache.felix.ipojo.manipulator;
 
+import org.apache.felix.ipojo.manipulator.cache.ManipulationCache;
 import org.apache.felix.ipojo.manipulator.manifest.FileManifestProvider;
 import org.apache.felix.ipojo.manipulator.metadata.*;
 import org.apache.felix.ipojo.manipulator.render.MetadataRenderer;
@@ -63,6 +64,17 @@ public class Pojoization {
      */
     private boolean m_useLocalXSD = false;
 
+    /**
+     * The number of classes manipulated concurrently.
+     * Classes are manipulated sequentially by default.
+     */
+    private int m_parallelism = 1;
+
+    /**
+     * The cache of previous manipulations, disabled by default.
+     */
+    private ManipulationCache m_cache;
+
     /**
      * Reporter for error reporting.
      */
@@ -103,6 +115,22 @@ public class Pojoization {
         m_useLocalXSD = true;
     }
 
+    /**
+     * Sets the number of classes manipulated concurrently.
+     * @param parallelism the number of threads, {@literal 1} to manipulate classes sequentially
+     */
+    public void setParallelism(int parallelism) {
+        m_parallelism = parallelism;
+    }
+
+    /**
+     * Enables the reuse of the manipulations computed by previous builds.
+     * @param cache the cache, {@literal null} to disable it
+     */
+    public void setManipulationCache(ManipulationCache cache) {
+        m_cache = cache;
+    }
+
     /**
      * @return all the errors (fatal) reported by the manipulation process.
      */
@@ -345,6 +373,8 @@ public class Pojoization {
         engine.setResourceStore(store);
         engine.setReporter(m_reporter);
         engine.setManipulationVisitor(visitor);
+        engine.setParallelism(m_parallelism);
+        engine.setManipulationCache(m_cache);
 
         try {
 
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.manipulator.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.felix.ipojo.manipulator.util.Streams;
+import org.apache.felix.ipojo.metadata.Attribute;
+import org.apache.felix.ipojo.metadata.Element;
+
+/**
+ * A {@link ManipulationCache} storing one file per entry in a directory.
+ * <p/>
+ * Entries are written to a temporary file first and then renamed, so concurrent
+ * builds sharing the directory never see a partially written entry. Unreadable
+ * entries are treated as missing.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class DirectoryManipulationCache implements ManipulationCache {
+
+    /**
+     * Identifies the file format, to be changed when the format evolves.
+     */
+    private static final int MAGIC = 0x1B0C0001;
+
+    private static final String EXTENSION = ".manipulation";
+
+    private final File m_directory;
+
+    /**
+     * Constructor.
+     * @param directory the cache directory, created if it does not exist
+     */
+    public DirectoryManipulationCache(File directory) {
+        m_directory = directory;
+    }
+
+    public ManipulatedClass get(String key) {
+        File file = new File(m_directory, key + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            String digest = readString(in);
+            int count = in.readInt();
+            Map<String, byte[]> resources = new LinkedHashMap<String, byte[]>();
+            for (int i = 0; i < count; i++) {
+                String path = readString(in);
+                byte[] bytecode = new byte[in.readInt()];
+                in.readFully(bytecode);
+                resources.put(path, bytecode);
+            }
+            return new ManipulatedClass(digest, resources, readElement(in));
+        } catch (IOException e) {
+            // Corrupted or concurrently deleted entry, just manipulate the class again
+            return null;
+        } finally {
+            Streams.close(in);
+        }
+    }
+
+    public void put(String key, ManipulatedClass manipulated) {
+        if (!m_directory.isDirectory() && !m_directory.mkdirs() && !m_directory.isDirectory()) {
+            return;
+        }
+        File tmp = null;
+        DataOutputStream out = null;
+        try {
+            tmp = File.createTempFile(key, ".tmp", m_directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            writeString(out, manipulated.getInnerClassesDigest());
+            out.writeInt(manipulated.getResources().size());
+            for (Map.Entry<String, byte[]> entry : manipulated.getResources().entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            writeElement(out, manipulated.getClassStructure());
+            out.close();
+            out = null;
+            if (tmp.renameTo(new File(m_directory, key + EXTENSION))) {
+                tmp = null;
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization
+        } finally {
+            Streams.close(out);
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static void writeElement(DataOutputStream out, Element element) throws IOException {
+        writeString(out, element.getName());
+        writeString(out, element.getNameSpace());
+        Attribute[] attributes = element.getAttributes();
+        out.writeInt(attributes.length);
+        for (Attribute attribute : attributes) {
+            writeString(out, attribute.getName());
+            writeString(out, attribute.getNameSpace());
+            writeString(out, attribute.getValue());
+        }
+        Element[] elements = element.getElements();
+        out.writeInt(elements.length);
+        for (Element child : elements) {
+            writeElement(out, child);
+        }
+    }
+
+    private static Element readElement(DataInputStream in) throws IOException {
+        Element element = new Element(readString(in), readString(in));
+        int attributes = in.readInt();
+        for (int i = 0; i < attributes; i++) {
+            element.addAttribute(new Attribute(readString(in), readString(in), readString(in)));
+        }
+        int elements = in.readInt();
+        for (int i = 0; i < elements; i++) {
+            element.addElement(readElement(in));
+        }
+        return element;
+    }
+
+    /**
+     * Writes a possibly {@literal null} string, without the 64k limit of {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.manipulator.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.felix.ipojo.metadata.Element;
+
+/**
+ * The outcome of the manipulation of a component class and of its inner classes.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class ManipulatedClass {
+
+    /**
+     * Digest of the original inner classes bytecode.
+     * Inner classes may change without their outer class being modified.
+     */
+    private final String m_innerClassesDigest;
+
+    /**
+     * Manipulated resources, the component class comes first.
+     */
+    private final Map<String, byte[]> m_resources;
+
+    /**
+     * Manipulation metadata (class structure).
+     */
+    private final Element m_classStructure;
+
+    /**
+     * Constructor.
+     * @param innerClassesDigest digest of the original inner classes
+     * @param resources manipulated resources (resource path to bytecode), the component class first
+     * @param classStructure the manipulation metadata
+     */
+    public ManipulatedClass(String innerClassesDigest, Map<String, byte[]> resources, Element classStructure) {
+        m_innerClassesDigest = innerClassesDigest;
+        m_resources = Collections.unmodifiableMap(new LinkedHashMap<String, byte[]>(resources));
+        m_classStructure = classStructure;
+    }
+
+    /**
+     * @return the digest of the original inner classes bytecode
+     */
+    public String getInnerClassesDigest() {
+        return m_innerClassesDigest;
+    }
+
+    /**
+     * @return the manipulated resources (resource path to bytecode), the component class first
+     */
+    public Map<String, byte[]> getResources() {
+        return m_resources;
+    }
+
+    /**
+     * @return the manipulation metadata
+     */
+    public Element getClassStructure() {
+        return m_classStructure;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.manipulator.cache;
+
+/**
+ * A {@code ManipulationCache} keeps the outcome of previous class manipulations,
+ * so that unchanged classes are not manipulated again on the next build.
+ * <p/>
+ * Implementations must be thread safe, as classes may be manipulated concurrently.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public interface ManipulationCache {
+
+    /**
+     * Looks up a previous manipulation.
+     * @param key the key computed from the class bytecode and the component metadata
+     * @return the cached manipulation, {@literal null} if none is available for this key
+     */
+    ManipulatedClass get(String key);
+
+    /**
+     * Stores the outcome of a manipulation.
+     * Failing to store an entry must not fail the manipulation.
+     * @param key the key computed from the class bytecode and the component metadata
+     * @param manipulated the manipulation outcome
+     */
+    void put(String key, ManipulatedClass manipulated);
+}
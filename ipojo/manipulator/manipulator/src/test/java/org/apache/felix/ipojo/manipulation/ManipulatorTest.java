@@ -24,6 +24,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collections;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
@@ -192,6 +193,31 @@ public class ManipulatorTest extends TestCase {
 
     }
 
+    public void testInterceptionUsesSlots() throws Exception {
+        Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
+        byte[] origin = getBytesFromFile(new File("target/test-classes/test/SimplePojo.class"));
+        manipulator.prepare(origin);
+        byte[] clazz = manipulator.manipulate(origin);
+        ManipulatedClassLoader classloader = new ManipulatedClassLoader("test.SimplePojo", clazz);
+        Class cl = classloader.findClass("test.SimplePojo");
+
+        InstanceManager im = (InstanceManager) Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getRegistredFields()).thenReturn(Collections.singleton("m_result"));
+        Mockito.when(im.getRegistredMethods()).thenReturn(Collections.singleton("doSomething"));
+        Mockito.when(im.onGet(Mockito.any(), Mockito.eq("m_result"), Mockito.eq(0))).thenReturn(Boolean.FALSE);
+
+        Constructor cst = cl.getDeclaredConstructor(new Class[] {InstanceManager.class});
+        cst.setAccessible(true);
+        Object pojo = cst.newInstance(new Object[] {im});
+
+        Method method = cl.getMethod("doSomething", new Class[0]);
+        Assert.assertFalse(((Boolean) method.invoke(pojo, new Object[0])).booleanValue());
+
+        Mockito.verify(im).onGet(pojo, "m_result", 0);
+        Mockito.verify(im).onEntry(Mockito.eq(pojo), Mockito.eq("doSomething"), Mockito.eq(0), (Object[]) Mockito.any());
+        Mockito.verify(im).onExit(pojo, "doSomething", 0, Boolean.FALSE);
+    }
+
     public void testManipulatingChild() throws Exception {
         Manipulator manipulator = new Manipulator(this.getClass().getClassLoader());
         byte[] origin = getBytesFromFile(new File("target/test-classes/test/Child.class"));
@@ -19,12 +19,23 @@
 
 package org.apache.felix.ipojo.manipulator;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
+import org.apache.felix.ipojo.manipulator.cache.DirectoryManipulationCache;
+import org.apache.felix.ipojo.manipulator.cache.ManipulatedClass;
+import org.apache.felix.ipojo.manipulator.cache.ManipulationCache;
+import org.apache.felix.ipojo.manipulator.store.DirectoryResourceStore;
 import org.apache.felix.ipojo.manipulator.util.Streams;
 import org.apache.felix.ipojo.manipulator.util.Strings;
+import org.apache.felix.ipojo.metadata.Attribute;
 import org.apache.felix.ipojo.metadata.Element;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -35,12 +46,19 @@ import test.PojoWithInner;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ManipulationEngineTestCase extends TestCase {
 
+    private static final String[] CLASSES = {"test/SimplePojo.class", "test/PojoWithInner.class", "test/Child.class",
+            "test/ClusterDaemon.class", "test/DoubleArray.class"};
+
     @Mock
     private Reporter reporter;
 
@@ -56,10 +74,25 @@ public class ManipulationEngineTestCase extends TestCase {
     @InjectMocks
     private ManipulationEngine engine = new ManipulationEngine(this.getClass().getClassLoader());
 
+    private File m_cacheDirectory;
 
     @Override
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
+
+        m_cacheDirectory = File.createTempFile("ipojo", "cache");
+        m_cacheDirectory.delete();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        File[] files = m_cacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        m_cacheDirectory.delete();
     }
 
     public void testManipulationOfSimpleClass() throws Exception {
@@ -105,9 +138,130 @@ public class ManipulationEngineTestCase extends TestCase {
 
     }
 
+    public void testParallelManipulationIsNotifiedInOrder() throws Exception {
+        Recorder parallel = generate(4, null);
+        Recorder sequential = generate(1, null);
+
+        assertEquals(Arrays.asList(CLASSES), parallel.m_components);
+        assertEquals(sequential.m_components, parallel.m_components);
+        assertEquals(sequential.m_resources.keySet(), parallel.m_resources.keySet());
+        for (String path : sequential.m_resources.keySet()) {
+            assertTrue(path, Arrays.equals(sequential.m_resources.get(path), parallel.m_resources.get(path)));
+        }
+        assertTrue(parallel.m_resources.containsKey("test/PojoWithInner$MyInner.class"));
+    }
+
+    public void testCacheIsReused() throws Exception {
+        ManipulationCache cache = spy(new DirectoryManipulationCache(m_cacheDirectory));
+        Recorder first = generate(2, cache);
+        verify(cache, times(CLASSES.length)).put(anyString(), any(ManipulatedClass.class));
+
+        cache = spy(new DirectoryManipulationCache(m_cacheDirectory));
+        Recorder second = generate(2, cache);
+        verify(cache, never()).put(anyString(), any(ManipulatedClass.class));
+
+        assertEquals(first.m_resources.keySet(), second.m_resources.keySet());
+        for (String path : first.m_resources.keySet()) {
+            assertTrue(path, Arrays.equals(first.m_resources.get(path), second.m_resources.get(path)));
+        }
+        assertEquals(first.m_structures.toString(), second.m_structures.toString());
+    }
+
+    public void testCacheIsInvalidatedByMetadata() throws Exception {
+        ManipulationCache cache = spy(new DirectoryManipulationCache(m_cacheDirectory));
+        generate(1, cache);
+
+        cache = spy(new DirectoryManipulationCache(m_cacheDirectory));
+        ManipulationEngine engine = createEngine(1, cache, new Recorder());
+        Element component = component(CLASSES[0]);
+        component.addAttribute(new Attribute("name", "changed"));
+        engine.addManipulationUnit(new ManipulationUnit(CLASSES[0], component));
+        engine.generate();
+
+        verify(cache).put(anyString(), any(ManipulatedClass.class));
+    }
+
+    public void testCacheIsInvalidatedByParentClass() throws Exception {
+        ManipulationCache cache = new DirectoryManipulationCache(m_cacheDirectory);
+        ManipulationEngine engine = createEngine(1, cache, new Recorder());
+        engine.addManipulationUnit(new ManipulationUnit("test/Child.class", component("test/Child.class")));
+        engine.generate();
+
+        // Same child class, but its parent changed
+        ResourceStore store = spy(new DirectoryResourceStore(new File("target/test-classes")));
+        byte[] parent = store.read("test/Parent.class");
+        byte[] changed = Arrays.copyOf(parent, parent.length + 1);
+        doReturn(changed).when(store).read("test/Parent.class");
+
+        cache = spy(new DirectoryManipulationCache(m_cacheDirectory));
+        engine = createEngine(1, cache, new Recorder());
+        engine.setResourceStore(store);
+        engine.addManipulationUnit(new ManipulationUnit("test/Child.class", component("test/Child.class")));
+        engine.generate();
+
+        verify(cache).put(anyString(), any(ManipulatedClass.class));
+    }
+
+    private Recorder generate(int parallelism, ManipulationCache cache) {
+        Recorder recorder = new Recorder();
+        ManipulationEngine engine = createEngine(parallelism, cache, recorder);
+        for (String path : CLASSES) {
+            engine.addManipulationUnit(new ManipulationUnit(path, component(path)));
+        }
+        engine.generate();
+        return recorder;
+    }
+
+    private ManipulationEngine createEngine(int parallelism, ManipulationCache cache, Recorder recorder) {
+        ManipulationEngine engine = new ManipulationEngine(this.getClass().getClassLoader());
+        engine.setResourceStore(new DirectoryResourceStore(new File("target/test-classes")));
+        engine.setReporter(mock(Reporter.class));
+        engine.setManipulationVisitor(recorder);
+        engine.setParallelism(parallelism);
+        engine.setManipulationCache(cache);
+        return engine;
+    }
+
     private byte[] from(Class<?> type) throws IOException {
         ClassLoader loader = type.getClassLoader();
         InputStream is = loader.getResourceAsStream(Strings.asResourcePath(type.getName()));
         return Streams.readBytes(is);
     }
+
+    private static Element component(String path) {
+        Element component = new Element("component", null);
+        component.addAttribute(new Attribute("classname", path.replace('/', '.').replace(".class", "")));
+        return component;
+    }
+
+    /**
+     * Records the notifications of the engine.
+     */
+    private static class Recorder implements ManipulationVisitor {
+        private final List<String> m_components = new ArrayList<String>();
+        private final Map<String, byte[]> m_resources = new LinkedHashMap<String, byte[]>();
+        private final List<Element> m_structures = new ArrayList<Element>();
+
+        public ManipulationResultVisitor visitManipulationResult(Element metadata) {
+            m_components.add(metadata.getAttribute("classname").replace('.', '/') + ".class");
+            return new ManipulationResultVisitor() {
+                public void visitClassStructure(Element structure) {
+                    m_structures.add(structure);
+                }
+
+                public void visitManipulatedResource(String type, byte[] resource) {
+                    m_resources.put(type, resource);
+                }
+
+                public void visitEnd() {
+                }
+            };
+        }
+
+        public void visitMetadata(Element metadata) {
+        }
+
+        public void visitEnd() {
+        }
+    }
 }
@@ -20,6 +20,7 @@ package org.apache.felix.ipojo.plugin;
 
 import org.apache.felix.ipojo.manipulator.Pojoization;
 import org.apache.felix.ipojo.manipulator.Reporter;
+import org.apache.felix.ipojo.manipulator.cache.DirectoryManipulationCache;
 import org.apache.felix.ipojo.manipulator.util.Classpath;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
@@ -124,6 +125,21 @@ public class ManipulatorMojo extends AbstractMojo {
      */
     private boolean m_ignoreEmbeddedXSD;
 
+    /**
+     * Number of classes manipulated concurrently. Classes are manipulated sequentially by default.
+     *
+     * @parameter alias="parallelism" expression="${ipojo.parallelism}"
+     */
+    private int m_parallelism = 1;
+
+    /**
+     * Directory keeping the manipulated classes between builds.
+     * Unchanged classes are not manipulated again. Disabled if not set.
+     *
+     * @parameter alias="cacheDirectory" expression="${ipojo.cacheDirectory}"
+     */
+    private File m_cacheDirectory;
+
     private boolean isXML() {
         return m_metadata != null && (m_metadata.indexOf('<') > -1);
     }
@@ -258,6 +274,10 @@ public class ManipulatorMojo extends AbstractMojo {
         if (!m_ignoreEmbeddedXSD) {
             pojo.setUseLocalXSD();
         }
+        pojo.setParallelism(m_parallelism);
+        if (m_cacheDirectory != null) {
+            pojo.setManipulationCache(new DirectoryManipulationCache(m_cacheDirectory));
+        }
 
         // Executes the pojoization.
         if (is == null) {
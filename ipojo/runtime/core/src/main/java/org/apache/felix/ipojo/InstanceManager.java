@@ -29,6 +29,8 @@ import org.osgi.framework.BundleContext;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class defines the container of primitive instances. It manages content initialization
@@ -138,10 +140,24 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
     private List m_stateQueue = new ArrayList();
 
     /**
-     * The map of [field, value], storing POJO managed
-     * field value.
+     * The managed fields, storing the POJO managed field values
+     * and the interceptors of each field.
      */
-    private Map m_fields = new HashMap();
+    private final SlotTable<FieldSlot> m_fields = new SlotTable<FieldSlot>() {
+        FieldSlot create(String fieldName) {
+            return new FieldSlot(fieldName, getFieldInterceptors(fieldName));
+        }
+    };
+
+    /**
+     * The intercepted methods, storing the interceptors and the
+     * {@link Member} of each method.
+     */
+    private final SlotTable<MethodSlot> m_methodSlots = new SlotTable<MethodSlot>() {
+        MethodSlot create(String methodId) {
+            return new MethodSlot(methodId, getMethodInterceptors(methodId));
+        }
+    };
 
     /**
      * The Map storing the Method objects by ids.
@@ -365,11 +381,12 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param pojo      the pojo on which computing field value.
      * @return the field value, <code>null</code> is returned if the value is managed and not already set.
      */
-    public synchronized Object getFieldValue(String fieldName, Object pojo) {
+    public Object getFieldValue(String fieldName, Object pojo) {
         Object setByContainer = null;
 
-        if (m_fields != null) {
-            setByContainer = m_fields.get(fieldName);
+        FieldSlot slot = m_fields.peek(fieldName);
+        if (slot != null) {
+            setByContainer = slot.m_value;
         }
 
         if (setByContainer == null && pojo != null) { // In the case of no given pojo, return null.
@@ -1079,6 +1096,11 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
                 m_fieldRegistration.put(field.getFieldName(), newList);
             }
         }
+        // Update the slot if the field was already accessed.
+        FieldSlot slot = m_fields.peek(field.getFieldName());
+        if (slot != null) {
+            slot.m_interceptors = getFieldInterceptors(field.getFieldName());
+        }
     }
 
     /**
@@ -1109,6 +1131,7 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
                 m_methodRegistration.put(method.getMethodIdentifier(), newList);
             }
         }
+        updateMethodSlot(method.getMethodIdentifier());
     }
 
     /**
@@ -1142,6 +1165,45 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
                 m_methodRegistration.put(innerClass + "___" + method.getMethodIdentifier(), newList);
             }
         }
+        updateMethodSlot(innerClass + "___" + method.getMethodIdentifier());
+    }
+
+    /**
+     * Updates the interceptors of a method slot if the method was already invoked.
+     *
+     * @param methodId the method id
+     */
+    private void updateMethodSlot(String methodId) {
+        MethodSlot slot = m_methodSlots.peek(methodId);
+        if (slot != null) {
+            slot.m_interceptors = getMethodInterceptors(methodId);
+        }
+    }
+
+    /**
+     * Gets the interceptors registered for a field.
+     *
+     * @param fieldName the field name
+     * @return the interceptors or <code>null</code> if the field is not intercepted
+     */
+    private FieldInterceptor[] getFieldInterceptors(String fieldName) {
+        if (m_fieldRegistration == null) {
+            return null;
+        }
+        return (FieldInterceptor[]) m_fieldRegistration.get(fieldName);
+    }
+
+    /**
+     * Gets the interceptors registered for a method.
+     *
+     * @param methodId the method id
+     * @return the interceptors or <code>null</code> if the method is not intercepted
+     */
+    private MethodInterceptor[] getMethodInterceptors(String methodId) {
+        if (m_methodRegistration == null) {
+            return null;
+        }
+        return (MethodInterceptor[]) m_methodRegistration.get(methodId);
     }
 
     /**
@@ -1180,17 +1242,32 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @return the value decided by the last asked handler (throws a warning if two fields decide two different values)
      */
     public Object onGet(Object pojo, String fieldName) {
-        Object initialValue = null;
-        synchronized (this) { // Stack confinement.
-            initialValue = m_fields.get(fieldName);
-        }
+        return onGet(pojo, m_fields.get(fieldName));
+    }
+
+    /**
+     * This method is called by the manipulated class each time that a GETFIELD instruction is executed.
+     * It behaves as {@link InstanceManager#onGet(Object, String)}, but finds the field state by the
+     * slot the manipulator assigned to the field, without any lock or map lookup.
+     *
+     * @param pojo      the pojo object on which the field was get
+     * @param fieldName the field name on which the GETFIELD instruction is called
+     * @param slot      the slot of the field
+     * @return the value decided by the last asked handler
+     * @since 1.13.0
+     */
+    public Object onGet(Object pojo, String fieldName, int slot) {
+        return onGet(pojo, m_fields.get(fieldName, slot));
+    }
+
+    private Object onGet(Object pojo, FieldSlot slot) {
+        Object initialValue = slot.m_value;
         Object result = initialValue;
         boolean hasChanged = false;
         // Get the list of registered handlers
-        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration.get(fieldName); // Immutable list.
+        FieldInterceptor[] list = slot.m_interceptors; // Immutable list.
         for (int i = 0; list != null && i < list.length; i++) {
-            // Call onGet outside of a synchronized block.
-            Object handlerResult = list[i].onGet(pojo, fieldName, initialValue);
+            Object handlerResult = list[i].onGet(pojo, slot.m_key, initialValue);
             if (handlerResult == initialValue) {
                 continue; // Non-binding case (default implementation).
             } else {
@@ -1200,7 +1277,7 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
                         m_logger.log(
                                 Logger.WARNING,
                                 "A conflict was detected on the injection of "
-                                        + fieldName
+                                        + slot.m_key
                         );
                     }
                 }
@@ -1210,13 +1287,9 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         }
         if (hasChanged) {
             // A change occurs => notify the change
-            //TODO consider just changing the reference, however multiple thread can be an issue
-            synchronized (this) {
-                m_fields.put(fieldName, result);
-            }
-            // Call onset outside of a synchronized block.
+            slot.m_value = result;
             for (int i = 0; list != null && i < list.length; i++) {
-                list[i].onSet(pojo, fieldName, result);
+                list[i].onSet(pojo, slot.m_key, result);
             }
         }
         return result;
@@ -1235,14 +1308,37 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         if (m_methodRegistration == null) { // Immutable field.
             return;
         }
+        onEntry(pojo, m_methodSlots.get(methodId), args);
+    }
 
-        MethodInterceptor[] list = (MethodInterceptor[]) m_methodRegistration.get(methodId);
-        Member method = getMethodById(methodId);
-        // We can't find the member object of anonymous methods.
+    /**
+     * Dispatches entry method events on registered method interceptors.
+     * It behaves as {@link InstanceManager#onEntry(Object, String, Object[])}, but finds the
+     * interceptors by the slot the manipulator assigned to the method.
+     *
+     * @param pojo     the pojo object on which method is invoked.
+     * @param methodId the method id used to compute the {@link Method} object.
+     * @param slot     the slot of the method
+     * @param args     the argument array
+     * @since 1.13.0
+     */
+    public void onEntry(Object pojo, String methodId, int slot, Object[] args) {
+        if (m_methodRegistration == null) {
+            return;
+        }
+        onEntry(pojo, m_methodSlots.get(methodId, slot), args);
+    }
 
-        // In case of a constructor, the method is null, and the list is null too.
-        for (int i = 0; list != null && i < list.length; i++) {
-            list[i].onEntry(pojo, method, args); // Outside a synchronized block.
+    private void onEntry(Object pojo, MethodSlot slot, Object[] args) {
+        MethodInterceptor[] list = slot.m_interceptors;
+        if (list == null) {
+            // In case of a constructor, the list is null.
+            return;
+        }
+        // We can't find the member object of anonymous methods.
+        Member method = getMethod(slot);
+        for (int i = 0; i < list.length; i++) {
+            list[i].onEntry(pojo, method, args);
         }
     }
 
@@ -1263,12 +1359,37 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         if (m_methodRegistration == null) {
             return;
         }
-        MethodInterceptor[] list = (MethodInterceptor[]) m_methodRegistration.get(methodId);
-        Member method = getMethodById(methodId);
-        for (int i = 0; list != null && i < list.length; i++) {
+        onExit(pojo, m_methodSlots.get(methodId), result);
+    }
+
+    /**
+     * Dispatches exit method events on registered method interceptors.
+     * It behaves as {@link InstanceManager#onExit(Object, String, Object)}, but finds the
+     * interceptors by the slot the manipulator assigned to the method.
+     *
+     * @param pojo     the pojo object on which method was invoked.
+     * @param methodId the method id used to compute the {@link Method} object.
+     * @param slot     the slot of the method
+     * @param result   the returned object.
+     * @since 1.13.0
+     */
+    public void onExit(Object pojo, String methodId, int slot, Object result) {
+        if (m_methodRegistration == null) {
+            return;
+        }
+        onExit(pojo, m_methodSlots.get(methodId, slot), result);
+    }
+
+    private void onExit(Object pojo, MethodSlot slot, Object result) {
+        MethodInterceptor[] list = slot.m_interceptors;
+        if (list == null) {
+            return;
+        }
+        Member method = getMethod(slot);
+        for (int i = 0; i < list.length; i++) {
             list[i].onExit(pojo, method, result);
         }
-        for (int i = 0; list != null && i < list.length; i++) {
+        for (int i = 0; i < list.length; i++) {
             list[i].onFinally(pojo, method);
         }
     }
@@ -1288,16 +1409,60 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
         if (m_methodRegistration == null) {
             return;
         }
-        MethodInterceptor[] list = (MethodInterceptor[]) m_methodRegistration.get(methodId);
-        Member method = getMethodById(methodId);
-        for (int i = 0; list != null && i < list.length; i++) {
+        onError(pojo, m_methodSlots.get(methodId), error);
+    }
+
+    /**
+     * Dispatches error method events on registered method interceptors.
+     * It behaves as {@link InstanceManager#onError(Object, String, Throwable)}, but finds the
+     * interceptors by the slot the manipulator assigned to the method.
+     *
+     * @param pojo     the pojo object on which the method was invoked
+     * @param methodId the method id used to compute the {@link Method} object.
+     * @param slot     the slot of the method
+     * @param error    the Throwable object.
+     * @since 1.13.0
+     */
+    public void onError(Object pojo, String methodId, int slot, Throwable error) {
+        if (m_methodRegistration == null) {
+            return;
+        }
+        onError(pojo, m_methodSlots.get(methodId, slot), error);
+    }
+
+    private void onError(Object pojo, MethodSlot slot, Throwable error) {
+        MethodInterceptor[] list = slot.m_interceptors;
+        if (list == null) {
+            return;
+        }
+        Member method = getMethod(slot);
+        for (int i = 0; i < list.length; i++) {
             list[i].onError(pojo, method, error);
         }
-        for (int i = 0; list != null && i < list.length; i++) {
+        for (int i = 0; i < list.length; i++) {
             list[i].onFinally(pojo, method);
         }
     }
 
+    /**
+     * Gets the {@link Member} of an intercepted method.
+     * The member is kept in the slot once the class is loaded.
+     *
+     * @param slot the method slot
+     * @return the method object or <code>null</code> if the method cannot be found.
+     */
+    private Member getMethod(MethodSlot slot) {
+        if (slot.m_resolved) {
+            return slot.m_member;
+        }
+        Member member = getMethodById(slot.m_key);
+        if (m_clazz != null) {
+            slot.m_member = member;
+            slot.m_resolved = true;
+        }
+        return member;
+    }
+
     /**
      * Computes the {@link Method} object from the given id.
      * Once computes, a map is used as a cache to avoid to recompute for
@@ -1388,19 +1553,30 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
      * @param objectValue the new value of the field
      */
     public void onSet(final Object pojo, final String fieldName, final Object objectValue) {
-        synchronized (this) {
-            // First, store the new value.
-            // This must be done in a synchronized block to avoid
-            // concurrent modification
-            m_fields.put(fieldName, objectValue);
-        }
-        // The registrations cannot be modified, so we can directly access
-        // the interceptor list.
-        FieldInterceptor[] list = (FieldInterceptor[]) m_fieldRegistration
-                .get(fieldName);
+        onSet(pojo, m_fields.get(fieldName), objectValue);
+    }
+
+    /**
+     * This method is called by the manipulated class each time that a PUTFIELD instruction is executed.
+     * It behaves as {@link InstanceManager#onSet(Object, String, Object)}, but finds the field state by
+     * the slot the manipulator assigned to the field, without any lock or map lookup.
+     *
+     * @param pojo        the pojo object on which the field was set
+     * @param fieldName   the field name on which the PUTFIELD instruction is called
+     * @param slot        the slot of the field
+     * @param objectValue the new value of the field
+     * @since 1.13.0
+     */
+    public void onSet(final Object pojo, final String fieldName, final int slot, final Object objectValue) {
+        onSet(pojo, m_fields.get(fieldName, slot), objectValue);
+    }
+
+    private void onSet(Object pojo, FieldSlot slot, Object objectValue) {
+        // First, store the new value.
+        slot.m_value = objectValue;
+        FieldInterceptor[] list = slot.m_interceptors;
         for (int i = 0; list != null && i < list.length; i++) {
-            // The callback must be call outside the synchronization block.
-            list[i].onSet(pojo, fieldName, objectValue);
+            list[i].onSet(pojo, slot.m_key, objectValue);
         }
     }
 
@@ -1575,4 +1751,136 @@ public class InstanceManager implements ComponentInstance, InstanceStateListener
     public BundleContext getInstanceContext() {
         return m_instanceContext;
     }
+
+    /**
+     * State of an intercepted member, shared by all the pojo objects of the instance.
+     */
+    private abstract static class Slot {
+        /**
+         * The field name or the method id.
+         */
+        final String m_key;
+
+        Slot(String key) {
+            m_key = key;
+        }
+    }
+
+    /**
+     * State of a managed field.
+     */
+    private static final class FieldSlot extends Slot {
+        /**
+         * The interceptors monitoring the field, <code>null</code> if none.
+         */
+        volatile FieldInterceptor[] m_interceptors;
+
+        /**
+         * The field value.
+         */
+        volatile Object m_value;
+
+        FieldSlot(String fieldName, FieldInterceptor[] interceptors) {
+            super(fieldName);
+            m_interceptors = interceptors;
+        }
+    }
+
+    /**
+     * State of an intercepted method.
+     */
+    private static final class MethodSlot extends Slot {
+        /**
+         * The interceptors monitoring the method, <code>null</code> if none.
+         */
+        volatile MethodInterceptor[] m_interceptors;
+
+        /**
+         * The method object, valid once {@link #m_resolved} is set.
+         */
+        volatile Member m_member;
+
+        /**
+         * Was the method object computed?
+         */
+        volatile boolean m_resolved;
+
+        MethodSlot(String methodId, MethodInterceptor[] interceptors) {
+            super(methodId);
+            m_interceptors = interceptors;
+        }
+    }
+
+    /**
+     * The slots of an instance, by name and by the index assigned by the manipulator.
+     * Looking up an index is lock free: the index array is only copied when a slot
+     * is bound for the first time. As a parent class is manipulated separately,
+     * two members may claim the same index. The first one keeps it and the other
+     * one is always found by name.
+     */
+    private abstract static class SlotTable<S extends Slot> {
+        private final ConcurrentMap<String, S> m_byKey = new ConcurrentHashMap<String, S>();
+
+        private volatile Slot[] m_byIndex = new Slot[0];
+
+        /**
+         * Creates the slot for the given key.
+         */
+        abstract S create(String key);
+
+        /**
+         * Gets the slot of the given key if it exists.
+         */
+        S peek(String key) {
+            return m_byKey.get(key);
+        }
+
+        /**
+         * Gets the slot of the given key, creating it if needed.
+         */
+        S get(String key) {
+            S slot = m_byKey.get(key);
+            if (slot == null) {
+                S created = create(key);
+                slot = m_byKey.putIfAbsent(key, created);
+                if (slot == null) {
+                    slot = created;
+                }
+            }
+            return slot;
+        }
+
+        /**
+         * Gets the slot of the given key using the index assigned by the manipulator.
+         */
+        @SuppressWarnings("unchecked")
+        S get(String key, int index) {
+            Slot[] slots = m_byIndex;
+            Slot bound = null;
+            if (index >= 0 && index < slots.length) {
+                bound = slots[index];
+                // The key is a constant of the manipulated class, so this is usually an identity check.
+                if (bound != null && bound.m_key.equals(key)) {
+                    return (S) bound;
+                }
+            }
+            S slot = get(key);
+            // Only bind free indexes, on a collision the index stays with the first member.
+            if (index >= 0 && bound == null) {
+                bind(index, slot);
+            }
+            return slot;
+        }
+
+        private synchronized void bind(int index, S slot) {
+            Slot[] slots = m_byIndex;
+            if (index < slots.length && slots[index] != null) {
+                return;
+            }
+            Slot[] copy = new Slot[Math.max(slots.length, index + 1)];
+            System.arraycopy(slots, 0, copy, 0, slots.length);
+            copy[index] = slot;
+            m_byIndex = copy;
+        }
+    }
 }
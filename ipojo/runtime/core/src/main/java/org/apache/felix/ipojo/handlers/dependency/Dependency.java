@@ -20,6 +20,7 @@
 package org.apache.felix.ipojo.handlers.dependency;
 
 import org.apache.felix.ipojo.*;
+import org.apache.felix.ipojo.dependency.impl.ServiceReferenceManager;
 import org.apache.felix.ipojo.handlers.dependency.ServiceUsage.Usage;
 import org.apache.felix.ipojo.util.DependencyModel;
 import org.apache.felix.ipojo.util.Log;
@@ -29,6 +30,7 @@ import org.osgi.framework.ServiceReference;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represent a service dependency of the component instance.
@@ -115,6 +117,18 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      */
     private int m_timeout;
 
+    /**
+     * The service objects to inject, built from the bound services.
+     * Shared by all threads and rebuilt only when the bound services change.
+     */
+    private volatile Snapshot m_snapshot;
+
+    /**
+     * Incremented on each change of the bound services, a snapshot
+     * of an older generation is outdated.
+     */
+    private final AtomicInteger m_generation = new AtomicInteger();
+
     /**
      * Dependency constructor. After the creation the dependency is not started.
      *
@@ -212,11 +226,45 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
     public void stop() {
         acquireWriteLockIfNotHeld();
         m_isStarted = false;
+        invalidateSnapshot();
         super.stop();
+        invalidateSnapshot();
         releaseWriteLockIfHeld();
 
     }
 
+    /**
+     * The selected service set has changed.
+     * The snapshot is invalidated before and after updating the bound services.
+     *
+     * @param set the change set.
+     * @see org.apache.felix.ipojo.util.DependencyModel#onChange(org.apache.felix.ipojo.dependency.impl.ServiceReferenceManager.ChangeSet)
+     */
+    public void onChange(ServiceReferenceManager.ChangeSet set) {
+        invalidateSnapshot();
+        try {
+            super.onChange(set);
+        } finally {
+            invalidateSnapshot();
+        }
+    }
+
+    /**
+     * The dependency is reconfigured.
+     * The snapshot is invalidated before and after updating the bound services.
+     *
+     * @param changeSet the reconfiguration changes
+     * @see org.apache.felix.ipojo.util.DependencyModel#applyReconfiguration(org.apache.felix.ipojo.dependency.impl.ServiceReferenceManager.ChangeSet)
+     */
+    public void applyReconfiguration(ServiceReferenceManager.ChangeSet changeSet) {
+        invalidateSnapshot();
+        try {
+            super.applyReconfiguration(changeSet);
+        } finally {
+            invalidateSnapshot();
+        }
+    }
+
     public DependencyHandler getHandler() {
         return m_handler;
     }
@@ -658,14 +706,13 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
             throw new IllegalStateException("The dependency has not enabled the `proxy` mode.");
         }
 
-        Usage usage = (Usage) m_usage.get();
+        Usage usage = m_usage.get();
         if (usage.m_stack == 0) { // uninitialized usage.
             if (usage.m_componentStack > 0) {
                 // We comes from the component who didn't touch the service.
                 // So we initialize the usage.
                 createServiceObject(usage);
                 usage.inc(); // Start the caching, so set the stack level to 1
-                m_usage.set(usage); // Required by Dalvik.
                 if (isAggregate()) {
                     Object obj = usage.m_object;
                     if (obj instanceof Set) {
@@ -681,26 +728,15 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
                 }
             } else {
                 // External access => Immediate get.
-                if (isAggregate()) {
-                    ServiceReference[] refs = getServiceReferences();
-                    if (refs == null) {
-                        return new ArrayList(0); // Create an empty list.
-                    } else {
-                        List<Object> objs = new ArrayList<Object>(refs.length);
-                        for (ServiceReference ref : refs) {
-                            objs.add(getService(ref));
-                        }
-                        return objs;
-                    }
-                } else { // Scalar dependency.
-                    ServiceReference ref = getServiceReference();
-                    if (ref != null) {
-                        return getService(ref);
-                    } else {
-                        // No service available.
-                        // TODO Decide what we have to do.
-                        throw new RuntimeException("Service " + getSpecification() + " unavailable");
-                    }
+                Snapshot snapshot = getSnapshot();
+                if (snapshot != null) {
+                    return isAggregate() ? snapshot.getList() : snapshot.m_object;
+                } else if (isAggregate()) {
+                    return new ArrayList(0); // Create an empty list.
+                } else {
+                    // No service available.
+                    // TODO Decide what we have to do.
+                    throw new RuntimeException("Service " + getSpecification() + " unavailable");
                 }
             }
         } else {
@@ -740,7 +776,6 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
         if (usage.m_stack == 0) { // uninitialized usage.
             createServiceObject(usage);
             usage.inc(); // Start the caching, so set the stack level to 1
-            m_usage.set(usage); // Required by Dalvik
         }
         if (!m_isProxy) {
             return usage.m_object;
@@ -757,90 +792,93 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
      * @param usage : Thread Local to populate.
      */
     private void createServiceObject(Usage usage) {
-        ServiceReference[] refs = getServiceReferences();
+        Snapshot snapshot = getSnapshot();
 
         // manage timeout
-        if (refs == null) {
+        if (snapshot == null) {
             waitForServiceUntilTimeout();
+            snapshot = getSnapshot();
         }
 
-        refs = getServiceReferences();
-
-        if (!isAggregate()) {
-            if (refs == null) {
-                if (m_exception != null) {
-                    // Throw the exception.
-                    throw createExceptionToThrow();
-                }
+        if (snapshot != null) {
+            usage.m_object = snapshot.get(m_type);
+        } else if (!isAggregate()) {
+            if (m_exception != null) {
+                // Throw the exception.
+                throw createExceptionToThrow();
+            }
 
-                if (m_nullable == null && m_supportNullable) {
-                    m_handler.warn("[" + m_handler.getInstanceManager().getInstanceName() + "] The dependency is not optional, however no service object can be injected in " + m_field + " -> " + getSpecification().getName());
-                    createNullableObject();
-                }
-                usage.m_object = m_nullable; // Add null if the Nullable pattern is disabled.
-            } else {
-                ServiceReference ref = getServiceReference();
-                usage.m_object = getService(ref);
+            if (m_nullable == null && m_supportNullable) {
+                m_handler.warn("[" + m_handler.getInstanceManager().getInstanceName() + "] The dependency is not optional, however no service object can be injected in " + m_field + " -> " + getSpecification().getName());
+                createNullableObject();
             }
+            usage.m_object = m_nullable; // Add null if the Nullable pattern is disabled.
         } else {
             switch(m_type) {
                 case ARRAY:
-                    try {
-                        if (refs == null) {
-                            usage.m_object = (Object[]) Array.newInstance(getSpecification(), 0); // Create an empty array.
-                        } else {
-                            //  Use a reflective construction to avoid class cast exception. This method allows setting the component type.
-                            Object[] objs = (Object[]) Array.newInstance(getSpecification(), refs.length);
-                            for (int i = 0; i < refs.length; i++) {
-                                ServiceReference ref = refs[i];
-                                objs[i] = getService(ref);
-                            }
-                            usage.m_object = objs;
-                        }
-                    } catch (ArrayStoreException e) {
-                        throw new RuntimeException("Cannot create the array - Check that the bundle can access the service interface", e);
-                    }
+                    usage.m_object = (Object[]) Array.newInstance(getSpecification(), 0); // Create an empty array.
                     break;
                 case LIST:
-                    if (refs == null) {
-                        usage.m_object = Collections.emptyList();
-                    } else {
-                        // Use a list to store service objects
-                        List<Object> objs = new ArrayList<Object>(refs.length);
-                        for (ServiceReference ref : refs) {
-                            objs.add(getService(ref));
-                        }
-                        usage.m_object = objs;
-                    }
+                    usage.m_object = Collections.emptyList();
                     break;
                 case SET:
-                    if (refs == null) {
-                        usage.m_object = Collections.emptySet();
-                    } else {
-                        // Use a vector to store service objects
-                        Set<Object> objs = new HashSet<Object>(refs.length);
-                        for (ServiceReference ref : refs) {
-                            objs.add(getService(ref));
-                        }
-                        usage.m_object = objs;
-                    }
+                    usage.m_object = Collections.emptySet();
                     break;
                 case VECTOR:
-                    if (refs == null) {
-                        usage.m_object = new Vector(0); // Create an empty vector.
-                    } else {
-                        // Use a vector to store service objects
-                        Vector<Object> objs = new Vector<Object>(refs.length);
-                        for (ServiceReference ref : refs) {
-                            objs.add(getService(ref));
-                        }
-                        usage.m_object = objs;
-                    }
+                    usage.m_object = new Vector(0); // Create an empty vector.
                     break;
             }
         }
     }
 
+    /**
+     * Gets the snapshot of the service objects to inject, building it if the
+     * bound services have changed since the last snapshot.
+     * Once built, getting the snapshot requires neither locks nor allocations.
+     *
+     * @return the snapshot, <code>null</code> if no service is bound.
+     */
+    private Snapshot getSnapshot() {
+        // Read the generation first, so a snapshot built while the bound services change is outdated.
+        int generation = m_generation.get();
+        Snapshot snapshot = m_snapshot;
+        if (snapshot != null && snapshot.m_generation == generation) {
+            return snapshot;
+        }
+
+        ServiceReference[] refs = getServiceReferences();
+        if (refs == null) {
+            return null;
+        }
+
+        if (!isAggregate()) {
+            snapshot = new Snapshot(generation, getService(refs[0]));
+        } else {
+            try {
+                //  Use a reflective construction for arrays to avoid class cast exception. This allows setting the component type.
+                Object[] objs = m_type == AggregateDependencyInjectionType.ARRAY
+                        ? (Object[]) Array.newInstance(getSpecification(), refs.length) : new Object[refs.length];
+                for (int i = 0; i < refs.length; i++) {
+                    objs[i] = getService(refs[i]);
+                }
+                snapshot = new Snapshot(generation, objs, m_type == AggregateDependencyInjectionType.SET);
+            } catch (ArrayStoreException e) {
+                throw new RuntimeException("Cannot create the array - Check that the bundle can access the service interface", e);
+            }
+        }
+        m_snapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Invalidates the snapshot of the service objects.
+     * Called before and after each change of the bound services.
+     */
+    private void invalidateSnapshot() {
+        m_generation.incrementAndGet();
+        m_snapshot = null;
+    }
+
     /**
      * Waits a service providers. The wait stops when the timeout is reached.
      */
@@ -892,7 +930,6 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
             usage.incComponentStack(); // Increment the number of component access.
             if (usage.m_stack > 0) {
                 usage.inc();
-                m_usage.set(usage); // Set the Thread local as value has been modified
             }
         }
     }
@@ -936,9 +973,8 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
             if (usage.m_stack > 0) {
                 if (usage.dec()) {
                     // Exit the method flow => Release all objects
+                    // The usage stays in the thread local, and is reused by the next flow of the thread.
                     usage.clear();
-                    // Also remove the thread local object.
-                    m_usage.remove();
                 }
             }
         }
@@ -1051,6 +1087,202 @@ public class Dependency extends DependencyModel implements FieldInterceptor, Met
         return m_type;
     }
 
+    /**
+     * Service objects of the bound services at a given generation.
+     * A snapshot is immutable, it is shared by all the threads accessing the dependency.
+     */
+    private static final class Snapshot {
+        /**
+         * The generation of the bound services the snapshot was built from.
+         */
+        final int m_generation;
+
+        /**
+         * The service object of a scalar dependency.
+         */
+        final Object m_object;
+
+        /**
+         * The service objects of an aggregate dependency, an array of the specification for array injection.
+         */
+        final Object[] m_objects;
+
+        /**
+         * The unmodifiable list of the service objects of an aggregate dependency.
+         */
+        final List<Object> m_list;
+
+        /**
+         * The unmodifiable set of the service objects, only built for set injection.
+         */
+        final Set<Object> m_set;
+
+        Snapshot(int generation, Object object) {
+            m_generation = generation;
+            m_object = object;
+            m_objects = null;
+            m_list = null;
+            m_set = null;
+        }
+
+        Snapshot(int generation, Object[] objects, boolean set) {
+            m_generation = generation;
+            m_object = null;
+            m_objects = objects;
+            m_list = Collections.unmodifiableList(Arrays.asList(objects));
+            m_set = set ? Collections.unmodifiableSet(new HashSet<Object>(m_list)) : null;
+        }
+
+        /**
+         * Gets the object to inject.
+         * Scalar dependencies inject the service object itself. As components may modify the collection or array
+         * injected in a flow, aggregate dependencies still create one per flow: lists and sets share the service
+         * objects of the snapshot until they are modified, arrays and vectors can't detect their modifications, so
+         * they are copied.
+         *
+         * @param type the aggregate injection type
+         * @return the service object, or a modifiable collection or array of service objects.
+         */
+        Object get(AggregateDependencyInjectionType type) {
+            if (m_objects == null) {
+                return m_object;
+            }
+            switch (type) {
+                case ARRAY:
+                    return m_objects.clone();
+                case SET:
+                    return new SharedSet(m_set);
+                case VECTOR:
+                    return new Vector<Object>(m_list);
+                default:
+                    return new SharedList(m_list);
+            }
+        }
+
+        /**
+         * Gets the service objects of an aggregate dependency as a modifiable list.
+         *
+         * @return the list of service objects.
+         */
+        List<Object> getList() {
+            return new SharedList(m_list);
+        }
+    }
+
+    /**
+     * A list reading the service objects of a snapshot, copied on its first modification.
+     */
+    private static final class SharedList extends AbstractList<Object> implements RandomAccess {
+        private List<Object> m_list;
+
+        private boolean m_copied;
+
+        SharedList(List<Object> list) {
+            m_list = list;
+        }
+
+        private List<Object> copy() {
+            if (!m_copied) {
+                m_list = new ArrayList<Object>(m_list);
+                m_copied = true;
+            }
+            return m_list;
+        }
+
+        public Object get(int index) {
+            return m_list.get(index);
+        }
+
+        public int size() {
+            return m_list.size();
+        }
+
+        public Object set(int index, Object element) {
+            return copy().set(index, element);
+        }
+
+        public void add(int index, Object element) {
+            copy().add(index, element);
+            modCount++;
+        }
+
+        public Object remove(int index) {
+            Object removed = copy().remove(index);
+            modCount++;
+            return removed;
+        }
+    }
+
+    /**
+     * A set reading the service objects of a snapshot, copied on its first modification.
+     */
+    private static final class SharedSet extends AbstractSet<Object> {
+        private Set<Object> m_set;
+
+        private boolean m_copied;
+
+        SharedSet(Set<Object> set) {
+            m_set = set;
+        }
+
+        private Set<Object> copy() {
+            if (!m_copied) {
+                m_set = new HashSet<Object>(m_set);
+                m_copied = true;
+            }
+            return m_set;
+        }
+
+        public int size() {
+            return m_set.size();
+        }
+
+        public boolean contains(Object o) {
+            return m_set.contains(o);
+        }
+
+        public boolean add(Object o) {
+            return copy().add(o);
+        }
+
+        public boolean remove(Object o) {
+            return copy().remove(o);
+        }
+
+        public Iterator<Object> iterator() {
+            final boolean shared = !m_copied;
+            final Iterator<Object> iterator = m_set.iterator();
+            return new Iterator<Object>() {
+                private Object m_last;
+
+                private boolean m_removable;
+
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                public Object next() {
+                    m_last = iterator.next();
+                    m_removable = true;
+                    return m_last;
+                }
+
+                public void remove() {
+                    if (!m_removable) {
+                        throw new IllegalStateException();
+                    }
+                    m_removable = false;
+                    if (shared) {
+                        // Keep iterating over the shared set, and remove from the copy.
+                        copy().remove(m_last);
+                    } else {
+                        iterator.remove();
+                    }
+                }
+            };
+        }
+    }
+
     /**
      * Classloader for nullable objects.
      */
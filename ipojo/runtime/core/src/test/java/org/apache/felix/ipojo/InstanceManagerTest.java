@@ -20,13 +20,16 @@ package org.apache.felix.ipojo;
 
 import org.apache.felix.ipojo.metadata.Attribute;
 import org.apache.felix.ipojo.metadata.Element;
+import org.apache.felix.ipojo.parser.FieldMetadata;
 import org.apache.felix.ipojo.parser.MethodMetadata;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 
 import java.lang.reflect.Member;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -125,6 +128,110 @@ public class InstanceManagerTest {
         assertThat(error.get()).isEqualTo(0);
     }
 
+    @Test
+    public void testFieldSlots() throws ClassNotFoundException {
+        InstanceManager manager = createInstanceManager();
+        final List<String> sets = new ArrayList<String>();
+        FieldInterceptor interceptor = new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.add(fieldName + "=" + value);
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return value;
+            }
+        };
+        manager.register(new FieldMetadata("foo", "java.lang.String"), interceptor);
+        manager.register(new FieldMetadata("bar", "java.lang.String"), interceptor);
+
+        MyComponent component = new MyComponent();
+        manager.onSet(component, "foo", 0, "foo-value");
+        // Same slot claimed by another field, e.g. from a parent class
+        manager.onSet(component, "bar", 0, "bar-value");
+
+        assertThat(manager.onGet(component, "foo", 0)).isEqualTo("foo-value");
+        assertThat(manager.onGet(component, "bar", 0)).isEqualTo("bar-value");
+        assertThat(manager.onGet(component, "foo")).isEqualTo("foo-value");
+        assertThat(manager.getFieldValue("bar", component)).isEqualTo("bar-value");
+        assertThat(sets).containsExactly("foo=foo-value", "bar=bar-value");
+
+        // Name and slot based accesses share the value
+        manager.onSet(component, "foo", "new-value");
+        assertThat(manager.onGet(component, "foo", 0)).isEqualTo("new-value");
+    }
+
+    @Test
+    public void testFieldSlotInjection() throws ClassNotFoundException {
+        InstanceManager manager = createInstanceManager();
+        final AtomicInteger sets = new AtomicInteger();
+        manager.register(new FieldMetadata("foo", "java.lang.String"), new FieldInterceptor() {
+            public void onSet(Object pojo, String fieldName, Object value) {
+                sets.incrementAndGet();
+            }
+
+            public Object onGet(Object pojo, String fieldName, Object value) {
+                return "injected";
+            }
+        });
+
+        MyComponent component = new MyComponent();
+        assertThat(manager.onGet(component, "foo", 3)).isEqualTo("injected");
+        assertThat(manager.getFieldValue("foo", component)).isEqualTo("injected");
+        assertThat(sets.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMethodSlots() throws ClassNotFoundException {
+        InstanceManager manager = createInstanceManager();
+        final List<String> calls = new ArrayList<String>();
+        MethodInterceptor interceptor = new MethodInterceptor() {
+            public void onEntry(Object pojo, Member method, Object[] args) {
+                calls.add("entry:" + method.getName());
+            }
+
+            public void onExit(Object pojo, Member method, Object returnedObj) {
+                calls.add("exit:" + method.getName());
+            }
+
+            public void onError(Object pojo, Member method, Throwable throwable) {
+                calls.add("error:" + method.getName());
+            }
+
+            public void onFinally(Object pojo, Member method) {
+                calls.add("finally:" + method.getName());
+            }
+        };
+        Element foo = new Element("method", "");
+        foo.addAttribute(new Attribute("name", "foo"));
+        foo.addAttribute(new Attribute("arguments", "{java.lang.String}"));
+        MethodMetadata metadata = new MethodMetadata(foo);
+        manager.register(metadata, interceptor);
+        manager.load();
+
+        MyComponent component = new MyComponent();
+        String id = metadata.getMethodIdentifier();
+        manager.onEntry(component, id, 0, new Object[] {"a"});
+        manager.onExit(component, id, 0, null);
+        manager.onEntry(component, id, 0, new Object[] {"b"});
+        manager.onError(component, id, 0, new Exception());
+        // Not intercepted
+        manager.onEntry(component, "bar$java_lang_String", 1, new Object[] {"c"});
+
+        assertThat(calls).containsExactly("entry:foo", "exit:foo", "finally:foo",
+                "entry:foo", "error:foo", "finally:foo");
+    }
+
+    private InstanceManager createInstanceManager() throws ClassNotFoundException {
+        ComponentFactory factory = mock(ComponentFactory.class);
+        when(factory.loadClass(anyString())).thenReturn(MyComponent.class);
+        when(factory.getClassName()).thenReturn(MyComponent.class.getName());
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getHeaders()).thenReturn(new Hashtable<String, String>());
+        BundleContext context = mock(BundleContext.class);
+        when(context.getBundle()).thenReturn(bundle);
+        return new InstanceManager(factory, context, new HandlerManager[0]);
+    }
+
     private class Caller implements Runnable {
 
         private final CountDownLatch startSignal;
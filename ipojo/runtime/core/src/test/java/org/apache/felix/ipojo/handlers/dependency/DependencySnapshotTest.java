@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.ipojo.handlers.dependency;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.apache.felix.ipojo.ComponentFactory;
+import org.apache.felix.ipojo.InstanceManager;
+import org.apache.felix.ipojo.test.MockBundle;
+import org.apache.felix.ipojo.util.Logger;
+import org.mockito.Mockito;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that the service objects injected by a dependency are shared between flows as long as the selection
+ * does not change.
+ */
+public class DependencySnapshotTest extends TestCase {
+
+    private BundleContext m_context;
+
+    private DependencyHandler m_handler;
+
+    private ServiceReference m_reference;
+
+    private TestSpecification m_service;
+
+    public void setUp() throws Exception {
+        Bundle bundle = new MockBundle(Dependency.class.getClassLoader());
+
+        m_service = Mockito.mock(TestSpecification.class);
+        m_reference = Mockito.mock(ServiceReference.class);
+        Mockito.when(m_reference.getProperty(Constants.OBJECTCLASS))
+                .thenReturn(new String[] {TestSpecification.class.getName()});
+        Mockito.when(m_reference.getProperty(Constants.SERVICE_ID)).thenReturn(1L);
+        Mockito.when(m_reference.getPropertyKeys())
+                .thenReturn(new String[] {Constants.OBJECTCLASS, Constants.SERVICE_ID});
+        Mockito.when(m_reference.getBundle()).thenReturn(bundle);
+
+        m_context = Mockito.mock(BundleContext.class);
+        Mockito.when(m_context.getProperty(DependencyHandler.PROXY_TYPE_PROPERTY)).thenReturn(null);
+        Mockito.when(m_context.getProperty(Logger.IPOJO_LOG_LEVEL_PROP)).thenReturn(null);
+        Mockito.when(m_context.getBundle()).thenReturn(bundle);
+        Mockito.when(m_context.getServiceReferences(TestSpecification.class.getName(), null))
+                .thenReturn(new ServiceReference[] {m_reference});
+        Mockito.when(m_context.getService(Mockito.any(ServiceReference.class))).thenReturn(m_service);
+
+        ComponentFactory factory = Mockito.mock(ComponentFactory.class);
+        Mockito.when(factory.getBundleClassLoader()).thenReturn(Dependency.class.getClassLoader());
+
+        InstanceManager im = Mockito.mock(InstanceManager.class);
+        Mockito.when(im.getContext()).thenReturn(m_context);
+        Mockito.when(im.getFactory()).thenReturn(factory);
+
+        m_handler = Mockito.mock(DependencyHandler.class);
+        Mockito.when(m_handler.getInstanceManager()).thenReturn(im);
+        Mockito.when(m_handler.getLogger()).thenReturn(new Logger(m_context, "test", Logger.INFO));
+    }
+
+    /**
+     * The service object is retrieved once and then served to every flow.
+     */
+    public void testScalarServiceObjectIsShared() {
+        Dependency dependency = new Dependency(m_handler, "a_field", TestSpecification.class, null, false, false,
+                false, false, "dep", m_context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        dependency.start();
+
+        Object first = inFlow(dependency);
+        Object second = inFlow(dependency);
+        Assert.assertSame(m_service, first);
+        Assert.assertSame(m_service, second);
+        Mockito.verify(m_context, Mockito.times(1)).getService(Mockito.any(ServiceReference.class));
+
+        dependency.stop();
+    }
+
+    /**
+     * Aggregate dependencies injected as list share the service objects, but each flow can modify its own list.
+     */
+    public void testListIsSharedUntilModified() {
+        Dependency dependency = new Dependency(m_handler, "a_field", TestSpecification.class, null, false, true,
+                false, false, "dep", m_context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        dependency.setAggregateType(AggregateDependencyInjectionType.LIST);
+        dependency.start();
+
+        List first = (List) inFlow(dependency);
+        Assert.assertEquals(1, first.size());
+        Assert.assertSame(m_service, first.get(0));
+        first.clear();
+        Assert.assertTrue(first.isEmpty());
+
+        List second = (List) inFlow(dependency);
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, second.size());
+        Assert.assertSame(m_service, second.get(0));
+        Mockito.verify(m_context, Mockito.times(1)).getService(Mockito.any(ServiceReference.class));
+
+        dependency.stop();
+    }
+
+    /**
+     * Aggregate dependencies injected as set share the service objects, but each flow can modify its own set.
+     */
+    public void testSetIsSharedUntilModified() {
+        Dependency dependency = new Dependency(m_handler, "a_field", TestSpecification.class, null, false, true,
+                false, false, "dep", m_context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        dependency.setAggregateType(AggregateDependencyInjectionType.SET);
+        dependency.start();
+
+        Set first = (Set) inFlow(dependency);
+        Assert.assertTrue(first.contains(m_service));
+        Iterator iterator = first.iterator();
+        iterator.next();
+        iterator.remove();
+        Assert.assertTrue(first.isEmpty());
+        first.add("other");
+        Assert.assertEquals(1, first.size());
+
+        Set second = (Set) inFlow(dependency);
+        Assert.assertEquals(1, second.size());
+        Assert.assertTrue(second.contains(m_service));
+        Mockito.verify(m_context, Mockito.times(1)).getService(Mockito.any(ServiceReference.class));
+
+        dependency.stop();
+    }
+
+    /**
+     * Arrays are copied for every flow, so a component cannot corrupt the shared snapshot.
+     */
+    public void testArrayIsCopied() {
+        Dependency dependency = new Dependency(m_handler, "a_field", TestSpecification.class, null, false, true,
+                false, false, "dep", m_context, Dependency.DYNAMIC_BINDING_POLICY, null, null, null);
+        dependency.setAggregateType(AggregateDependencyInjectionType.ARRAY);
+        dependency.start();
+
+        Object[] first = (Object[]) inFlow(dependency);
+        first[0] = null;
+        Object[] second = (Object[]) inFlow(dependency);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(m_service, second[0]);
+        Mockito.verify(m_context, Mockito.times(1)).getService(Mockito.any(ServiceReference.class));
+
+        dependency.stop();
+    }
+
+    /**
+     * Reads the injected field within its own method flow.
+     *
+     * @param dependency the dependency
+     * @return the injected object
+     */
+    private Object inFlow(Dependency dependency) {
+        Object pojo = new Object();
+        dependency.onEntry(pojo, null, new Object[0]);
+        try {
+            return dependency.onGet(pojo, "a_field", null);
+        } finally {
+            dependency.onFinally(pojo, null);
+        }
+    }
+}
@@ -19,6 +19,9 @@ package org.apache.felix.useradmin.filestore;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -26,22 +29,37 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.felix.useradmin.RoleRepositoryStore;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
+import org.osgi.service.useradmin.Role;
 import org.osgi.service.useradmin.UserAdminEvent;
 import org.osgi.service.useradmin.UserAdminListener;
 
 
 /**
  * Provides an implementation of {@link RoleRepositoryStore} using Java Serialization.
+ * <p>
+ * Changed roles are appended to a journal, rather than rewriting the entire
+ * repository for each change. Once the journal contains a configured number
+ * of records, a snapshot of the entire repository is written and the journal
+ * is discarded, which also bounds the number of records to replay on startup.
+ * </p>
+ * <p>
+ * Each snapshot is followed by its generation, which the journal also
+ * records, so a journal that predates the snapshot is never replayed.
+ * </p>
  */
 public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implements Runnable, UserAdminListener, ManagedService {
 
@@ -51,16 +69,25 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
     static final String KEY_WRITE_DISABLED = "background.write.disabled";
     static final String KEY_WRITE_DELAY_VALUE = "background.write.delay.value";
     static final String KEY_WRITE_DELAY_TIMEUNIT = "background.write.delay.timeunit";
+    static final String KEY_SNAPSHOT_INTERVAL = "journal.snapshot.interval";
 
     private static final String PREFIX = PID.concat(".");
     private static final boolean DEFAULT_WRITE_DISABLED = Boolean.parseBoolean(System.getProperty(PREFIX.concat(KEY_WRITE_DISABLED), "false"));
     private static final int DEFAULT_WRITE_DELAY_VALUE = Integer.parseInt(System.getProperty(PREFIX.concat(KEY_WRITE_DELAY_VALUE), "500"));
     private static final TimeUnit DEFAULT_WRITE_DELAY_TIMEUNIT = TimeUnit.MILLISECONDS;
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = Integer.parseInt(System.getProperty(PREFIX.concat(KEY_SNAPSHOT_INTERVAL), "1000"));
 
     private static final String FILE_NAME = "ua_repo.dat";
+    private static final String JOURNAL_FILE_NAME = "ua_repo.journal";
 
     private final File m_file;
     private final AtomicReference m_timerRef;
+    private final RoleRepositoryJournal m_journal;
+    /** Contains the names of all changed roles, and whether they were removed, since the last write. */
+    private final ConcurrentMap m_changedRoles;
+    private volatile int m_snapshotInterval;
+    /** The generation of the last snapshot. */
+    private long m_generation;
 
     /**
      * Creates a new {@link RoleRepositoryStore} instance.
@@ -79,6 +106,9 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
      */
     public RoleRepositoryFileStore(File baseDir, boolean backgroundWriteEnabled) {
         m_file = new File(baseDir, FILE_NAME);
+        m_journal = new RoleRepositoryJournal(new File(baseDir, JOURNAL_FILE_NAME));
+        m_changedRoles = new ConcurrentHashMap();
+        m_snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
         
         m_timerRef = new AtomicReference();
 
@@ -88,6 +118,12 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
     }
     
     public void roleChanged(UserAdminEvent event) {
+        String name = event.getRole().getName();
+        if (event.getType() == UserAdminEvent.ROLE_REMOVED) {
+            m_changedRoles.put(name, Boolean.TRUE);
+        } else {
+            m_changedRoles.putIfAbsent(name, Boolean.FALSE);
+        }
         scheduleTask();
     }
 
@@ -129,8 +165,8 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
             m_timerRef.compareAndSet(timer, null);
         }
 
-        // Write the latest version to disk...
-        flush();
+        // Write the latest version to disk, allowing it to be read quickly upon restart...
+        snapshot();
     }
 
     /**
@@ -140,6 +176,7 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
         boolean writeDisabled = DEFAULT_WRITE_DISABLED;
         int writeDelayValue = DEFAULT_WRITE_DELAY_VALUE;
         TimeUnit writeDelayUnit = DEFAULT_WRITE_DELAY_TIMEUNIT;
+        int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
 
         if (properties != null) {
             Object wd = properties.get(KEY_WRITE_DISABLED);
@@ -175,8 +212,22 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
                     }
                 }
             }
+
+            Object si = properties.get(KEY_SNAPSHOT_INTERVAL);
+            if (si != null) {
+                try {
+                    snapshotInterval = Integer.parseInt((String) si);
+                } catch (Exception e) {
+                    throw new ConfigurationException(KEY_SNAPSHOT_INTERVAL, "Invalid snapshot interval!");
+                }
+                if (snapshotInterval < 0) {
+                    throw new ConfigurationException(KEY_SNAPSHOT_INTERVAL, "Invalid snapshot interval!");
+                }
+            }
         }
 
+        m_snapshotInterval = snapshotInterval;
+
         ResettableTimer timer = (ResettableTimer) m_timerRef.get();
         if (timer != null) {
             timer.shutDown();
@@ -185,21 +236,32 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
     }
 
     /**
-     * Retrieves the serialized repository from disk.
+     * Retrieves the serialized repository from disk, that is, its last 
+     * snapshot with all journaled changes applied.
      * 
      * @return the retrieved repository, never <code>null</code>.
      * @throws IOException in case the retrieval of the repository failed.
      */
-    protected Map retrieve() throws IOException {
+    protected synchronized Map retrieve() throws IOException {
         InputStream is = null;
 
         try {
-            is = new BufferedInputStream(new FileInputStream(m_file));
+            Map result;
+            long generation = 0L;
+            try {
+                is = new BufferedInputStream(new FileInputStream(m_file));
+
+                result = new RoleRepositorySerializer().deserialize(is);
+                generation = readGeneration(is);
+            } catch (FileNotFoundException exception) {
+                // Don't bother; file does not exist...
+                result = new HashMap();
+            }
 
-            return new RoleRepositorySerializer().deserialize(is);
-        } catch (FileNotFoundException exception) {
-            // Don't bother; file does not exist...
-            return Collections.emptyMap();
+            m_journal.replay(result, generation);
+            m_generation = generation;
+
+            return result;
         } catch (IOException exception) {
             exception.printStackTrace();
             throw exception;
@@ -209,21 +271,52 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
     }
 
     /**
-     * Stores the given repository to disk as serialized objects.
+     * Stores the given repository to disk as serialized objects, replacing 
+     * the previous snapshot and discarding the journal.
      * 
      * @param roleRepository the repository to store, cannot be <code>null</code>.
      * @throws IOException in case storing the repository failed.
      */
-    protected void store(Map roleRepository) throws IOException {
+    protected synchronized void store(Map roleRepository) throws IOException {
+        File tmpFile = new File(m_file.getParentFile(), FILE_NAME.concat(".tmp"));
+        long generation = m_generation + 1;
         OutputStream os = null;
 
         try {
-            os = new BufferedOutputStream(new FileOutputStream(m_file));
+            os = new BufferedOutputStream(new FileOutputStream(tmpFile));
 
             new RoleRepositorySerializer().serialize(roleRepository, os);
+            new DataOutputStream(os).writeLong(generation);
         } finally {
             closeSafely(os);
         }
+
+        // Replace the previous snapshot only after the new one is completely written...
+        if (!tmpFile.renameTo(m_file)) {
+            m_file.delete();
+            if (!tmpFile.renameTo(m_file)) {
+                throw new IOException("Failed to replace " + m_file + "!");
+            }
+        }
+
+        // Until it is reset, the journal is of the previous generation, and no longer replayed...
+        m_generation = generation;
+        m_journal.reset(generation);
+    }
+
+    /**
+     * Reads the generation following the repository in a snapshot.
+     * 
+     * @param is the input stream to read the generation from, cannot be <code>null</code>.
+     * @return the generation, or 0 for snapshots written without a generation.
+     * @throws IOException in case of I/O problems.
+     */
+    private long readGeneration(InputStream is) throws IOException {
+        try {
+            return new DataInputStream(is).readLong();
+        } catch (EOFException exception) {
+            return 0L;
+        }
     }
 
     /**
@@ -242,12 +335,86 @@ public class RoleRepositoryFileStore extends RoleRepositoryMemoryStore implement
     }
 
     /**
-     * Flushes the current repository to disk.
+     * Flushes all changed roles to disk by appending them to the journal, or 
+     * by writing a snapshot of the current repository once the journal grew
+     * too large.
+     * 
+     * @throws IOException in case of problems storing the repository.
+     */
+    private synchronized void flush() throws IOException {
+        if (m_journal.size() >= m_snapshotInterval) {
+            snapshot();
+            return;
+        }
+
+        Map changes = new HashMap();
+        List removedNames = new ArrayList();
+        List changedRoles = new ArrayList();
+
+        Iterator namesIter = m_changedRoles.keySet().iterator();
+        while (namesIter.hasNext()) {
+            String name = (String) namesIter.next();
+            Object removed = m_changedRoles.remove(name);
+            if (removed == null) {
+                continue;
+            }
+            changes.put(name, removed);
+
+            Role role = (Role) m_entries.get(name);
+            if (Boolean.TRUE.equals(removed) || (role == null)) {
+                removedNames.add(name);
+            }
+            if (role != null) {
+                changedRoles.add(role);
+            }
+        }
+
+        try {
+            m_journal.append(removedNames, changedRoles);
+        } catch (IOException exception) {
+            // Retry these changes upon the next flush...
+            restoreChanges(changes);
+            throw exception;
+        }
+
+        if (m_journal.size() >= m_snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Marks the given changes as not written yet.
+     * 
+     * @param changes the changes to restore, cannot be <code>null</code>.
+     */
+    private void restoreChanges(Map changes) {
+        Iterator entriesIter = changes.entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            Map.Entry entry = (Map.Entry) entriesIter.next();
+            if (Boolean.TRUE.equals(entry.getValue())) {
+                m_changedRoles.put(entry.getKey(), Boolean.TRUE);
+            } else {
+                m_changedRoles.putIfAbsent(entry.getKey(), Boolean.FALSE);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current repository to disk.
      * 
      * @throws IOException in case of problems storing the repository.
      */
-    private void flush() throws IOException {
-        store(new HashMap(m_entries));
+    private synchronized void snapshot() throws IOException {
+        // All changes made until now are part of the snapshot...
+        Map changes = new HashMap(m_changedRoles);
+        m_changedRoles.clear();
+
+        try {
+            store(new HashMap(m_entries));
+        } catch (IOException exception) {
+            restoreChanges(changes);
+            throw exception;
+        }
     }
 
     /**
@@ -0,0 +1,479 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.filestore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.felix.useradmin.RoleFactory;
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+
+/**
+ * Provides an append-only journal of changed and removed roles.
+ * <p>
+ * Each record in the journal holds the complete state of a single role, or
+ * the name of a removed role. Replaying the journal on top of the last
+ * snapshot of the repository therefore yields the latest state of the
+ * repository. Records are framed by their length and a checksum, so a record
+ * that was only partially written (for example, due to a crash) is detected
+ * and dropped upon replay.
+ * </p>
+ * <p>
+ * The journal starts with the generation of the snapshot its records apply
+ * to. A journal that was not reset after a newer snapshot was written (for
+ * example, due to a crash) is therefore not replayed on top of that snapshot.
+ * </p>
+ * <p>
+ * This class is <b>not</b> thread-safe, its callers should provide the
+ * necessary synchronization.
+ * </p>
+ */
+final class RoleRepositoryJournal {
+
+    private static final int RECORD_ROLE = 1;
+    private static final int RECORD_REMOVAL = 2;
+    private static final int HEADER_SIZE = 8;
+
+    private final File m_file;
+    private final RoleRepositorySerializer m_serializer;
+
+    private long m_generation;
+    private long m_length;
+    private int m_size;
+
+    /**
+     * Creates a new {@link RoleRepositoryJournal} instance.
+     *
+     * @param file the file to write the journal to, cannot be <code>null</code>.
+     */
+    public RoleRepositoryJournal(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null!");
+        }
+        m_file = file;
+        m_serializer = new RoleRepositorySerializer();
+    }
+
+    /**
+     * Appends the given removed and changed roles to this journal.
+     * <p>
+     * The removals are written before the changed roles, allowing a role to
+     * be both removed and (re)created.
+     * </p>
+     *
+     * @param removedNames the names of the removed roles, cannot be <code>null</code>;
+     * @param changedRoles the changed roles, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems writing the journal.
+     */
+    public void append(List removedNames, List changedRoles) throws IOException {
+        if (removedNames.isEmpty() && changedRoles.isEmpty()) {
+            // Nothing to do...
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(buffer);
+
+        if (m_length == 0L) {
+            // A new journal starts with the generation of the snapshot it applies to...
+            dos.writeLong(m_generation);
+        }
+
+        Iterator iter = removedNames.iterator();
+        while (iter.hasNext()) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            record.write(RECORD_REMOVAL);
+            new DataOutputStream(record).writeUTF((String) iter.next());
+
+            writeRecord(record.toByteArray(), dos);
+        }
+
+        iter = changedRoles.iterator();
+        while (iter.hasNext()) {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            record.write(RECORD_ROLE);
+            m_serializer.serializeRole((Role) iter.next(), record);
+
+            writeRecord(record.toByteArray(), dos);
+        }
+
+        FileOutputStream fos = new FileOutputStream(m_file, m_length > 0L /* append */);
+        try {
+            buffer.writeTo(fos);
+            fos.close();
+        } catch (IOException exception) {
+            closeSafely(fos);
+            // Do not leave a partially written record behind...
+            truncate(m_length);
+            throw exception;
+        }
+
+        m_length += buffer.size();
+        m_size += removedNames.size() + changedRoles.size();
+    }
+
+    /**
+     * Replays this journal on top of the given repository.
+     * <p>
+     * A journal that does not apply to the given generation of the snapshot
+     * is discarded rather than replayed, as its records are already part of
+     * the snapshot.
+     * </p>
+     *
+     * @param repository the repository to update, mapping the names of roles
+     *        to the roles themselves, cannot be <code>null</code>;
+     * @param generation the generation of the snapshot the repository was read from.
+     * @throws IOException in case of I/O problems reading the journal.
+     */
+    public void replay(Map repository, long generation) throws IOException {
+        m_generation = generation;
+        m_length = 0L;
+        m_size = 0;
+
+        DataInputStream dis;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream(m_file)));
+        } catch (FileNotFoundException exception) {
+            // Don't bother; there's nothing to replay...
+            return;
+        }
+
+        Map stubGroups = new HashMap();
+        boolean truncated = false;
+
+        try {
+            if (m_file.length() >= HEADER_SIZE && dis.readLong() == generation) {
+                m_length = HEADER_SIZE;
+
+                byte[] record;
+                while ((record = readRecord(dis, m_file.length() - m_length)) != null) {
+                    applyRecord(record, repository, stubGroups);
+
+                    m_length += record.length + 8;
+                    m_size++;
+                }
+            }
+            truncated = (m_length != m_file.length());
+        } finally {
+            closeSafely(dis);
+        }
+
+        if (truncated) {
+            // Drop the trailing partial record or the outdated journal, if any, so new records are appended after the last valid one...
+            truncate(m_length);
+        }
+
+        resolveGroupMembers(repository, stubGroups);
+    }
+
+    /**
+     * Resets this journal, discarding all its records, for example after a
+     * snapshot of the repository is written.
+     *
+     * @param generation the generation of the snapshot new records apply to.
+     * @throws IOException in case of I/O problems truncating the journal.
+     */
+    public void reset(long generation) throws IOException {
+        if (m_file.exists()) {
+            truncate(0L);
+        }
+        m_generation = generation;
+        m_length = 0L;
+        m_size = 0;
+    }
+
+    /**
+     * Returns the number of records in this journal.
+     *
+     * @return the number of records, >= 0.
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Applies a single record to the given repository.
+     *
+     * @param record the record to apply, cannot be <code>null</code>;
+     * @param repository the repository to update, cannot be <code>null</code>;
+     * @param stubGroups the groups whose members are still to be resolved, cannot be <code>null</code>.
+     * @throws IOException in case the record could not be read.
+     */
+    private void applyRecord(byte[] record, Map repository, Map stubGroups) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(record));
+
+        int kind = dis.read();
+        if (RECORD_REMOVAL == kind) {
+            removeRole(repository, stubGroups, dis.readUTF());
+        } else if (RECORD_ROLE == kind) {
+            putRole(repository, stubGroups, m_serializer.deserializeRole(dis));
+        } else {
+            throw new IOException("Invalid journal; unknown record type: " + kind);
+        }
+    }
+
+    /**
+     * Adds or updates the given role in the given repository.
+     * <p>
+     * Existing roles are updated in place, as groups in the repository might
+     * refer to them.
+     * </p>
+     *
+     * @param repository the repository to update, cannot be <code>null</code>;
+     * @param stubGroups the groups whose members are still to be resolved, cannot be <code>null</code>;
+     * @param role the read role, cannot be <code>null</code>.
+     */
+    private void putRole(Map repository, Map stubGroups, Role role) {
+        String name = role.getName();
+        int type = role.getType();
+
+        Role target = (Role) repository.get(name);
+        if (target == null || target.getType() != type) {
+            target = (Role.GROUP == type) ? RoleFactory.createRole(Role.GROUP, name) : role;
+            repository.put(name, target);
+        }
+
+        if (target != role) {
+            replaceDictionary(role.getProperties(), target.getProperties());
+            if (role instanceof User) {
+                replaceDictionary(((User) role).getCredentials(), ((User) target).getCredentials());
+            }
+        }
+
+        if (Role.GROUP == type) {
+            // The members are resolved after all records are applied...
+            removeAllMembers((Group) target);
+            stubGroups.put(name, role);
+        }
+    }
+
+    /**
+     * Removes the role with the given name from the given repository,
+     * including its membership of any group.
+     *
+     * @param repository the repository to update, cannot be <code>null</code>;
+     * @param stubGroups the groups whose members are still to be resolved, cannot be <code>null</code>;
+     * @param name the name of the removed role, cannot be <code>null</code>.
+     */
+    private void removeRole(Map repository, Map stubGroups, String name) {
+        Role removed = (Role) repository.remove(name);
+        stubGroups.remove(name);
+
+        if (removed != null) {
+            Iterator iter = repository.values().iterator();
+            while (iter.hasNext()) {
+                Role role = (Role) iter.next();
+                if (Role.GROUP == role.getType()) {
+                    ((Group) role).removeMember(removed);
+                }
+            }
+        }
+
+        Iterator iter = stubGroups.values().iterator();
+        while (iter.hasNext()) {
+            StubGroupImpl stubGroup = (StubGroupImpl) iter.next();
+            stubGroup.getMemberNames().remove(name);
+            stubGroup.getRequiredMemberNames().remove(name);
+        }
+    }
+
+    /**
+     * Resolves the members of all groups that were read from this journal.
+     *
+     * @param repository the repository to take the roles from, cannot be <code>null</code>;
+     * @param stubGroups the groups whose members are to be resolved, cannot be <code>null</code>.
+     */
+    private void resolveGroupMembers(Map repository, Map stubGroups) {
+        Iterator iter = stubGroups.values().iterator();
+        while (iter.hasNext()) {
+            StubGroupImpl stubGroup = (StubGroupImpl) iter.next();
+            Group group = (Group) repository.get(stubGroup.getName());
+
+            Iterator namesIter = stubGroup.getMemberNames().iterator();
+            while (namesIter.hasNext()) {
+                Role role = getRoleFromRepository(repository, (String) namesIter.next());
+                if (role != null) {
+                    group.addMember(role);
+                }
+            }
+
+            namesIter = stubGroup.getRequiredMemberNames().iterator();
+            while (namesIter.hasNext()) {
+                Role role = getRoleFromRepository(repository, (String) namesIter.next());
+                if (role != null) {
+                    group.addRequiredMember(role);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the role with the given name from the given repository.
+     *
+     * @param repository the repository to obtain the roles from, cannot be <code>null</code>;
+     * @param name the name of the role to retrieve, cannot be <code>null</code>.
+     * @return a role matching the given name, or <code>null</code> if no such role exists.
+     */
+    private Role getRoleFromRepository(Map repository, String name) {
+        if (Role.USER_ANYONE.equals(name)) {
+            return RoleFactory.createRole(Role.USER_ANYONE);
+        }
+        return (Role) repository.get(name);
+    }
+
+    /**
+     * Reads a single record from the given input stream.
+     *
+     * @param dis the input stream to read the record from, cannot be <code>null</code>;
+     * @param remaining the number of bytes remaining in the journal file.
+     * @return the contents of the read record, or <code>null</code> if no
+     *         (complete and valid) record could be read.
+     * @throws IOException in case of I/O problems.
+     */
+    private byte[] readRecord(DataInputStream dis, long remaining) throws IOException {
+        try {
+            int length = dis.readInt();
+            if (length <= 0 || length > remaining - 8) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            dis.readFully(record);
+
+            int checksum = dis.readInt();
+            if (checksum != checksum(record)) {
+                return null;
+            }
+            return record;
+        } catch (EOFException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a single record to the given output stream.
+     *
+     * @param record the contents of the record to write, cannot be <code>null</code>;
+     * @param dos the output stream to write the record to, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems.
+     */
+    private void writeRecord(byte[] record, DataOutputStream dos) throws IOException {
+        dos.writeInt(record.length);
+        dos.write(record);
+        dos.writeInt(checksum(record));
+    }
+
+    /**
+     * Truncates the journal file to the given length.
+     *
+     * @param length the new length of the journal file, >= 0.
+     * @throws IOException in case of I/O problems.
+     */
+    private void truncate(long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Calculates the checksum for the given record.
+     *
+     * @param record the contents of the record, cannot be <code>null</code>.
+     * @return the checksum.
+     */
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Closes a given resource, ignoring any exceptions that may come out of this.
+     *
+     * @param resource the resource to close, can be <code>null</code>.
+     */
+    private static void closeSafely(Closeable resource) {
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Removes all basic and required members from the given group.
+     *
+     * @param group the group to clear, cannot be <code>null</code>.
+     */
+    private static void removeAllMembers(Group group) {
+        Role[] members = group.getMembers();
+        for (int i = 0; (members != null) && (i < members.length); i++) {
+            group.removeMember(members[i]);
+        }
+        members = group.getRequiredMembers();
+        for (int i = 0; (members != null) && (i < members.length); i++) {
+            group.removeMember(members[i]);
+        }
+    }
+
+    /**
+     * Replaces the contents of a given dictionary with those of another dictionary.
+     *
+     * @param source the dictionary to copy from;
+     * @param dest the dictionary to replace the contents of.
+     */
+    private static void replaceDictionary(Dictionary source, Dictionary dest) {
+        List oldKeys = new ArrayList();
+        Enumeration keys = dest.keys();
+        while (keys.hasMoreElements()) {
+            oldKeys.add(keys.nextElement());
+        }
+        for (int i = 0; i < oldKeys.size(); i++) {
+            dest.remove(oldKeys.get(i));
+        }
+        keys = source.keys();
+        while (keys.hasMoreElements()) {
+            Object key = keys.nextElement();
+            dest.put(key, source.get(key));
+        }
+    }
+}
@@ -63,6 +63,23 @@ final class RoleRepositorySerializer {
         return readRepository(new DataInputStream(is));
     }
 
+    /**
+     * Deserializes a single role from a given input stream.
+     * 
+     * @param is the input stream to deserialize, cannot be <code>null</code>.
+     * @return the deserialized role, never <code>null</code>. Groups are 
+     *         returned as {@link StubGroupImpl}, as their members are only 
+     *         known by name.
+     * @throws IOException in case of I/O problems;
+     * @throws IllegalArgumentException in case the given stream was <code>null</code>.
+     */
+    public Role deserializeRole(InputStream is) throws IOException {
+        if (is == null) {
+            throw new IllegalArgumentException("InputStream cannot be null!");
+        }
+        return readEntry(new DataInputStream(is));
+    }
+
     /**
      * Serializes a given map to the given output stream.
      * 
@@ -80,6 +97,26 @@ final class RoleRepositorySerializer {
         }
         writeRepository(roleRepository, new DataOutputStream(os));
     }
+
+    /**
+     * Serializes a single role to the given output stream.
+     * 
+     * @param role the role to serialize, cannot be <code>null</code>;
+     * @param os the output stream to serialize to, cannot be  <code>null</code>.
+     * @throws IOException in case of I/O problems;
+     * @throws IllegalArgumentException in case the given parameter was <code>null</code>.
+     */
+    public void serializeRole(Role role, OutputStream os) throws IOException {
+        if (role == null) {
+            throw new IllegalArgumentException("Role cannot be null!");
+        }
+        if (os == null) {
+            throw new IllegalArgumentException("OutputStream cannot be null!");
+        }
+        DataOutputStream dos = new DataOutputStream(os);
+        writeEntry(role, dos);
+        dos.flush();
+    }
     
     /**
      * Adds all groups, based on the given stub groups.
@@ -250,18 +287,11 @@ final class RoleRepositorySerializer {
         
         // Keep reading until no more types can be read...
         while (entryCount-- > 0) {
-            int type = dis.readInt();
+            Role role = readEntry(dis);
             
-            Role role = null;
-            if (Role.GROUP == type) {
-                stubGroups.add(readGroup(dis));
-            } else if (Role.USER == type) {
-                role = readUser(dis);
+            if (role instanceof StubGroupImpl) {
+                stubGroups.add(role);
             } else {
-                role = readRole(dis);
-            }
-            
-            if (role != null) {
                 repository.put(role.getName(), role);
             }
         }
@@ -272,6 +302,25 @@ final class RoleRepositorySerializer {
         return repository;
     }
     
+    /**
+     * Reads a single entry, being the type of the role followed by the role itself, from the given input stream.
+     * 
+     * @param dis the input stream to read the data from, cannot be <code>null</code>.
+     * @return the read role, or a (stub) group, never <code>null</code>.
+     * @throws IOException in case of I/O problems.
+     */
+    private Role readEntry(DataInputStream dis) throws IOException {
+        int type = dis.readInt();
+        
+        if (Role.GROUP == type) {
+            return readGroup(dis);
+        } else if (Role.USER == type) {
+            return readUser(dis);
+        } else {
+            return readRole(dis);
+        }
+    }
+
     /**
      * Reads a role from the given input stream.
      * 
@@ -426,19 +475,28 @@ final class RoleRepositorySerializer {
         dos.writeInt(values.size());
         
         while (valuesIter.hasNext()) {
-            Role role = (Role) valuesIter.next();
-            
-            int type = role.getType();
-            
-            dos.writeInt(type);
-            
-            if (Role.GROUP == type) {
-                writeGroup((Group) role, dos);
-            } else if (Role.USER == type) {
-                writeUser((User) role, dos);
-            } else {
-                writeRole(role, dos);
-            }
+            writeEntry((Role) valuesIter.next(), dos);
+        }
+    }
+
+    /**
+     * Writes a single entry, being the type of the role followed by the role itself, to the given output stream.
+     * 
+     * @param role the role to write, cannot be <code>null</code>;
+     * @param dos the output stream to write the data to, cannot be <code>null</code>.
+     * @throws IOException in case of I/O problems.
+     */
+    private void writeEntry(Role role, DataOutputStream dos) throws IOException {
+        int type = role.getType();
+        
+        dos.writeInt(type);
+        
+        if (Role.GROUP == type) {
+            writeGroup((Group) role, dos);
+        } else if (Role.USER == type) {
+            writeUser((User) role, dos);
+        } else {
+            writeRole(role, dos);
         }
     }
     
@@ -17,11 +17,17 @@
 package org.apache.felix.useradmin.filestore;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
 import java.util.Properties;
 
 import junit.framework.TestCase;
 
 import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+import org.osgi.service.useradmin.UserAdminEvent;
 
 /**
  * Test cases for {@link RoleRepositoryFileStore}.
@@ -29,6 +35,7 @@ import org.osgi.service.cm.ConfigurationException;
 public class RoleRepositoryFileStoreTest extends TestCase {
 
     private RoleRepositoryFileStore m_store;
+    private File m_dir;
     
     /**
      * Tests that calling updated without the key "background.write.disabled" fails.
@@ -174,6 +181,208 @@ public class RoleRepositoryFileStoreTest extends TestCase {
         m_store.updated(properties);
     }
     
+    /**
+     * Tests that calling updated with the key "journal.snapshot.interval" set to a non-numeric value fails.
+     */
+    public void testUpdateConfigurationWithKeySnapshotIntervalInvalidValueFail() throws Exception {
+        Properties properties = new Properties();
+        properties.put(RoleRepositoryFileStore.KEY_WRITE_DISABLED, "false");
+        properties.put(RoleRepositoryFileStore.KEY_WRITE_DELAY_VALUE, "1");
+        properties.put(RoleRepositoryFileStore.KEY_SNAPSHOT_INTERVAL, "often");
+
+        try {
+            m_store.updated(properties);
+            fail("ConfigurationException expected!");
+        } catch (ConfigurationException e) {
+            // Ok; expected
+        }
+    }
+
+    /**
+     * Tests that calling updated with the key "journal.snapshot.interval" set to a negative value fails.
+     */
+    public void testUpdateConfigurationWithKeySnapshotIntervalNegativeValueFail() throws Exception {
+        Properties properties = new Properties();
+        properties.put(RoleRepositoryFileStore.KEY_WRITE_DISABLED, "true");
+        properties.put(RoleRepositoryFileStore.KEY_SNAPSHOT_INTERVAL, "-1");
+
+        try {
+            m_store.updated(properties);
+            fail("ConfigurationException expected!");
+        } catch (ConfigurationException e) {
+            // Ok; expected
+        }
+    }
+
+    /**
+     * Tests that calling updated with the key "journal.snapshot.interval" set to zero succeeds.
+     */
+    public void testUpdateConfigurationWithKeySnapshotIntervalZeroValueOk() throws Exception {
+        Properties properties = new Properties();
+        properties.put(RoleRepositoryFileStore.KEY_WRITE_DISABLED, "true");
+        properties.put(RoleRepositoryFileStore.KEY_SNAPSHOT_INTERVAL, "0");
+
+        m_store.updated(properties);
+    }
+
+    /**
+     * Tests that changes are appended to the journal and are restored upon restart.
+     */
+    public void testJournaledChangesAreRestoredOk() throws Exception {
+        RoleRepositoryFileStore store = createStore(m_dir, 1000);
+
+        User user = (User) store.addRole("john", Role.USER);
+        user.getProperties().put("key", "value");
+        user.getCredentials().put("password", "secret".getBytes());
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, user);
+
+        Group group = (Group) store.addRole("admins", Role.GROUP);
+        group.addMember(user);
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, group);
+        store.run();
+
+        // Only the journal is written...
+        assertFalse(new File(m_dir, "ua_repo.dat").exists());
+        long length = new File(m_dir, "ua_repo.journal").length();
+        assertTrue(length > 0);
+
+        user.getProperties().put("key", "other");
+        fireEvent(store, UserAdminEvent.ROLE_CHANGED, user);
+        store.run();
+
+        // The change only adds a single role to the journal...
+        assertTrue(new File(m_dir, "ua_repo.journal").length() < 2 * length);
+
+        RoleRepositoryFileStore restored = createStore(m_dir, 1000);
+
+        User restoredUser = (User) restored.getRoleByName("john");
+        assertNotNull(restoredUser);
+        assertEquals("other", restoredUser.getProperties().get("key"));
+        assertEquals("secret", new String((byte[]) restoredUser.getCredentials().get("password")));
+
+        Group restoredGroup = (Group) restored.getRoleByName("admins");
+        assertNotNull(restoredGroup);
+        assertEquals(1, restoredGroup.getMembers().length);
+        assertSame(restoredUser, restoredGroup.getMembers()[0]);
+    }
+
+    /**
+     * Tests that removed roles remain removed upon restart, also when recreated.
+     */
+    public void testJournaledRemovalsAreRestoredOk() throws Exception {
+        RoleRepositoryFileStore store = createStore(m_dir, 1000);
+
+        User user = (User) store.addRole("john", Role.USER);
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, user);
+        User other = (User) store.addRole("jane", Role.USER);
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, other);
+        Group group = (Group) store.addRole("admins", Role.GROUP);
+        group.addMember(user);
+        group.addRequiredMember(other);
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, group);
+        store.run();
+
+        // Removing a role does not signal its groups...
+        store.removeRole("john");
+        group.removeMember(user);
+        fireEvent(store, UserAdminEvent.ROLE_REMOVED, user);
+        store.addRole("john", Role.USER);
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, user);
+        store.removeRole("jane");
+        group.removeMember(other);
+        fireEvent(store, UserAdminEvent.ROLE_REMOVED, other);
+        store.run();
+
+        RoleRepositoryFileStore restored = createStore(m_dir, 1000);
+
+        assertNotNull(restored.getRoleByName("john"));
+        assertNull(restored.getRoleByName("jane"));
+
+        Group restoredGroup = (Group) restored.getRoleByName("admins");
+        assertNull(restoredGroup.getMembers());
+        assertNull(restoredGroup.getRequiredMembers());
+    }
+
+    /**
+     * Tests that a snapshot is written once the journal contains enough changes.
+     */
+    public void testSnapshotIsWrittenAfterIntervalOk() throws Exception {
+        RoleRepositoryFileStore store = createStore(m_dir, 3);
+
+        for (int i = 0; i < 2; i++) {
+            fireEvent(store, UserAdminEvent.ROLE_CREATED, store.addRole("user" + i, Role.USER));
+            store.run();
+        }
+        assertFalse(new File(m_dir, "ua_repo.dat").exists());
+
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, store.addRole("user2", Role.USER));
+        store.run();
+        assertTrue(new File(m_dir, "ua_repo.dat").exists());
+        assertEquals(0L, new File(m_dir, "ua_repo.journal").length());
+
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, store.addRole("user3", Role.USER));
+        store.run();
+        assertTrue(new File(m_dir, "ua_repo.journal").length() > 0);
+
+        RoleRepositoryFileStore restored = createStore(m_dir, 3);
+        assertEquals(4, restored.getRoles(null).length);
+    }
+
+    /**
+     * Tests that stopping the store writes a snapshot and discards the journal.
+     */
+    public void testStopWritesSnapshotOk() throws Exception {
+        RoleRepositoryFileStore store = createStore(m_dir, 1000);
+
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, store.addRole("john", Role.USER));
+        store.run();
+        assertTrue(new File(m_dir, "ua_repo.journal").length() > 0);
+
+        store.stop();
+        assertTrue(new File(m_dir, "ua_repo.dat").exists());
+        assertEquals(0L, new File(m_dir, "ua_repo.journal").length());
+
+        assertNotNull(createStore(m_dir, 1000).getRoleByName("john"));
+    }
+
+    /**
+     * Tests that a journal that was not reset after writing a snapshot (e.g., due to a crash) is not replayed on top of it.
+     */
+    public void testOutdatedJournalIsNotReplayedOk() throws Exception {
+        RoleRepositoryFileStore store = createStore(m_dir, 1000);
+
+        User user = (User) store.addRole("john", Role.USER);
+        user.getProperties().put("key", "value");
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, user);
+        User other = (User) store.addRole("jane", Role.USER);
+        other.getCredentials().put("password", "secret");
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, other);
+        Group group = (Group) store.addRole("admins", Role.GROUP);
+        group.addMember(other);
+        fireEvent(store, UserAdminEvent.ROLE_CREATED, group);
+        store.run();
+
+        File journal = new File(m_dir, "ua_repo.journal");
+        byte[] outdated = readFile(journal);
+
+        user.getProperties().put("key", "other");
+        fireEvent(store, UserAdminEvent.ROLE_CHANGED, user);
+        store.removeRole("jane");
+        group.removeMember(other);
+        fireEvent(store, UserAdminEvent.ROLE_REMOVED, other);
+        store.stop();
+
+        // Leave the journal as it was before the snapshot was written...
+        writeFile(journal, outdated);
+
+        RoleRepositoryFileStore restored = createStore(m_dir, 1000);
+
+        assertEquals("other", restored.getRoleByName("john").getProperties().get("key"));
+        assertNull(restored.getRoleByName("jane"));
+        assertNull(((Group) restored.getRoleByName("admins")).getMembers());
+        assertEquals(0L, journal.length());
+    }
+
     /**
      * Tests that calling updated with a <code>null</code>-dictionary causes the default settings to be applied.
      */
@@ -185,5 +394,55 @@ public class RoleRepositoryFileStoreTest extends TestCase {
         super.setUp();
 
         m_store = new RoleRepositoryFileStore(new File(System.getProperty("java.io.tmpdir")), false /* disable background writes */);
+
+        m_dir = File.createTempFile("uastore", null);
+        m_dir.delete();
+        m_dir.mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = m_dir.listFiles();
+        for (int i = 0; (files != null) && (i < files.length); i++) {
+            files[i].delete();
+        }
+        m_dir.delete();
+
+        super.tearDown();
+    }
+
+    private RoleRepositoryFileStore createStore(File dir, int snapshotInterval) throws Exception {
+        RoleRepositoryFileStore store = new RoleRepositoryFileStore(dir, false /* disable background writes */);
+
+        Properties properties = new Properties();
+        properties.put(RoleRepositoryFileStore.KEY_WRITE_DISABLED, "true");
+        properties.put(RoleRepositoryFileStore.KEY_SNAPSHOT_INTERVAL, Integer.toString(snapshotInterval));
+        store.updated(properties);
+
+        store.start();
+        return store;
+    }
+
+    private byte[] readFile(File file) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] contents = new byte[(int) raf.length()];
+            raf.readFully(contents);
+            return contents;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void writeFile(File file, byte[] contents) throws Exception {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(contents);
+        } finally {
+            fos.close();
+        }
+    }
+
+    private void fireEvent(RoleRepositoryFileStore store, int type, Role role) {
+        store.roleChanged(new UserAdminEvent(null, type, role));
     }
 }
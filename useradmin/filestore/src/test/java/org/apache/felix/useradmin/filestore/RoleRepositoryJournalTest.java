@@ -0,0 +1,181 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.filestore;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.useradmin.RoleFactory;
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+
+/**
+ * Test cases for {@link RoleRepositoryJournal}.
+ */
+public class RoleRepositoryJournalTest extends TestCase {
+
+    private File m_file;
+    private RoleRepositoryJournal m_journal;
+
+    /**
+     * Tests that replaying a non-existing journal leaves the repository as-is.
+     */
+    public void testReplayNonExistingJournalOk() throws Exception {
+        Map repository = new HashMap();
+        repository.put("john", RoleFactory.createUser("john"));
+
+        m_journal.replay(repository, 0L);
+
+        assertEquals(1, repository.size());
+        assertEquals(0, m_journal.size());
+    }
+
+    /**
+     * Tests that replaying updates existing roles in place, keeping the groups they belong to intact.
+     */
+    public void testReplayUpdatesRolesInPlaceOk() throws Exception {
+        User user = RoleFactory.createUser("john");
+        Group group = RoleFactory.createGroup("admins");
+        group.addMember(user);
+
+        Map repository = new HashMap();
+        repository.put(user.getName(), user);
+        repository.put(group.getName(), group);
+
+        User changed = RoleFactory.createUser("john");
+        changed.getProperties().put("key", "value");
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { changed }));
+        assertEquals(1, m_journal.size());
+
+        m_journal.replay(repository, 0L);
+
+        assertSame(user, repository.get("john"));
+        assertEquals("value", user.getProperties().get("key"));
+        assertSame(user, group.getMembers()[0]);
+    }
+
+    /**
+     * Tests that a partially written record at the end of the journal is dropped.
+     */
+    public void testReplayDropsPartialRecordOk() throws Exception {
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { RoleFactory.createUser("john") }));
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { RoleFactory.createUser("jane") }));
+
+        long length = m_file.length();
+        RandomAccessFile raf = new RandomAccessFile(m_file, "rw");
+        try {
+            raf.setLength(length - 3);
+        } finally {
+            raf.close();
+        }
+
+        Map repository = new HashMap();
+        m_journal.replay(repository, 0L);
+
+        assertEquals(1, m_journal.size());
+        assertNotNull(repository.get("john"));
+        assertNull(repository.get("jane"));
+        assertTrue(m_file.length() < length - 3);
+
+        // New records are appended after the last valid record...
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { RoleFactory.createUser("jack") }));
+
+        repository = new HashMap();
+        new RoleRepositoryJournal(m_file).replay(repository, 0L);
+        assertEquals(2, repository.size());
+    }
+
+    /**
+     * Tests that a removal record also removes the role from all groups.
+     */
+    public void testReplayRemovalRemovesGroupMembersOk() throws Exception {
+        User user = RoleFactory.createUser("john");
+        Group group = RoleFactory.createGroup("admins");
+        group.addMember(user);
+        group.addRequiredMember(RoleFactory.createRole(Role.USER_ANYONE));
+
+        List roles = Arrays.asList(new Role[] { user, group });
+        m_journal.append(Collections.EMPTY_LIST, roles);
+        m_journal.append(Arrays.asList(new String[] { "john" }), Collections.EMPTY_LIST);
+
+        Map repository = new HashMap();
+        m_journal.replay(repository, 0L);
+
+        assertEquals(1, repository.size());
+        Group restored = (Group) repository.get("admins");
+        assertNull(restored.getMembers());
+        assertEquals(Role.USER_ANYONE, restored.getRequiredMembers()[0].getName());
+    }
+
+    /**
+     * Tests that a journal written on top of another snapshot is discarded rather than replayed.
+     */
+    public void testReplayDiscardsJournalOfOtherGenerationOk() throws Exception {
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { RoleFactory.createUser("john") }));
+
+        Map repository = new HashMap();
+        m_journal = new RoleRepositoryJournal(m_file);
+        m_journal.replay(repository, 1L);
+
+        assertTrue(repository.isEmpty());
+        assertEquals(0, m_journal.size());
+        assertEquals(0L, m_file.length());
+
+        // New records are written for the generation of the snapshot...
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { RoleFactory.createUser("jane") }));
+
+        repository = new HashMap();
+        new RoleRepositoryJournal(m_file).replay(repository, 1L);
+        assertEquals(1, repository.size());
+        assertNotNull(repository.get("jane"));
+    }
+
+    /**
+     * Tests that resetting the journal discards all its records.
+     */
+    public void testResetOk() throws Exception {
+        m_journal.append(Collections.EMPTY_LIST, Arrays.asList(new Role[] { RoleFactory.createUser("john") }));
+        assertTrue(m_file.length() > 0);
+
+        m_journal.reset(0L);
+
+        assertEquals(0, m_journal.size());
+        assertEquals(0L, m_file.length());
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        m_file = File.createTempFile("uajournal", null);
+        m_file.delete();
+        m_journal = new RoleRepositoryJournal(m_file);
+    }
+
+    protected void tearDown() throws Exception {
+        m_file.delete();
+
+        super.tearDown();
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.felix.useradmin.impl.role.ObservableGroup;
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+
+/**
+ * Provides a cache of the effective roles of users, that is, the names of all
+ * roles implied by a user.
+ * <p>
+ * The effective roles of a user are computed on first use, only evaluating the
+ * groups that (transitively) contain the user or {@link Role#USER_ANYONE}, as
+ * no other group can be implied by the user. These groups are found using an
+ * index of group memberships which, like the cached roles, is kept up to date
+ * with the role change events of the {@link RoleRepository}: a change of the
+ * members of a group only invalidates the users that are (transitively) a
+ * member of that group or of any group containing it.
+ * </p>
+ * <p>
+ * This cache relies on all changes to be made through the
+ * {@link RoleRepository}; stores that can be changed by other means should call
+ * {@link #invalidate()} after such changes.
+ * </p>
+ */
+public final class AuthorizationCache implements RoleChangeListener {
+
+    private final RoleRepository m_roleRepository;
+    private final RoleChecker m_roleChecker;
+    /** The effective roles per user name, values are unmodifiable sets of role names. */
+    private final Map m_effectiveRoles;
+    /** The names of the members (basic and required) per group name, guarded by this. */
+    private final Map m_members;
+    /** The names of the groups containing a role per role name, guarded by this. */
+    private final Map m_memberOf;
+    /** Whether the membership index has been built, guarded by this. */
+    private boolean m_indexed;
+    /** Incremented on each invalidation, to not cache roles computed before it, guarded by this. */
+    private long m_generation;
+    /** The effective roles of the anonymous user, if computed. */
+    private volatile Set m_anonymousRoles;
+
+    /**
+     * Creates a new {@link AuthorizationCache} instance.
+     * <p>
+     * The cache must be registered as {@link RoleChangeListener} of the given
+     * repository to be kept up to date.
+     * </p>
+     *
+     * @param roleRepository the repository to obtain the roles from, cannot be <code>null</code>.
+     */
+    public AuthorizationCache(RoleRepository roleRepository) {
+        if (roleRepository == null) {
+            throw new IllegalArgumentException("RoleRepository cannot be null!");
+        }
+        m_roleRepository = roleRepository;
+        m_roleChecker = new RoleChecker();
+        m_effectiveRoles = new ConcurrentHashMap();
+        m_members = new HashMap();
+        m_memberOf = new HashMap();
+    }
+
+    /**
+     * Returns whether the given user has the role with the given name.
+     *
+     * @param user the user to check, may be <code>null</code> for the anonymous user;
+     * @param name the name of the role to check for.
+     * @return <code>true</code> if the role is implied by the given user, <code>false</code> otherwise.
+     * @see org.osgi.service.useradmin.Authorization#hasRole(String)
+     */
+    public boolean hasRole(User user, String name) {
+        if (Role.USER_ANYONE.equals(name)) {
+            // Always implied...
+            return true;
+        }
+        return getEffectiveRoles(user).contains(name);
+    }
+
+    /**
+     * Returns the names of the roles implied by the given user.
+     *
+     * @param user the user to return the roles for, may be <code>null</code> for the anonymous user.
+     * @return the names of all roles implied by the given user, except {@link Role#USER_ANYONE}, or <code>null</code> if there are none.
+     * @see org.osgi.service.useradmin.Authorization#getRoles()
+     */
+    public String[] getRoles(User user) {
+        Set roles = getEffectiveRoles(user);
+        return roles.isEmpty() ? null : (String[]) roles.toArray(new String[roles.size()]);
+    }
+
+    /**
+     * Invalidates all cached roles and the membership index.
+     */
+    public synchronized void invalidate() {
+        m_generation++;
+        m_effectiveRoles.clear();
+        m_anonymousRoles = null;
+        m_members.clear();
+        m_memberOf.clear();
+        m_indexed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyAdded(Role role, Object key, Object value) {
+        if (isMembership(role, key)) {
+            membersChanged((Group) role);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyChanged(Role role, Object key, Object oldValue, Object newValue) {
+        // Memberships are only added or removed...
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyRemoved(Role role, Object key) {
+        if (isMembership(role, key)) {
+            membersChanged((Group) role);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void roleAdded(Role role) {
+        Set affected = new HashSet();
+        // A user (or group) with this name is now implied by a user of that name...
+        affected.add(role.getName());
+        if (m_indexed && (role instanceof Group)) {
+            collectAffectedRoles(role.getName(), affected);
+            indexMembers((Group) role);
+            collectAffectedRoles(role.getName(), affected);
+        }
+        invalidate(affected);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void roleRemoved(Role role) {
+        String name = role.getName();
+
+        Set affected = new HashSet();
+        affected.add(name);
+        if (m_indexed) {
+            // The role is removed from all groups containing it, which changes
+            // the groups implied by other users when it was a required member...
+            Set groups = new HashSet(getSet(m_memberOf, name));
+            groups.add(name);
+            for (Iterator iter = groups.iterator(); iter.hasNext();) {
+                collectAffectedRoles((String) iter.next(), affected);
+            }
+
+            unindexMembers(name);
+            for (Iterator iter = getSet(m_memberOf, name).iterator(); iter.hasNext();) {
+                getSet(m_members, (String) iter.next()).remove(name);
+            }
+            m_memberOf.remove(name);
+        }
+        invalidate(affected);
+    }
+
+    /**
+     * Returns the effective roles of the given user, computing them if necessary.
+     *
+     * @param user the user, may be <code>null</code> for the anonymous user.
+     * @return an unmodifiable set with the names of the implied roles, never <code>null</code>.
+     */
+    private Set getEffectiveRoles(User user) {
+        String name = (user != null) ? user.getName() : null;
+
+        Set result = (name != null) ? (Set) m_effectiveRoles.get(name) : m_anonymousRoles;
+        if (result != null) {
+            return result;
+        }
+
+        long generation;
+        Set candidates = new HashSet();
+        synchronized (this) {
+            generation = m_generation;
+            ensureIndexed();
+            if (name != null) {
+                collectGroupsContaining(name, candidates);
+            }
+            collectGroupsContaining(Role.USER_ANYONE, candidates);
+        }
+
+        result = Collections.unmodifiableSet(computeEffectiveRoles(user, candidates));
+
+        synchronized (this) {
+            // Only cache the roles if nothing changed in the meantime...
+            if (generation == m_generation) {
+                if (name != null) {
+                    m_effectiveRoles.put(name, result);
+                } else {
+                    m_anonymousRoles = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the effective roles of the given user.
+     *
+     * @param user the user, may be <code>null</code> for the anonymous user;
+     * @param candidates the names of the groups that can be implied by the user.
+     * @return the names of the roles implied by the user, never <code>null</code>.
+     */
+    private Set computeEffectiveRoles(User user, Set candidates) {
+        Set result = new HashSet();
+        if (user != null) {
+            // A user always implies itself, provided it is a known role...
+            candidates.add(user.getName());
+        }
+        candidates.remove(Role.USER_ANYONE);
+
+        for (Iterator iter = candidates.iterator(); iter.hasNext();) {
+            Role role = m_roleRepository.getRoleByName((String) iter.next());
+            if ((role != null) && m_roleChecker.isImpliedBy(role, user)) {
+                result.add(role.getName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the cached roles of the given users.
+     *
+     * @param names the names of the users to invalidate, cannot be <code>null</code>.
+     */
+    private void invalidate(Set names) {
+        m_generation++;
+        if (names.contains(Role.USER_ANYONE)) {
+            // Anyone is affected...
+            m_effectiveRoles.clear();
+            m_anonymousRoles = null;
+        } else {
+            m_effectiveRoles.keySet().removeAll(names);
+        }
+    }
+
+    /**
+     * Updates the index and the cached roles for a change of the members of the given group.
+     *
+     * @param group the group whose members changed, cannot be <code>null</code>.
+     */
+    private synchronized void membersChanged(Group group) {
+        if (!m_indexed) {
+            // Nothing is cached yet...
+            return;
+        }
+
+        // The affected roles are determined with the memberships before and
+        // after the change, as either can make groups implied by a user...
+        Set affected = new HashSet();
+        collectAffectedRoles(group.getName(), affected);
+        unindexMembers(group.getName());
+        indexMembers(group);
+        collectAffectedRoles(group.getName(), affected);
+
+        invalidate(affected);
+    }
+
+    /**
+     * Collects the names of all roles whose effective roles depend on the members of the given group.
+     * These are the members of the group and of any group containing it, whose evaluation includes the
+     * members of the given group.
+     *
+     * @param groupName the name of the group;
+     * @param affected the set to add the names of the affected roles to.
+     */
+    private void collectAffectedRoles(String groupName, Set affected) {
+        Set groups = new HashSet();
+        groups.add(groupName);
+        collectGroupsContaining(groupName, groups);
+
+        LinkedList queue = new LinkedList(groups);
+        affected.addAll(groups);
+        while (!queue.isEmpty()) {
+            Iterator iter = getSet(m_members, (String) queue.removeFirst()).iterator();
+            while (iter.hasNext()) {
+                String member = (String) iter.next();
+                if (affected.add(member)) {
+                    queue.add(member);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the names of all groups (transitively) containing the given role.
+     *
+     * @param name the name of the role;
+     * @param groups the set to add the names of the groups to.
+     */
+    private void collectGroupsContaining(String name, Set groups) {
+        LinkedList queue = new LinkedList();
+        queue.add(name);
+        while (!queue.isEmpty()) {
+            Iterator iter = getSet(m_memberOf, (String) queue.removeFirst()).iterator();
+            while (iter.hasNext()) {
+                String group = (String) iter.next();
+                if (groups.add(group)) {
+                    queue.add(group);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the membership index from all groups of the repository, if not done yet.
+     */
+    private void ensureIndexed() {
+        if (m_indexed) {
+            return;
+        }
+
+        Iterator iter = m_roleRepository.getRoles(null /* filter */).iterator();
+        while (iter.hasNext()) {
+            Role role = (Role) iter.next();
+            if (role instanceof Group) {
+                indexMembers((Group) role);
+            }
+        }
+        m_indexed = true;
+    }
+
+    /**
+     * Adds the current members of the given group to the index.
+     *
+     * @param group the group to index, cannot be <code>null</code>.
+     */
+    private void indexMembers(Group group) {
+        String name = group.getName();
+        Role[] members = group.getMembers();
+        for (int i = 0; (members != null) && (i < members.length); i++) {
+            addMember(name, members[i].getName());
+        }
+        Role[] requiredMembers = group.getRequiredMembers();
+        for (int i = 0; (requiredMembers != null) && (i < requiredMembers.length); i++) {
+            addMember(name, requiredMembers[i].getName());
+        }
+    }
+
+    /**
+     * Removes all members of the given group from the index.
+     *
+     * @param groupName the name of the group.
+     */
+    private void unindexMembers(String groupName) {
+        Set members = (Set) m_members.remove(groupName);
+        if (members != null) {
+            for (Iterator iter = members.iterator(); iter.hasNext();) {
+                getSet(m_memberOf, (String) iter.next()).remove(groupName);
+            }
+        }
+    }
+
+    private void addMember(String groupName, String memberName) {
+        Set members = (Set) m_members.get(groupName);
+        if (members == null) {
+            members = new HashSet();
+            m_members.put(groupName, members);
+        }
+        members.add(memberName);
+
+        Set groups = (Set) m_memberOf.get(memberName);
+        if (groups == null) {
+            groups = new HashSet();
+            m_memberOf.put(memberName, groups);
+        }
+        groups.add(groupName);
+    }
+
+    private static Set getSet(Map map, String key) {
+        Set result = (Set) map.get(key);
+        return (result != null) ? result : Collections.EMPTY_SET;
+    }
+
+    /**
+     * Returns whether the given property key of the given role denotes a membership of a group.
+     */
+    private static boolean isMembership(Role role, Object key) {
+        return (role instanceof Group) && (ObservableGroup.BASIC_MEMBER.equals(key) || ObservableGroup.REQUIRED_MEMBER.equals(key));
+    }
+}
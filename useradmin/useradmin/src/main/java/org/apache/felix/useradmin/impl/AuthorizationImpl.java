@@ -34,6 +34,7 @@ public class AuthorizationImpl implements Authorization {
     private final User m_user;
     private final RoleRepository m_roleManager;
     private final RoleChecker m_roleChecker;
+    private final AuthorizationCache m_authorizationCache;
 
     /**
      * Creates a new {@link AuthorizationImpl} instance for the given {@link User}.
@@ -51,10 +52,22 @@ public class AuthorizationImpl implements Authorization {
      * @param roleManager the role manager to use for obtaining the roles, cannot be <code>null</code>.
      */
     public AuthorizationImpl(User user, RoleRepository roleManager) {
+        this(user, roleManager, null);
+    }
+
+    /**
+     * Creates a new {@link AuthorizationImpl} instance for the given {@link User}.
+     * 
+     * @param user the {@link User} to authorize, may be <code>null</code> for the anonymous user;
+     * @param roleManager the role manager to use for obtaining the roles, cannot be <code>null</code>;
+     * @param authorizationCache the cache of effective roles to use, may be <code>null</code> to check the roles on each call.
+     */
+    public AuthorizationImpl(User user, RoleRepository roleManager, AuthorizationCache authorizationCache) {
         m_user = user;
         m_roleManager = roleManager;
         m_name = (user != null) ? user.getName() : null;
         m_roleChecker = new RoleChecker();
+        m_authorizationCache = authorizationCache;
     }
 
     /**
@@ -68,6 +81,10 @@ public class AuthorizationImpl implements Authorization {
      * {@inheritDoc}
      */
     public boolean hasRole(String name) {
+        if (m_authorizationCache != null) {
+            return m_authorizationCache.hasRole(m_user, name);
+        }
+
         Role role = m_roleManager.getRoleByName(name);
         if (role == null) {
             // No role found, so it is never implied...
@@ -80,6 +97,10 @@ public class AuthorizationImpl implements Authorization {
      * {@inheritDoc}
      */
     public String[] getRoles() {
+        if (m_authorizationCache != null) {
+            return m_authorizationCache.getRoles(m_user);
+        }
+
         List result = new ArrayList();
 
         Iterator rolesIter = m_roleManager.getRoles(null /* filter */).iterator();
@@ -16,8 +16,8 @@
  */
 package org.apache.felix.useradmin.impl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.osgi.service.useradmin.Group;
 import org.osgi.service.useradmin.Role;
@@ -36,7 +36,7 @@ final class RoleChecker {
      */
     public boolean isImpliedBy(Role role, Role impliedRole) {
         if (role instanceof Group) {
-            return isGroupImpliedBy((Group) role, impliedRole, new ArrayList());
+            return isGroupImpliedBy((Group) role, impliedRole, new HashSet());
         } else /* if ((role instanceof User) || (role instanceof Role)) */ {
             return isRoleImpliedBy(role, impliedRole);
         }
@@ -47,10 +47,10 @@ final class RoleChecker {
      * 
      * @param group the group to check, cannot be <code>null</code>;
      * @param impliedRole the implied role to check for, cannot be <code>null</code>;
-     * @param seenGroups a list of all seen groups, used for detecting cycles in groups, cannot be <code>null</code>.
+     * @param seenGroups a set of all seen groups, used for detecting cycles in groups, cannot be <code>null</code>.
      * @return <code>true</code> if the given group has the implied role, <code>false</code> otherwise.
      */
-    private boolean isGroupImpliedBy(Group group, Role impliedRole, List seenGroups) {
+    private boolean isGroupImpliedBy(Group group, Role impliedRole, Set seenGroups) {
         Role[] basicRoles = group.getMembers();
         Role[] requiredRoles = group.getRequiredMembers();
 
@@ -0,0 +1,313 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.impl;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.useradmin.RoleRepositoryStore;
+import org.osgi.service.useradmin.Role;
+
+/**
+ * Provides an index of the names of roles by the values of a configured set of
+ * their properties, allowing roles to be looked up by such a property (like a
+ * login name or email address) without evaluating every role of the store.
+ * <p>
+ * The index is built from the store on first use, and is kept up to date with
+ * the role change events of the {@link RoleRepository}. As these events do not
+ * tell the properties and credentials of a role apart, nor the previous value
+ * of a removed property, a change of an indexed key simply causes the role to
+ * be indexed again from its current properties.
+ * </p>
+ * <p>
+ * Like filters, the index matches keys case-insensitively. Only
+ * {@link String} values are indexed by their value; roles with other values
+ * for an indexed key are always returned as candidate. Hence, callers should
+ * match the returned roles against the original criteria.
+ * </p>
+ * <p>
+ * This index relies on all changes to be made through the
+ * {@link RoleRepository}; stores that can be changed by other means should
+ * call {@link #invalidate()} after such changes.
+ * </p>
+ */
+public final class RolePropertyIndex implements RoleChangeListener {
+
+    private final RoleRepositoryStore m_store;
+    /** The (lower case) keys to index. */
+    private final Set m_keys;
+    /** The role names per value per indexed key, guarded by this. */
+    private final Map m_values;
+    /** The names of the roles with non-String values per indexed key, guarded by this. */
+    private final Map m_otherValues;
+    /** The indexed values per indexed key per role name, guarded by this. */
+    private final Map m_entries;
+    /** Whether the index has been built, guarded by this. */
+    private boolean m_indexed;
+
+    /**
+     * Creates a new {@link RolePropertyIndex} instance.
+     * <p>
+     * The index must be registered as {@link RoleChangeListener} of a
+     * repository using the given store to be kept up to date.
+     * </p>
+     *
+     * @param store the store to build the index from, cannot be <code>null</code>;
+     * @param keys the keys of the properties to index, cannot be <code>null</code>.
+     */
+    public RolePropertyIndex(RoleRepositoryStore store, String[] keys) {
+        if (store == null) {
+            throw new IllegalArgumentException("RoleRepositoryStore cannot be null!");
+        }
+        if (keys == null) {
+            throw new IllegalArgumentException("Keys cannot be null!");
+        }
+        m_store = store;
+
+        Set indexedKeys = new HashSet();
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i].trim();
+            if (!"".equals(key)) {
+                indexedKeys.add(normalize(key));
+            }
+        }
+        m_keys = Collections.unmodifiableSet(indexedKeys);
+
+        m_values = new HashMap();
+        m_otherValues = new HashMap();
+        m_entries = new HashMap();
+    }
+
+    /**
+     * Returns the names of the roles that can have the given value for the given key.
+     *
+     * @param key the key of the property, should be indexed;
+     * @param value the value of the property.
+     * @return the names of the candidate roles, never <code>null</code>. This
+     *         set can contain roles that do not match the given criteria.
+     * @throws IllegalArgumentException in case the given key is not indexed;
+     * @throws Exception in case of problems building the index from the store.
+     * @see #isIndexed(String)
+     */
+    public synchronized Set getRoleNames(String key, String value) throws Exception {
+        String normalizedKey = normalize(key);
+        if (!m_keys.contains(normalizedKey)) {
+            throw new IllegalArgumentException("Key is not indexed: " + key);
+        }
+
+        ensureIndexed();
+
+        Set result = new HashSet(getSet((Map) m_values.get(normalizedKey), value));
+        result.addAll(getSet(m_otherValues, normalizedKey));
+        return result;
+    }
+
+    /**
+     * Invalidates this index, causing it to be rebuilt from the store upon next use.
+     */
+    public synchronized void invalidate() {
+        m_values.clear();
+        m_otherValues.clear();
+        m_entries.clear();
+        m_indexed = false;
+    }
+
+    /**
+     * Returns whether the property with the given key is indexed.
+     *
+     * @param key the key of the property, may be <code>null</code>.
+     * @return <code>true</code> if the property is indexed, <code>false</code> otherwise.
+     */
+    public boolean isIndexed(String key) {
+        return (key != null) && m_keys.contains(normalize(key));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyAdded(Role role, Object key, Object value) {
+        propertyChanged(role, key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyChanged(Role role, Object key, Object oldValue, Object newValue) {
+        propertyChanged(role, key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void propertyRemoved(Role role, Object key) {
+        propertyChanged(role, key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void roleAdded(Role role) {
+        if (m_indexed) {
+            index(role);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void roleRemoved(Role role) {
+        if (m_indexed) {
+            unindex(role.getName());
+        }
+    }
+
+    /**
+     * Builds the index from all roles of the store, if not done yet.
+     *
+     * @throws Exception in case of problems obtaining the roles from the store.
+     */
+    private void ensureIndexed() throws Exception {
+        if (m_indexed) {
+            return;
+        }
+
+        Role[] roles = m_store.getRoles(null /* filter */);
+        for (int i = 0; i < roles.length; i++) {
+            index(roles[i]);
+        }
+        m_indexed = true;
+    }
+
+    /**
+     * (Re)indexes the given role from its current properties.
+     *
+     * @param role the role to index, cannot be <code>null</code>.
+     */
+    private void index(Role role) {
+        String name = role.getName();
+        unindex(name);
+
+        Map entry = new HashMap();
+        Dictionary properties = role.getProperties();
+        Enumeration keys = properties.keys();
+        while (keys.hasMoreElements()) {
+            Object key = keys.nextElement();
+            if (!(key instanceof String) || !m_keys.contains(normalize((String) key))) {
+                continue;
+            }
+            Object value = properties.get(key);
+            if (value == null) {
+                continue;
+            }
+            String normalizedKey = normalize((String) key);
+
+            if (value instanceof String) {
+                Map values = (Map) m_values.get(normalizedKey);
+                if (values == null) {
+                    values = new HashMap();
+                    m_values.put(normalizedKey, values);
+                }
+                addToSet(values, value, name);
+            } else {
+                addToSet(m_otherValues, normalizedKey, name);
+            }
+            addToSet(entry, normalizedKey, value);
+        }
+
+        if (!entry.isEmpty()) {
+            m_entries.put(name, entry);
+        }
+    }
+
+    /**
+     * Removes the role with the given name from the index.
+     *
+     * @param name the name of the role to remove.
+     */
+    private void unindex(String name) {
+        Map entry = (Map) m_entries.remove(name);
+        if (entry == null) {
+            return;
+        }
+
+        Iterator entriesIter = entry.entrySet().iterator();
+        while (entriesIter.hasNext()) {
+            Map.Entry mapEntry = (Map.Entry) entriesIter.next();
+            Object key = mapEntry.getKey();
+
+            Iterator valuesIter = ((Set) mapEntry.getValue()).iterator();
+            while (valuesIter.hasNext()) {
+                Object value = valuesIter.next();
+                if (value instanceof String) {
+                    Map values = (Map) m_values.get(key);
+                    if (values != null) {
+                        removeFromSet(values, value, name);
+                    }
+                } else {
+                    removeFromSet(m_otherValues, key, name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reindexes the given role in case the given key is indexed.
+     *
+     * @param role the changed role;
+     * @param key the key of the changed property (or credential).
+     */
+    private synchronized void propertyChanged(Role role, Object key) {
+        if (m_indexed && (key instanceof String) && m_keys.contains(normalize((String) key))) {
+            index(role);
+        }
+    }
+
+    private static void addToSet(Map map, Object key, Object value) {
+        Set set = (Set) map.get(key);
+        if (set == null) {
+            set = new HashSet();
+            map.put(key, set);
+        }
+        set.add(value);
+    }
+
+    private static void removeFromSet(Map map, Object key, Object value) {
+        Set set = (Set) map.get(key);
+        if (set != null) {
+            set.remove(value);
+            if (set.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static Set getSet(Map map, Object key) {
+        Set result = (map != null) ? (Set) map.get(key) : null;
+        return (result != null) ? result : Collections.EMPTY_SET;
+    }
+
+    private static String normalize(String key) {
+        return key.toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -20,11 +20,15 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.felix.useradmin.BackendException;
 import org.apache.felix.useradmin.RoleFactory;
 import org.apache.felix.useradmin.RoleRepositoryStore;
 import org.apache.felix.useradmin.impl.role.ObservableRole;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.useradmin.Group;
 import org.osgi.service.useradmin.Role;
 import org.osgi.service.useradmin.UserAdminPermission;
@@ -91,8 +95,11 @@ public final class RoleRepository {
 
     /** The single predefined role. */
     private static final Role USER_ANYONE = RoleFactory.createRole(Role.USER_ANYONE);
+    /** Matches a filter with a single equality criterion, without wildcards or escaped characters. */
+    private static final Pattern EQUALITY_FILTER = Pattern.compile("\\(([^=<>~()*\\\\\\s]+)=([^()*\\\\]+)\\)");
 
     private final RoleRepositoryStore m_store;
+    private final RolePropertyIndex m_propertyIndex;
     private final CopyOnWriteArrayList m_listeners;
     private final RoleChangeReflector m_roleChangeReflector;
     
@@ -102,10 +109,25 @@ public final class RoleRepository {
      * @param store the {@link RoleRepositoryStore} to use, cannot be <code>null</code>.
      */
     public RoleRepository(RoleRepositoryStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Creates a new {@link RoleRepository} instance.
+     * 
+     * @param store the {@link RoleRepositoryStore} to use, cannot be <code>null</code>;
+     * @param propertyIndex the index to look up roles by their properties, can be <code>null</code>.
+     */
+    public RoleRepository(RoleRepositoryStore store, RolePropertyIndex propertyIndex) {
         m_store = store;
+        m_propertyIndex = propertyIndex;
         
         m_listeners = new CopyOnWriteArrayList();
         m_roleChangeReflector = new RoleChangeReflector();
+
+        if (propertyIndex != null) {
+            addRoleChangeListener(propertyIndex);
+        }
     }
 
     /**
@@ -180,10 +202,19 @@ public final class RoleRepository {
      * @return a list with all matching roles, can be empty, but never <code>null</code>.
      */
     public List getRoles(String filter) {
+        String sanitizedFilter = sanitizeFilter(filter);
+
+        if ((sanitizedFilter != null) && (m_propertyIndex != null)) {
+            Matcher matcher = EQUALITY_FILTER.matcher(sanitizedFilter);
+            if (matcher.matches() && m_propertyIndex.isIndexed(matcher.group(1))) {
+                return getIndexedRoles(matcher.group(1), matcher.group(2), sanitizedFilter);
+            }
+        }
+
         List matchingRoles = new ArrayList();
 
         try {
-            Role[] roles = m_store.getRoles(sanitizeFilter(filter));
+            Role[] roles = m_store.getRoles(sanitizedFilter);
             for (int i = 0; i < roles.length; i++) {
                 Role role = roles[i];
                 if (!isPredefinedRole(role.getName())) {
@@ -213,11 +244,15 @@ public final class RoleRepository {
             throw new IllegalArgumentException("Value cannot be null!");
         }
 
+        String criteria = "(".concat(key).concat("=").concat(value).concat(")");
+
+        if ((m_propertyIndex != null) && m_propertyIndex.isIndexed(key) && isLiteral(value)) {
+            return getIndexedRoles(key, value, criteria);
+        }
+
         List matchingRoles = new ArrayList();
 
         try {
-            String criteria = "(".concat(key).concat("=").concat(value).concat(")");
-
             Role[] roles = m_store.getRoles(criteria);
             for (int i = 0; i < roles.length; i++) {
                 Role role = roles[i];
@@ -305,6 +340,50 @@ public final class RoleRepository {
         }
     }
 
+    /**
+     * Returns all roles matching a given key-value pair using the property index.
+     * 
+     * @param key the (indexed) key to search for;
+     * @param value the value to search for;
+     * @param criteria the filter denoting the key-value pair, used to verify the candidate roles from the index.
+     * @return a list with all matching roles, can be empty, but never <code>null</code>.
+     */
+    private List getIndexedRoles(String key, String value, String criteria) {
+        List matchingRoles = new ArrayList();
+
+        try {
+            Filter filter = FrameworkUtil.createFilter(criteria);
+
+            Iterator namesIter = m_propertyIndex.getRoleNames(key, value).iterator();
+            while (namesIter.hasNext()) {
+                String name = (String) namesIter.next();
+                if (isPredefinedRole(name)) {
+                    continue;
+                }
+                Role role = m_store.getRoleByName(name);
+                if ((role != null) && filter.match(role.getProperties())) {
+                    matchingRoles.add(wireChangeListener(role));
+                }
+            }
+        }
+        catch (Exception e) {
+            throw new BackendException("Failed to get roles!", e);
+        }
+
+        return matchingRoles;
+    }
+
+    /**
+     * Returns whether the given value is matched literally in a filter, that
+     * is, it does not contain any wildcards or characters that need escaping.
+     * 
+     * @param value the value to check, cannot be <code>null</code>.
+     * @return <code>true</code> if the given value is matched literally, <code>false</code> otherwise.
+     */
+    private boolean isLiteral(String value) {
+        return !"".equals(value) && (value.indexOf('*') < 0) && (value.indexOf('(') < 0) && (value.indexOf(')') < 0) && (value.indexOf('\\') < 0);
+    }
+
     /**
      * Returns whether or not the given role is a predefined role.
      * <p>
@@ -38,6 +38,7 @@ public class UserAdminImpl implements ServiceFactory, UserAdmin, RoleChangeListe
     
     private final RoleRepository m_roleRepository;
     private final EventDispatcher m_eventDispatcher;
+    private final AuthorizationCache m_authorizationCache;
 
     private volatile ServiceReference m_serviceRef;
     
@@ -50,6 +51,19 @@ public class UserAdminImpl implements ServiceFactory, UserAdmin, RoleChangeListe
      * @throws IllegalArgumentException in case one of the given parameters was <code>null</code>.
      */
     public UserAdminImpl(RoleRepository roleRepository, EventDispatcher eventDispatcher) {
+        this(roleRepository, eventDispatcher, null);
+    }
+
+    /**
+     * Creates a new {@link UserAdminImpl} implementation.
+     * 
+     * @param roleRepository the repository with roles to use for this service;
+     * @param eventDispatcher the event dispatcher to use for this service;
+     * @param authorizationCache the cache of effective roles to use for authorizations, may be <code>null</code>.
+     * 
+     * @throws IllegalArgumentException in case one of the given parameters was <code>null</code>.
+     */
+    public UserAdminImpl(RoleRepository roleRepository, EventDispatcher eventDispatcher, AuthorizationCache authorizationCache) {
         if (roleRepository == null) {
             throw new IllegalArgumentException("RoleRepository cannot be null!");
         }
@@ -59,8 +73,12 @@ public class UserAdminImpl implements ServiceFactory, UserAdmin, RoleChangeListe
 
         m_roleRepository = roleRepository;
         m_eventDispatcher = eventDispatcher;
+        m_authorizationCache = authorizationCache;
 
         m_roleRepository.addRoleChangeListener(this);
+        if (m_authorizationCache != null) {
+            m_roleRepository.addRoleChangeListener(m_authorizationCache);
+        }
     }
 
     /**
@@ -74,7 +92,7 @@ public class UserAdminImpl implements ServiceFactory, UserAdmin, RoleChangeListe
      * {@inheritDoc}
      */
     public Authorization getAuthorization(User user) {
-        return new AuthorizationImpl(user, m_roleRepository);
+        return new AuthorizationImpl(user, m_roleRepository, m_authorizationCache);
     }
 
     /**
@@ -31,8 +31,10 @@ public class ObservableGroup extends ObservableUser implements Group {
     
     private static final long serialVersionUID = 4012536225870565500L;
     
-    private static final String BASIC_MEMBER = "basicMember";
-    private static final String REQUIRED_MEMBER = "requiredMember";
+    /** The property key used in change events for basic members. */
+    public static final String BASIC_MEMBER = "basicMember";
+    /** The property key used in change events for required members. */
+    public static final String REQUIRED_MEMBER = "requiredMember";
     
     /**
      * Creates a new {@link ObservableGroup} instance.
@@ -16,7 +16,9 @@
  */
 package org.apache.felix.useradmin.osgi;
 
+import org.apache.felix.useradmin.impl.AuthorizationCache;
 import org.apache.felix.useradmin.impl.EventDispatcher;
+import org.apache.felix.useradmin.impl.RolePropertyIndex;
 import org.apache.felix.useradmin.impl.RoleRepository;
 import org.apache.felix.useradmin.impl.UserAdminImpl;
 import org.osgi.framework.BundleActivator;
@@ -28,6 +30,19 @@ import org.osgi.service.useradmin.UserAdmin;
  */
 public class Activator implements BundleActivator {
 
+    /**
+     * Framework property to enable the cache of the effective roles of users. The cache is
+     * only kept up to date with changes made through this UserAdmin, hence it should not be
+     * enabled for stores that are shared with other instances.
+     */
+    static final String KEY_AUTHORIZATION_CACHE = "org.apache.felix.useradmin.authorizationCache";
+    /**
+     * Framework property with a comma-separated list of the property keys to index, allowing roles 
+     * to be looked up quickly by these properties. Like the cache of the effective roles, this index
+     * should not be enabled for stores that are shared with other instances.
+     */
+    static final String KEY_INDEXED_PROPERTIES = "org.apache.felix.useradmin.indexedProperties";
+
     private volatile ServiceContext m_context;
 
     /**
@@ -37,7 +52,7 @@ public class Activator implements BundleActivator {
         m_context = createServiceContext(context);
         
         // The actual service itself...
-        UserAdminImpl service = new UserAdminImpl(m_context.m_roleRepository, m_context.m_eventDispatcher);
+        UserAdminImpl service = new UserAdminImpl(m_context.m_roleRepository, m_context.m_eventDispatcher, m_context.m_authorizationCache);
         
         // Register the actual service...
         context.registerService(UserAdmin.class.getName(), service, null);
@@ -69,8 +84,23 @@ public class Activator implements BundleActivator {
         EventDispatcher eventDispatcher = new EventDispatcher(eventAdmin, listenerList);
         RoleRepositoryStoreHelper store = new RoleRepositoryStoreHelper(context);
 
-        RoleRepository roleRepository = new RoleRepository(store);
+        RolePropertyIndex propertyIndex = null;
+        String indexedProperties = context.getProperty(KEY_INDEXED_PROPERTIES);
+        if (indexedProperties != null && !"".equals(indexedProperties.trim())) {
+            propertyIndex = new RolePropertyIndex(store, indexedProperties.split(","));
+            // Roles indexed from a previous store are no longer valid...
+            store.setRolePropertyIndex(propertyIndex);
+        }
+
+        RoleRepository roleRepository = new RoleRepository(store, propertyIndex);
+
+        AuthorizationCache authorizationCache = null;
+        if (Boolean.valueOf(context.getProperty(KEY_AUTHORIZATION_CACHE)).booleanValue()) {
+            authorizationCache = new AuthorizationCache(roleRepository);
+            // Roles cached from a previous store are no longer valid...
+            store.setAuthorizationCache(authorizationCache);
+        }
 
-        return new ServiceContext(eventAdmin, listenerList, eventDispatcher, roleRepository, store);
+        return new ServiceContext(eventAdmin, listenerList, eventDispatcher, roleRepository, store, authorizationCache);
     }
 }
@@ -17,7 +17,10 @@
 package org.apache.felix.useradmin.osgi;
 
 import org.apache.felix.useradmin.RoleRepositoryStore;
+import org.apache.felix.useradmin.impl.AuthorizationCache;
+import org.apache.felix.useradmin.impl.RolePropertyIndex;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
 import org.osgi.service.useradmin.Role;
 import org.osgi.util.tracker.ServiceTracker;
 
@@ -29,6 +32,9 @@ import org.osgi.util.tracker.ServiceTracker;
  * </p>
  */
 class RoleRepositoryStoreHelper extends ServiceTracker implements RoleRepositoryStore {
+
+    private volatile AuthorizationCache m_authorizationCache;
+    private volatile RolePropertyIndex m_rolePropertyIndex;
 	
     /**
      * Creates a new {@link RoleRepositoryStoreHelper} instance.
@@ -39,6 +45,35 @@ class RoleRepositoryStoreHelper extends ServiceTracker implements RoleRepository
         super(context, RoleRepositoryStore.class.getName(), null /* customizer */);
     }
 
+    /**
+     * Sets the authorization cache to invalidate when the tracked store changes.
+     * 
+     * @param authorizationCache the cache to invalidate, may be <code>null</code>.
+     */
+    public void setAuthorizationCache(AuthorizationCache authorizationCache) {
+        m_authorizationCache = authorizationCache;
+    }
+
+    /**
+     * Sets the role property index to invalidate when the tracked store changes.
+     * 
+     * @param rolePropertyIndex the index to invalidate, may be <code>null</code>.
+     */
+    public void setRolePropertyIndex(RolePropertyIndex rolePropertyIndex) {
+        m_rolePropertyIndex = rolePropertyIndex;
+    }
+
+    public Object addingService(ServiceReference reference) {
+        Object result = super.addingService(reference);
+        storeChanged();
+        return result;
+    }
+
+    public void removedService(ServiceReference reference, Object service) {
+        super.removedService(reference, service);
+        storeChanged();
+    }
+
     public Role addRole(String roleName, int type) throws Exception {
         RoleRepositoryStore store = getStore();
         if (store != null) {
@@ -76,6 +111,21 @@ class RoleRepositoryStoreHelper extends ServiceTracker implements RoleRepository
         return null;
     }
 
+    /**
+     * Invalidates the authorization cache and role property index, if any, as
+     * their contents no longer reflect the tracked store.
+     */
+    private void storeChanged() {
+        AuthorizationCache authorizationCache = m_authorizationCache;
+        if (authorizationCache != null) {
+            authorizationCache.invalidate();
+        }
+        RolePropertyIndex rolePropertyIndex = m_rolePropertyIndex;
+        if (rolePropertyIndex != null) {
+            rolePropertyIndex.invalidate();
+        }
+    }
+
     /**
      * Returns the tracked {@link RoleRepositoryStore}.
      * 
@@ -17,6 +17,7 @@
 package org.apache.felix.useradmin.osgi;
 
 
+import org.apache.felix.useradmin.impl.AuthorizationCache;
 import org.apache.felix.useradmin.impl.EventDispatcher;
 import org.apache.felix.useradmin.impl.RoleRepository;
 import org.osgi.service.useradmin.UserAdmin;
@@ -32,16 +33,18 @@ final class ServiceContext {
     final EventDispatcher m_eventDispatcher;
     final RoleRepository m_roleRepository;
     final RoleRepositoryStoreHelper m_store;
+    final AuthorizationCache m_authorizationCache;
 
     /**
      * Creates a new ServiceContext instance.
      */
-    public ServiceContext(EventAdminHelper eventAdmin, UserAdminListenerListHelper listenerList, EventDispatcher eventDispatcher, RoleRepository roleRepository, RoleRepositoryStoreHelper store) {
+    public ServiceContext(EventAdminHelper eventAdmin, UserAdminListenerListHelper listenerList, EventDispatcher eventDispatcher, RoleRepository roleRepository, RoleRepositoryStoreHelper store, AuthorizationCache authorizationCache) {
         m_eventAdmin = eventAdmin;
         m_listenerList = listenerList;
         m_eventDispatcher = eventDispatcher;
         m_roleRepository = roleRepository;
         m_store = store;
+        m_authorizationCache = authorizationCache;
     }
 
     /**
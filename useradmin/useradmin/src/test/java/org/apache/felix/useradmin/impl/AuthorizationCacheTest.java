@@ -0,0 +1,251 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.useradmin.RoleFactory;
+import org.osgi.service.useradmin.Group;
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+
+/**
+ * Test cases for {@link AuthorizationCache}.
+ */
+public class AuthorizationCacheTest extends TestCase {
+
+    /**
+     * Counts the lookups of roles by name.
+     */
+    static class CountingRoleRepositoryStore extends MemoryRoleRepositoryStore {
+        int m_lookups;
+
+        public Role getRoleByName(String roleName) throws Exception {
+            m_lookups++;
+            return super.getRoleByName(roleName);
+        }
+    }
+
+    private CountingRoleRepositoryStore m_store;
+    private RoleRepository m_roleRepository;
+    private AuthorizationCache m_cache;
+    private Role m_anyone;
+
+    private Group m_citizens;
+    private Group m_adults;
+    private Group m_voters;
+    private User m_elmer;
+    private User m_pepe;
+    private User m_bugs;
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        m_store = new CountingRoleRepositoryStore();
+        m_roleRepository = new RoleRepository(m_store);
+        m_cache = new AuthorizationCache(m_roleRepository);
+        m_roleRepository.addRoleChangeListener(m_cache);
+
+        m_anyone = m_roleRepository.getRoleByName(Role.USER_ANYONE);
+
+        m_citizens = createGroup("citizen");
+        m_citizens.addRequiredMember(m_anyone);
+
+        m_adults = createGroup("adult");
+        m_adults.addRequiredMember(m_anyone);
+
+        m_voters = createGroup("voter");
+        m_voters.addRequiredMember(m_citizens);
+        m_voters.addRequiredMember(m_adults);
+        m_voters.addMember(m_anyone);
+
+        // Elmer belongs to the citizens and adults...
+        m_elmer = createUser("elmer");
+        m_citizens.addMember(m_elmer);
+        m_adults.addMember(m_elmer);
+
+        // Pepe belongs to the citizens, but is not an adult...
+        m_pepe = createUser("pepe");
+        m_citizens.addMember(m_pepe);
+
+        // Bugs is an adult, but is not a citizen...
+        m_bugs = createUser("bugs");
+        m_adults.addMember(m_bugs);
+    }
+
+    /**
+     * Tests that the cached roles are the same as the roles checked without cache.
+     */
+    public void testCachedRolesMatchUncachedRoles() {
+        User daffy = createUser("daffy");
+        User donald = RoleFactory.createUser("donald");
+
+        User[] users = { m_elmer, m_pepe, m_bugs, daffy, donald, null };
+        String[] roles = { "elmer", "pepe", "bugs", "daffy", "donald", "citizen", "adult", "voter", Role.USER_ANYONE, "non-existing-role" };
+
+        for (int i = 0; i < users.length; i++) {
+            AuthorizationImpl uncached = new AuthorizationImpl(users[i], m_roleRepository);
+            AuthorizationImpl cached = new AuthorizationImpl(users[i], m_roleRepository, m_cache);
+
+            for (int j = 0; j < roles.length; j++) {
+                assertEquals(users[i] + " " + roles[j], uncached.hasRole(roles[j]), cached.hasRole(roles[j]));
+            }
+            assertEquals(sorted(uncached.getRoles()), sorted(cached.getRoles()));
+        }
+
+        assertEquals(Arrays.asList(new String[] { "adult", "citizen", "elmer", "voter" }), sorted(m_cache.getRoles(m_elmer)));
+        assertNull(m_cache.getRoles(donald));
+        assertNull(m_cache.getRoles(null));
+    }
+
+    /**
+     * Tests that the roles of a user are only looked up once.
+     */
+    public void testRolesAreComputedOnce() {
+        assertTrue(m_cache.hasRole(m_elmer, "voter"));
+
+        int lookups = m_store.m_lookups;
+        assertTrue(m_cache.hasRole(m_elmer, "adult"));
+        assertFalse(m_cache.hasRole(m_elmer, "non-existing-role"));
+        assertNotNull(m_cache.getRoles(m_elmer));
+        assertEquals(lookups, m_store.m_lookups);
+    }
+
+    /**
+     * Tests that changing the members of a group updates the cached roles of its members.
+     */
+    public void testMembershipChangesUpdateCachedRoles() {
+        assertFalse(m_cache.hasRole(m_pepe, "voter"));
+        assertFalse(m_cache.hasRole(m_pepe, "adult"));
+
+        m_adults.addMember(m_pepe);
+        assertTrue(m_cache.hasRole(m_pepe, "adult"));
+        assertTrue(m_cache.hasRole(m_pepe, "voter"));
+
+        m_adults.removeMember(m_pepe);
+        assertFalse(m_cache.hasRole(m_pepe, "adult"));
+        assertFalse(m_cache.hasRole(m_pepe, "voter"));
+
+        // Adding a required member revokes the group from the other users...
+        Group residents = createGroup("resident");
+        residents.addMember(m_elmer);
+        assertTrue(m_cache.hasRole(m_elmer, "voter"));
+        m_voters.addRequiredMember(residents);
+        assertTrue(m_cache.hasRole(m_elmer, "voter"));
+        assertFalse(m_cache.hasRole(m_bugs, "voter"));
+    }
+
+    /**
+     * Tests that changes of unrelated groups do not invalidate the cached roles of a user.
+     */
+    public void testUnrelatedChangesKeepCachedRoles() {
+        Group residents = createGroup("resident");
+        Group tenants = createGroup("tenant");
+        assertTrue(m_cache.hasRole(m_bugs, "adult"));
+
+        int lookups = m_store.m_lookups;
+        residents.addMember(m_pepe);
+        tenants.addMember(residents);
+        m_bugs.getProperties().put("key", "value");
+        assertTrue(m_cache.hasRole(m_bugs, "adult"));
+        assertEquals(lookups, m_store.m_lookups);
+
+        assertTrue(m_cache.hasRole(m_pepe, "resident"));
+        assertTrue(m_cache.hasRole(m_pepe, "tenant"));
+
+        // A group with anyone as member affects all users...
+        m_citizens.addMember(createUser("daffy"));
+        assertTrue(m_cache.hasRole(m_bugs, "adult"));
+        assertTrue(m_store.m_lookups > lookups);
+    }
+
+    /**
+     * Tests that removing a role updates the cached roles of its (former) members and groups.
+     */
+    public void testRemovedRoleUpdatesCachedRoles() {
+        assertTrue(m_cache.hasRole(m_elmer, "adult"));
+        assertFalse(m_cache.hasRole(m_pepe, "voter"));
+        assertTrue(m_cache.hasRole(m_bugs, "bugs"));
+
+        assertTrue(m_roleRepository.removeRole("adult"));
+
+        assertFalse(m_cache.hasRole(m_elmer, "adult"));
+        assertTrue(m_cache.hasRole(m_elmer, "voter"));
+        // Adults are no longer required to vote...
+        assertTrue(m_cache.hasRole(m_pepe, "voter"));
+
+        assertTrue(m_roleRepository.removeRole("bugs"));
+        assertFalse(m_cache.hasRole(m_bugs, "bugs"));
+
+        User bugs = createUser("bugs");
+        assertTrue(m_cache.hasRole(bugs, "bugs"));
+    }
+
+    /**
+     * Tests that cycles between groups are handled.
+     */
+    public void testCyclicGroups() {
+        Group g1 = createGroup("g1");
+        Group g2 = createGroup("g2");
+        g1.addMember(g2);
+        g2.addMember(g1);
+        g2.addMember(m_elmer);
+
+        assertEquals(new AuthorizationImpl(m_elmer, m_roleRepository).hasRole("g1"), m_cache.hasRole(m_elmer, "g1"));
+        assertEquals(new AuthorizationImpl(m_elmer, m_roleRepository).hasRole("g2"), m_cache.hasRole(m_elmer, "g2"));
+
+        g1.removeMember(g2);
+        assertEquals(new AuthorizationImpl(m_elmer, m_roleRepository).hasRole("g2"), m_cache.hasRole(m_elmer, "g2"));
+    }
+
+    /**
+     * Tests that roles are looked up again after invalidating the cache.
+     */
+    public void testInvalidate() {
+        assertTrue(m_cache.hasRole(m_elmer, "voter"));
+
+        int lookups = m_store.m_lookups;
+        m_cache.invalidate();
+        assertTrue(m_cache.hasRole(m_elmer, "voter"));
+        assertTrue(m_store.m_lookups > lookups);
+    }
+
+    private static List sorted(String[] roles) {
+        if (roles == null) {
+            return null;
+        }
+        List result = new ArrayList(Arrays.asList(roles));
+        Collections.sort(result);
+        return result;
+    }
+
+    private Group createGroup(String name) {
+        return (Group) m_roleRepository.addRole(name, Role.GROUP);
+    }
+
+    private User createUser(String name) {
+        return (User) m_roleRepository.addRole(name, Role.USER);
+    }
+}
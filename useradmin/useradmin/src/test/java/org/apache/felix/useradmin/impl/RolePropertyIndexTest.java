@@ -0,0 +1,189 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.felix.useradmin.impl;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.osgi.service.useradmin.Role;
+import org.osgi.service.useradmin.User;
+
+/**
+ * Test cases for {@link RolePropertyIndex}.
+ */
+public class RolePropertyIndexTest extends TestCase {
+
+    /**
+     * Counts the queries for roles.
+     */
+    static class CountingRoleRepositoryStore extends MemoryRoleRepositoryStore {
+        int m_queries;
+
+        public Role[] getRoles(String filterValue) throws Exception {
+            m_queries++;
+            return super.getRoles(filterValue);
+        }
+    }
+
+    private CountingRoleRepositoryStore m_store;
+    private RolePropertyIndex m_index;
+    private RoleRepository m_roleRepository;
+
+    private User m_john;
+    private User m_jane;
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        m_store = new CountingRoleRepositoryStore();
+        m_index = new RolePropertyIndex(m_store, new String[] { "login", " Email " });
+        m_roleRepository = new RoleRepository(m_store, m_index);
+
+        m_john = (User) m_roleRepository.addRole("john", Role.USER);
+        m_john.getProperties().put("login", "jdoe");
+        m_john.getProperties().put("email", "john@example.org");
+        m_john.getProperties().put("city", "Amsterdam");
+
+        m_jane = (User) m_roleRepository.addRole("jane", Role.USER);
+        m_jane.getProperties().put("login", "jsmith");
+        m_jane.getProperties().put("city", "Amsterdam");
+    }
+
+    /**
+     * Tests that the configured keys are indexed, regardless of their case.
+     */
+    public void testIsIndexed() {
+        assertTrue(m_index.isIndexed("login"));
+        assertTrue(m_index.isIndexed("LOGIN"));
+        assertTrue(m_index.isIndexed("email"));
+        assertFalse(m_index.isIndexed("city"));
+        assertFalse(m_index.isIndexed(null));
+    }
+
+    /**
+     * Tests that indexed lookups only query the store once, to build the index.
+     */
+    public void testIndexedLookupsDoNotQueryStore() {
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"), "john");
+
+        int queries = m_store.m_queries;
+        assertRoles(m_roleRepository.getRoles("login", "jsmith"), "jane");
+        assertRoles(m_roleRepository.getRoles("LOGIN", "jsmith"), "jane");
+        assertRoles(m_roleRepository.getRoles("email", "john@example.org"), "john");
+        assertRoles(m_roleRepository.getRoles("(login=jdoe)"), "john");
+        assertRoles(m_roleRepository.getRoles("login", "unknown"));
+        assertEquals(queries, m_store.m_queries);
+
+        // Non-indexed keys and non-literal values are evaluated by the store...
+        assertRoles(m_roleRepository.getRoles("city", "Amsterdam"), "john", "jane");
+        assertRoles(m_roleRepository.getRoles("login", "j*"), "john", "jane");
+        assertRoles(m_roleRepository.getRoles("(&(login=jdoe)(city=Amsterdam))"), "john");
+        assertEquals(queries + 3, m_store.m_queries);
+    }
+
+    /**
+     * Tests that changes to the properties of roles are reflected by the index.
+     */
+    public void testPropertyChangesUpdateIndex() {
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"), "john");
+
+        m_john.getProperties().put("login", "johnd");
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"));
+        assertRoles(m_roleRepository.getRoles("login", "johnd"), "john");
+
+        m_john.getProperties().remove("login");
+        assertRoles(m_roleRepository.getRoles("login", "johnd"));
+
+        m_jane.getProperties().put("email", "jane@example.org");
+        assertRoles(m_roleRepository.getRoles("email", "jane@example.org"), "jane");
+
+        // Credentials with the same key are not matched...
+        m_john.getCredentials().put("login", "secret");
+        assertRoles(m_roleRepository.getRoles("login", "secret"));
+    }
+
+    /**
+     * Tests that added and removed roles are reflected by the index.
+     */
+    public void testAddedAndRemovedRolesUpdateIndex() throws Exception {
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"), "john");
+
+        assertTrue(m_roleRepository.removeRole("john"));
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"));
+        assertTrue(m_index.getRoleNames("login", "jdoe").isEmpty());
+
+        User john = (User) m_roleRepository.addRole("john", Role.USER);
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"));
+        john.getProperties().put("Login", "jdoe");
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"), "john");
+    }
+
+    /**
+     * Tests that roles with non-String values for an indexed key are always candidates.
+     */
+    public void testNonStringValuesAreCandidates() throws Exception {
+        m_jane.getProperties().put("email", new byte[] { 1, 2, 3 });
+
+        assertTrue(m_index.getRoleNames("email", "john@example.org").contains("jane"));
+        assertRoles(m_roleRepository.getRoles("email", "john@example.org"), "john");
+
+        m_jane.getProperties().remove("email");
+        assertFalse(m_index.getRoleNames("email", "john@example.org").contains("jane"));
+    }
+
+    /**
+     * Tests that the index is rebuilt from the store after its invalidation.
+     */
+    public void testInvalidate() throws Exception {
+        assertRoles(m_roleRepository.getRoles("login", "jdoe"), "john");
+
+        // Changed without notifying the index...
+        m_store.getRoleByName("john").getProperties().put("login", "johnd");
+        m_index.invalidate();
+
+        int queries = m_store.m_queries;
+        assertRoles(m_roleRepository.getRoles("login", "johnd"), "john");
+        assertEquals(queries + 1, m_store.m_queries);
+    }
+
+    private static void assertRoles(List roles, String name) {
+        assertRoles(roles, new String[] { name });
+    }
+
+    private static void assertRoles(List roles, String name1, String name2) {
+        assertRoles(roles, new String[] { name1, name2 });
+    }
+
+    private static void assertRoles(List roles) {
+        assertRoles(roles, new String[0]);
+    }
+
+    private static void assertRoles(List roles, String[] names) {
+        assertEquals(names.length, roles.size());
+        for (int i = 0; i < names.length; i++) {
+            boolean found = false;
+            for (int j = 0; !found && j < roles.size(); j++) {
+                found = names[i].equals(((Role) roles.get(j)).getName());
+            }
+            assertTrue("Role not found: " + names[i], found);
+        }
+    }
+}